@@ -0,0 +1,82 @@
+package com.sinker.app.util;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.math.BigDecimal;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 品項 × 12 通路 × 月份的彙總：原本以 BigDecimal 逐筆 add，對照以 {@link Hundredths} 在 long 上加總、最後才轉 BigDecimal。
+ * 兩者輸入皆為讀出的 BigDecimal（scale 2），只比較彙總本身。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class HundredthsAggregationBenchmark {
+
+    private static final int CHANNELS = 12;
+
+    @Param({"2000", "20000"})
+    int products;
+
+    @Param({"11"})
+    int months;
+
+    private BigDecimal[] quantities;
+    private int[] productSlots;
+    private int[] channelSlots;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        int rows = products * CHANNELS * months;
+        quantities = new BigDecimal[rows];
+        productSlots = new int[rows];
+        channelSlots = new int[rows];
+        for (int i = 0; i < rows; i++) {
+            quantities[i] = BigDecimal.valueOf(random.nextInt(1_000_000), 2);
+            productSlots[i] = (i / CHANNELS) % products;
+            channelSlots[i] = i % CHANNELS;
+        }
+    }
+
+    @Benchmark
+    public BigDecimal bigDecimal() {
+        BigDecimal[][] totals = new BigDecimal[products][CHANNELS];
+        for (int i = 0; i < quantities.length; i++) {
+            BigDecimal[] row = totals[productSlots[i]];
+            int ch = channelSlots[i];
+            row[ch] = row[ch] == null ? quantities[i] : row[ch].add(quantities[i]);
+        }
+        BigDecimal grand = BigDecimal.ZERO;
+        for (BigDecimal[] row : totals) {
+            BigDecimal subtotal = BigDecimal.ZERO;
+            for (BigDecimal v : row) {
+                if (v != null) subtotal = subtotal.add(v);
+            }
+            grand = grand.add(subtotal);
+        }
+        return grand;
+    }
+
+    @Benchmark
+    public BigDecimal hundredths() {
+        long[][] totals = new long[products][CHANNELS];
+        for (int i = 0; i < quantities.length; i++) {
+            totals[productSlots[i]][channelSlots[i]] += Hundredths.of(quantities[i]);
+        }
+        long grand = 0;
+        for (long[] row : totals) {
+            grand += Hundredths.sum(row);
+        }
+        return Hundredths.toDecimal(grand);
+    }
+}
@@ -167,6 +167,7 @@ public class GiftSalesForecastController {
     public ResponseEntity<ForecastResponse> updateForecast(
             @PathVariable Integer id,
             @Valid @RequestBody UpdateForecastRequest request,
+            @RequestParam(required = false) String version,
             @AuthenticationPrincipal com.sinker.app.security.JwtUserPrincipal principal,
             Authentication authentication) {
 
@@ -174,7 +175,7 @@ public class GiftSalesForecastController {
                 .map(GrantedAuthority::getAuthority)
                 .collect(Collectors.toSet());
         ForecastResponse response = forecastService.updateForecast(
-                id, request, principal.getUserId(), principal.getRoleCode(), authorities);
+                id, request, version, principal.getUserId(), principal.getRoleCode(), authorities);
         return ResponseEntity.ok(response);
     }
 
@@ -182,9 +183,10 @@ public class GiftSalesForecastController {
     @PreAuthorize("hasAuthority('sales_forecast.delete')")
     public ResponseEntity<Void> deleteForecast(
             @PathVariable Integer id,
+            @RequestParam(required = false) String version,
             @AuthenticationPrincipal com.sinker.app.security.JwtUserPrincipal principal) {
 
-        forecastService.deleteForecast(id, principal.getUserId(), principal.getRoleCode());
+        forecastService.deleteForecast(id, version, principal.getUserId(), principal.getRoleCode());
         return ResponseEntity.noContent().build();
     }
 
@@ -1,10 +1,13 @@
 package com.sinker.app.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.sinker.app.dto.forecast.InventoryIntegrationDTO;
 import com.sinker.app.dto.forecast.UpdateModifiedSubtotalRequest;
 import com.sinker.app.exception.ResourceNotFoundException;
 import com.sinker.app.security.JwtUserPrincipal;
+import com.sinker.app.service.ErpInventoryCache;
 import com.sinker.app.service.InventoryIntegrationService;
+import com.sinker.app.service.ReportDataVersion;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import org.slf4j.Logger;
@@ -17,6 +20,7 @@ import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.validation.FieldError;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.ServletWebRequest;
 
 import java.time.LocalDateTime;
 import java.util.List;
@@ -29,23 +33,46 @@ public class InventoryIntegrationController {
     private static final Logger log = LoggerFactory.getLogger(InventoryIntegrationController.class);
 
     private final InventoryIntegrationService inventoryIntegrationService;
-
-    public InventoryIntegrationController(InventoryIntegrationService inventoryIntegrationService) {
+    private final ObjectMapper objectMapper;
+    private final ReportDataVersion reportDataVersion;
+    private final ErpInventoryCache erpInventoryCache;
+
+    public InventoryIntegrationController(InventoryIntegrationService inventoryIntegrationService,
+                                          ObjectMapper objectMapper,
+                                          ReportDataVersion reportDataVersion,
+                                          ErpInventoryCache erpInventoryCache) {
         this.inventoryIntegrationService = inventoryIntegrationService;
+        this.objectMapper = objectMapper;
+        this.reportDataVersion = reportDataVersion;
+        this.erpInventoryCache = erpInventoryCache;
     }
 
     @GetMapping
     @PreAuthorize("hasAuthority('inventory.view')")
-    public ResponseEntity<List<InventoryIntegrationDTO>> queryInventoryIntegration(
+    public ResponseEntity<?> queryInventoryIntegration(
             @RequestParam(required = false) String month,
             @RequestParam(required = false) String startDate,
             @RequestParam(required = false) String endDate,
             @RequestParam(required = false) String version,
-            @AuthenticationPrincipal JwtUserPrincipal principal) {
+            @RequestParam(defaultValue = "false") boolean stream,
+            @AuthenticationPrincipal JwtUserPrincipal principal,
+            ServletWebRequest webRequest) {
 
         log.info("GET /api/inventory-integration - user={}, month={}, startDate={}, endDate={}, version={}",
                 principal.getUserId(), month, startDate, endDate, version);
 
+        // 指定版本時讀取已存的資料才可快取；即時查詢可能呼叫 ERP 並存成新版本
+        if (version != null && !version.isEmpty()) {
+            long watermark = month != null && !month.isEmpty()
+                    ? reportDataVersion.current(month) : reportDataVersion.all();
+            if (ReportETag.notModified(webRequest, watermark)) {
+                return null;
+            }
+        }
+        if (stream) {
+            return JsonStreaming.array(objectMapper,
+                    inventoryIntegrationService.streamInventoryIntegration(month, startDate, endDate, version));
+        }
         List<InventoryIntegrationDTO> results = inventoryIntegrationService.queryInventoryIntegration(
                 month, startDate, endDate, version);
 
@@ -64,7 +91,7 @@ public class InventoryIntegrationController {
 
     @PostMapping("/copy-version")
     @PreAuthorize("hasAuthority('inventory.edit')")
-    public ResponseEntity<Map<String, String>> copyVersion(
+    public ResponseEntity<Map<String, Object>> copyVersion(
             @RequestParam String version,
             @AuthenticationPrincipal JwtUserPrincipal principal) {
         log.info("POST /api/inventory-integration/copy-version - user={}, version={}",
@@ -72,8 +99,8 @@ public class InventoryIntegrationController {
         if (version == null || version.isEmpty()) {
             throw new IllegalArgumentException("version parameter is required");
         }
-        String newVersion = inventoryIntegrationService.copyVersion(version);
-        return ResponseEntity.ok(Map.of("version", newVersion));
+        InventoryIntegrationService.VersionCopy copy = inventoryIntegrationService.copyVersion(version);
+        return ResponseEntity.ok(Map.of("version", copy.version(), "count", copy.rows()));
     }
 
     @PutMapping("/{id}")
@@ -92,6 +119,26 @@ public class InventoryIntegrationController {
         return ResponseEntity.ok(result);
     }
 
+    @GetMapping("/erp-cache")
+    @PreAuthorize("hasAuthority('inventory.view')")
+    public ResponseEntity<ErpInventoryCache.Stats> getErpCacheStats() {
+        return ResponseEntity.ok(erpInventoryCache.stats());
+    }
+
+    /** ERP 資料已更正時清除該月份的快取並更新報表水位，下次即時查詢重新向 ERP 取數 */
+    @DeleteMapping("/erp-cache")
+    @PreAuthorize("hasAuthority('inventory.edit')")
+    public ResponseEntity<Map<String, Object>> evictErpCache(
+            @RequestParam String month,
+            @AuthenticationPrincipal JwtUserPrincipal principal) {
+        log.info("DELETE /api/inventory-integration/erp-cache - user={}, month={}", principal.getUserId(), month);
+        if (!month.matches("\\d{6}|\\d{4}-\\d{2}")) {
+            throw new IllegalArgumentException("month must be YYYYMM or YYYY-MM");
+        }
+        int evicted = inventoryIntegrationService.evictErpCache(month);
+        return ResponseEntity.ok(Map.of("month", month, "evicted", evicted));
+    }
+
     @ExceptionHandler(IllegalArgumentException.class)
     public ResponseEntity<Map<String, Object>> handleIllegalArgument(
             IllegalArgumentException ex, HttpServletRequest request) {
@@ -110,9 +157,9 @@ public class InventoryIntegrationController {
     @ExceptionHandler(AccessDeniedException.class)
     public ResponseEntity<Map<String, Object>> handleAccessDenied(
             AccessDeniedException ex, HttpServletRequest request) {
-        String message = request.getMethod().equals("PUT")
-            ? "Insufficient permissions: inventory.edit required"
-            : "Insufficient permissions: inventory.view required";
+        String message = request.getMethod().equals("GET")
+            ? "Insufficient permissions: inventory.view required"
+            : "Insufficient permissions: inventory.edit required";
         return buildErrorResponse(HttpStatus.FORBIDDEN, "Forbidden", message, request.getRequestURI());
     }
 
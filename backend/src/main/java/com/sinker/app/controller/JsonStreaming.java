@@ -0,0 +1,83 @@
+package com.sinker.app.controller;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sinker.app.dto.ReportStream;
+import com.sinker.app.dto.RowStream;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * 大型報表的串流輸出（?stream=true）：明細列邊產生邊以 JsonGenerator 寫出，
+ * 不先建好整份 DTO 清單，輸出的 JSON 與一般回應相同（物件回應的明細陣列移到最後）。
+ * 查詢與驗證在呼叫端（請求執行緒）完成，錯誤仍由各 controller 的例外處理回應；串流中只組成明細列。
+ */
+final class JsonStreaming {
+
+    private JsonStreaming() {
+    }
+
+    /** 回應為明細列陣列 */
+    static ResponseEntity<StreamingResponseBody> array(ObjectMapper mapper, RowStream<?> rows) {
+        return ok(out -> {
+            try (JsonGenerator gen = generator(mapper, out)) {
+                gen.writeStartArray();
+                writeRows(gen, rows);
+                gen.writeEndArray();
+            }
+        });
+    }
+
+    /** 回應為物件：header 的欄位（rowsField 除外）後接 rowsField 明細列陣列 */
+    static ResponseEntity<StreamingResponseBody> object(ObjectMapper mapper, ReportStream<?, ?> report,
+                                                        String rowsField) {
+        ObjectNode header = mapper.valueToTree(report.header());
+        header.remove(rowsField);
+        return ok(out -> {
+            try (JsonGenerator gen = generator(mapper, out)) {
+                gen.writeStartObject();
+                for (Iterator<Map.Entry<String, JsonNode>> it = header.fields(); it.hasNext(); ) {
+                    Map.Entry<String, JsonNode> field = it.next();
+                    gen.writeFieldName(field.getKey());
+                    gen.writeTree(field.getValue());
+                }
+                gen.writeArrayFieldStart(rowsField);
+                writeRows(gen, report.rows());
+                gen.writeEndArray();
+                gen.writeEndObject();
+            }
+        });
+    }
+
+    private static ResponseEntity<StreamingResponseBody> ok(StreamingResponseBody body) {
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(body);
+    }
+
+    private static JsonGenerator generator(ObjectMapper mapper, OutputStream out) throws IOException {
+        // 輸出串流由容器關閉
+        return mapper.createGenerator(out).disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+    }
+
+    private static void writeRows(JsonGenerator gen, RowStream<?> rows) throws IOException {
+        try {
+            rows.forEachRow(row -> {
+                try {
+                    gen.writeObject(row);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package com.sinker.app.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.sinker.app.dto.productionplan.ProductionFormRangeResponse;
 import com.sinker.app.dto.productionplan.ProductionFormRowDTO;
 import com.sinker.app.dto.productionplan.UpdateBufferRequest;
@@ -8,6 +9,7 @@ import com.sinker.app.exception.ResourceNotFoundException;
 import com.sinker.app.security.JwtUserPrincipal;
 import com.sinker.app.service.ProductionFormService;
 import com.sinker.app.service.ProductionPlanService;
+import com.sinker.app.service.ReportDataVersion;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import org.slf4j.Logger;
@@ -18,6 +20,7 @@ import org.springframework.security.access.AccessDeniedException;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.ServletWebRequest;
 
 import java.time.LocalDateTime;
 import java.util.List;
@@ -31,11 +34,17 @@ public class ProductionPlanController {
 
     private final ProductionPlanService productionPlanService;
     private final ProductionFormService productionFormService;
+    private final ObjectMapper objectMapper;
+    private final ReportDataVersion reportDataVersion;
 
     public ProductionPlanController(ProductionPlanService productionPlanService,
-                                    ProductionFormService productionFormService) {
+                                    ProductionFormService productionFormService,
+                                    ObjectMapper objectMapper,
+                                    ReportDataVersion reportDataVersion) {
         this.productionPlanService = productionPlanService;
         this.productionFormService = productionFormService;
+        this.objectMapper = objectMapper;
+        this.reportDataVersion = reportDataVersion;
     }
 
     @GetMapping
@@ -45,16 +54,31 @@ public class ProductionPlanController {
             @RequestParam(required = false) String start_month,
             @RequestParam(required = false) String end_month,
             @RequestParam(required = false) String version,
-            @AuthenticationPrincipal JwtUserPrincipal principal) {
+            @RequestParam(defaultValue = "false") boolean stream,
+            @AuthenticationPrincipal JwtUserPrincipal principal,
+            ServletWebRequest webRequest) {
 
         if (start_month != null && end_month != null) {
             log.info("GET /api/production-plan - user={}, start_month={}, end_month={}, version={}",
                     principal.getUserId(), start_month, end_month, version);
+            if (ReportETag.notModified(webRequest, reportDataVersion.between(start_month, end_month))) {
+                return null;
+            }
+            if (stream) {
+                return JsonStreaming.object(objectMapper,
+                        productionFormService.streamProductionFormByMonthRange(start_month, end_month, version), "rows");
+            }
             ProductionFormRangeResponse resp = productionFormService.getProductionFormByMonthRange(start_month, end_month, version);
             return ResponseEntity.ok(resp);
         }
         if (year != null) {
             log.info("GET /api/production-plan - user={}, year={}", principal.getUserId(), year);
+            if (ReportETag.notModified(webRequest, reportDataVersion.between(year + "01", year + "12"))) {
+                return null;
+            }
+            if (stream) {
+                return JsonStreaming.array(objectMapper, productionFormService.streamProductionForm(year));
+            }
             List<ProductionFormRowDTO> rows = productionFormService.getProductionForm(year);
             return ResponseEntity.ok(rows);
         }
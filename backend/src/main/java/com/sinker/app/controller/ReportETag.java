@@ -0,0 +1,33 @@
+package com.sinker.app.controller;
+
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.util.DigestUtils;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 報表端點的條件式 GET：強 ETag 由查詢涵蓋月份的資料版本水位（{@link com.sinker.app.service.ReportDataVersion}）
+ * 與請求路徑、查詢字串組成，同一網址在資料未寫入前 ETag 不變。
+ * If-None-Match 相符時回 304，呼叫端直接回傳 null，不進入 service；
+ * 另以 Cache-Control: private, no-cache 讓瀏覽器保留回應並每次重新驗證。
+ */
+final class ReportETag {
+
+    private ReportETag() {
+    }
+
+    /** @return true 表示已設定 304，呼叫端應直接回傳 null */
+    static boolean notModified(ServletWebRequest webRequest, long watermark) {
+        HttpServletRequest request = webRequest.getRequest();
+        String resource = request.getRequestURI() + "?" + (request.getQueryString() != null ? request.getQueryString() : "");
+        String etag = watermark + "-" + DigestUtils.md5DigestAsHex(resource.getBytes(StandardCharsets.UTF_8));
+        if (webRequest.getResponse() != null) {
+            webRequest.getResponse().setHeader(HttpHeaders.CACHE_CONTROL,
+                    CacheControl.noCache().cachePrivate().getHeaderValue());
+        }
+        return webRequest.checkNotModified(etag);
+    }
+}
@@ -1,5 +1,6 @@
 package com.sinker.app.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.sinker.app.dto.forecast.CopyVersionResponse;
 import com.sinker.app.dto.forecast.CreateForecastRequest;
 import com.sinker.app.dto.forecast.ForecastResponse;
@@ -15,6 +16,7 @@ import com.sinker.app.exception.ResourceNotFoundException;
 import com.sinker.app.security.JwtUserPrincipal;
 import com.sinker.app.service.ForecastIntegrationService;
 import com.sinker.app.service.FormSummaryService;
+import com.sinker.app.service.ReportDataVersion;
 import com.sinker.app.service.SalesForecastService;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
@@ -28,6 +30,7 @@ import org.springframework.security.core.Authentication;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.ServletWebRequest;
 
 import jakarta.validation.Valid;
 import java.time.LocalDateTime;
@@ -45,13 +48,19 @@ public class SalesForecastController {
     private final SalesForecastService forecastService;
     private final ForecastIntegrationService integrationService;
     private final FormSummaryService formSummaryService;
+    private final ObjectMapper objectMapper;
+    private final ReportDataVersion reportDataVersion;
 
     public SalesForecastController(SalesForecastService forecastService,
                                     ForecastIntegrationService integrationService,
-                                    FormSummaryService formSummaryService) {
+                                    FormSummaryService formSummaryService,
+                                    ObjectMapper objectMapper,
+                                    ReportDataVersion reportDataVersion) {
         this.forecastService = forecastService;
         this.integrationService = integrationService;
         this.formSummaryService = formSummaryService;
+        this.objectMapper = objectMapper;
+        this.reportDataVersion = reportDataVersion;
     }
 
     @GetMapping
@@ -87,10 +96,12 @@ public class SalesForecastController {
 
     @GetMapping("/form-summary")
     @PreAuthorize("hasAuthority('sales_forecast.update_after_closed')")
-    public ResponseEntity<FormSummaryResponse> getFormSummary(
+    public ResponseEntity<?> getFormSummary(
             @RequestParam String month,
             @RequestParam(required = false) Integer version_no,
-            @AuthenticationPrincipal JwtUserPrincipal principal) {
+            @RequestParam(defaultValue = "false") boolean stream,
+            @AuthenticationPrincipal JwtUserPrincipal principal,
+            ServletWebRequest webRequest) {
 
         log.info("GET /api/sales-forecast/form-summary - user={}, month={}, version_no={}", principal.getUserId(), month, version_no);
 
@@ -98,6 +109,12 @@ public class SalesForecastController {
             throw new IllegalArgumentException("Missing required parameter: month");
         }
 
+        if (ReportETag.notModified(webRequest, reportDataVersion.current(month))) {
+            return null;
+        }
+        if (stream) {
+            return JsonStreaming.object(objectMapper, formSummaryService.streamFormSummary(month, version_no), "rows");
+        }
         FormSummaryResponse response = formSummaryService.getFormSummary(month, version_no);
         return ResponseEntity.ok(response);
     }
@@ -245,10 +262,12 @@ public class SalesForecastController {
 
     @GetMapping("/integration")
     @PreAuthorize("hasAuthority('sales_forecast.view')")
-    public ResponseEntity<List<IntegrationRowDTO>> queryIntegration(
+    public ResponseEntity<?> queryIntegration(
             @RequestParam String month,
             @RequestParam(required = false) String version,
-            @AuthenticationPrincipal JwtUserPrincipal principal) {
+            @RequestParam(defaultValue = "false") boolean stream,
+            @AuthenticationPrincipal JwtUserPrincipal principal,
+            ServletWebRequest webRequest) {
 
         log.info("GET /api/sales-forecast/integration - user={}, month={}, version={}",
                 principal.getUserId(), month, version);
@@ -258,11 +277,37 @@ public class SalesForecastController {
             throw new IllegalArgumentException("Missing required parameter: month");
         }
 
+        if (ReportETag.notModified(webRequest, reportDataVersion.current(month))) {
+            return null;
+        }
+        if (stream) {
+            return JsonStreaming.array(objectMapper, integrationService.streamIntegration(month, version));
+        }
         List<IntegrationRowDTO> result = integrationService.queryIntegration(month, version);
 
         return ResponseEntity.ok(result);
     }
 
+    @GetMapping("/integration/range")
+    @PreAuthorize("hasAuthority('sales_forecast.view')")
+    public ResponseEntity<Map<String, List<IntegrationRowDTO>>> queryIntegrationRange(
+            @RequestParam String start_month,
+            @RequestParam String end_month,
+            @AuthenticationPrincipal JwtUserPrincipal principal,
+            ServletWebRequest webRequest) {
+
+        log.info("GET /api/sales-forecast/integration/range - user={}, start_month={}, end_month={}",
+                principal.getUserId(), start_month, end_month);
+
+        if (ReportETag.notModified(webRequest, reportDataVersion.between(start_month, end_month))) {
+            return null;
+        }
+        // 各月份為最新版本，依月份排序
+        Map<String, List<IntegrationRowDTO>> result = integrationService.queryIntegrationRange(start_month, end_month);
+
+        return ResponseEntity.ok(result);
+    }
+
     @PostMapping
     @PreAuthorize("hasAuthority('sales_forecast.create')")
     public ResponseEntity<ForecastResponse> createForecast(
@@ -287,6 +332,7 @@ public class SalesForecastController {
     public ResponseEntity<ForecastResponse> updateForecast(
             @PathVariable Integer id,
             @Valid @RequestBody UpdateForecastRequest request,
+            @RequestParam(required = false) String version,
             @AuthenticationPrincipal JwtUserPrincipal principal,
             Authentication authentication) {
 
@@ -297,7 +343,7 @@ public class SalesForecastController {
                 .map(GrantedAuthority::getAuthority)
                 .collect(Collectors.toSet());
         ForecastResponse response = forecastService.updateForecast(
-                id, request, principal.getUserId(), principal.getRoleCode(), authorities);
+                id, request, version, principal.getUserId(), principal.getRoleCode(), authorities);
 
         return ResponseEntity.ok(response);
     }
@@ -306,11 +352,12 @@ public class SalesForecastController {
     @PreAuthorize("hasAuthority('sales_forecast.delete')")
     public ResponseEntity<Void> deleteForecast(
             @PathVariable Integer id,
+            @RequestParam(required = false) String version,
             @AuthenticationPrincipal JwtUserPrincipal principal) {
 
         log.info("DELETE /api/sales-forecast/{} - user={}", id, principal.getUserId());
 
-        forecastService.deleteForecast(id, principal.getUserId(), principal.getRoleCode());
+        forecastService.deleteForecast(id, version, principal.getUserId(), principal.getRoleCode());
 
         return ResponseEntity.noContent().build();
     }
@@ -1,11 +1,13 @@
 package com.sinker.app.controller;
 
+import com.sinker.app.dto.forecast.UploadJobResponse;
 import com.sinker.app.dto.forecast.UploadResponse;
 import com.sinker.app.exception.ExcelParseException;
 import com.sinker.app.exception.ResourceNotFoundException;
 import com.sinker.app.security.JwtUserPrincipal;
 import com.sinker.app.service.ExcelTemplateService;
-import com.sinker.app.service.SalesForecastUploadService;
+import com.sinker.app.service.SalesForecastUploadService.UploadMode;
+import com.sinker.app.service.UploadJobService;
 import jakarta.servlet.http.HttpServletRequest;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -24,6 +26,7 @@ import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
 
 @RestController
 @RequestMapping("/api/sales-forecast")
@@ -31,12 +34,12 @@ public class SalesForecastUploadController {
 
     private static final Logger log = LoggerFactory.getLogger(SalesForecastUploadController.class);
 
-    private final SalesForecastUploadService uploadService;
+    private final UploadJobService uploadJobService;
     private final ExcelTemplateService templateService;
 
-    public SalesForecastUploadController(SalesForecastUploadService uploadService,
+    public SalesForecastUploadController(UploadJobService uploadJobService,
                                          ExcelTemplateService templateService) {
-        this.uploadService = uploadService;
+        this.uploadJobService = uploadJobService;
         this.templateService = templateService;
     }
 
@@ -46,17 +49,45 @@ public class SalesForecastUploadController {
             @RequestParam("file") MultipartFile file,
             @RequestParam("month") String month,
             @RequestParam("channel") String channel,
+            @RequestParam(value = "mode", required = false) String mode,
             @AuthenticationPrincipal JwtUserPrincipal principal) {
 
-        log.info("POST /api/sales-forecast/upload - user={}, month={}, channel={}",
-                principal.getUserId(), month, channel);
+        log.info("POST /api/sales-forecast/upload - user={}, month={}, channel={}, mode={}",
+                principal.getUserId(), month, channel, mode);
 
-        UploadResponse response = uploadService.upload(file, month, channel,
+        UploadResponse response = uploadJobService.uploadAndWait(file, month, channel, UploadMode.fromParam(mode),
                 principal.getUserId(), principal.getRoleCode());
 
         return ResponseEntity.ok(response);
     }
 
+    @PostMapping("/upload-jobs")
+    @PreAuthorize("hasAuthority('sales_forecast.upload')")
+    public ResponseEntity<UploadJobResponse> submitUploadJob(
+            @RequestParam("file") MultipartFile file,
+            @RequestParam("month") String month,
+            @RequestParam("channel") String channel,
+            @RequestParam(value = "mode", required = false) String mode,
+            @AuthenticationPrincipal JwtUserPrincipal principal) {
+
+        log.info("POST /api/sales-forecast/upload-jobs - user={}, month={}, channel={}, mode={}",
+                principal.getUserId(), month, channel, mode);
+
+        UploadJobResponse response = uploadJobService.submit(file, month, channel, UploadMode.fromParam(mode),
+                principal.getUserId(), principal.getRoleCode());
+
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(response);
+    }
+
+    @GetMapping("/upload-jobs/{id}")
+    @PreAuthorize("hasAuthority('sales_forecast.upload')")
+    public ResponseEntity<UploadJobResponse> getUploadJob(
+            @PathVariable("id") String id,
+            @AuthenticationPrincipal JwtUserPrincipal principal) {
+
+        return ResponseEntity.ok(uploadJobService.getJob(id, principal.getUserId(), principal.getRoleCode()));
+    }
+
     @GetMapping("/template")
     @PreAuthorize("hasAnyAuthority('sales_forecast.upload', 'sales_forecast.view')")
     public ResponseEntity<byte[]> downloadTemplate(@RequestParam("channel") String channel) {
@@ -106,6 +137,13 @@ public class SalesForecastUploadController {
                 List.of(ex.getMessage()), request.getRequestURI());
     }
 
+    @ExceptionHandler(RejectedExecutionException.class)
+    public ResponseEntity<Map<String, Object>> handleRejected(
+            RejectedExecutionException ex, HttpServletRequest request) {
+        return buildErrorResponse(HttpStatus.SERVICE_UNAVAILABLE, "Service Unavailable",
+                List.of("Too many uploads in progress, please retry later"), request.getRequestURI());
+    }
+
     private ResponseEntity<Map<String, Object>> buildErrorResponse(
             HttpStatus status, String error, List<String> details, String path) {
         return ResponseEntity.status(status).body(Map.of(
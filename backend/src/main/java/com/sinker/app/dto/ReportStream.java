@@ -0,0 +1,7 @@
+package com.sinker.app.dto;
+
+/**
+ * 串流輸出的報表：header 為不含明細列的回應物件，明細列由 rows 依序產生。
+ */
+public record ReportStream<H, R>(H header, RowStream<R> rows) {
+}
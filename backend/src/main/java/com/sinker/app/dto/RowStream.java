@@ -0,0 +1,25 @@
+package com.sinker.app.dto;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * 依序產生的報表明細列。列在 forEachRow 走到時才組成 DTO，串流輸出時寫出後即可回收，
+ * 不必先建好整份 List；除 {@link #of} 外只能走訪一次。
+ */
+@FunctionalInterface
+public interface RowStream<R> {
+
+    void forEachRow(Consumer<? super R> action);
+
+    default List<R> toList() {
+        List<R> rows = new ArrayList<>();
+        forEachRow(rows::add);
+        return rows;
+    }
+
+    static <R> RowStream<R> of(List<R> rows) {
+        return rows::forEach;
+    }
+}
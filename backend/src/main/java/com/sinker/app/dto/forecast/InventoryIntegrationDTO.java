@@ -31,6 +31,8 @@ public class InventoryIntegrationDTO {
     private String queryStartDate;
     @JsonProperty("query_end_date")
     private String queryEndDate;
+    @JsonProperty("erp_error")
+    private String erpError;
     @JsonProperty("created_at")
     private LocalDateTime createdAt;
     @JsonProperty("updated_at")
@@ -88,6 +90,9 @@ public class InventoryIntegrationDTO {
     public String getQueryEndDate() { return queryEndDate; }
     public void setQueryEndDate(String queryEndDate) { this.queryEndDate = queryEndDate; }
 
+    public String getErpError() { return erpError; }
+    public void setErpError(String erpError) { this.erpError = erpError; }
+
     public LocalDateTime getCreatedAt() { return createdAt; }
     public void setCreatedAt(LocalDateTime createdAt) { this.createdAt = createdAt; }
 
@@ -0,0 +1,67 @@
+package com.sinker.app.dto.forecast;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public class UploadJobResponse {
+
+    @JsonProperty("job_id")
+    private String jobId;
+
+    private String phase;
+
+    private String month;
+
+    private String channel;
+
+    @JsonProperty("rows_total")
+    private int rowsTotal;
+
+    @JsonProperty("rows_processed")
+    private int rowsProcessed;
+
+    private List<String> errors;
+
+    /** 完成後的上傳結果；未完成或失敗時為 null */
+    private UploadResponse result;
+
+    @JsonProperty("submitted_at")
+    private LocalDateTime submittedAt;
+
+    @JsonProperty("finished_at")
+    private LocalDateTime finishedAt;
+
+    public UploadJobResponse() {}
+
+    public String getJobId() { return jobId; }
+    public void setJobId(String jobId) { this.jobId = jobId; }
+
+    public String getPhase() { return phase; }
+    public void setPhase(String phase) { this.phase = phase; }
+
+    public String getMonth() { return month; }
+    public void setMonth(String month) { this.month = month; }
+
+    public String getChannel() { return channel; }
+    public void setChannel(String channel) { this.channel = channel; }
+
+    public int getRowsTotal() { return rowsTotal; }
+    public void setRowsTotal(int rowsTotal) { this.rowsTotal = rowsTotal; }
+
+    public int getRowsProcessed() { return rowsProcessed; }
+    public void setRowsProcessed(int rowsProcessed) { this.rowsProcessed = rowsProcessed; }
+
+    public List<String> getErrors() { return errors; }
+    public void setErrors(List<String> errors) { this.errors = errors; }
+
+    public UploadResponse getResult() { return result; }
+    public void setResult(UploadResponse result) { this.result = result; }
+
+    public LocalDateTime getSubmittedAt() { return submittedAt; }
+    public void setSubmittedAt(LocalDateTime submittedAt) { this.submittedAt = submittedAt; }
+
+    public LocalDateTime getFinishedAt() { return finishedAt; }
+    public void setFinishedAt(LocalDateTime finishedAt) { this.finishedAt = finishedAt; }
+}
@@ -18,6 +18,21 @@ public class UploadResponse {
 
     private String channel;
 
+    /** replace：整批刪除重寫；delta：依品號差異套用 */
+    private String mode;
+
+    @JsonProperty("rows_inserted")
+    private int rowsInserted;
+
+    @JsonProperty("rows_updated")
+    private int rowsUpdated;
+
+    @JsonProperty("rows_deleted")
+    private int rowsDeleted;
+
+    @JsonProperty("rows_unchanged")
+    private int rowsUnchanged;
+
     public UploadResponse() {}
 
     public UploadResponse(int rowsProcessed, String version, LocalDateTime uploadTimestamp,
@@ -43,4 +58,19 @@ public class UploadResponse {
 
     public String getChannel() { return channel; }
     public void setChannel(String channel) { this.channel = channel; }
+
+    public String getMode() { return mode; }
+    public void setMode(String mode) { this.mode = mode; }
+
+    public int getRowsInserted() { return rowsInserted; }
+    public void setRowsInserted(int rowsInserted) { this.rowsInserted = rowsInserted; }
+
+    public int getRowsUpdated() { return rowsUpdated; }
+    public void setRowsUpdated(int rowsUpdated) { this.rowsUpdated = rowsUpdated; }
+
+    public int getRowsDeleted() { return rowsDeleted; }
+    public void setRowsDeleted(int rowsDeleted) { this.rowsDeleted = rowsDeleted; }
+
+    public int getRowsUnchanged() { return rowsUnchanged; }
+    public void setRowsUnchanged(int rowsUnchanged) { this.rowsUnchanged = rowsUnchanged; }
 }
@@ -18,6 +18,10 @@ public class InventorySalesForecast {
     @Column(name = "product_code", nullable = false, length = 50)
     private String productCode;
 
+    /** 品項維度代理鍵，由 {@link com.sinker.app.repository.ProductDimension} 於寫入後回填，JPA 不寫入 */
+    @Column(name = "product_id", insertable = false, updatable = false)
+    private Integer productId;
+
     @Column(name = "product_name", nullable = false, length = 200)
     private String productName;
 
@@ -54,6 +58,10 @@ public class InventorySalesForecast {
     @Column(name = "query_end_date", nullable = false, length = 10)
     private String queryEndDate;
 
+    /** ERP 查詢失敗或逾時時的說明；此時該列庫存／銷量以 0 計 */
+    @Column(name = "erp_error", length = 200)
+    private String erpError;
+
     @Column(name = "created_at", updatable = false)
     private LocalDateTime createdAt;
 
@@ -80,6 +88,9 @@ public class InventorySalesForecast {
     public String getProductCode() { return productCode; }
     public void setProductCode(String productCode) { this.productCode = productCode; }
 
+    public Integer getProductId() { return productId; }
+    public void setProductId(Integer productId) { this.productId = productId; }
+
     public String getProductName() { return productName; }
     public void setProductName(String productName) { this.productName = productName; }
 
@@ -116,6 +127,9 @@ public class InventorySalesForecast {
     public String getQueryEndDate() { return queryEndDate; }
     public void setQueryEndDate(String queryEndDate) { this.queryEndDate = queryEndDate; }
 
+    public String getErpError() { return erpError; }
+    public void setErpError(String erpError) { this.erpError = erpError; }
+
     public LocalDateTime getCreatedAt() { return createdAt; }
     public void setCreatedAt(LocalDateTime createdAt) { this.createdAt = createdAt; }
 
@@ -0,0 +1,81 @@
+package com.sinker.app.entity;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 銷售通路登錄表。ordinal 即 sales_forecast / gift_sales_forecast 的 channel_no（V33 產生欄位），
+ * 表單及彙總的通路欄位順序亦依此，彙總時以 channel_no 作為陣列位置。
+ * 既有通路不可調整順序；新增通路加在最後，並以新的 migration 同步修改產生欄位的運算式。
+ */
+public enum SalesChannel {
+
+    PX("PX + 大全聯", "PX/大全聯"),
+    CARREFOUR("家樂福"),
+    AIMALL("愛買"),
+    SEVEN_ELEVEN("7-11", "711"),
+    FAMILYMART("全家"),
+    OK("Ok+萊爾富", "OK/萊爾富", "萊爾富", "OK超商"),
+    COSTCO("好市多"),
+    FKMART("楓康"),
+    WELLSOCIETY("美聯社"),
+    COSMED("康是美"),
+    ECOMMERCE("電商"),
+    DISTRIBUTOR("市面經銷");
+
+    public static final int COUNT = values().length;
+
+    private static final List<String> LABELS = Arrays.stream(values()).map(SalesChannel::label).toList();
+    private static final Map<String, SalesChannel> BY_LABEL = new HashMap<>();
+    private static final Map<String, SalesChannel> BY_LEGACY_NAME = new HashMap<>();
+
+    static {
+        for (SalesChannel c : values()) {
+            BY_LABEL.put(c.label, c);
+            BY_LEGACY_NAME.put(c.label, c);
+            for (String name : c.legacyNames) {
+                BY_LEGACY_NAME.put(name, c);
+            }
+        }
+    }
+
+    private final String label;
+    private final String[] legacyNames;
+
+    SalesChannel(String label, String... legacyNames) {
+        this.label = label;
+        this.legacyNames = legacyNames;
+    }
+
+    /** 通路名稱（寫入 channel 欄位的值） */
+    public String label() {
+        return label;
+    }
+
+    /** 舊資料使用的其他通路名稱（不含 label） */
+    public List<String> legacyNames() {
+        return List.of(legacyNames);
+    }
+
+    /** 依 channel_no 順序的通路名稱 */
+    public static List<String> labels() {
+        return LABELS;
+    }
+
+    /** @return 通路名稱的 channel_no；不是有效通路時為 -1 */
+    public static int indexOf(String label) {
+        SalesChannel c = label == null ? null : BY_LABEL.get(label);
+        return c == null ? -1 : c.ordinal();
+    }
+
+    public static boolean isValid(String label) {
+        return indexOf(label) >= 0;
+    }
+
+    /** 另接受舊資料的通路名稱（如 PX/大全聯、711）；無法對應時為 null */
+    public static SalesChannel fromLegacyName(String name) {
+        return name == null ? null : BY_LEGACY_NAME.get(name);
+    }
+}
@@ -18,6 +18,10 @@ public class SalesForecast {
     @Column(nullable = false, length = 50)
     private String channel;
 
+    /** 通路序號（{@link SalesChannel} 的 ordinal），由 DB 依 channel 產生，JPA 不寫入 */
+    @Column(name = "channel_no", insertable = false, updatable = false)
+    private Integer channelNo;
+
     @Column(length = 100)
     private String category;
 
@@ -27,6 +31,10 @@ public class SalesForecast {
     @Column(name = "product_code", nullable = false, length = 50)
     private String productCode;
 
+    /** 品項維度代理鍵，由 {@link com.sinker.app.repository.ProductDimension} 於寫入後回填，JPA 不寫入 */
+    @Column(name = "product_id", insertable = false, updatable = false)
+    private Integer productId;
+
     @Column(name = "product_name", length = 200)
     private String productName;
 
@@ -45,6 +53,10 @@ public class SalesForecast {
     @Column(name = "form_version_no")
     private Integer formVersionNo;
 
+    /** 疊加版本中覆寫上層列時，指向被覆寫列的原始 id；一般列為 null */
+    @Column(name = "base_id")
+    private Integer baseId;
+
     @Column(name = "is_modified", nullable = false)
     private Boolean isModified = false;
 
@@ -61,7 +73,18 @@ public class SalesForecast {
     public void setMonth(String month) { this.month = month; }
 
     public String getChannel() { return channel; }
-    public void setChannel(String channel) { this.channel = channel; }
+    public void setChannel(String channel) {
+        this.channel = channel;
+        this.channelNo = null;
+    }
+
+    /** 尚未由 DB 帶出時（新建或改過 channel 的實體）依 channel 推得；非表單通路為 null */
+    public Integer getChannelNo() {
+        if (channelNo != null) return channelNo;
+        int no = SalesChannel.indexOf(channel);
+        return no >= 0 ? no : null;
+    }
+    public void setChannelNo(Integer channelNo) { this.channelNo = channelNo; }
 
     public String getCategory() { return category; }
     public void setCategory(String category) { this.category = category; }
@@ -72,6 +95,9 @@ public class SalesForecast {
     public String getProductCode() { return productCode; }
     public void setProductCode(String productCode) { this.productCode = productCode; }
 
+    public Integer getProductId() { return productId; }
+    public void setProductId(Integer productId) { this.productId = productId; }
+
     public String getProductName() { return productName; }
     public void setProductName(String productName) { this.productName = productName; }
 
@@ -90,6 +116,9 @@ public class SalesForecast {
     public Integer getFormVersionNo() { return formVersionNo; }
     public void setFormVersionNo(Integer formVersionNo) { this.formVersionNo = formVersionNo; }
 
+    public Integer getBaseId() { return baseId; }
+    public void setBaseId(Integer baseId) { this.baseId = baseId; }
+
     public Boolean getIsModified() { return isModified; }
     public void setIsModified(Boolean isModified) { this.isModified = isModified; }
 
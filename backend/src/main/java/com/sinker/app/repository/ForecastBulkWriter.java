@@ -0,0 +1,233 @@
+package com.sinker.app.repository;
+
+import com.sinker.app.entity.GiftSalesForecast;
+import com.sinker.app.entity.SalesChannel;
+import com.sinker.app.entity.SalesForecast;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * sales_forecast / gift_sales_forecast 大量寫入（新增／差異更新／刪除）。
+ * 實體皆為 IDENTITY 主鍵，Hibernate 無法 JDBC batch，saveAll 會逐筆 INSERT；
+ * 這裡改以多列 VALUES 的 INSERT（每批 {@link #ROWS_PER_STATEMENT} 筆）一次送出，
+ * 不依賴 driver 端 rewriteBatchedStatements 設定。寫入後不回填實體 id。
+ */
+@Repository
+public class ForecastBulkWriter {
+
+    /** 每個 INSERT 的列數；15 欄 × 500 列，遠低於 MariaDB 65535 個 placeholder 上限 */
+    static final int ROWS_PER_STATEMENT = 500;
+
+    private static final String SALES_INSERT_PREFIX =
+            "INSERT INTO sales_forecast (month, channel, category, spec, product_code, product_name, "
+                    + "warehouse_location, quantity, remark, version, form_version_no, base_id, is_modified, "
+                    + "created_at, updated_at) VALUES ";
+    private static final String SALES_ROW_PLACEHOLDER = "(?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private static final String GIFT_INSERT_PREFIX =
+            "INSERT INTO gift_sales_forecast (month, channel, category, spec, product_code, product_name, "
+                    + "warehouse_location, quantity, version, base_id, is_modified, created_at, updated_at) VALUES ";
+    private static final String GIFT_ROW_PLACEHOLDER = "(?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private static final String SALES_UPDATE_VALUES =
+            "UPDATE sales_forecast SET category = ?, spec = ?, product_name = ?, warehouse_location = ?, "
+                    + "product_id = NULL, quantity = ?, is_modified = ?, updated_at = ? WHERE id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public ForecastBulkWriter(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /** @return 寫入列數 */
+    public int insertSalesForecasts(List<SalesForecast> rows) {
+        int inserted = 0;
+        for (int from = 0; from < rows.size(); from += ROWS_PER_STATEMENT) {
+            List<SalesForecast> chunk = rows.subList(from, Math.min(from + ROWS_PER_STATEMENT, rows.size()));
+            inserted += jdbcTemplate.update(buildSql(SALES_INSERT_PREFIX, SALES_ROW_PLACEHOLDER, chunk.size()), ps -> {
+                int i = 1;
+                for (SalesForecast sf : chunk) {
+                    ps.setString(i++, sf.getMonth());
+                    ps.setString(i++, sf.getChannel());
+                    ps.setString(i++, sf.getCategory());
+                    ps.setString(i++, sf.getSpec());
+                    ps.setString(i++, sf.getProductCode());
+                    ps.setString(i++, sf.getProductName());
+                    ps.setString(i++, sf.getWarehouseLocation());
+                    ps.setBigDecimal(i++, sf.getQuantity());
+                    ps.setString(i++, sf.getRemark());
+                    ps.setString(i++, sf.getVersion());
+                    setInteger(ps, i++, sf.getFormVersionNo());
+                    setInteger(ps, i++, sf.getBaseId());
+                    ps.setBoolean(i++, Boolean.TRUE.equals(sf.getIsModified()));
+                    setTimestamp(ps, i++, sf.getCreatedAt());
+                    setTimestamp(ps, i++, sf.getUpdatedAt());
+                }
+            });
+        }
+        return inserted;
+    }
+
+    /** @return 寫入列數 */
+    public int insertGiftSalesForecasts(List<GiftSalesForecast> rows) {
+        int inserted = 0;
+        for (int from = 0; from < rows.size(); from += ROWS_PER_STATEMENT) {
+            List<GiftSalesForecast> chunk = rows.subList(from, Math.min(from + ROWS_PER_STATEMENT, rows.size()));
+            inserted += jdbcTemplate.update(buildSql(GIFT_INSERT_PREFIX, GIFT_ROW_PLACEHOLDER, chunk.size()), ps -> {
+                int i = 1;
+                for (GiftSalesForecast g : chunk) {
+                    ps.setString(i++, g.getMonth());
+                    ps.setString(i++, g.getChannel());
+                    ps.setString(i++, g.getCategory());
+                    ps.setString(i++, g.getSpec());
+                    ps.setString(i++, g.getProductCode());
+                    ps.setString(i++, g.getProductName());
+                    ps.setString(i++, g.getWarehouseLocation());
+                    ps.setBigDecimal(i++, g.getQuantity());
+                    ps.setString(i++, g.getVersion());
+                    setInteger(ps, i++, g.getBaseId());
+                    ps.setBoolean(i++, Boolean.TRUE.equals(g.getIsModified()));
+                    setTimestamp(ps, i++, g.getCreatedAt());
+                    setTimestamp(ps, i++, g.getUpdatedAt());
+                }
+            });
+        }
+        return inserted;
+    }
+
+    /**
+     * 依 id 批次更新品項欄位與數量（不動 version / remark / form_version_no）。
+     * 品項欄位可能改變，product_id 一律清空，由呼叫端以 {@link ProductDimension#assignMonth} 重新回填。
+     * @return 更新列數
+     */
+    public int updateSalesForecastValues(List<SalesForecast> rows) {
+        int[][] counts = jdbcTemplate.batchUpdate(SALES_UPDATE_VALUES, rows, ROWS_PER_STATEMENT, (ps, sf) -> {
+            ps.setString(1, sf.getCategory());
+            ps.setString(2, sf.getSpec());
+            ps.setString(3, sf.getProductName());
+            ps.setString(4, sf.getWarehouseLocation());
+            ps.setBigDecimal(5, sf.getQuantity());
+            ps.setBoolean(6, Boolean.TRUE.equals(sf.getIsModified()));
+            setTimestamp(ps, 7, sf.getUpdatedAt());
+            ps.setInt(8, sf.getId());
+        });
+        int updated = 0;
+        for (int[] batch : counts) {
+            for (int c : batch) {
+                // driver 以 bulk 協定送出時回傳 SUCCESS_NO_INFO（-2），視為 1 列
+                updated += c >= 0 ? c : 1;
+            }
+        }
+        return updated;
+    }
+
+    /**
+     * 表單版本快照：各通路最新版本的銷售預估（含疊加版本繼承列）與禮品銷售預估，
+     * 依品項（product_id，未解析者依五欄品項鍵）及通路（channel_no）加總數量，每個 {@link SalesChannel} × 每個品項各寫一列（無數量者為 0）。
+     * 品項欄位與備註取自通路順序最前、同通路銷售先於禮品的列，取自禮品時備註為空字串。整個快照為單一 INSERT … SELECT。
+     * @return 寫入列數
+     */
+    public int insertFormSnapshot(String month, String version, int formVersionNo, LocalDateTime createdAt) {
+        StringBuilder channelRows = new StringBuilder();
+        for (SalesChannel channel : SalesChannel.values()) {
+            if (channel.ordinal() > 0) channelRows.append(" UNION ALL ");
+            channelRows.append("SELECT ? AS channel, ").append(channel.ordinal()).append(" AS channel_no");
+        }
+        String sql = "INSERT INTO sales_forecast (month, channel, category, spec, product_code, product_name, "
+                + "warehouse_location, product_id, quantity, remark, version, form_version_no, is_modified, "
+                + "created_at, updated_at) "
+                + "SELECT * FROM (WITH RECURSIVE "
+                + ForecastVersionOverlay.resolveCtes(ForecastVersionCatalog.Source.SALES,
+                        ForecastVersionOverlay.latestAnchorSql(ForecastVersionCatalog.Source.SALES), false, "s_")
+                + ", "
+                + ForecastVersionOverlay.resolveCtes(ForecastVersionCatalog.Source.GIFT,
+                        ForecastVersionOverlay.latestAnchorSql(ForecastVersionCatalog.Source.GIFT), false, "g_")
+                + ", ch AS (" + channelRows + ")"
+                + ", src AS ("
+                + " SELECT 0 AS kind, d.channel_no, d.id, d.product_id, " + productKeySql("d") + " AS pk,"
+                + " d.warehouse_location, d.category, d.spec, d.product_name, d.product_code, d.remark, d.quantity"
+                + " FROM s_ranked r JOIN sales_forecast d ON d.id = r.id"
+                + " WHERE r.rn = 1 AND r.removed = 0 AND d.channel_no IS NOT NULL"
+                + " UNION ALL"
+                + " SELECT 1, g.channel_no, g.id, g.product_id, " + productKeySql("g") + ","
+                + " g.warehouse_location, g.category, g.spec, g.product_name, g.product_code, NULL, g.quantity"
+                + " FROM g_ranked r JOIN gift_sales_forecast g ON g.id = r.id"
+                + " WHERE r.rn = 1 AND r.removed = 0 AND g.channel_no IS NOT NULL)"
+                + ", products AS (SELECT pk, product_id, warehouse_location, category, spec, product_name, product_code, remark"
+                + " FROM (SELECT src.*, ROW_NUMBER() OVER (PARTITION BY pk"
+                + " ORDER BY channel_no, kind, id) AS rn FROM src) x WHERE rn = 1)"
+                + ", qty AS (SELECT channel_no, pk, SUM(quantity) AS quantity FROM src GROUP BY channel_no, pk)"
+                + " SELECT ? AS month, ch.channel, p.category, p.spec, COALESCE(p.product_code, '') AS product_code,"
+                + " p.product_name, p.warehouse_location, p.product_id, COALESCE(q.quantity, 0) AS quantity,"
+                + " COALESCE(p.remark, '') AS remark, ? AS version, ? AS form_version_no, FALSE AS is_modified,"
+                + " ? AS created_at, ? AS updated_at"
+                + " FROM ch CROSS JOIN products p"
+                + " LEFT JOIN qty q ON q.channel_no = ch.channel_no AND q.pk = p.pk) snap";
+
+        List<Object> args = new ArrayList<>();
+        args.addAll(Arrays.asList(ForecastVersionOverlay.resolveArgs(new Object[]{month}, month, null)));
+        args.addAll(Arrays.asList(ForecastVersionOverlay.resolveArgs(new Object[]{month}, month, null)));
+        args.addAll(SalesChannel.labels());
+        Timestamp ts = Timestamp.valueOf(createdAt);
+        args.addAll(Arrays.asList(month, version, formVersionNo, ts, ts));
+        return jdbcTemplate.update(sql, args.toArray());
+    }
+
+    /**
+     * 快照的品項分組鍵：已解析者為 product_id；product_id 為 NULL 的列改以五欄品項鍵分組，
+     * 不同品項不會因同為 NULL 併成一列。
+     */
+    private static String productKeySql(String alias) {
+        return "COALESCE(CONCAT('#', " + alias + ".product_id), CONCAT_WS('|', COALESCE(" + alias
+                + ".warehouse_location, ''), COALESCE(" + alias + ".category, ''), COALESCE(" + alias
+                + ".spec, ''), COALESCE(" + alias + ".product_name, ''), COALESCE(" + alias + ".product_code, '')))";
+    }
+
+    /** @return 刪除列數 */
+    public int deleteSalesForecastsByIds(List<Integer> ids) {
+        int deleted = 0;
+        for (int from = 0; from < ids.size(); from += ROWS_PER_STATEMENT) {
+            List<Integer> chunk = ids.subList(from, Math.min(from + ROWS_PER_STATEMENT, ids.size()));
+            String sql = "DELETE FROM sales_forecast WHERE id IN (" + "?, ".repeat(chunk.size() - 1) + "?)";
+            deleted += jdbcTemplate.update(sql, ps -> {
+                int i = 1;
+                for (Integer id : chunk) {
+                    ps.setInt(i++, id);
+                }
+            });
+        }
+        return deleted;
+    }
+
+    private static String buildSql(String prefix, String rowPlaceholder, int rowCount) {
+        StringBuilder sql = new StringBuilder(prefix.length() + rowCount * (rowPlaceholder.length() + 2));
+        sql.append(prefix);
+        for (int r = 0; r < rowCount; r++) {
+            if (r > 0) sql.append(", ");
+            sql.append(rowPlaceholder);
+        }
+        return sql.toString();
+    }
+
+    private static void setInteger(PreparedStatement ps, int index, Integer value) throws SQLException {
+        if (value != null) {
+            ps.setInt(index, value);
+        } else {
+            ps.setNull(index, Types.INTEGER);
+        }
+    }
+
+    /** created_at / updated_at 為 NOT NULL DEFAULT CURRENT_TIMESTAMP；未設定時以現在時間寫入 */
+    private static void setTimestamp(PreparedStatement ps, int index, LocalDateTime value) throws SQLException {
+        ps.setTimestamp(index, Timestamp.valueOf(value != null ? value : LocalDateTime.now()));
+    }
+}
@@ -0,0 +1,91 @@
+package com.sinker.app.repository;
+
+import com.sinker.app.dto.forecast.IntegrationRowDTO;
+import com.sinker.app.entity.SalesChannel;
+import com.sinker.app.repository.ForecastVersionCatalog.Source;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * 銷售預估整合表的資料庫端樞紐：版本解析後依品號 GROUP BY，各通路以 SUM(CASE ...) 轉為欄位，
+ * 直接對應 {@link IntegrationRowDTO}，不把明細載入為實體。
+ * 通路以 channel_no 對應，舊資料的通路別名（PX/大全聯、711 等）依 {@link SalesChannel} 補上；不在表單內的通路不計入數量。
+ * 品名、中類、規格、庫位取該品號各列中的最小值（同一品號各列相同）。
+ */
+@Repository
+public class ForecastIntegrationPivot {
+
+    private static final String PIVOT_SQL = pivotSql(Source.SALES);
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public ForecastIntegrationPivot(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * 指定月份所有通路中版本字串為 version 的列，每個品號一列（順序不定）；
+     * 各通路數量與 originalSubtotal 已加總，difference、remarks 未設定。
+     */
+    public List<IntegrationRowDTO> findByMonthAndVersion(String month, String version) {
+        return jdbcTemplate.query(PIVOT_SQL, ForecastIntegrationPivot::mapRow,
+                ForecastVersionOverlay.resolveArgs(
+                        ForecastVersionOverlay.monthVersionAnchorArgs(month, version), month, null));
+    }
+
+    private static String pivotSql(Source s) {
+        String channelNo = channelNoSql("d");
+        StringBuilder sql = new StringBuilder("WITH RECURSIVE ")
+                .append(ForecastVersionOverlay.resolveCtes(s, ForecastVersionOverlay.monthVersionAnchorSql(s), false, ""))
+                .append(" SELECT d.product_code, MIN(d.product_name) AS product_name, MIN(d.category) AS category,")
+                .append(" MIN(d.spec) AS spec, MIN(d.warehouse_location) AS warehouse_location");
+        for (SalesChannel c : SalesChannel.values()) {
+            sql.append(", SUM(CASE WHEN ").append(channelNo).append(" = ").append(c.ordinal())
+                    .append(" THEN d.quantity ELSE 0 END) AS qty_").append(c.ordinal());
+        }
+        sql.append(", SUM(CASE WHEN ").append(channelNo).append(" IS NOT NULL THEN d.quantity ELSE 0 END) AS subtotal")
+                .append(" FROM ranked r JOIN ").append(s.dataTable()).append(" d ON d.id = r.id")
+                .append(" WHERE r.rn = 1 AND r.removed = 0")
+                .append(" GROUP BY d.product_code");
+        return sql.toString();
+    }
+
+    /** channel_no 只對應現行通路名稱（V33），舊資料的別名在此補上 */
+    private static String channelNoSql(String alias) {
+        StringBuilder legacy = new StringBuilder("CASE ").append(alias).append(".channel");
+        for (SalesChannel c : SalesChannel.values()) {
+            for (String name : c.legacyNames()) {
+                legacy.append(" WHEN '").append(name).append("' THEN ").append(c.ordinal());
+            }
+        }
+        legacy.append(" END");
+        return "COALESCE(" + alias + ".channel_no, " + legacy + ")";
+    }
+
+    private static IntegrationRowDTO mapRow(ResultSet rs, int rowNum) throws SQLException {
+        IntegrationRowDTO row = new IntegrationRowDTO();
+        row.setProductCode(rs.getString("product_code"));
+        row.setProductName(rs.getString("product_name"));
+        row.setCategory(rs.getString("category"));
+        row.setSpec(rs.getString("spec"));
+        row.setWarehouseLocation(rs.getString("warehouse_location"));
+        row.setQtyPx(rs.getBigDecimal("qty_" + SalesChannel.PX.ordinal()));
+        row.setQtyCarrefour(rs.getBigDecimal("qty_" + SalesChannel.CARREFOUR.ordinal()));
+        row.setQtyAimall(rs.getBigDecimal("qty_" + SalesChannel.AIMALL.ordinal()));
+        row.setQty711(rs.getBigDecimal("qty_" + SalesChannel.SEVEN_ELEVEN.ordinal()));
+        row.setQtyFamilymart(rs.getBigDecimal("qty_" + SalesChannel.FAMILYMART.ordinal()));
+        row.setQtyOk(rs.getBigDecimal("qty_" + SalesChannel.OK.ordinal()));
+        row.setQtyCostco(rs.getBigDecimal("qty_" + SalesChannel.COSTCO.ordinal()));
+        row.setQtyFkmart(rs.getBigDecimal("qty_" + SalesChannel.FKMART.ordinal()));
+        row.setQtyWellsociety(rs.getBigDecimal("qty_" + SalesChannel.WELLSOCIETY.ordinal()));
+        row.setQtyCosmed(rs.getBigDecimal("qty_" + SalesChannel.COSMED.ordinal()));
+        row.setQtyEcommerce(rs.getBigDecimal("qty_" + SalesChannel.ECOMMERCE.ordinal()));
+        row.setQtyDistributor(rs.getBigDecimal("qty_" + SalesChannel.DISTRIBUTOR.ordinal()));
+        row.setOriginalSubtotal(rs.getBigDecimal("subtotal"));
+        return row;
+    }
+}
@@ -0,0 +1,250 @@
+package com.sinker.app.repository;
+
+import com.sinker.app.dto.forecast.VersionInfo;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * sales_forecast_version / gift_sales_forecast_version 版本目錄。
+ * 整批寫入（上傳、刪除版本、表單快照）後以 {@link #refresh} 由明細重算該月份通路；
+ * 單筆新增／修改／刪除以 {@link #rowAdded}、{@link #rowUpdated}、{@link #rowRemoved} 增量維護。
+ * is_latest 即各月份通路的最新版本指標，由上述寫入路徑同交易更新，
+ * 「最新版本」查詢以它直接定位版本，不再對明細做 MAX(version)。
+ * parent_version 不為 null 的列為疊加版本（見 {@link ForecastVersionOverlay}），
+ * 其 row_count 為解析後的有效筆數，只能增量維護，refresh 不重算。
+ * 須與明細寫入在同一交易內呼叫。
+ */
+@Repository
+public class ForecastVersionCatalog {
+
+    public enum Source {
+        SALES("sales_forecast", "sales_forecast_version", "sales_forecast_removal"),
+        GIFT("gift_sales_forecast", "gift_sales_forecast_version", "gift_sales_forecast_removal");
+
+        private final String dataTable;
+        private final String catalogTable;
+        private final String removalTable;
+
+        Source(String dataTable, String catalogTable, String removalTable) {
+            this.dataTable = dataTable;
+            this.catalogTable = catalogTable;
+            this.removalTable = removalTable;
+        }
+
+        String dataTable() { return dataTable; }
+        String catalogTable() { return catalogTable; }
+        String removalTable() { return removalTable; }
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public ForecastVersionCatalog(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /** 版本清單（新→舊），走 (month, channel, version) 唯一索引 */
+    public List<VersionInfo> findVersions(Source source, String month, String channel) {
+        return jdbcTemplate.query(
+                "SELECT version, row_count, last_updated_at FROM " + source.catalogTable
+                        + " WHERE month = ? AND channel = ? ORDER BY version DESC",
+                (rs, i) -> {
+                    Timestamp ts = rs.getTimestamp("last_updated_at");
+                    return new VersionInfo(rs.getString("version"), rs.getInt("row_count"),
+                            ts != null ? ts.toLocalDateTime() : null);
+                },
+                month, channel);
+    }
+
+    /** 最新版本指標；該月份通路尚無資料時為 empty */
+    public Optional<String> findLatestVersion(Source source, String month, String channel) {
+        return jdbcTemplate.query(
+                "SELECT version FROM " + source.catalogTable
+                        + " WHERE month = ? AND channel = ? AND is_latest = TRUE",
+                (rs, i) -> rs.getString("version"),
+                month, channel).stream().findFirst();
+    }
+
+    /**
+     * 以 parentVersion 為底建立疊加版本：只新增一筆目錄列，筆數沿用上層。
+     * 同一秒內重複建立同名版本時不動既有目錄列。
+     * @return 是否新建了目錄列（上層版本不存在時為 false）
+     */
+    public boolean createOverlay(Source source, String month, String channel, String version,
+                                 String parentVersion, LocalDateTime createdAt) {
+        int inserted = jdbcTemplate.update(
+                "INSERT IGNORE INTO " + source.catalogTable
+                        + " (month, channel, version, parent_version, row_count, last_updated_at) "
+                        + "SELECT month, channel, ?, version, row_count, ? FROM " + source.catalogTable
+                        + " WHERE month = ? AND channel = ? AND version = ?",
+                version, Timestamp.valueOf(createdAt), month, channel, parentVersion);
+        markLatest(source, month, channel);
+        return inserted > 0;
+    }
+
+    /** 疊加版本由呼叫端算出有效筆數時直接寫入（月份內所有通路的同名疊加版本） */
+    public void setOverlayRowCount(Source source, String month, String version, int rowCount) {
+        jdbcTemplate.update(
+                "UPDATE " + source.catalogTable + " SET row_count = ? "
+                        + "WHERE month = ? AND version = ? AND parent_version IS NOT NULL",
+                rowCount, month, version);
+    }
+
+    /** 整個月份各通路最新的 perChannel 個版本（通路 → 版本新→舊），單一查詢 */
+    public Map<String, List<String>> findRecentVersions(Source source, String month, int perChannel) {
+        Map<String, List<String>> result = new LinkedHashMap<>();
+        jdbcTemplate.query(
+                "SELECT channel, version FROM (" + recentVersionsSql(source) + ") rv WHERE rn <= ? "
+                        + "ORDER BY channel, rn",
+                rs -> {
+                    result.computeIfAbsent(rs.getString("channel"), k -> new ArrayList<>())
+                            .add(rs.getString("version"));
+                },
+                month, perChannel);
+        return result;
+    }
+
+    /** 各通路版本依新→舊編號（rn 由 1 起）；參數為 month */
+    static String recentVersionsSql(Source source) {
+        return "SELECT channel, version, ROW_NUMBER() OVER (PARTITION BY channel ORDER BY version DESC) AS rn "
+                + "FROM " + source.catalogTable + " WHERE month = ?";
+    }
+
+    /** 疊加版本的上層版本；一般版本或不存在時為 empty */
+    public Optional<String> findParentVersion(Source source, String month, String channel, String version) {
+        return jdbcTemplate.query(
+                "SELECT parent_version FROM " + source.catalogTable
+                        + " WHERE month = ? AND channel = ? AND version = ? AND parent_version IS NOT NULL",
+                (rs, i) -> rs.getString("parent_version"),
+                month, channel, version).stream().findFirst();
+    }
+
+    /** 版本已展開為完整明細，不再依賴上層 */
+    public void clearParent(Source source, String month, String channel, String version) {
+        jdbcTemplate.update(
+                "UPDATE " + source.catalogTable + " SET parent_version = NULL "
+                        + "WHERE month = ? AND channel = ? AND version = ?",
+                month, channel, version);
+    }
+
+    /**
+     * 移除版本目錄列與其刪除標記；子版本改掛到被移除版本的上層。
+     * 呼叫前須已由 {@link ForecastVersionOverlay#detachChildren} 把該版本自有的列與刪除標記下推到子版本。
+     */
+    public void removeVersion(Source source, String month, String channel, String version) {
+        String parent = findParentVersion(source, month, channel, version).orElse(null);
+        jdbcTemplate.update(
+                "UPDATE " + source.catalogTable + " SET parent_version = ? "
+                        + "WHERE month = ? AND channel = ? AND parent_version = ?",
+                parent, month, channel, version);
+        jdbcTemplate.update(
+                "DELETE FROM " + source.removalTable + " WHERE month = ? AND channel = ? AND version = ?",
+                month, channel, version);
+        jdbcTemplate.update(
+                "DELETE FROM " + source.catalogTable + " WHERE month = ? AND channel = ? AND version = ?",
+                month, channel, version);
+        markLatest(source, month, channel);
+    }
+
+    /** 整個月份通路的明細被重寫時（上傳），一併清除所有疊加版本與刪除標記 */
+    public void dropOverlays(Source source, String month, String channel) {
+        jdbcTemplate.update(
+                "DELETE FROM " + source.removalTable + " WHERE month = ? AND channel = ?",
+                month, channel);
+        jdbcTemplate.update(
+                "DELETE FROM " + source.catalogTable
+                        + " WHERE month = ? AND channel = ? AND parent_version IS NOT NULL",
+                month, channel);
+    }
+
+    /** 由明細重算單一月份通路的一般版本（疊加版本保留） */
+    public void refresh(Source source, String month, String channel) {
+        jdbcTemplate.update(
+                "DELETE FROM " + source.catalogTable
+                        + " WHERE month = ? AND channel = ? AND parent_version IS NULL",
+                month, channel);
+        jdbcTemplate.update(
+                "INSERT INTO " + source.catalogTable + " (month, channel, version, row_count, last_updated_at) "
+                        + "SELECT d.month, d.channel, d.version, COUNT(*), MAX(d.updated_at) FROM "
+                        + source.dataTable + " d WHERE d.month = ? AND d.channel = ? "
+                        + "AND NOT EXISTS (SELECT 1 FROM " + source.catalogTable + " o "
+                        + "WHERE o.month = d.month AND o.channel = d.channel AND o.version = d.version) "
+                        + "GROUP BY d.month, d.channel, d.version",
+                month, channel);
+        markLatest(source, month, channel);
+    }
+
+    /** 由明細重算整個月份的一般版本（表單快照一次寫入所有通路時使用） */
+    public void refreshMonth(Source source, String month) {
+        jdbcTemplate.update(
+                "DELETE FROM " + source.catalogTable + " WHERE month = ? AND parent_version IS NULL", month);
+        jdbcTemplate.update(
+                "INSERT INTO " + source.catalogTable + " (month, channel, version, row_count, last_updated_at) "
+                        + "SELECT d.month, d.channel, d.version, COUNT(*), MAX(d.updated_at) FROM "
+                        + source.dataTable + " d WHERE d.month = ? "
+                        + "AND NOT EXISTS (SELECT 1 FROM " + source.catalogTable + " o "
+                        + "WHERE o.month = d.month AND o.channel = d.channel AND o.version = d.version) "
+                        + "GROUP BY d.month, d.channel, d.version",
+                month);
+        jdbcTemplate.update(
+                "UPDATE " + source.catalogTable + " v JOIN (SELECT channel, MAX(version) AS latest FROM "
+                        + source.catalogTable + " WHERE month = ? GROUP BY channel) m "
+                        + "ON v.channel = m.channel "
+                        + "SET v.is_latest = (v.version = m.latest) WHERE v.month = ?",
+                month, month);
+    }
+
+    public void rowAdded(Source source, String month, String channel, String version, LocalDateTime updatedAt) {
+        jdbcTemplate.update(
+                "INSERT INTO " + source.catalogTable + " (month, channel, version, row_count, last_updated_at) "
+                        + "VALUES (?, ?, ?, 1, ?) ON DUPLICATE KEY UPDATE row_count = row_count + 1, "
+                        + "last_updated_at = GREATEST(COALESCE(last_updated_at, VALUES(last_updated_at)), "
+                        + "VALUES(last_updated_at))",
+                month, channel, version, Timestamp.valueOf(updatedAt));
+        markLatest(source, month, channel);
+    }
+
+    public void rowUpdated(Source source, String month, String channel, String version, LocalDateTime updatedAt) {
+        jdbcTemplate.update(
+                "UPDATE " + source.catalogTable + " SET last_updated_at = GREATEST(COALESCE(last_updated_at, ?), ?) "
+                        + "WHERE month = ? AND channel = ? AND version = ?",
+                Timestamp.valueOf(updatedAt), Timestamp.valueOf(updatedAt), month, channel, version);
+    }
+
+    /**
+     * 刪除單筆；版本最後一筆被刪除時移除該版本（含其刪除標記）並重新標記最新版本。
+     * 刪除時間視為版本最後更新時間。
+     */
+    public void rowRemoved(Source source, String month, String channel, String version, LocalDateTime removedAt) {
+        jdbcTemplate.update(
+                "UPDATE " + source.catalogTable + " SET row_count = row_count - 1, "
+                        + "last_updated_at = GREATEST(COALESCE(last_updated_at, ?), ?) "
+                        + "WHERE month = ? AND channel = ? AND version = ?",
+                Timestamp.valueOf(removedAt), Timestamp.valueOf(removedAt), month, channel, version);
+        int removed = jdbcTemplate.update(
+                "DELETE FROM " + source.catalogTable
+                        + " WHERE month = ? AND channel = ? AND version = ? AND row_count <= 0",
+                month, channel, version);
+        if (removed > 0) {
+            jdbcTemplate.update(
+                    "DELETE FROM " + source.removalTable + " WHERE month = ? AND channel = ? AND version = ?",
+                    month, channel, version);
+            markLatest(source, month, channel);
+        }
+    }
+
+    private void markLatest(Source source, String month, String channel) {
+        jdbcTemplate.update(
+                "UPDATE " + source.catalogTable + " v CROSS JOIN (SELECT MAX(version) AS latest FROM "
+                        + source.catalogTable + " WHERE month = ? AND channel = ?) m "
+                        + "SET v.is_latest = (v.version = m.latest) WHERE v.month = ? AND v.channel = ?",
+                month, channel, month, channel);
+    }
+}
@@ -0,0 +1,426 @@
+package com.sinker.app.repository;
+
+import com.sinker.app.entity.GiftSalesForecast;
+import com.sinker.app.entity.SalesForecast;
+import com.sinker.app.repository.ForecastVersionCatalog.Source;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * 銷售預估／禮品銷售預估的 copy-on-write 版本。
+ * 疊加版本在版本目錄記錄 parent_version，明細只存實際變動的列：
+ * 覆寫上層列時新列的 base_id 為被覆寫列的原始 id（上層列本身 base_id 為 null 時即其 id），
+ * 刪除繼承列時在 *_removal 記錄該原始 id。
+ * 讀取版本 V 時沿 parent_version 鏈由近而遠，每個原始 id 取最近一層；最近一層為刪除標記則不顯示。
+ * 繼承列以上層列的 id 回傳，version 改標為 V、is_modified 為 false（與過去複製出的列相同）。
+ * 須與明細寫入在同一交易內呼叫。
+ */
+@Repository
+public class ForecastVersionOverlay {
+
+    /** 防止目錄資料異常形成環時遞迴不止 */
+    static final int MAX_CHAIN_DEPTH = 1000;
+
+    /** form_version_no 只標記表單版本本身的列，複製到其他版本時不帶過去 */
+    private static final String[] SALES_COPY_COLUMNS = {
+            "month", "channel", "category", "spec", "product_code", "product_id", "product_name",
+            "warehouse_location", "quantity", "remark"};
+    private static final String[] GIFT_COPY_COLUMNS = {
+            "month", "channel", "category", "spec", "product_code", "product_id", "product_name",
+            "warehouse_location", "quantity"};
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ForecastVersionCatalog catalog;
+
+    public ForecastVersionOverlay(JdbcTemplate jdbcTemplate, ForecastVersionCatalog catalog) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.catalog = catalog;
+    }
+
+    /**
+     * 指定月份通路的版本；version 為 null 時取最新版本。依 category, spec, product_code 排序。
+     * 最新版本仍由版本目錄的 is_latest 指標定位（idx_*_version_latest），明細走 (month, channel, version) 索引；
+     * 原本 repository 的 findLatestByMonthAndChannel 只能讀自有明細，已由此取代。
+     */
+    public List<SalesForecast> findSalesForecasts(String month, String channel, String version) {
+        return query(Source.SALES, month, channel, version, this::mapSales);
+    }
+
+    /** 指定月份所有通路中版本字串為 version 的列（form_vN 等跨通路版本） */
+    public List<SalesForecast> findSalesForecastsByMonthAndVersion(String month, String version) {
+        Source s = Source.SALES;
+        return jdbcTemplate.query(resolveSql(s, monthVersionAnchorSql(s), false),
+                this::mapSales, resolveArgs(monthVersionAnchorArgs(month, version), month, null));
+    }
+
+    /**
+     * 整個月份各通路最新的 perChannel 個版本的明細，一次解析；
+     * 回傳列的 version 即所屬版本（繼承列亦同），依 channel, category, spec, product_code 排序。
+     */
+    public List<SalesForecast> findSalesForecastsOfRecentVersions(String month, int perChannel) {
+        Source s = Source.SALES;
+        String anchor = "SELECT channel, version FROM (" + ForecastVersionCatalog.recentVersionsSql(s)
+                + ") rv WHERE rn <= ?";
+        return jdbcTemplate.query(resolveSql(s, anchor, false),
+                this::mapSales, resolveArgs(new Object[]{month, perChannel}, month, null));
+    }
+
+    /** 整個月份各通路最新版本的禮品明細，一次解析 */
+    public List<GiftSalesForecast> findLatestGiftSalesForecasts(String month) {
+        Source s = Source.GIFT;
+        String anchor = latestAnchorSql(s);
+        return jdbcTemplate.query(resolveSql(s, anchor, false),
+                this::mapGift, resolveArgs(new Object[]{month}, month, null));
+    }
+
+    /** 指定月份通路的禮品版本；version 為 null 時取最新版本（同 {@link #findSalesForecasts}） */
+    public List<GiftSalesForecast> findGiftSalesForecasts(String month, String channel, String version) {
+        return query(Source.GIFT, month, channel, version, this::mapGift);
+    }
+
+    /**
+     * rowId 這一列在 version 中是否可見（即 version 由它繼承該原始 id，或它本身屬於 version）。
+     * 只解析單一原始 id，不展開整個版本。
+     */
+    public boolean isVisible(Source source, String month, String channel, String version, int rowId, int originId) {
+        List<Integer> ids = jdbcTemplate.query(resolveSql(source, singleAnchor(source), true),
+                (rs, i) -> rs.getInt("id"),
+                resolveArgs(singleAnchorArgs(month, channel, version), month, originId));
+        return ids.size() == 1 && ids.get(0) == rowId;
+    }
+
+    /**
+     * rowId 這一列即將在 version 中被修改或刪除：先把目前的值複製到 version 的直接子版本中
+     * 尚未覆寫或刪除同一原始 id 的那些，讓子版本維持原本看到的內容。
+     */
+    public int pinToChildren(Source source, int rowId, String version) {
+        String origin = "COALESCE(d.base_id, d.id)";
+        return jdbcTemplate.update(
+                "INSERT INTO " + source.dataTable() + " (" + copyColumns(source, "")
+                        + ", version, is_modified, created_at, updated_at, base_id) "
+                        + "SELECT " + copyColumns(source, "d.") + ", c.version, FALSE, d.created_at, d.updated_at, "
+                        + origin + " FROM " + source.dataTable() + " d "
+                        + "JOIN " + source.catalogTable() + " c ON c.month = d.month AND c.channel = d.channel "
+                        + "AND c.parent_version = ? "
+                        + "WHERE d.id = ? " + notShadowedIn("c", origin, source),
+                version, rowId);
+    }
+
+    /** 新列加入 version 後，對其直接子版本標記為刪除，子版本內容不因上層新增而改變 */
+    public int hideFromChildren(Source source, String month, String channel, String version, int rowId) {
+        return jdbcTemplate.update(
+                "INSERT IGNORE INTO " + source.removalTable() + " (month, channel, version, base_id) "
+                        + "SELECT month, channel, version, ? FROM " + source.catalogTable()
+                        + " WHERE month = ? AND channel = ? AND parent_version = ?",
+                rowId, month, channel, version);
+    }
+
+    /** 在 version 中隱藏原始 id 為 originId 的繼承列 */
+    public void addRemoval(Source source, String month, String channel, String version, int originId) {
+        jdbcTemplate.update(
+                "INSERT IGNORE INTO " + source.removalTable() + " (month, channel, version, base_id) "
+                        + "VALUES (?, ?, ?, ?)",
+                month, channel, version, originId);
+    }
+
+    /** 批次隱藏繼承列：通路 → 原始 id */
+    public void addRemovals(Source source, String month, String version, Map<String, List<Integer>> originsByChannel) {
+        List<Object[]> args = new ArrayList<>();
+        originsByChannel.forEach((channel, origins) -> {
+            for (Integer origin : origins) {
+                args.add(new Object[]{month, channel, version, origin});
+            }
+        });
+        if (args.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(
+                "INSERT IGNORE INTO " + source.removalTable() + " (month, channel, version, base_id) "
+                        + "VALUES (?, ?, ?, ?)",
+                args);
+    }
+
+    /**
+     * 刪除 version 前，把它自有的列與刪除標記下推到直接子版本（子版本已覆寫者略過），
+     * 之後子版本改掛到 version 的上層即可維持原內容（見 {@link ForecastVersionCatalog#removeVersion}）。
+     */
+    public void detachChildren(Source source, String month, String channel, String version) {
+        String origin = "COALESCE(d.base_id, d.id)";
+        jdbcTemplate.update(
+                "INSERT INTO " + source.dataTable() + " (" + copyColumns(source, "")
+                        + ", version, is_modified, created_at, updated_at, base_id) "
+                        + "SELECT " + copyColumns(source, "d.") + ", c.version, FALSE, d.created_at, d.updated_at, "
+                        + origin + " FROM " + source.dataTable() + " d "
+                        + "JOIN " + source.catalogTable() + " c ON c.month = d.month AND c.channel = d.channel "
+                        + "AND c.parent_version = d.version "
+                        + "WHERE d.month = ? AND d.channel = ? AND d.version = ? " + notShadowedIn("c", origin, source),
+                month, channel, version);
+        jdbcTemplate.update(
+                "INSERT IGNORE INTO " + source.removalTable() + " (month, channel, version, base_id, created_at) "
+                        + "SELECT r.month, r.channel, c.version, r.base_id, r.created_at FROM "
+                        + source.removalTable() + " r "
+                        + "JOIN " + source.catalogTable() + " c ON c.month = r.month AND c.channel = r.channel "
+                        + "AND c.parent_version = r.version "
+                        + "WHERE r.month = ? AND r.channel = ? AND r.version = ? "
+                        + "AND NOT EXISTS (SELECT 1 FROM " + source.dataTable() + " x WHERE x.month = c.month "
+                        + "AND x.channel = c.channel AND x.version = c.version AND x.base_id = r.base_id)",
+                month, channel, version);
+    }
+
+    /**
+     * 把疊加版本展開成完整明細：繼承列寫入 version，並清除其刪除標記與上層指標，
+     * 展開後的 version 與一般版本相同，所有列的 base_id 皆為 null（上層版本之後被刪除也不留懸空的原始 id）。
+     * 後代版本的覆寫列與刪除標記原本指向舊的原始 id，改指向 version 中對應的列。一般版本不做任何事。
+     * @return 新寫入的列數
+     */
+    public int materialize(Source source, String month, String channel, String version) {
+        if (catalog.findParentVersion(source, month, channel, version).isEmpty()) {
+            return 0;
+        }
+        List<Integer> inherited = new ArrayList<>();
+        jdbcTemplate.query(resolveSql(source, singleAnchor(source), false),
+                rs -> {
+                    if (rs.getInt("overlay_depth") > 0) {
+                        inherited.add(rs.getInt("id"));
+                    }
+                },
+                resolveArgs(singleAnchorArgs(month, channel, version), month, null));
+        int inserted = 0;
+        for (int from = 0; from < inherited.size(); from += ForecastBulkWriter.ROWS_PER_STATEMENT) {
+            List<Integer> chunk = inherited.subList(from,
+                    Math.min(from + ForecastBulkWriter.ROWS_PER_STATEMENT, inherited.size()));
+            Object[] args = new Object[chunk.size() + 1];
+            args[0] = version;
+            for (int i = 0; i < chunk.size(); i++) {
+                args[i + 1] = chunk.get(i);
+            }
+            inserted += jdbcTemplate.update(
+                    "INSERT INTO " + source.dataTable() + " (" + copyColumns(source, "")
+                            + ", version, is_modified, created_at, updated_at, base_id) "
+                            + "SELECT " + copyColumns(source, "") + ", ?, FALSE, created_at, updated_at, "
+                            + "COALESCE(base_id, id) FROM " + source.dataTable()
+                            + " WHERE id IN (" + "?, ".repeat(chunk.size() - 1) + "?)",
+                    args);
+        }
+        jdbcTemplate.update(
+                "DELETE FROM " + source.removalTable() + " WHERE month = ? AND channel = ? AND version = ?",
+                month, channel, version);
+        rebaseDescendants(source, month, channel, version);
+        jdbcTemplate.update(
+                "UPDATE " + source.dataTable() + " SET base_id = NULL "
+                        + "WHERE month = ? AND channel = ? AND version = ? AND base_id IS NOT NULL",
+                month, channel, version);
+        catalog.clearParent(source, month, channel, version);
+        return inserted;
+    }
+
+    /** version 的列成為新的原始列前，後代版本以舊原始 id 記錄的覆寫與刪除標記改為 version 中的列 id */
+    private void rebaseDescendants(Source source, String month, String channel, String version) {
+        List<String> descendants = jdbcTemplate.queryForList(
+                "WITH RECURSIVE descendant (version, depth) AS ("
+                        + " SELECT version, 1 FROM " + source.catalogTable()
+                        + " WHERE month = ? AND channel = ? AND parent_version = ?"
+                        + " UNION ALL"
+                        + " SELECT c.version, d.depth + 1 FROM descendant d JOIN " + source.catalogTable() + " c"
+                        + " ON c.month = ? AND c.channel = ? AND c.parent_version = d.version"
+                        + " WHERE d.depth < " + MAX_CHAIN_DEPTH
+                        + ") SELECT DISTINCT version FROM descendant",
+                String.class, month, channel, version, month, channel);
+        if (descendants.isEmpty()) {
+            return;
+        }
+        String in = "?, ".repeat(descendants.size() - 1) + "?";
+        List<Object> args = new ArrayList<>(List.of(month, channel, version, month, channel));
+        args.addAll(descendants);
+        jdbcTemplate.update(
+                "UPDATE " + source.dataTable() + " x JOIN " + source.dataTable() + " m "
+                        + "ON m.month = ? AND m.channel = ? AND m.version = ? AND m.base_id = x.base_id "
+                        + "SET x.base_id = m.id WHERE x.month = ? AND x.channel = ? AND x.version IN (" + in + ")",
+                args.toArray());
+        jdbcTemplate.update(
+                "UPDATE " + source.removalTable() + " x JOIN " + source.dataTable() + " m "
+                        + "ON m.month = ? AND m.channel = ? AND m.version = ? AND m.base_id = x.base_id "
+                        + "SET x.base_id = m.id WHERE x.month = ? AND x.channel = ? AND x.version IN (" + in + ")",
+                args.toArray());
+    }
+
+    private <T> List<T> query(Source source, String month, String channel, String version, RowMapper<T> mapper) {
+        if (version == null) {
+            String anchor = latestAnchorSql(source) + " AND channel = ?";
+            return jdbcTemplate.query(resolveSql(source, anchor, false), mapper,
+                    resolveArgs(new Object[]{month, channel}, month, null));
+        }
+        return jdbcTemplate.query(resolveSql(source, singleAnchor(source), false), mapper,
+                resolveArgs(singleAnchorArgs(month, channel, version), month, null));
+    }
+
+    /** 單一版本的起點；明細已存在但目錄尚未建立的版本也能讀取 */
+    private static String singleAnchor(Source source) {
+        return "SELECT channel, version FROM " + source.catalogTable() + " WHERE month = ? AND channel = ? AND version = ? "
+                + "UNION SELECT DISTINCT channel, version FROM " + source.dataTable()
+                + " WHERE month = ? AND channel = ? AND version = ?";
+    }
+
+    private static Object[] singleAnchorArgs(String month, String channel, String version) {
+        return new Object[]{month, channel, version, month, channel, version};
+    }
+
+    /** 月份內所有通路中版本字串為 version 的起點（form_vN 等跨通路版本） */
+    static String monthVersionAnchorSql(Source source) {
+        return "SELECT channel, version FROM " + source.catalogTable() + " WHERE month = ? AND version = ? "
+                + "UNION SELECT DISTINCT channel, version FROM " + source.dataTable() + " WHERE month = ? AND version = ?";
+    }
+
+    static Object[] monthVersionAnchorArgs(String month, String version) {
+        return new Object[]{month, version, month, version};
+    }
+
+    /**
+     * 版本解析 SQL。anchorSql 輸出起點 (channel, version)；byOrigin 時只解析單一原始 id。
+     * 參數順序見 {@link #resolveArgs}。
+     */
+    private static String resolveSql(Source s, String anchorSql, boolean byOrigin) {
+        return "WITH RECURSIVE " + resolveCtes(s, anchorSql, byOrigin, "")
+                + " SELECT d.*, r.anchor AS overlay_version, r.depth AS overlay_depth"
+                + " FROM ranked r JOIN " + s.dataTable() + " d ON d.id = r.id"
+                + " WHERE r.rn = 1 AND r.removed = 0"
+                + " ORDER BY d.channel ASC, d.category ASC, d.spec ASC, d.product_code ASC";
+    }
+
+    /**
+     * 版本解析的 CTE 定義（不含 WITH RECURSIVE），名稱為 prefix + chain / layered / ranked；
+     * 同一語句解析多個來源時以不同 prefix 區分。prefix + ranked 中 rn = 1 且 removed = 0 的 id 即可見列。
+     */
+    static String resolveCtes(Source s, String anchorSql, boolean byOrigin, String prefix) {
+        String chain = prefix + "chain";
+        String layered = prefix + "layered";
+        String originFilter = byOrigin ? " AND COALESCE(d.base_id, d.id) = ?" : "";
+        return chain + " (channel, anchor, version, parent_version, depth) AS ("
+                + " SELECT a.channel, a.version, a.version, v.parent_version, 0"
+                + " FROM (" + anchorSql + ") a"
+                + " LEFT JOIN " + s.catalogTable() + " v"
+                + " ON v.month = ? AND v.channel = a.channel AND v.version = a.version"
+                + " UNION ALL"
+                + " SELECT p.channel, c.anchor, p.version, p.parent_version, c.depth + 1"
+                + " FROM " + chain + " c JOIN " + s.catalogTable() + " p"
+                + " ON p.month = ? AND p.channel = c.channel AND p.version = c.parent_version"
+                + " WHERE c.depth < " + MAX_CHAIN_DEPTH
+                + "), " + layered + " AS ("
+                + " SELECT d.id, COALESCE(d.base_id, d.id) AS origin, c.channel, c.anchor, c.depth, 0 AS removed"
+                + " FROM " + chain + " c JOIN " + s.dataTable() + " d"
+                + " ON d.month = ? AND d.channel = c.channel AND d.version = c.version" + originFilter
+                + " UNION ALL"
+                + " SELECT NULL, r.base_id, c.channel, c.anchor, c.depth, 1"
+                + " FROM " + chain + " c JOIN " + s.removalTable() + " r"
+                + " ON r.month = ? AND r.channel = c.channel AND r.version = c.version"
+                + (byOrigin ? " AND r.base_id = ?" : "")
+                + "), " + prefix + "ranked AS ("
+                + " SELECT id, anchor, depth, removed,"
+                + " ROW_NUMBER() OVER (PARTITION BY channel, anchor, origin ORDER BY depth) AS rn"
+                + " FROM " + layered
+                + ")";
+    }
+
+    /** 各通路最新版本（is_latest 指標）為起點的 anchor SQL；參數為 month */
+    static String latestAnchorSql(Source s) {
+        return "SELECT channel, version FROM " + s.catalogTable() + " WHERE month = ? AND is_latest = TRUE";
+    }
+
+    /** anchor 參數之後依 SQL 出現順序：目錄 month ×2、明細 month（+ 原始 id）、刪除標記 month（+ 原始 id） */
+    static Object[] resolveArgs(Object[] anchorArgs, String month, Integer originId) {
+        List<Object> args = new ArrayList<>(Arrays.asList(anchorArgs));
+        args.add(month);
+        args.add(month);
+        args.add(month);
+        if (originId != null) {
+            args.add(originId);
+        }
+        args.add(month);
+        if (originId != null) {
+            args.add(originId);
+        }
+        return args.toArray();
+    }
+
+    /** 子版本 c 尚未覆寫或刪除該原始 id */
+    private static String notShadowedIn(String alias, String origin, Source source) {
+        return "AND NOT EXISTS (SELECT 1 FROM " + source.dataTable() + " x WHERE x.month = " + alias + ".month "
+                + "AND x.channel = " + alias + ".channel AND x.version = " + alias + ".version "
+                + "AND x.base_id = " + origin + ") "
+                + "AND NOT EXISTS (SELECT 1 FROM " + source.removalTable() + " rm WHERE rm.month = " + alias + ".month "
+                + "AND rm.channel = " + alias + ".channel AND rm.version = " + alias + ".version "
+                + "AND rm.base_id = " + origin + ")";
+    }
+
+    private static String copyColumns(Source source, String prefix) {
+        String[] columns = source == Source.SALES ? SALES_COPY_COLUMNS : GIFT_COPY_COLUMNS;
+        return Arrays.stream(columns).map(c -> prefix + c).collect(Collectors.joining(", "));
+    }
+
+    private SalesForecast mapSales(ResultSet rs, int rowNum) throws SQLException {
+        SalesForecast sf = new SalesForecast();
+        sf.setId(rs.getInt("id"));
+        sf.setMonth(rs.getString("month"));
+        sf.setChannel(rs.getString("channel"));
+        sf.setChannelNo(getInteger(rs, "channel_no"));
+        sf.setCategory(rs.getString("category"));
+        sf.setSpec(rs.getString("spec"));
+        sf.setProductCode(rs.getString("product_code"));
+        sf.setProductId(getInteger(rs, "product_id"));
+        sf.setProductName(rs.getString("product_name"));
+        sf.setWarehouseLocation(rs.getString("warehouse_location"));
+        sf.setQuantity(rs.getBigDecimal("quantity"));
+        sf.setRemark(rs.getString("remark"));
+        sf.setBaseId(getInteger(rs, "base_id"));
+        sf.setCreatedAt(getDateTime(rs, "created_at"));
+        sf.setUpdatedAt(getDateTime(rs, "updated_at"));
+        boolean inherited = rs.getInt("overlay_depth") > 0;
+        sf.setFormVersionNo(inherited ? null : getInteger(rs, "form_version_no"));
+        sf.setVersion(inherited ? rs.getString("overlay_version") : rs.getString("version"));
+        sf.setIsModified(!inherited && rs.getBoolean("is_modified"));
+        return sf;
+    }
+
+    private GiftSalesForecast mapGift(ResultSet rs, int rowNum) throws SQLException {
+        GiftSalesForecast g = new GiftSalesForecast();
+        g.setId(rs.getInt("id"));
+        g.setMonth(rs.getString("month"));
+        g.setChannel(rs.getString("channel"));
+        g.setChannelNo(getInteger(rs, "channel_no"));
+        g.setCategory(rs.getString("category"));
+        g.setSpec(rs.getString("spec"));
+        g.setProductCode(rs.getString("product_code"));
+        g.setProductId(getInteger(rs, "product_id"));
+        g.setProductName(rs.getString("product_name"));
+        g.setWarehouseLocation(rs.getString("warehouse_location"));
+        g.setQuantity(rs.getBigDecimal("quantity"));
+        g.setBaseId(getInteger(rs, "base_id"));
+        g.setCreatedAt(getDateTime(rs, "created_at"));
+        g.setUpdatedAt(getDateTime(rs, "updated_at"));
+        boolean inherited = rs.getInt("overlay_depth") > 0;
+        g.setVersion(inherited ? rs.getString("overlay_version") : rs.getString("version"));
+        g.setIsModified(!inherited && rs.getBoolean("is_modified"));
+        return g;
+    }
+
+    private static Integer getInteger(ResultSet rs, String column) throws SQLException {
+        int value = rs.getInt(column);
+        return rs.wasNull() ? null : value;
+    }
+
+    private static LocalDateTime getDateTime(ResultSet rs, String column) throws SQLException {
+        Timestamp ts = rs.getTimestamp(column);
+        return ts != null ? ts.toLocalDateTime() : null;
+    }
+}
@@ -28,15 +28,11 @@ public interface GiftSalesForecastRepository extends JpaRepository<GiftSalesFore
     List<GiftSalesForecast> findByMonthAndChannelAndVersionOrderByCategoryAscSpecAscProductCodeAsc(
             String month, String channel, String version);
 
-    @Query("SELECT g FROM GiftSalesForecast g WHERE g.month = :month AND g.channel = :channel " +
-           "AND g.version = (SELECT MAX(g2.version) FROM GiftSalesForecast g2 " +
-           "WHERE g2.month = :month AND g2.channel = :channel) " +
-           "ORDER BY g.category ASC, g.spec ASC, g.productCode ASC")
-    List<GiftSalesForecast> findLatestByMonthAndChannel(@Param("month") String month, @Param("channel") String channel);
-
-    @Query("SELECT DISTINCT g.version FROM GiftSalesForecast g " +
-           "WHERE g.month = :month AND g.channel = :channel " +
-           "ORDER BY g.version DESC")
+    /** 含尚無自有明細的疊加版本（見 ForecastVersionOverlay） */
+    @Query(value = "SELECT version FROM gift_sales_forecast WHERE month = :month AND channel = :channel " +
+           "UNION SELECT version FROM gift_sales_forecast_version " +
+           "WHERE month = :month AND channel = :channel AND parent_version IS NOT NULL " +
+           "ORDER BY version DESC", nativeQuery = true)
     List<String> findDistinctVersionsByMonthAndChannel(@Param("month") String month, @Param("channel") String channel);
 
     @Query("SELECT COUNT(g) FROM GiftSalesForecast g WHERE g.month = :month AND g.channel = :channel AND g.version = :version")
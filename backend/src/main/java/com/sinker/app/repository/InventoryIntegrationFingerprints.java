@@ -0,0 +1,35 @@
+package com.sinker.app.repository;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+/**
+ * 庫存整合即時查詢的輸入指紋 → 已存版本（inventory_integration_fingerprint）。
+ * 相同月份、相同指紋的查詢沿用最近一次存下的版本；須與該版本的明細寫入在同一交易內記錄。
+ */
+@Repository
+public class InventoryIntegrationFingerprints {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public InventoryIntegrationFingerprints(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /** @return 指紋對應的版本；沒有時為 null */
+    public String findVersion(String month, String fingerprint) {
+        List<String> versions = jdbcTemplate.queryForList(
+                "SELECT version FROM inventory_integration_fingerprint WHERE month = ? AND fingerprint = ?",
+                String.class, month, fingerprint);
+        return versions.isEmpty() ? null : versions.get(0);
+    }
+
+    public void record(String month, String fingerprint, String version) {
+        jdbcTemplate.update(
+                "INSERT INTO inventory_integration_fingerprint (month, fingerprint, version) VALUES (?, ?, ?) "
+                        + "ON DUPLICATE KEY UPDATE version = VALUES(version), created_at = CURRENT_TIMESTAMP",
+                month, fingerprint, version);
+    }
+}
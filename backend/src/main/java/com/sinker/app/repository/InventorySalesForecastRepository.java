@@ -2,10 +2,12 @@ package com.sinker.app.repository;
 
 import com.sinker.app.entity.InventorySalesForecast;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
 import java.util.List;
+import java.util.Optional;
 
 public interface InventorySalesForecastRepository extends JpaRepository<InventorySalesForecast, Integer> {
 
@@ -30,4 +32,20 @@ public interface InventorySalesForecastRepository extends JpaRepository<Inventor
     List<String> findDistinctVersionsByMonthBetween(
             @Param("startMonth") String startMonth,
             @Param("endMonth") String endMonth);
+
+    /** 將 version 的所有列以單一 INSERT ... SELECT 複製為 newVersion（含 product_id），回傳複製的列數 */
+    @Modifying
+    @Query(value = "INSERT INTO inventory_sales_forecast (month, product_code, product_id, product_name, category, spec, " +
+            "warehouse_location, sales_quantity, inventory_balance, forecast_quantity, production_subtotal, " +
+            "modified_subtotal, version, query_start_date, query_end_date, erp_error) " +
+            "SELECT month, product_code, product_id, product_name, category, spec, " +
+            "warehouse_location, sales_quantity, inventory_balance, forecast_quantity, production_subtotal, " +
+            "modified_subtotal, :newVersion, query_start_date, query_end_date, erp_error " +
+            "FROM inventory_sales_forecast WHERE version = :version ORDER BY product_code", nativeQuery = true)
+    int copyVersion(@Param("version") String version, @Param("newVersion") String newVersion);
+
+    @Query(value = "SELECT month FROM inventory_sales_forecast WHERE version = :version LIMIT 1", nativeQuery = true)
+    Optional<String> findMonthByVersion(@Param("version") String version);
+
+    boolean existsByVersion(String version);
 }
@@ -0,0 +1,56 @@
+package com.sinker.app.repository;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+/**
+ * 品項維度：(庫位, 中類, 規格, 品名, 品號) → int 代理鍵 product_id。
+ * 明細寫入後以 {@link #assignMonth} 為該月份尚未解析的列補建維度並回填 product_id（整批兩個語句），
+ * 彙總時直接以 product_id 分組。版本疊加的複製語句會一併帶過 product_id，不需再解析。
+ * 須與明細寫入在同一交易內呼叫。
+ */
+@Repository
+public class ProductDimension {
+
+    public enum Table {
+        SALES("sales_forecast"),
+        GIFT("gift_sales_forecast"),
+        INVENTORY("inventory_sales_forecast");
+
+        private final String tableName;
+
+        Table(String tableName) {
+            this.tableName = tableName;
+        }
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public ProductDimension(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /** @return 回填 product_id 的列數 */
+    public int assignMonth(Table table, String month) {
+        jdbcTemplate.update(
+                "INSERT IGNORE INTO product_dimension "
+                        + "(key_hash, warehouse_location, category, spec, product_name, product_code) "
+                        + "SELECT DISTINCT " + keyHash("d") + ", COALESCE(d.warehouse_location, ''), "
+                        + "COALESCE(d.category, ''), COALESCE(d.spec, ''), COALESCE(d.product_name, ''), "
+                        + "COALESCE(d.product_code, '') FROM " + table.tableName + " d "
+                        + "WHERE d.month = ? AND d.product_id IS NULL",
+                month);
+        return jdbcTemplate.update(
+                "UPDATE " + table.tableName + " d JOIN product_dimension p ON p.key_hash = " + keyHash("d")
+                        + " SET d.product_id = p.id WHERE d.month = ? AND d.product_id IS NULL",
+                month);
+    }
+
+    /** 與 V32 回填相同的鍵：五欄（null 視為空字串）以 0x1F 分隔後的 SHA-256 */
+    static String keyHash(String alias) {
+        return "UNHEX(SHA2(CONCAT_WS(CHAR(31 USING utf8mb4), "
+                + "COALESCE(" + alias + ".warehouse_location, ''), COALESCE(" + alias + ".category, ''), "
+                + "COALESCE(" + alias + ".spec, ''), COALESCE(" + alias + ".product_name, ''), "
+                + "COALESCE(" + alias + ".product_code, '')), 256))";
+    }
+}
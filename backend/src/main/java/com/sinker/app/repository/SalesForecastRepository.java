@@ -15,7 +15,7 @@ public interface SalesForecastRepository extends JpaRepository<SalesForecast, In
 
     @Modifying
     @Query("DELETE FROM SalesForecast sf WHERE sf.month = :month AND sf.channel = :channel")
-    void deleteByMonthAndChannel(@Param("month") String month, @Param("channel") String channel);
+    int deleteByMonthAndChannel(@Param("month") String month, @Param("channel") String channel);
 
     @Modifying
     @Query("DELETE FROM SalesForecast sf WHERE sf.month = :month AND sf.channel = :channel AND sf.version = :version")
@@ -29,15 +29,11 @@ public interface SalesForecastRepository extends JpaRepository<SalesForecast, In
     List<SalesForecast> findByMonthAndChannelAndVersionOrderByCategoryAscSpecAscProductCodeAsc(
             String month, String channel, String version);
 
-    @Query("SELECT sf FROM SalesForecast sf WHERE sf.month = :month AND sf.channel = :channel " +
-           "AND sf.version = (SELECT MAX(sf2.version) FROM SalesForecast sf2 " +
-           "WHERE sf2.month = :month AND sf2.channel = :channel) " +
-           "ORDER BY sf.category ASC, sf.spec ASC, sf.productCode ASC")
-    List<SalesForecast> findLatestByMonthAndChannel(@Param("month") String month, @Param("channel") String channel);
-
-    @Query("SELECT DISTINCT sf.version FROM SalesForecast sf " +
-           "WHERE sf.month = :month AND sf.channel = :channel " +
-           "ORDER BY sf.version DESC")
+    /** 含尚無自有明細的疊加版本（見 ForecastVersionOverlay） */
+    @Query(value = "SELECT version FROM sales_forecast WHERE month = :month AND channel = :channel " +
+           "UNION SELECT version FROM sales_forecast_version " +
+           "WHERE month = :month AND channel = :channel AND parent_version IS NOT NULL " +
+           "ORDER BY version DESC", nativeQuery = true)
     List<String> findDistinctVersionsByMonthAndChannel(@Param("month") String month, @Param("channel") String channel);
 
     @Query("SELECT COUNT(sf) FROM SalesForecast sf WHERE sf.month = :month AND sf.channel = :channel AND sf.version = :version")
@@ -47,16 +43,19 @@ public interface SalesForecastRepository extends JpaRepository<SalesForecast, In
     java.time.LocalDateTime findMaxUpdatedAtByMonthAndChannelAndVersion(@Param("month") String month, @Param("channel") String channel, @Param("version") String version);
 
     // Query methods for T020 - Integration
-    @Query("SELECT sf FROM SalesForecast sf WHERE sf.month = :month AND sf.version = :version")
-    List<SalesForecast> findByMonthAndVersion(@Param("month") String month, @Param("version") String version);
-
-    @Query("SELECT DISTINCT sf.version FROM SalesForecast sf WHERE sf.month = :month ORDER BY sf.version DESC")
+    @Query(value = "SELECT version FROM sales_forecast WHERE month = :month " +
+           "UNION SELECT version FROM sales_forecast_version WHERE month = :month AND parent_version IS NOT NULL " +
+           "ORDER BY version DESC", nativeQuery = true)
     List<String> findDistinctVersionsByMonth(@Param("month") String month);
 
-    @Query("SELECT sf FROM SalesForecast sf WHERE sf.month = :month AND sf.formVersionNo = :formVersionNo " +
+    /**
+     * 表單第一版（關帳快照）的完整明細。
+     * 第 2 版起的 form_vN 為疊加版本，form_version_no = N 的列只有與上一版不同的格，
+     * 沿用的格仍是上一版的列，須經 {@link com.sinker.app.repository.ForecastVersionOverlay} 解析，故不提供依版號查詢。
+     */
+    @Query("SELECT sf FROM SalesForecast sf WHERE sf.month = :month AND sf.formVersionNo = 1 " +
            "ORDER BY sf.channel ASC, sf.category ASC, sf.spec ASC, sf.productCode ASC")
-    List<SalesForecast> findByMonthAndFormVersionNoOrderByChannelCategorySpecProductCode(
-            @Param("month") String month, @Param("formVersionNo") Integer formVersionNo);
+    List<SalesForecast> findFormVersion1ByMonthOrderByChannelCategorySpecProductCode(@Param("month") String month);
 
     @Modifying
     @Query("UPDATE SalesForecast sf SET sf.formVersionNo = :formVersionNo " +
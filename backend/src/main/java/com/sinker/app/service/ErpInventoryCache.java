@@ -0,0 +1,232 @@
+package com.sinker.app.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * {@link ErpInventoryService} 批次查詢前的 TTL 快取：庫存以 (month, 品號)、銷量以 (起訖日, 品號) 為 key，
+ * 記憶體中以 LRU 保留最多 maxEntries 筆，超過 ttl 的視為未命中。
+ * 未命中的品號以 single-flight 載入：同一 key 已有查詢進行中時等待該結果，不重複呼叫 ERP；
+ * 載入失敗不快取，等待者收到同一個例外。ERP 沒有回傳的品號不快取（呼叫端以 0 計）。
+ * 載入期間若有月份被清除，該次載入的結果只回給呼叫端、不寫入快取，避免清除前取得的數字在清除後留下。
+ */
+@Component
+public class ErpInventoryCache {
+
+    private static final Logger log = LoggerFactory.getLogger(ErpInventoryCache.class);
+
+    private final ErpInventoryService erpInventoryService;
+    private final Clock clock;
+    private final long ttlMillis;
+    private final Map<String, Entry> entries;
+    private final Map<String, CompletableFuture<BigDecimal>> inFlight = new ConcurrentHashMap<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    /** 清除代數：每次 evictMonth 加一，載入開始時記下，寫入快取前比對 */
+    private final AtomicLong generation = new AtomicLong();
+
+    public ErpInventoryCache(ErpInventoryService erpInventoryService,
+                             @Value("${app.erp-inventory-cache.max-entries:100000}") int maxEntries,
+                             @Value("${app.erp-inventory-cache.ttl-minutes:30}") long ttlMinutes) {
+        this(erpInventoryService, maxEntries, ttlMinutes * 60_000L, Clock.systemUTC());
+    }
+
+    ErpInventoryCache(ErpInventoryService erpInventoryService, int maxEntries, long ttlMillis, Clock clock) {
+        this.erpInventoryService = erpInventoryService;
+        this.ttlMillis = ttlMillis;
+        this.clock = clock;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /** 命中、未命中次數（以品號計）及目前筆數 */
+    public record Stats(long hits, long misses, int size) {
+    }
+
+    /** 同 {@link ErpInventoryService#getInventoryBalances}，month 為 YYYYMM */
+    public Map<String, BigDecimal> getInventoryBalances(Collection<String> productCodes, String month) {
+        return lookup(productCodes, "B|" + month + "|",
+                missing -> erpInventoryService.getInventoryBalances(missing, month));
+    }
+
+    /** 同 {@link ErpInventoryService#getSalesQuantities}，日期為 yyyy-MM-dd */
+    public Map<String, BigDecimal> getSalesQuantities(Collection<String> productCodes,
+                                                      String startDate, String endDate) {
+        return lookup(productCodes, "S|" + startDate + "|" + endDate + "|",
+                missing -> erpInventoryService.getSalesQuantities(missing, startDate, endDate));
+    }
+
+    /**
+     * 清除該月份（YYYYMM 或 YYYY-MM）的庫存，以及查詢區間與該月份重疊的銷量。
+     * @return 清除的筆數
+     */
+    public int evictMonth(String month) {
+        String yyyymm = month.replace("-", "");
+        String balancePrefix = "B|" + yyyymm + "|";
+        String monthStart = yyyymm.substring(0, 4) + "-" + yyyymm.substring(4, 6) + "-01";
+        String monthEnd = yyyymm.substring(0, 4) + "-" + yyyymm.substring(4, 6) + "-31";
+        int before;
+        int after;
+        synchronized (entries) {
+            generation.incrementAndGet();
+            before = entries.size();
+            entries.keySet().removeIf(key -> key.startsWith(balancePrefix)
+                    || (key.startsWith("S|") && overlaps(key, monthStart, monthEnd)));
+            after = entries.size();
+        }
+        // 清除後的查詢不再等待清除前開始的載入
+        inFlight.keySet().removeIf(key -> key.startsWith(balancePrefix)
+                || (key.startsWith("S|") && overlaps(key, monthStart, monthEnd)));
+        log.info("ERP inventory cache evicted {} entries for month={}", before - after, yyyymm);
+        return before - after;
+    }
+
+    /**
+     * 該月份庫存與該起訖日銷量在快取中的效期：未過期項目裡最早的到期時間，任一筆到期、被清除或重取即改變；
+     * 沒有未過期的項目時每次呼叫都不同（沒有可沿用的數字）。
+     * 庫存整合以此判斷已存版本的 ERP 數字是否仍可沿用；清除快取另由呼叫端更新 report_data_version，重啟後仍有效。
+     */
+    public String figuresExpiry(String month, String startDate, String endDate) {
+        String balancePrefix = "B|" + month + "|";
+        String salesPrefix = "S|" + startDate + "|" + endDate + "|";
+        long now = clock.millis();
+        long earliest = Long.MAX_VALUE;
+        synchronized (entries) {
+            for (Map.Entry<String, Entry> e : entries.entrySet()) {
+                long expiresAt = e.getValue().expiresAt;
+                if (expiresAt > now && expiresAt < earliest
+                        && (e.getKey().startsWith(balancePrefix) || e.getKey().startsWith(salesPrefix))) {
+                    earliest = expiresAt;
+                }
+            }
+        }
+        return earliest != Long.MAX_VALUE ? String.valueOf(earliest) : "none@" + now;
+    }
+
+    public Stats stats() {
+        synchronized (entries) {
+            return new Stats(hits.sum(), misses.sum(), entries.size());
+        }
+    }
+
+    private Map<String, BigDecimal> lookup(Collection<String> productCodes, String keyPrefix,
+                                           Function<List<String>, Map<String, BigDecimal>> loader) {
+        long now = clock.millis();
+        Map<String, BigDecimal> result = new HashMap<>();
+        List<String> missing = new ArrayList<>();
+        synchronized (entries) {
+            for (String productCode : productCodes) {
+                Entry entry = entries.get(keyPrefix + productCode);
+                if (entry != null && entry.expiresAt > now) {
+                    result.put(productCode, entry.value);
+                } else {
+                    missing.add(productCode);
+                }
+            }
+        }
+        hits.add(result.size());
+        misses.add(missing.size());
+        if (missing.isEmpty()) {
+            return result;
+        }
+
+        // 由本次呼叫載入的品號；其他已在載入中的等待既有結果
+        List<String> owned = new ArrayList<>();
+        Map<String, CompletableFuture<BigDecimal>> waiting = new HashMap<>();
+        Map<String, CompletableFuture<BigDecimal>> ownedFutures = new HashMap<>();
+        for (String productCode : missing) {
+            CompletableFuture<BigDecimal> mine = new CompletableFuture<>();
+            CompletableFuture<BigDecimal> existing = inFlight.putIfAbsent(keyPrefix + productCode, mine);
+            if (existing == null) {
+                owned.add(productCode);
+                ownedFutures.put(productCode, mine);
+            } else {
+                waiting.put(productCode, existing);
+            }
+        }
+
+        if (!owned.isEmpty()) {
+            long loadGeneration = generation.get();
+            try {
+                Map<String, BigDecimal> loaded = loader.apply(owned);
+                long expiresAt = clock.millis() + ttlMillis;
+                synchronized (entries) {
+                    // 載入期間有清除：結果可能早於清除，不寫入快取
+                    if (generation.get() == loadGeneration) {
+                        for (Map.Entry<String, BigDecimal> e : loaded.entrySet()) {
+                            if (e.getValue() != null) {
+                                entries.put(keyPrefix + e.getKey(), new Entry(e.getValue(), expiresAt));
+                            }
+                        }
+                    } else {
+                        log.debug("ERP inventory cache dropped {} entries loaded before an eviction", loaded.size());
+                    }
+                }
+                for (String productCode : owned) {
+                    BigDecimal value = loaded.get(productCode);
+                    if (value != null) {
+                        result.put(productCode, value);
+                    }
+                    complete(keyPrefix + productCode, ownedFutures.get(productCode), value, null);
+                }
+            } catch (RuntimeException e) {
+                for (String productCode : owned) {
+                    complete(keyPrefix + productCode, ownedFutures.get(productCode), null, e);
+                }
+                throw e;
+            }
+        }
+
+        try {
+            for (Map.Entry<String, CompletableFuture<BigDecimal>> e : waiting.entrySet()) {
+                BigDecimal value = e.getValue().join();
+                if (value != null) {
+                    result.put(e.getKey(), value);
+                }
+            }
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException re) throw re;
+            throw e;
+        }
+        return result;
+    }
+
+    private void complete(String key, CompletableFuture<BigDecimal> future, BigDecimal value, RuntimeException error) {
+        inFlight.remove(key, future);
+        if (error != null) {
+            future.completeExceptionally(error);
+        } else {
+            future.complete(value);
+        }
+    }
+
+    /** 銷量 key 為 S|起日|迄日|品號 */
+    private static boolean overlaps(String salesKey, String monthStart, String monthEnd) {
+        String[] parts = salesKey.split("\\|", 4);
+        return parts[1].compareTo(monthEnd) <= 0 && parts[2].compareTo(monthStart) >= 0;
+    }
+
+    private record Entry(BigDecimal value, long expiresAt) {
+    }
+}
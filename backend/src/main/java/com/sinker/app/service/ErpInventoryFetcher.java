@@ -0,0 +1,148 @@
+package com.sinker.app.service;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * 庫存整合即時查詢的 ERP 取數：品號分批後，庫存與銷量的每個批次在專用的有界執行緒池並行呼叫
+ * {@link ErpInventoryService}（經 {@link ErpInventoryCache}）。每次呼叫的逾時自開始執行起算（佇列等候不計），
+ * 整體查詢另有期限（含佇列等候）；佇列已滿時該批次不排入，記為查詢失敗。
+ * 失敗或逾時的批次只記錄在所屬品號（{@link ErpFigures#errors()}），不中止整個查詢。
+ * 逾時只停止等待，執行中的呼叫不會被中斷，ERP client 本身仍應設定連線逾時。
+ */
+@Component
+public class ErpInventoryFetcher {
+
+    private static final Logger log = LoggerFactory.getLogger(ErpInventoryFetcher.class);
+
+    private final ErpInventoryCache erpInventoryCache;
+    private final ThreadPoolExecutor executor;
+    private final int batchSize;
+    private final long callTimeoutMs;
+    private final long queryTimeoutMs;
+
+    public ErpInventoryFetcher(ErpInventoryCache erpInventoryCache,
+                               @Value("${app.erp-inventory-fetch.parallelism:8}") int parallelism,
+                               @Value("${app.erp-inventory-fetch.queue-capacity:256}") int queueCapacity,
+                               @Value("${app.erp-inventory-fetch.batch-size:" + ErpInventoryService.MAX_BATCH_SIZE + "}") int batchSize,
+                               @Value("${app.erp-inventory-fetch.call-timeout-ms:10000}") long callTimeoutMs,
+                               @Value("${app.erp-inventory-fetch.query-timeout-ms:60000}") long queryTimeoutMs) {
+        this.erpInventoryCache = erpInventoryCache;
+        this.batchSize = Math.max(1, Math.min(batchSize, ErpInventoryService.MAX_BATCH_SIZE));
+        this.callTimeoutMs = callTimeoutMs;
+        this.queryTimeoutMs = queryTimeoutMs;
+        // 執行緒數即 ERP 並行上限；批次在有界佇列中等候，等候時間計入整體期限，佇列滿時拒絕
+        this.executor = new ThreadPoolExecutor(parallelism, parallelism, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), new CustomizableThreadFactory("erp-inventory-"),
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /** 各品號的庫存、銷量（缺少者由呼叫端以 0 計）及查詢錯誤說明 */
+    public record ErpFigures(Map<String, BigDecimal> inventoryBalances,
+                             Map<String, BigDecimal> salesQuantities,
+                             Map<String, String> errors) {
+    }
+
+    public ErpFigures fetch(List<String> productCodes, String month, String startDate, String endDate) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(queryTimeoutMs);
+        List<List<String>> batches = ErpInventoryService.batches(productCodes, batchSize);
+
+        List<CompletableFuture<Map<String, BigDecimal>>> balanceCalls = new ArrayList<>();
+        List<CompletableFuture<Map<String, BigDecimal>>> salesCalls = new ArrayList<>();
+        for (List<String> batch : batches) {
+            balanceCalls.add(submit(() -> erpInventoryCache.getInventoryBalances(batch, month)));
+            salesCalls.add(submit(() -> erpInventoryCache.getSalesQuantities(batch, startDate, endDate)));
+        }
+
+        Map<String, BigDecimal> balances = new HashMap<>();
+        Map<String, BigDecimal> sales = new HashMap<>();
+        Map<String, String> errors = new LinkedHashMap<>();
+        for (int i = 0; i < batches.size(); i++) {
+            collect(balanceCalls.get(i), batches.get(i), deadline, "庫存", balances, errors);
+            collect(salesCalls.get(i), batches.get(i), deadline, "銷量", sales, errors);
+        }
+
+        ErpInventoryCache.Stats stats = erpInventoryCache.stats();
+        log.debug("ERP inventory cache: hits={}, misses={}, size={}", stats.hits(), stats.misses(), stats.size());
+        if (!errors.isEmpty()) {
+            log.warn("ERP lookups failed for {} of {} products", errors.size(), productCodes.size());
+        }
+        return new ErpFigures(balances, sales, errors);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /** 單次呼叫的逾時在執行緒取得批次時才開始計算；整體期限到時取消的批次不再執行 */
+    private CompletableFuture<Map<String, BigDecimal>> submit(Supplier<Map<String, BigDecimal>> call) {
+        CompletableFuture<Map<String, BigDecimal>> result = new CompletableFuture<>();
+        try {
+            executor.execute(() -> {
+                if (result.isDone()) {
+                    return;
+                }
+                result.orTimeout(callTimeoutMs, TimeUnit.MILLISECONDS);
+                try {
+                    result.complete(call.get());
+                } catch (RuntimeException e) {
+                    result.completeExceptionally(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            result.completeExceptionally(e);
+        }
+        return result;
+    }
+
+    private void collect(CompletableFuture<Map<String, BigDecimal>> call, List<String> batch, long deadline,
+                         String figure, Map<String, BigDecimal> target, Map<String, String> errors) {
+        String error;
+        try {
+            long remaining = Math.max(0L, deadline - System.nanoTime());
+            target.putAll(call.get(remaining, TimeUnit.NANOSECONDS));
+            return;
+        } catch (TimeoutException e) {
+            // 整體期限已到：尚未開始的呼叫不再執行
+            call.cancel(false);
+            error = figure + "查詢逾時";
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof TimeoutException) {
+                error = figure + "查詢逾時";
+            } else if (cause instanceof RejectedExecutionException) {
+                error = figure + "查詢失敗: 查詢佇列已滿";
+            } else {
+                error = figure + "查詢失敗: " + cause.getMessage();
+            }
+            log.warn("ERP {} lookup failed for batch of {} products", figure, batch.size(), cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            call.cancel(false);
+            error = figure + "查詢中斷";
+        }
+        for (String productCode : batch) {
+            errors.merge(productCode, error, (a, b) -> a + "；" + b);
+        }
+    }
+}
@@ -5,6 +5,11 @@ import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 
 import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 /**
  * ERP Inventory Service Stub
@@ -16,6 +21,9 @@ public class ErpInventoryService {
 
     private static final Logger log = LoggerFactory.getLogger(ErpInventoryService.class);
 
+    /** 批次查詢每次呼叫的品號上限；呼叫端依此分段 */
+    public static final int MAX_BATCH_SIZE = 500;
+
     /**
      * Get inventory balance for a product at the end of a month.
      * Placeholder: returns 100 until ERP API is integrated.
@@ -40,4 +48,56 @@ public class ErpInventoryService {
         }
         return new BigDecimal("50");
     }
+
+    /**
+     * Inventory balances of a set of products at the end of a month, keyed by product code
+     * (at most {@link #MAX_BATCH_SIZE} codes per call).
+     * Placeholder: same values as {@link #getInventoryBalance} until ERP API is integrated.
+     */
+    public Map<String, BigDecimal> getInventoryBalances(Collection<String> productCodes, String month) {
+        checkBatchSize(productCodes);
+        log.debug("ERP stub: getInventoryBalances({} products, month={})", productCodes.size(), month);
+        Map<String, BigDecimal> balances = new HashMap<>();
+        for (String productCode : productCodes) {
+            balances.put(productCode, getInventoryBalance(productCode, month));
+        }
+        return balances;
+    }
+
+    /**
+     * Sales quantities of a set of products within a date range, keyed by product code
+     * (at most {@link #MAX_BATCH_SIZE} codes per call).
+     * Placeholder: same values as {@link #getSalesQuantity} until ERP API is integrated.
+     */
+    public Map<String, BigDecimal> getSalesQuantities(Collection<String> productCodes,
+                                                      String startDate, String endDate) {
+        checkBatchSize(productCodes);
+        log.debug("ERP stub: getSalesQuantities({} products, startDate={}, endDate={})",
+                productCodes.size(), startDate, endDate);
+        Map<String, BigDecimal> quantities = new HashMap<>();
+        for (String productCode : productCodes) {
+            quantities.put(productCode, getSalesQuantity(productCode, startDate, endDate));
+        }
+        return quantities;
+    }
+
+    /** Splits product codes into batches of at most {@link #MAX_BATCH_SIZE} */
+    public static <T> List<List<T>> batches(List<T> productCodes) {
+        return batches(productCodes, MAX_BATCH_SIZE);
+    }
+
+    /** Splits product codes into batches of at most size (itself at most {@link #MAX_BATCH_SIZE}) */
+    public static <T> List<List<T>> batches(List<T> productCodes, int size) {
+        List<List<T>> batches = new ArrayList<>();
+        for (int from = 0; from < productCodes.size(); from += size) {
+            batches.add(productCodes.subList(from, Math.min(from + size, productCodes.size())));
+        }
+        return batches;
+    }
+
+    private static void checkBatchSize(Collection<String> productCodes) {
+        if (productCodes.size() > MAX_BATCH_SIZE) {
+            throw new IllegalArgumentException("At most " + MAX_BATCH_SIZE + " product codes per ERP call");
+        }
+    }
 }
@@ -7,6 +7,14 @@ import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 import org.springframework.util.StringUtils;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
 /**
  * Validates product codes against the system product master (product table).
  * Used by sales forecast and gift forecast upload to ensure 品號 exists before upload.
@@ -16,6 +24,9 @@ public class ErpProductService {
 
     private static final Logger log = LoggerFactory.getLogger(ErpProductService.class);
 
+    /** IN (...) 每批品號數，避免單一 SQL 參數過多 */
+    static final int LOOKUP_CHUNK_SIZE = 1000;
+
     private final ProductRepository productRepository;
 
     public ErpProductService(ProductRepository productRepository) {
@@ -47,4 +58,31 @@ public class ErpProductService {
         }
         return productRepository.findByCode(productCode.trim()).map(ProductDTO::fromEntity);
     }
+
+    /**
+     * Bulk lookup of product master data for a set of codes, using chunked
+     * {@code WHERE code IN (...)} queries instead of one query per code.
+     * Blank codes are ignored; codes not found are simply absent from the result.
+     * Keys are case-insensitive to match the product table collation used by {@link #findProduct}.
+     */
+    public Map<String, ProductDTO> findProducts(Collection<String> productCodes) {
+        Map<String, ProductDTO> result = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        if (productCodes == null || productCodes.isEmpty()) {
+            return result;
+        }
+        Set<String> distinct = new LinkedHashSet<>();
+        for (String code : productCodes) {
+            if (StringUtils.hasText(code)) {
+                distinct.add(code.trim());
+            }
+        }
+        List<String> codes = new ArrayList<>(distinct);
+        for (int from = 0; from < codes.size(); from += LOOKUP_CHUNK_SIZE) {
+            List<String> chunk = codes.subList(from, Math.min(from + LOOKUP_CHUNK_SIZE, codes.size()));
+            productRepository.findByCodeIn(chunk)
+                    .forEach(p -> result.put(p.getCode(), ProductDTO.fromEntity(p)));
+        }
+        log.debug("Bulk product lookup: requested={}, found={}", codes.size(), result.size());
+        return result;
+    }
 }
@@ -1,8 +1,9 @@
 package com.sinker.app.service;
 
 import com.sinker.app.exception.ExcelParseException;
-import org.apache.poi.ss.usermodel.*;
-import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import com.sinker.app.util.StreamingXlsxReader;
+import com.sinker.app.util.StreamingXlsxReader.SheetRow;
+import org.apache.poi.ss.usermodel.CellType;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
@@ -10,6 +11,7 @@ import org.springframework.web.multipart.MultipartFile;
 
 import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.math.BigDecimal;
 import java.nio.charset.StandardCharsets;
@@ -63,15 +65,13 @@ public class ExcelParserService {
     public List<SalesForecastRow> parse(MultipartFile file) {
         validateExcelFormat(file);
 
-        try (Workbook workbook = new XSSFWorkbook(file.getInputStream())) {
-            Sheet sheet = workbook.getSheetAt(0);
-            if (sheet == null) {
-                throw new ExcelParseException("Excel file contains no sheets");
-            }
-            return parseSheet(sheet);
+        SheetCollector collector = new SheetCollector();
+        try (InputStream in = file.getInputStream()) {
+            StreamingXlsxReader.read(in, collector);
         } catch (IOException e) {
             throw new ExcelParseException("Failed to read Excel file: " + e.getMessage());
         }
+        return collector.finish();
     }
 
     private void validateExcelFormat(MultipartFile file) {
@@ -178,42 +178,48 @@ public class ExcelParserService {
         return result.toArray(new String[0]);
     }
 
-    private List<SalesForecastRow> parseSheet(Sheet sheet) {
-        int lastRow = sheet.getLastRowNum();
-        if (lastRow < 1) {
-            throw new ExcelParseException("Excel file has no data rows (only header or empty)");
-        }
-
-        // Validate header row
-        Row headerRow = sheet.getRow(0);
-        if (headerRow == null || headerRow.getLastCellNum() < MIN_COLUMNS) {
-            throw new ExcelParseException("Excel file is missing required columns. Expected 6 columns: 中類名稱, 貨品規格, 品號, 品名, 庫位, 箱數小計");
-        }
-
-        List<SalesForecastRow> rows = new ArrayList<>();
-        List<String> errors = new ArrayList<>();
+    /**
+     * 逐列接收串流資料：第 1 列為表頭，其後每列即時轉成 {@link SalesForecastRow}。
+     * 錯誤訊息與順序與原本整本載入的版本一致（先檢查是否有資料列，再檢查表頭）。
+     */
+    private class SheetCollector implements StreamingXlsxReader.RowHandler {
+        private final List<SalesForecastRow> rows = new ArrayList<>();
+        private final List<String> errors = new ArrayList<>();
+        private boolean headerValid;
+        private int lastRow = -1;
 
-        for (int i = 1; i <= lastRow; i++) {
-            Row row = sheet.getRow(i);
-            if (row == null || isRowEmpty(row)) {
-                continue;
+        @Override
+        public void handleRow(SheetRow row) {
+            lastRow = Math.max(lastRow, row.getRowNum());
+            if (row.getRowNum() == 0) {
+                headerValid = row.getLastCellNum() >= MIN_COLUMNS;
+                return;
+            }
+            if (!headerValid || isRowEmpty(row)) {
+                return;
             }
             try {
-                SalesForecastRow parsed = parseRow(row, i + 1);
-                rows.add(parsed);
+                rows.add(parseRow(row, row.getRowNum() + 1));
             } catch (ExcelParseException e) {
                 errors.addAll(e.getErrors());
             }
         }
 
-        if (!errors.isEmpty()) {
-            throw new ExcelParseException(errors);
+        List<SalesForecastRow> finish() {
+            if (lastRow < 1) {
+                throw new ExcelParseException("Excel file has no data rows (only header or empty)");
+            }
+            if (!headerValid) {
+                throw new ExcelParseException("Excel file is missing required columns. Expected 6 columns: 中類名稱, 貨品規格, 品號, 品名, 庫位, 箱數小計");
+            }
+            if (!errors.isEmpty()) {
+                throw new ExcelParseException(errors);
+            }
+            return rows;
         }
-
-        return rows;
     }
 
-    private SalesForecastRow parseRow(Row row, int rowNumber) {
+    private SalesForecastRow parseRow(SheetRow row, int rowNumber) {
         String category = getStringCell(row, COL_CATEGORY);
         String spec = getStringCell(row, COL_SPEC);
         String productCode = getStringCell(row, COL_PRODUCT_CODE);
@@ -230,18 +236,18 @@ public class ExcelParserService {
                 warehouseLocation, quantity, rowNumber);
     }
 
-    private BigDecimal parseQuantity(Row row, int rowNumber) {
-        Cell cell = row.getCell(COL_QUANTITY);
-        if (cell == null) {
+    private BigDecimal parseQuantity(SheetRow row, int rowNumber) {
+        if (row.isBlank(COL_QUANTITY)) {
             throw new ExcelParseException("Row " + rowNumber + ": 箱數小計 (quantity) is required");
         }
 
         BigDecimal quantity;
         try {
-            if (cell.getCellType() == CellType.NUMERIC) {
-                quantity = BigDecimal.valueOf(cell.getNumericCellValue());
-            } else if (cell.getCellType() == CellType.STRING) {
-                String val = cell.getStringCellValue().trim();
+            CellType type = row.getCellType(COL_QUANTITY);
+            if (type == CellType.NUMERIC) {
+                quantity = BigDecimal.valueOf(row.getNumericValue(COL_QUANTITY));
+            } else if (type == CellType.STRING) {
+                String val = row.getStringValue(COL_QUANTITY).trim();
                 if (val.isEmpty()) {
                     throw new ExcelParseException("Row " + rowNumber + ": 箱數小計 (quantity) is required");
                 }
@@ -260,27 +266,23 @@ public class ExcelParserService {
         return quantity;
     }
 
-    private String getStringCell(Row row, int colIndex) {
-        Cell cell = row.getCell(colIndex);
-        if (cell == null) return null;
-
-        switch (cell.getCellType()) {
+    private String getStringCell(SheetRow row, int colIndex) {
+        switch (row.getCellType(colIndex)) {
             case STRING:
-                String val = cell.getStringCellValue();
+                String val = row.getStringValue(colIndex);
                 return val.isEmpty() ? null : val;
             case NUMERIC:
-                return String.valueOf((long) cell.getNumericCellValue());
+                return String.valueOf((long) row.getNumericValue(colIndex));
             case BLANK:
                 return null;
             default:
-                return cell.toString();
+                return row.getRawText(colIndex);
         }
     }
 
-    private boolean isRowEmpty(Row row) {
+    private boolean isRowEmpty(SheetRow row) {
         for (int i = 0; i < MIN_COLUMNS; i++) {
-            Cell cell = row.getCell(i);
-            if (cell != null && cell.getCellType() != CellType.BLANK) {
+            if (!row.isBlank(i)) {
                 return false;
             }
         }
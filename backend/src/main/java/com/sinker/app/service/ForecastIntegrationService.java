@@ -1,15 +1,29 @@
 package com.sinker.app.service;
 
+import com.sinker.app.dto.RowStream;
 import com.sinker.app.dto.forecast.IntegrationRowDTO;
-import com.sinker.app.entity.SalesForecast;
+import com.sinker.app.repository.ForecastIntegrationPivot;
 import com.sinker.app.repository.SalesForecastRepository;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.math.BigDecimal;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
 import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -18,37 +32,60 @@ public class ForecastIntegrationService {
 
     private static final Logger log = LoggerFactory.getLogger(ForecastIntegrationService.class);
 
-    // Channel name mapping to DTO setter methods (new names + legacy for backward compatibility)
-    private static final Map<String, String> CHANNEL_MAPPING = Map.ofEntries(
-            Map.entry("PX + 大全聯", "qtyPx"),
-            Map.entry("PX/大全聯", "qtyPx"),
-            Map.entry("家樂福", "qtyCarrefour"),
-            Map.entry("愛買", "qtyAimall"),
-            Map.entry("7-11", "qty711"),
-            Map.entry("711", "qty711"),
-            Map.entry("全家", "qtyFamilymart"),
-            Map.entry("Ok+萊爾富", "qtyOk"),
-            Map.entry("OK/萊爾富", "qtyOk"),
-            Map.entry("萊爾富", "qtyOk"),
-            Map.entry("OK超商", "qtyOk"),
-            Map.entry("好市多", "qtyCostco"),
-            Map.entry("楓康", "qtyFkmart"),
-            Map.entry("美聯社", "qtyWellsociety"),
-            Map.entry("康是美", "qtyCosmed"),
-            Map.entry("電商", "qtyEcommerce"),
-            Map.entry("市面經銷", "qtyDistributor")
-    );
+    private static final Pattern CATEGORY_CODE = Pattern.compile("^(\\d{2})(\\d{2})?");
+    private static final DateTimeFormatter MONTH_FORMAT = DateTimeFormatter.ofPattern("yyyyMM");
+    private static final long NO_CATEGORY_CODE = (long) Integer.MAX_VALUE << 32 | Integer.MAX_VALUE;
 
-    private final SalesForecastRepository forecastRepository;
+    // Category code, then product code as tiebreaker (nulls last)
+    private static final Comparator<SortEntry> SORT_ORDER = Comparator.comparingLong(SortEntry::key)
+            .thenComparing(e -> e.row().getProductCode(), Comparator.nullsLast(Comparator.naturalOrder()));
 
-    public ForecastIntegrationService(SalesForecastRepository forecastRepository) {
+    private final SalesForecastRepository forecastRepository;
+    private final ForecastIntegrationPivot integrationPivot;
+    private final TransactionTemplate readOnlyTx;
+    private final ThreadPoolExecutor rangeExecutor;
+    private final int rangeMaxMonths;
+
+    public ForecastIntegrationService(SalesForecastRepository forecastRepository,
+                                      ForecastIntegrationPivot integrationPivot,
+                                      PlatformTransactionManager transactionManager,
+                                      @Value("${app.integration-range.pool-size:4}") int rangePoolSize,
+                                      @Value("${app.integration-range.queue-capacity:32}") int rangeQueueCapacity,
+                                      @Value("${app.integration-range.max-months:12}") int rangeMaxMonths) {
         this.forecastRepository = forecastRepository;
+        this.integrationPivot = integrationPivot;
+        this.readOnlyTx = new TransactionTemplate(transactionManager);
+        this.readOnlyTx.setReadOnly(true);
+        // Queue full: the request thread computes the month itself, so overload degrades to serial
+        this.rangeExecutor = new ThreadPoolExecutor(rangePoolSize, rangePoolSize, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(rangeQueueCapacity), new CustomizableThreadFactory("integration-range-"),
+                new ThreadPoolExecutor.CallerRunsPolicy());
+        this.rangeMaxMonths = rangeMaxMonths;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        rangeExecutor.shutdown();
     }
 
     @Transactional(readOnly = true)
     public List<IntegrationRowDTO> queryIntegration(String month, String version) {
         long startTime = System.currentTimeMillis();
+        List<IntegrationRowDTO> result = streamIntegration(month, version).toList();
 
+        long duration = System.currentTimeMillis() - startTime;
+        log.info("Integration query completed in {}ms, returned {} products", duration, result.size());
+
+        return result;
+    }
+
+    /**
+     * Same rows as {@link #queryIntegration}. Channel quantities and subtotals are pivoted by
+     * {@link ForecastIntegrationPivot}; difference and remarks are filled in as each row is emitted
+     * (used for streamed responses).
+     */
+    @Transactional(readOnly = true)
+    public RowStream<IntegrationRowDTO> streamIntegration(String month, String version) {
         log.info("Starting integration query for month={}, version={}", month, version);
 
         // If version is null, get latest version
@@ -58,68 +95,89 @@ public class ForecastIntegrationService {
             log.info("Using latest version: {}", targetVersion);
         }
 
-        // Get all forecast data for the month and version
-        List<SalesForecast> forecasts = forecastRepository.findByMonthAndVersion(month, targetVersion);
+        // Current version pivoted per product in the database
+        List<IntegrationRowDTO> rows = integrationPivot.findByMonthAndVersion(month, targetVersion);
 
-        if (forecasts.isEmpty()) {
+        if (rows.isEmpty()) {
             log.info("No forecast data found for month={}, version={}", month, targetVersion);
-            return Collections.emptyList();
+            return RowStream.of(Collections.emptyList());
         }
 
-        // Group by product code
-        Map<String, IntegrationRowDTO> productMap = new HashMap<>();
+        // Subtotals of the previous version, null when there is none
+        String previousVersion = getPreviousVersion(month, targetVersion);
+        Map<String, BigDecimal> previousSubtotals = previousVersion != null
+                ? previousSubtotals(month, previousVersion) : null;
 
-        for (SalesForecast forecast : forecasts) {
-            String productCode = forecast.getProductCode();
+        // Sort by category code; the key is computed once per row rather than per comparison
+        List<SortEntry> sorted = new ArrayList<>(rows.size());
+        for (IntegrationRowDTO row : rows) {
+            sorted.add(new SortEntry(categorySortKey(row.getCategory()), row));
+        }
+        sorted.sort(SORT_ORDER);
 
-            IntegrationRowDTO row = productMap.computeIfAbsent(productCode, k -> {
-                IntegrationRowDTO newRow = new IntegrationRowDTO();
-                newRow.setProductCode(productCode);
-                newRow.setProductName(forecast.getProductName());
-                newRow.setCategory(forecast.getCategory());
-                newRow.setSpec(forecast.getSpec());
-                newRow.setWarehouseLocation(forecast.getWarehouseLocation());
-                return newRow;
-            });
+        return action -> {
+            for (SortEntry entry : sorted) {
+                completeRow(entry.row(), previousSubtotals);
+                action.accept(entry.row());
+            }
+        };
+    }
 
-            // Set quantity for the appropriate channel
-            String channel = forecast.getChannel();
-            String fieldName = CHANNEL_MAPPING.get(channel);
+    /**
+     * Integration rows of each month in [startMonth, endMonth] (YYYYMM, latest version of each month),
+     * keyed by month in ascending order. Months are computed concurrently on a bounded pool,
+     * each in its own read-only transaction, so the range costs about as much as its slowest month.
+     */
+    public Map<String, List<IntegrationRowDTO>> queryIntegrationRange(String startMonth, String endMonth) {
+        List<String> months = monthsBetween(startMonth, endMonth);
+        log.info("Starting integration range query for {} months ({} - {})", months.size(), startMonth, endMonth);
+
+        Map<String, CompletableFuture<List<IntegrationRowDTO>>> futures = new LinkedHashMap<>();
+        for (String month : months) {
+            futures.put(month, CompletableFuture.supplyAsync(
+                    () -> readOnlyTx.execute(status -> queryIntegration(month, null)), rangeExecutor));
+        }
 
-            if (fieldName != null) {
-                setChannelQuantity(row, fieldName, forecast.getQuantity());
-            } else {
-                log.warn("Unknown channel: {} for product: {}", channel, productCode);
+        Map<String, List<IntegrationRowDTO>> result = new LinkedHashMap<>();
+        try {
+            for (Map.Entry<String, CompletableFuture<List<IntegrationRowDTO>>> entry : futures.entrySet()) {
+                result.put(entry.getKey(), entry.getValue().join());
             }
+        } catch (CompletionException e) {
+            futures.values().forEach(f -> f.cancel(false));
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException re) throw re;
+            if (cause instanceof Error err) throw err;
+            throw new IllegalStateException(cause.getMessage(), cause);
         }
+        return result;
+    }
 
-        // Calculate subtotals
-        for (IntegrationRowDTO row : productMap.values()) {
-            BigDecimal subtotal = calculateSubtotal(row);
-            row.setOriginalSubtotal(subtotal);
+    private List<String> monthsBetween(String startMonth, String endMonth) {
+        YearMonth start = parseMonth(startMonth, "start_month");
+        YearMonth end = parseMonth(endMonth, "end_month");
+        if (start.isAfter(end)) {
+            throw new IllegalArgumentException("start_month must not be after end_month");
         }
-
-        // Calculate differences with previous version
-        String previousVersion = getPreviousVersion(month, targetVersion);
-        if (previousVersion != null) {
-            calculateDifferences(productMap, month, previousVersion);
+        List<String> months = new ArrayList<>();
+        for (YearMonth m = start; !m.isAfter(end); m = m.plusMonths(1)) {
+            if (months.size() == rangeMaxMonths) {
+                throw new IllegalArgumentException("查詢區間最多 " + rangeMaxMonths + " 個月");
+            }
+            months.add(m.format(MONTH_FORMAT));
         }
+        return months;
+    }
 
-        // Generate remarks (skip rows already marked as "新增產品")
-        for (IntegrationRowDTO row : productMap.values()) {
-            if (row.getRemarks() == null) {
-                row.setRemarks(generateRemarks(row.getDifference()));
+    private static YearMonth parseMonth(String month, String name) {
+        try {
+            if (month != null && month.matches("\\d{6}")) {
+                return YearMonth.parse(month, MONTH_FORMAT);
             }
+        } catch (DateTimeParseException ignored) {
+            // fall through
         }
-
-        // Sort by category code
-        List<IntegrationRowDTO> result = new ArrayList<>(productMap.values());
-        result.sort(this::compareByCategoryCode);
-
-        long duration = System.currentTimeMillis() - startTime;
-        log.info("Integration query completed in {}ms, returned {} products", duration, result.size());
-
-        return result;
+        throw new IllegalArgumentException(name + " must be YYYYMM");
     }
 
     private String getLatestVersion(String month) {
@@ -139,80 +197,32 @@ public class ForecastIntegrationService {
         return null;
     }
 
-    private void calculateDifferences(Map<String, IntegrationRowDTO> productMap, String month, String previousVersion) {
-        List<SalesForecast> previousForecasts = forecastRepository.findByMonthAndVersion(month, previousVersion);
-
-        // Build previous version product map
+    private Map<String, BigDecimal> previousSubtotals(String month, String previousVersion) {
         Map<String, BigDecimal> previousSubtotals = new HashMap<>();
-        Map<String, IntegrationRowDTO> previousProductMap = new HashMap<>();
-
-        for (SalesForecast forecast : previousForecasts) {
-            String productCode = forecast.getProductCode();
-
-            IntegrationRowDTO prevRow = previousProductMap.computeIfAbsent(productCode, k -> {
-                IntegrationRowDTO newRow = new IntegrationRowDTO();
-                newRow.setProductCode(productCode);
-                return newRow;
-            });
-
-            String fieldName = CHANNEL_MAPPING.get(forecast.getChannel());
-            if (fieldName != null) {
-                setChannelQuantity(prevRow, fieldName, forecast.getQuantity());
-            }
-        }
-
-        // Calculate previous subtotals
-        for (Map.Entry<String, IntegrationRowDTO> entry : previousProductMap.entrySet()) {
-            BigDecimal prevSubtotal = calculateSubtotal(entry.getValue());
-            previousSubtotals.put(entry.getKey(), prevSubtotal);
+        for (IntegrationRowDTO row : integrationPivot.findByMonthAndVersion(month, previousVersion)) {
+            previousSubtotals.put(row.getProductCode(), row.getOriginalSubtotal());
         }
+        return previousSubtotals;
+    }
 
-        // Calculate differences
-        for (Map.Entry<String, IntegrationRowDTO> entry : productMap.entrySet()) {
-            String productCode = entry.getKey();
-            IntegrationRowDTO currentRow = entry.getValue();
-            BigDecimal currentSubtotal = currentRow.getOriginalSubtotal();
+    /** Fills difference against the previous version and remarks */
+    private void completeRow(IntegrationRowDTO row, Map<String, BigDecimal> previousSubtotals) {
+        BigDecimal currentSubtotal = row.getOriginalSubtotal();
 
-            if (!previousSubtotals.containsKey(productCode)) {
+        if (previousSubtotals != null) {
+            BigDecimal previousSubtotal = previousSubtotals.get(row.getProductCode());
+            if (previousSubtotal == null) {
                 // New product not present in previous version
-                currentRow.setDifference(currentSubtotal);
-                currentRow.setRemarks("新增產品");
+                row.setDifference(currentSubtotal);
+                row.setRemarks("新增產品");
             } else {
-                BigDecimal previousSubtotal = previousSubtotals.get(productCode);
-                currentRow.setDifference(currentSubtotal.subtract(previousSubtotal));
+                row.setDifference(currentSubtotal.subtract(previousSubtotal));
             }
         }
-    }
-
-    private BigDecimal calculateSubtotal(IntegrationRowDTO row) {
-        return row.getQtyPx()
-                .add(row.getQtyCarrefour())
-                .add(row.getQtyAimall())
-                .add(row.getQty711())
-                .add(row.getQtyFamilymart())
-                .add(row.getQtyOk())
-                .add(row.getQtyCostco())
-                .add(row.getQtyFkmart())
-                .add(row.getQtyWellsociety())
-                .add(row.getQtyCosmed())
-                .add(row.getQtyEcommerce())
-                .add(row.getQtyDistributor());
-    }
 
-    private void setChannelQuantity(IntegrationRowDTO row, String fieldName, BigDecimal quantity) {
-        switch (fieldName) {
-            case "qtyPx" -> row.setQtyPx(quantity);
-            case "qtyCarrefour" -> row.setQtyCarrefour(quantity);
-            case "qtyAimall" -> row.setQtyAimall(quantity);
-            case "qty711" -> row.setQty711(quantity);
-            case "qtyFamilymart" -> row.setQtyFamilymart(quantity);
-            case "qtyOk" -> row.setQtyOk(quantity);
-            case "qtyCostco" -> row.setQtyCostco(quantity);
-            case "qtyFkmart" -> row.setQtyFkmart(quantity);
-            case "qtyWellsociety" -> row.setQtyWellsociety(quantity);
-            case "qtyCosmed" -> row.setQtyCosmed(quantity);
-            case "qtyEcommerce" -> row.setQtyEcommerce(quantity);
-            case "qtyDistributor" -> row.setQtyDistributor(quantity);
+        // Generate remarks (skip rows already marked as "新增產品")
+        if (row.getRemarks() == null) {
+            row.setRemarks(generateRemarks(row.getDifference()));
         }
     }
 
@@ -226,60 +236,22 @@ public class ForecastIntegrationService {
         }
     }
 
-    private int compareByCategoryCode(IntegrationRowDTO a, IntegrationRowDTO b) {
-        // Extract category codes for sorting
-        CategoryCode codeA = extractCategoryCode(a.getCategory());
-        CategoryCode codeB = extractCategoryCode(b.getCategory());
-
-        // Compare by category first
-        int categoryCompare = Integer.compare(codeA.category, codeB.category);
-        if (categoryCompare != 0) {
-            return categoryCompare;
-        }
-
-        // Then by flavor
-        int flavorCompare = Integer.compare(codeA.flavor, codeB.flavor);
-        if (flavorCompare != 0) {
-            return flavorCompare;
-        }
-
-        // Finally by product code as tiebreaker
-        return nullSafeCompare(a.getProductCode(), b.getProductCode());
-    }
-
-    private CategoryCode extractCategoryCode(String category) {
-        if (category == null || category.isEmpty()) {
-            return new CategoryCode(Integer.MAX_VALUE, Integer.MAX_VALUE);
-        }
-
-        // Pattern to extract 2-digit category + 2-digit flavor (e.g., "01飲料類" -> 01, "0102" -> 01, 02)
-        Pattern pattern = Pattern.compile("^(\\d{2})(\\d{2})?");
-        Matcher matcher = pattern.matcher(category);
-
-        if (matcher.find()) {
-            int cat = Integer.parseInt(matcher.group(1));
-            int flavor = matcher.group(2) != null ? Integer.parseInt(matcher.group(2)) : 0;
-            return new CategoryCode(cat, flavor);
+    /**
+     * Category code (e.g. "01飲料類" -> 01, "0102" -> 01, 02) packed as category << 32 | flavor;
+     * flavor is 0 when absent, rows without a numeric code sort last.
+     */
+    static long categorySortKey(String category) {
+        if (category != null && !category.isEmpty()) {
+            Matcher matcher = CATEGORY_CODE.matcher(category);
+            if (matcher.find()) {
+                long cat = Integer.parseInt(matcher.group(1));
+                int flavor = matcher.group(2) != null ? Integer.parseInt(matcher.group(2)) : 0;
+                return cat << 32 | flavor;
+            }
         }
-
-        // Fallback: no numeric code found
-        return new CategoryCode(Integer.MAX_VALUE, Integer.MAX_VALUE);
+        return NO_CATEGORY_CODE;
     }
 
-    private int nullSafeCompare(String a, String b) {
-        if (a == null && b == null) return 0;
-        if (a == null) return 1;
-        if (b == null) return -1;
-        return a.compareTo(b);
-    }
-
-    private static class CategoryCode {
-        final int category;
-        final int flavor;
-
-        CategoryCode(int category, int flavor) {
-            this.category = category;
-            this.flavor = flavor;
-        }
+    private record SortEntry(long key, IntegrationRowDTO row) {
     }
 }
@@ -0,0 +1,234 @@
+package com.sinker.app.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sinker.app.dto.forecast.ChannelCellDTO;
+import com.sinker.app.dto.forecast.ChannelVersionInfoDTO;
+import com.sinker.app.dto.forecast.FormSummaryResponse;
+import com.sinker.app.dto.forecast.FormSummaryRowDTO;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionException;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 已關帳月份表單版本摘要快取，key 為 (month, versionNo)。
+ * 月份關帳後不能重新開放，表單版本只會新增，所以同一 key 的摘要固定不變；
+ * 記憶體中以 LRU 保留最多 maxEntries 筆，persist 開啟時另存序列化 JSON 於 form_summary_cache，重啟後沿用。
+ * 放入與取出時都複製一份，呼叫端修改回傳的物件不影響快取。
+ * 交易中放入時，等 commit 後才寫入快取，落地另開獨立交易（呼叫端多為唯讀交易）。
+ * 每個月份另有清除代數：呼叫端在讀取明細前記下，放入時代數已變表示計算期間有清除，摘要可能早於修改，不寫入。
+ */
+@Component
+public class FormSummaryCache {
+
+    private static final Logger log = LoggerFactory.getLogger(FormSummaryCache.class);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate persistTx;
+    private final boolean persist;
+    private final Map<String, FormSummaryResponse> entries;
+    /** 各月份清除代數，與 entries 同鎖 */
+    private final Map<String, Long> generations = new HashMap<>();
+
+    public FormSummaryCache(JdbcTemplate jdbcTemplate,
+                            ObjectMapper objectMapper,
+                            PlatformTransactionManager transactionManager,
+                            @Value("${app.form-summary-cache.max-entries:256}") int maxEntries,
+                            @Value("${app.form-summary-cache.persist:false}") boolean persist) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.objectMapper = objectMapper;
+        this.persistTx = new TransactionTemplate(transactionManager);
+        this.persistTx.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.persist = persist;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, FormSummaryResponse> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /** @return 快取的摘要；沒有時為 null */
+    public FormSummaryResponse get(String month, int versionNo) {
+        String key = key(month, versionNo);
+        synchronized (entries) {
+            FormSummaryResponse cached = entries.get(key);
+            if (cached != null) {
+                return copyOf(cached);
+            }
+        }
+        if (!persist) {
+            return null;
+        }
+        long loadGeneration = generation(month);
+        List<String> payloads = jdbcTemplate.queryForList(
+                "SELECT payload FROM form_summary_cache WHERE month = ? AND version_no = ?",
+                String.class, month, versionNo);
+        if (payloads.isEmpty()) {
+            return null;
+        }
+        try {
+            FormSummaryResponse loaded = objectMapper.readValue(payloads.get(0), FormSummaryResponse.class);
+            synchronized (entries) {
+                if (generation(month) == loadGeneration) {
+                    entries.put(key, loaded);
+                }
+            }
+            return copyOf(loaded);
+        } catch (JsonProcessingException e) {
+            log.warn("Discarding unreadable form summary cache: month={}, versionNo={}", month, versionNo, e);
+            return null;
+        }
+    }
+
+    /** 該月份目前的清除代數；計算摘要前取得，放入時傳回 {@link #put} */
+    public long generation(String month) {
+        synchronized (entries) {
+            return generations.getOrDefault(month, 0L);
+        }
+    }
+
+    /** @param generation 讀取明細前的 {@link #generation}；之後有清除時不寫入 */
+    public void put(String month, int versionNo, FormSummaryResponse response, long generation) {
+        FormSummaryResponse snapshot = copyOf(response);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    store(month, versionNo, snapshot, generation);
+                }
+            });
+        } else {
+            store(month, versionNo, snapshot, generation);
+        }
+    }
+
+    private void store(String month, int versionNo, FormSummaryResponse snapshot, long generation) {
+        synchronized (entries) {
+            if (generation(month) != generation) {
+                log.debug("Form summary computed before an eviction not cached: month={}, versionNo={}",
+                        month, versionNo);
+                return;
+            }
+            entries.put(key(month, versionNo), snapshot);
+        }
+        if (!persist) {
+            return;
+        }
+        try {
+            String payload = objectMapper.writeValueAsString(snapshot);
+            persistTx.executeWithoutResult(status -> jdbcTemplate.update(
+                    "INSERT IGNORE INTO form_summary_cache (month, version_no, payload) VALUES (?, ?, ?)",
+                    month, versionNo, payload));
+            // 寫入期間有清除（INSERT 可能等到修改 commit 後才完成）：撤回剛落地的摘要
+            if (generation(month) != generation) {
+                persistTx.executeWithoutResult(status -> jdbcTemplate.update(
+                        "DELETE FROM form_summary_cache WHERE month = ? AND version_no = ?", month, versionNo));
+            }
+        } catch (JsonProcessingException | DataAccessException | TransactionException e) {
+            // 落地失敗不影響回應，記憶體快取仍有效
+            log.warn("Failed to persist form summary cache: month={}, versionNo={}", month, versionNo, e);
+        }
+    }
+
+    /**
+     * 表單版本明細被改寫時（關帳後修改權限的單筆編輯、刪除版本）清除該月份，並遞增清除代數。
+     * 交易中呼叫時於 commit 後再清一次（含落地的快取），避免 commit 前被其他請求以舊資料重新放入。
+     */
+    public void evictMonth(String month) {
+        evictMemory(month);
+        if (persist) {
+            jdbcTemplate.update("DELETE FROM form_summary_cache WHERE month = ?", month);
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    evictMemory(month);
+                    if (persist) {
+                        try {
+                            persistTx.executeWithoutResult(status -> jdbcTemplate.update(
+                                    "DELETE FROM form_summary_cache WHERE month = ?", month));
+                        } catch (DataAccessException | TransactionException e) {
+                            log.warn("Failed to evict persisted form summary cache: month={}", month, e);
+                        }
+                    }
+                }
+            });
+        }
+    }
+
+    private void evictMemory(String month) {
+        String prefix = month + "|";
+        synchronized (entries) {
+            generations.merge(month, 1L, Long::sum);
+            entries.keySet().removeIf(k -> k.startsWith(prefix));
+        }
+    }
+
+    private static FormSummaryResponse copyOf(FormSummaryResponse source) {
+        FormSummaryResponse copy = new FormSummaryResponse();
+        copy.setVersionNo(source.getVersionNo());
+        copy.setVersionRemark(source.getVersionRemark());
+        copy.setChannelOrder(source.getChannelOrder() != null ? new ArrayList<>(source.getChannelOrder()) : null);
+        if (source.getChannelVersions() != null) {
+            List<ChannelVersionInfoDTO> versions = new ArrayList<>(source.getChannelVersions().size());
+            for (ChannelVersionInfoDTO v : source.getChannelVersions()) {
+                versions.add(new ChannelVersionInfoDTO(v.getChannel(), v.getLatestVersion()));
+            }
+            copy.setChannelVersions(versions);
+        }
+        if (source.getRows() != null) {
+            List<FormSummaryRowDTO> rows = new ArrayList<>(source.getRows().size());
+            for (FormSummaryRowDTO r : source.getRows()) {
+                rows.add(copyOf(r));
+            }
+            copy.setRows(rows);
+        }
+        return copy;
+    }
+
+    private static FormSummaryRowDTO copyOf(FormSummaryRowDTO source) {
+        FormSummaryRowDTO copy = new FormSummaryRowDTO();
+        copy.setWarehouseLocation(source.getWarehouseLocation());
+        copy.setCategory(source.getCategory());
+        copy.setSpec(source.getSpec());
+        copy.setProductName(source.getProductName());
+        copy.setProductCode(source.getProductCode());
+        copy.setRemark(source.getRemark());
+        if (source.getChannelCells() != null) {
+            List<ChannelCellDTO> cells = new ArrayList<>(source.getChannelCells().size());
+            for (ChannelCellDTO c : source.getChannelCells()) {
+                ChannelCellDTO cell = new ChannelCellDTO();
+                cell.setPreviousQty(c.getPreviousQty());
+                cell.setCurrentQty(c.getCurrentQty());
+                cell.setCurrentSalesQty(c.getCurrentSalesQty());
+                cell.setDiff(c.getDiff());
+                cell.setRemark(c.getRemark());
+                cells.add(cell);
+            }
+            copy.setChannelCells(cells);
+        }
+        return copy;
+    }
+
+    private static String key(String month, int versionNo) {
+        return month + "|" + versionNo;
+    }
+}
@@ -1,58 +1,97 @@
 package com.sinker.app.service;
 
+import com.sinker.app.dto.ReportStream;
+import com.sinker.app.dto.RowStream;
 import com.sinker.app.dto.forecast.*;
 import com.sinker.app.entity.GiftSalesForecast;
+import com.sinker.app.entity.SalesChannel;
 import com.sinker.app.entity.SalesForecast;
 import com.sinker.app.entity.SalesForecastConfig;
 import com.sinker.app.entity.SalesForecastFormVersion;
 import com.sinker.app.entity.SalesForecastVersionReason;
+import com.sinker.app.repository.ForecastBulkWriter;
+import com.sinker.app.repository.ForecastVersionCatalog;
+import com.sinker.app.repository.ForecastVersionOverlay;
 import com.sinker.app.repository.GiftSalesForecastRepository;
+import com.sinker.app.repository.ProductDimension;
 import com.sinker.app.repository.SalesForecastConfigRepository;
 import com.sinker.app.repository.SalesForecastFormVersionRepository;
 import com.sinker.app.repository.SalesForecastRepository;
 import com.sinker.app.repository.SalesForecastVersionReasonRepository;
+import com.sinker.app.util.Hundredths;
+import com.sinker.app.util.IntIndex;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
-import java.math.RoundingMode;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
 import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
-import java.util.TreeMap;
+import java.util.function.Function;
 
 @Service
 public class FormSummaryService {
 
     private static final Logger log = LoggerFactory.getLogger(FormSummaryService.class);
-    private static final List<String> CHANNEL_ORDER = List.of(
-            "PX + 大全聯", "家樂福", "愛買", "7-11", "全家", "Ok+萊爾富",
-            "好市多", "楓康", "美聯社", "康是美", "電商", "市面經銷");
+    /** 中類、規格、品號；相同時依庫位、品名 */
+    private static final Comparator<FormSummaryRowDTO> ROW_ORDER = (a, b) -> {
+        int c = nullSafeCompare(a.getCategory(), b.getCategory());
+        if (c != 0) return c;
+        c = nullSafeCompare(a.getSpec(), b.getSpec());
+        if (c != 0) return c;
+        c = nullSafeCompare(a.getProductCode(), b.getProductCode());
+        if (c != 0) return c;
+        c = nullSafeCompare(a.getWarehouseLocation(), b.getWarehouseLocation());
+        if (c != 0) return c;
+        return nullSafeCompare(a.getProductName(), b.getProductName());
+    };
 
     private final SalesForecastRepository forecastRepository;
     private final SalesForecastVersionReasonRepository versionReasonRepository;
     private final SalesForecastConfigRepository configRepository;
     private final SalesForecastFormVersionRepository formVersionRepository;
     private final GiftSalesForecastRepository giftForecastRepository;
+    private final ForecastBulkWriter bulkWriter;
+    private final ForecastVersionCatalog versionCatalog;
+    private final ForecastVersionOverlay versionOverlay;
+    private final FormSummaryCache formSummaryCache;
+    private final ProductDimension productDimension;
+    private final ReportDataVersion reportDataVersion;
 
     public FormSummaryService(SalesForecastRepository forecastRepository,
                               SalesForecastVersionReasonRepository versionReasonRepository,
                               SalesForecastConfigRepository configRepository,
                               SalesForecastFormVersionRepository formVersionRepository,
-                              GiftSalesForecastRepository giftForecastRepository) {
+                              GiftSalesForecastRepository giftForecastRepository,
+                              ForecastBulkWriter bulkWriter,
+                              ForecastVersionCatalog versionCatalog,
+                              ForecastVersionOverlay versionOverlay,
+                              FormSummaryCache formSummaryCache,
+                              ProductDimension productDimension,
+                              ReportDataVersion reportDataVersion) {
         this.forecastRepository = forecastRepository;
         this.versionReasonRepository = versionReasonRepository;
         this.configRepository = configRepository;
         this.formVersionRepository = formVersionRepository;
         this.giftForecastRepository = giftForecastRepository;
+        this.bulkWriter = bulkWriter;
+        this.versionCatalog = versionCatalog;
+        this.versionOverlay = versionOverlay;
+        this.formSummaryCache = formSummaryCache;
+        this.productDimension = productDimension;
+        this.reportDataVersion = reportDataVersion;
     }
 
     /**
@@ -97,10 +136,47 @@ public class FormSummaryService {
         return result;
     }
 
-    /** 已關帳時確保存在第一版（結束時間為第一版），並回傳該版本的摘要。 */
+    /**
+     * 已關帳時確保存在第一版（結束時間為第一版），並回傳該版本的摘要。
+     * 匯整版（form_v*）的摘要不再變動，算過一次即放入 {@link FormSummaryCache}。
+     */
     @Transactional(readOnly = true)
     public FormSummaryResponse getFormSummaryByVersion(String month, int versionNo) {
         validateMonth(month);
+        FormSummaryResponse cached = formSummaryCache.get(month, versionNo);
+        if (cached != null) {
+            return cached;
+        }
+        return collect(summarizeByVersion(month, versionNo));
+    }
+
+    /**
+     * 與 {@link #getFormSummary} 相同的摘要，明細列改為走訪時才組成（串流輸出用），header 不含 rows。
+     * 已快取或須放入快取的匯整版摘要仍是整份算好的列。
+     */
+    @Transactional(readOnly = true)
+    public ReportStream<FormSummaryResponse, FormSummaryRowDTO> streamFormSummary(String month, Integer versionNo) {
+        ReportStream<FormSummaryResponse, FormSummaryRowDTO> report;
+        if (versionNo == null) {
+            report = summarizeLegacy(month);
+        } else {
+            validateMonth(month);
+            FormSummaryResponse cached = formSummaryCache.get(month, versionNo);
+            report = cached != null
+                    ? new ReportStream<>(cached, RowStream.of(cached.getRows()))
+                    : summarizeByVersion(month, versionNo);
+        }
+        FormSummaryResponse header = report.header();
+        if (header.getRows() == null) {
+            return report;
+        }
+        // header 不含 rows，列由 rows() 輸出
+        return new ReportStream<>(withoutRows(header), report.rows());
+    }
+
+    private ReportStream<FormSummaryResponse, FormSummaryRowDTO> summarizeByVersion(String month, int versionNo) {
+        // 讀取明細前記下清除代數，計算期間有修改時不放入快取
+        long cacheGeneration = formSummaryCache.generation(month);
         SalesForecastConfig config = configRepository.findByMonth(month)
                 .orElseThrow(() -> new IllegalArgumentException("Month config not found: " + month));
         if (!Boolean.TRUE.equals(config.getIsClosed())) {
@@ -121,31 +197,15 @@ public class FormSummaryService {
             }
         }
 
-        List<SalesForecast> currentRows = forecastRepository.findByMonthAndFormVersionNoOrderByChannelCategorySpecProductCode(month, versionNo);
-        Map<String, BigDecimal>[] qtyByChannel = new Map[CHANNEL_ORDER.size()];
-        for (int i = 0; i < CHANNEL_ORDER.size(); i++) {
-            qtyByChannel[i] = new LinkedHashMap<>();
-        }
-        Map<String, FormSummaryRowDTO> keyToRow = new TreeMap<>();
+        List<SalesForecast> currentRows = findFormVersionRows(month, versionNo);
+        // 依 product_id 分組：序號即 products 的位置，各通路數量存在陣列中
+        ProductSlots productIndex = new ProductSlots(currentRows.size() / SalesChannel.COUNT + 1);
+        List<ProductCells> products = new ArrayList<>();
         for (SalesForecast r : currentRows) {
-            String pk = productKey(r);
-            keyToRow.putIfAbsent(pk, rowFrom(r));
-            int chIdx = CHANNEL_ORDER.indexOf(r.getChannel());
-            if (chIdx >= 0) qtyByChannel[chIdx].put(pk, r.getQuantity());
-        }
-
-        Map<String, BigDecimal>[] prevQtyByChannel = null;
-        if (prevVersionNo != null) {
-            List<SalesForecast> prevRows = forecastRepository.findByMonthAndFormVersionNoOrderByChannelCategorySpecProductCode(month, prevVersionNo);
-            prevQtyByChannel = new Map[CHANNEL_ORDER.size()];
-            for (int i = 0; i < CHANNEL_ORDER.size(); i++) {
-                prevQtyByChannel[i] = new LinkedHashMap<>();
-            }
-            for (SalesForecast r : prevRows) {
-                String pk = productKey(r);
-                int chIdx = CHANNEL_ORDER.indexOf(r.getChannel());
-                if (chIdx >= 0) prevQtyByChannel[chIdx].put(pk, r.getQuantity());
-            }
+            int slot = productIndex.indexOf(r);
+            if (slot == products.size()) products.add(new ProductCells(rowFrom(r)));
+            Integer chNo = r.getChannelNo();
+            if (chNo != null) products.get(slot).current[chNo] = Hundredths.of(r.getQuantity());
         }
 
         // 匯整版（form_v*）已含銷售+禮品，只讀表單版本；舊版第一版（標記上傳版）則加禮品
@@ -153,66 +213,39 @@ public class FormSummaryService {
                 && currentRows.get(0).getVersion() != null
                 && currentRows.get(0).getVersion().startsWith("form_v");
 
-        Map<String, BigDecimal>[] giftQtyByChannel = null;
         if (!isAggregatedVersion) {
-            giftQtyByChannel = new Map[CHANNEL_ORDER.size()];
-            for (int i = 0; i < CHANNEL_ORDER.size(); i++) {
-                giftQtyByChannel[i] = new LinkedHashMap<>();
-            }
-            for (int chIdx = 0; chIdx < CHANNEL_ORDER.size(); chIdx++) {
-                String channel = CHANNEL_ORDER.get(chIdx);
-                List<GiftSalesForecast> giftRows = giftForecastRepository.findLatestByMonthAndChannel(month, channel);
-                for (GiftSalesForecast g : giftRows) {
-                    String pk = productKeyGift(g);
-                    giftQtyByChannel[chIdx].put(pk, g.getQuantity());
-                    keyToRow.putIfAbsent(pk, rowFromGift(g));
-                }
+            for (GiftSalesForecast g : versionOverlay.findLatestGiftSalesForecasts(month)) {
+                Integer chNo = g.getChannelNo();
+                if (chNo == null) continue;
+                int slot = productIndex.indexOf(g);
+                if (slot == products.size()) products.add(new ProductCells(rowFromGift(g)));
+                products.get(slot).gift[chNo] = Hundredths.of(g.getQuantity());
             }
         }
 
-        List<FormSummaryRowDTO> rows = new ArrayList<>();
-        for (Map.Entry<String, FormSummaryRowDTO> e : keyToRow.entrySet()) {
-            String pk = e.getKey();
-            FormSummaryRowDTO row = e.getValue();
-            List<ChannelCellDTO> cells = new ArrayList<>();
-            for (int i = 0; i < CHANNEL_ORDER.size(); i++) {
-                BigDecimal prev = prevQtyByChannel != null ? prevQtyByChannel[i].getOrDefault(pk, BigDecimal.ZERO) : BigDecimal.ZERO;
-                BigDecimal curr = qtyByChannel[i].getOrDefault(pk, BigDecimal.ZERO);
-                BigDecimal salesCurr = curr;
-                if (!isAggregatedVersion && giftQtyByChannel != null) {
-                    BigDecimal giftCurr = giftQtyByChannel[i].getOrDefault(pk, BigDecimal.ZERO);
-                    curr = curr.add(giftCurr);
-                }
-                // 第 1 版沒有上一版：原小計基準 = 第一版建立時快照（未修改前），與當前此版數量相同
-                if (versionNo == 1) {
-                    prev = curr;
-                }
-                ChannelCellDTO cell = new ChannelCellDTO();
-                cell.setPreviousQty(prev);
-                cell.setCurrentQty(curr);
-                cell.setCurrentSalesQty(salesCurr);
-                cell.setDiff(prev.subtract(curr).setScale(2, RoundingMode.HALF_UP));
-                cell.setRemark(versionRemark != null ? versionRemark : "");
-                cells.add(cell);
+        if (prevVersionNo != null) {
+            for (SalesForecast r : findFormVersionRows(month, prevVersionNo)) {
+                int slot = productIndex.find(r);
+                Integer chNo = r.getChannelNo();
+                if (slot >= 0 && chNo != null) products.get(slot).previous[chNo] = Hundredths.of(r.getQuantity());
             }
-            row.setChannelCells(cells);
-            rows.add(row);
         }
-        rows.sort((a, b) -> {
-            int c = nullSafeCompare(a.getCategory(), b.getCategory());
-            if (c != 0) return c;
-            c = nullSafeCompare(a.getSpec(), b.getSpec());
-            if (c != 0) return c;
-            return nullSafeCompare(a.getProductCode(), b.getProductCode());
-        });
 
         FormSummaryResponse resp = new FormSummaryResponse();
         resp.setChannelVersions(List.of());
-        resp.setChannelOrder(new ArrayList<>(CHANNEL_ORDER));
-        resp.setRows(rows);
+        resp.setChannelOrder(new ArrayList<>(SalesChannel.labels()));
         resp.setVersionNo(versionNo);
         resp.setVersionRemark(versionRemark);
-        return resp;
+        String remark = versionRemark != null ? versionRemark : "";
+        RowStream<FormSummaryRowDTO> rows = rowStream(products,
+                p -> versionCells(p, isAggregatedVersion, versionNo == 1, remark));
+        if (!isAggregatedVersion) {
+            // 舊版第一版含即時禮品數量，不快取
+            return new ReportStream<>(resp, rows);
+        }
+        resp.setRows(rows.toList());
+        formSummaryCache.put(month, versionNo, resp, cacheGeneration);
+        return new ReportStream<>(resp, RowStream.of(resp.getRows()));
     }
 
     @Transactional
@@ -243,59 +276,12 @@ public class FormSummaryService {
         v1.setChangeReason(null);
         formVersionRepository.save(v1);
 
-        Map<String, FormSummaryRowDTO> keyToRow = new TreeMap<>();
-        Map<String, BigDecimal>[] qtyByChannel = new Map[CHANNEL_ORDER.size()];
-        for (int i = 0; i < CHANNEL_ORDER.size(); i++) {
-            qtyByChannel[i] = new LinkedHashMap<>();
-        }
-        for (int chIdx = 0; chIdx < CHANNEL_ORDER.size(); chIdx++) {
-            String channel = CHANNEL_ORDER.get(chIdx);
-            List<String> versions = forecastRepository.findDistinctVersionsByMonthAndChannel(month, channel);
-            if (!versions.isEmpty()) {
-                String latest = versions.get(0);
-                List<SalesForecast> salesRows = forecastRepository.findByMonthAndChannelAndVersionOrderByCategoryAscSpecAscProductCodeAsc(month, channel, latest);
-                for (SalesForecast r : salesRows) {
-                    String pk = productKey(r);
-                    keyToRow.putIfAbsent(pk, rowFrom(r));
-                    qtyByChannel[chIdx].put(pk, r.getQuantity());
-                }
-            }
-            List<GiftSalesForecast> giftRows = giftForecastRepository.findLatestByMonthAndChannel(month, channel);
-            for (GiftSalesForecast g : giftRows) {
-                String pk = productKeyGift(g);
-                keyToRow.putIfAbsent(pk, rowFromGift(g));
-                BigDecimal existing = qtyByChannel[chIdx].getOrDefault(pk, BigDecimal.ZERO);
-                qtyByChannel[chIdx].put(pk, existing.add(g.getQuantity()));
-            }
-        }
-
-        String versionLabel = "form_v1";
-        int inserted = 0;
-        for (int chIdx = 0; chIdx < CHANNEL_ORDER.size(); chIdx++) {
-            String channel = CHANNEL_ORDER.get(chIdx);
-            for (Map.Entry<String, FormSummaryRowDTO> e : keyToRow.entrySet()) {
-                String pk = e.getKey();
-                FormSummaryRowDTO row = e.getValue();
-                BigDecimal qty = qtyByChannel[chIdx].getOrDefault(pk, BigDecimal.ZERO);
-                SalesForecast sf = new SalesForecast();
-                sf.setMonth(month);
-                sf.setChannel(channel);
-                sf.setVersion(versionLabel);
-                sf.setFormVersionNo(1);
-                sf.setWarehouseLocation(row.getWarehouseLocation());
-                sf.setCategory(row.getCategory());
-                sf.setSpec(row.getSpec());
-                sf.setProductName(row.getProductName());
-                sf.setProductCode(row.getProductCode() != null ? row.getProductCode() : "");
-                sf.setQuantity(qty);
-                sf.setRemark(row.getRemark() != null ? row.getRemark() : "");
-                sf.setIsModified(false);
-                sf.setCreatedAt(now);
-                sf.setUpdatedAt(now);
-                forecastRepository.save(sf);
-                inserted++;
-            }
-        }
+        // 品項 × 通路的彙總與寫入都在資料庫端完成，不把明細載入記憶體；以 product_id 分組，先補齊尚未解析的列
+        productDimension.assignMonth(ProductDimension.Table.SALES, month);
+        productDimension.assignMonth(ProductDimension.Table.GIFT, month);
+        int inserted = bulkWriter.insertFormSnapshot(month, "form_v1", 1, now);
+        versionCatalog.refreshMonth(ForecastVersionCatalog.Source.SALES, month);
+        reportDataVersion.bump(month);
         log.info("Created form version 1 snapshot for month {}, {} rows", month, inserted);
     }
 
@@ -319,12 +305,23 @@ public class FormSummaryService {
         formVersionRepository.save(newVer);
 
         String versionLabel = "form_v" + nextNo;
+        String parentLabel = "form_v" + (nextNo - 1);
         LocalDateTime now = LocalDateTime.now();
-        int inserted = 0;
         List<SaveFormSummaryVersionRequest.FormSummaryRowEditDTO> rows = request.getRows();
         if (rows == null) rows = List.of();
-        for (int chIdx = 0; chIdx < CHANNEL_ORDER.size(); chIdx++) {
-            String channel = CHANNEL_ORDER.get(chIdx);
+
+        // 新版本疊加在上一版上，只寫入與上一版不同的格；上一版有、這版沒有的品項記為刪除。
+        // 因此 form_version_no = nextNo 的列只有變動的格，讀取完整版本見 findFormVersionRows
+        Map<String, Deque<SalesForecast>> previous = new HashMap<>();
+        for (SalesForecast r : versionOverlay.findSalesForecastsByMonthAndVersion(month, parentLabel)) {
+            previous.computeIfAbsent(r.getChannel() + "|" + productKey(r), k -> new ArrayDeque<>()).add(r);
+        }
+        List<SalesForecast> toInsert = new ArrayList<>();
+        Map<String, List<Integer>> removals = new LinkedHashMap<>();
+        for (int chIdx = 0; chIdx < SalesChannel.COUNT; chIdx++) {
+            String channel = SalesChannel.labels().get(chIdx);
+            boolean layered = versionCatalog.createOverlay(ForecastVersionCatalog.Source.SALES, month, channel,
+                    versionLabel, parentLabel, now);
             for (SaveFormSummaryVersionRequest.FormSummaryRowEditDTO row : rows) {
                 BigDecimal qty = BigDecimal.ZERO;
                 if (row.getChannelQuantities() != null && chIdx < row.getChannelQuantities().size()) {
@@ -346,14 +343,56 @@ public class FormSummaryService {
                 sf.setIsModified(true);
                 sf.setCreatedAt(now);
                 sf.setUpdatedAt(now);
-                forecastRepository.save(sf);
-                inserted++;
+                Deque<SalesForecast> candidates = layered ? previous.get(channel + "|" + productKey(sf)) : null;
+                SalesForecast prev = candidates != null ? candidates.poll() : null;
+                if (prev != null) {
+                    if (sameCell(prev, sf)) continue;
+                    sf.setBaseId(prev.getBaseId() != null ? prev.getBaseId() : prev.getId());
+                }
+                toInsert.add(sf);
+            }
+            if (layered) {
+                List<Integer> removed = new ArrayList<>();
+                String prefix = channel + "|";
+                previous.entrySet().removeIf(e -> {
+                    if (!e.getKey().startsWith(prefix)) return false;
+                    for (SalesForecast r : e.getValue()) {
+                        removed.add(r.getBaseId() != null ? r.getBaseId() : r.getId());
+                    }
+                    return true;
+                });
+                if (!removed.isEmpty()) removals.put(channel, removed);
             }
         }
-        log.info("Saved form summary version {} for month {}, {} rows", nextNo, month, inserted);
+        int inserted = bulkWriter.insertSalesForecasts(toInsert);
+        productDimension.assignMonth(ProductDimension.Table.SALES, month);
+        versionOverlay.addRemovals(ForecastVersionCatalog.Source.SALES, month, versionLabel, removals);
+        versionCatalog.refreshMonth(ForecastVersionCatalog.Source.SALES, month);
+        versionCatalog.setOverlayRowCount(ForecastVersionCatalog.Source.SALES, month, versionLabel, rows.size());
+        reportDataVersion.bump(month);
+        log.info("Saved form summary version {} for month {}, {} changed rows", nextNo, month, inserted);
         return nextNo;
     }
 
+    /**
+     * 表單版本完整明細。第 1 版為完整快照（或舊資料中標記為第一版的上傳版本），直接依 form_version_no 讀取；
+     * 第 2 版起為疊加在上一版的 form_vN：form_version_no = N 的列只有變動的格，沿用的格留在上一版（form_version_no 為上一版），
+     * 必須經版本解析取得完整內容。
+     */
+    private List<SalesForecast> findFormVersionRows(String month, int versionNo) {
+        if (versionNo == 1) {
+            return forecastRepository.findFormVersion1ByMonthOrderByChannelCategorySpecProductCode(month);
+        }
+        return versionOverlay.findSalesForecastsByMonthAndVersion(month, "form_v" + versionNo);
+    }
+
+    /** 品項欄位已由 key 比對，只比數量與備註 */
+    private static boolean sameCell(SalesForecast prev, SalesForecast next) {
+        BigDecimal prevQty = prev.getQuantity() != null ? prev.getQuantity() : BigDecimal.ZERO;
+        String prevRemark = prev.getRemark() != null ? prev.getRemark() : "";
+        return prevQty.compareTo(next.getQuantity()) == 0 && prevRemark.equals(next.getRemark());
+    }
+
     private static void validateMonth(String month) {
         if (month == null || month.length() != 6 || !month.matches("\\d{6}")) {
             throw new IllegalArgumentException("Invalid month format, expected YYYYMM");
@@ -362,114 +401,161 @@ public class FormSummaryService {
 
     @Transactional(readOnly = true)
     public FormSummaryResponse getFormSummaryLegacy(String month) {
+        return collect(summarizeLegacy(month));
+    }
+
+    private ReportStream<FormSummaryResponse, FormSummaryRowDTO> summarizeLegacy(String month) {
         log.info("Form summary: month={}", month);
         validateMonth(month);
 
         List<ChannelVersionInfoDTO> channelVersions = new ArrayList<>();
-        Map<String, Map<String, BigDecimal>> channelLatestQty = new LinkedHashMap<>();
-        Map<String, Map<String, BigDecimal>> channelPreviousQty = new LinkedHashMap<>();
-        Map<String, String> channelRemark = new LinkedHashMap<>();
-        Map<String, FormSummaryRowDTO> keyToRow = new TreeMap<>();
+        String[] channelRemark = new String[SalesChannel.COUNT];
+
+        // 全月份一次取：各通路最新兩個版本、其明細（含疊加版本繼承列）、修改原因、禮品最新版明細
+        Map<String, List<String>> recentVersions =
+                versionCatalog.findRecentVersions(ForecastVersionCatalog.Source.SALES, month, 2);
+        Map<String, List<SalesForecast>> rowsByVersion = new LinkedHashMap<>();
+        for (SalesForecast r : versionOverlay.findSalesForecastsOfRecentVersions(month, 2)) {
+            rowsByVersion.computeIfAbsent(r.getChannel() + "|" + r.getVersion(), k -> new ArrayList<>()).add(r);
+        }
+        Map<String, String> reasonByVersion = new LinkedHashMap<>();
+        for (SalesForecastVersionReason reason : versionReasonRepository.findByMonth(month)) {
+            reasonByVersion.put(reason.getChannel() + "|" + reason.getVersion(), reason.getChangeReason());
+        }
 
-        for (String channel : CHANNEL_ORDER) {
-            List<String> versions = forecastRepository.findDistinctVersionsByMonthAndChannel(month, channel);
+        // 依 product_id 分組：序號即 products 的位置，各通路數量存在陣列中
+        ProductSlots productIndex = new ProductSlots(256);
+        List<ProductCells> products = new ArrayList<>();
+        List<List<SalesForecast>> previousRows = new ArrayList<>(SalesChannel.COUNT);
+        for (int chIdx = 0; chIdx < SalesChannel.COUNT; chIdx++) {
+            String channel = SalesChannel.labels().get(chIdx);
+            List<String> versions = recentVersions.getOrDefault(channel, List.of());
             String latestVer = versions.isEmpty() ? null : versions.get(0);
             String previousVer = versions.size() > 1 ? versions.get(1) : latestVer;
 
             channelVersions.add(new ChannelVersionInfoDTO(channel, latestVer != null ? latestVer : ""));
 
-            Map<String, BigDecimal> latestQty = new LinkedHashMap<>();
-            Map<String, BigDecimal> previousQty = new LinkedHashMap<>();
             String remark = null;
-
             if (latestVer != null) {
-                List<SalesForecast> latestRows = forecastRepository
-                        .findByMonthAndChannelAndVersionOrderByCategoryAscSpecAscProductCodeAsc(month, channel, latestVer);
-                for (SalesForecast r : latestRows) {
-                    String pk = productKey(r);
-                    latestQty.put(pk, r.getQuantity());
-                    keyToRow.putIfAbsent(pk, rowFrom(r));
-                }
-                remark = versionReasonRepository.findByMonthAndChannelAndVersion(month, channel, latestVer)
-                        .map(SalesForecastVersionReason::getChangeReason)
-                        .orElse(null);
-            }
-            if (previousVer != null) {
-                List<SalesForecast> prevRows = forecastRepository
-                        .findByMonthAndChannelAndVersionOrderByCategoryAscSpecAscProductCodeAsc(month, channel, previousVer);
-                for (SalesForecast r : prevRows) {
-                    previousQty.put(productKey(r), r.getQuantity());
+                for (SalesForecast r : rowsByVersion.getOrDefault(channel + "|" + latestVer, List.of())) {
+                    int slot = productIndex.indexOf(r);
+                    if (slot == products.size()) products.add(new ProductCells(rowFrom(r)));
+                    products.get(slot).current[chIdx] = Hundredths.of(r.getQuantity());
                 }
+                remark = reasonByVersion.get(channel + "|" + latestVer);
             }
-
-            channelLatestQty.put(channel, latestQty);
-            channelPreviousQty.put(channel, previousQty);
-            channelRemark.put(channel, remark != null ? remark : "");
+            previousRows.add(previousVer != null
+                    ? rowsByVersion.getOrDefault(channel + "|" + previousVer, List.of()) : List.of());
+            channelRemark[chIdx] = remark != null ? remark : "";
         }
 
         // 禮品銷售預估：各通路最新版數量（與銷售同通路加總呈現）
-        Map<String, Map<String, BigDecimal>> giftLatestQty = new LinkedHashMap<>();
-        for (String channel : CHANNEL_ORDER) {
-            Map<String, BigDecimal> qtyMap = new LinkedHashMap<>();
-            List<GiftSalesForecast> giftRows = giftForecastRepository.findLatestByMonthAndChannel(month, channel);
-            for (GiftSalesForecast g : giftRows) {
-                String pk = productKeyGift(g);
-                qtyMap.put(pk, g.getQuantity());
-                keyToRow.putIfAbsent(pk, rowFromGift(g));
-            }
-            giftLatestQty.put(channel, qtyMap);
-        }
-
-        for (Map.Entry<String, FormSummaryRowDTO> e : keyToRow.entrySet()) {
-            String pk = e.getKey();
-            FormSummaryRowDTO row = e.getValue();
-            List<ChannelCellDTO> cells = new ArrayList<>();
-            for (String ch : CHANNEL_ORDER) {
-                BigDecimal prev = channelPreviousQty.get(ch).getOrDefault(pk, BigDecimal.ZERO);
-                BigDecimal salesCurr = channelLatestQty.get(ch).getOrDefault(pk, BigDecimal.ZERO);
-                BigDecimal giftCurr = giftLatestQty.get(ch).getOrDefault(pk, BigDecimal.ZERO);
-                BigDecimal combinedCurr = salesCurr.add(giftCurr);
-                ChannelCellDTO cell = new ChannelCellDTO();
-                cell.setPreviousQty(prev);
-                cell.setCurrentQty(combinedCurr);
-                cell.setCurrentSalesQty(salesCurr);
-                cell.setDiff(prev.subtract(combinedCurr).setScale(2, RoundingMode.HALF_UP));
-                cell.setRemark(channelRemark.getOrDefault(ch, ""));
-                cells.add(cell);
+        for (GiftSalesForecast g : versionOverlay.findLatestGiftSalesForecasts(month)) {
+            Integer chNo = g.getChannelNo();
+            if (chNo == null) {
+                continue;
             }
-            row.setChannelCells(cells);
+            int slot = productIndex.indexOf(g);
+            if (slot == products.size()) products.add(new ProductCells(rowFromGift(g)));
+            products.get(slot).gift[chNo] = Hundredths.of(g.getQuantity());
         }
 
-        List<FormSummaryRowDTO> rows = new ArrayList<>(keyToRow.values());
-        rows.sort((a, b) -> {
-            int c = nullSafeCompare(a.getCategory(), b.getCategory());
-            if (c != 0) return c;
-            c = nullSafeCompare(a.getSpec(), b.getSpec());
-            if (c != 0) return c;
-            return nullSafeCompare(a.getProductCode(), b.getProductCode());
-        });
+        // 上一版只對照已出現的品項
+        for (int chIdx = 0; chIdx < SalesChannel.COUNT; chIdx++) {
+            for (SalesForecast r : previousRows.get(chIdx)) {
+                int slot = productIndex.find(r);
+                if (slot >= 0) products.get(slot).previous[chIdx] = Hundredths.of(r.getQuantity());
+            }
+        }
 
         FormSummaryResponse resp = new FormSummaryResponse();
         resp.setChannelVersions(channelVersions);
-        resp.setChannelOrder(new ArrayList<>(CHANNEL_ORDER));
-        resp.setRows(rows);
+        resp.setChannelOrder(new ArrayList<>(SalesChannel.labels()));
+        return new ReportStream<>(resp, rowStream(products, p -> legacyCells(p, channelRemark)));
+    }
+
+    /** 表單版本摘要的通路格：匯整版只含表單數量，舊版第一版另加禮品；第 1 版的原小計即此版數量 */
+    private static List<ChannelCellDTO> versionCells(ProductCells p, boolean aggregated, boolean firstVersion,
+                                                     String remark) {
+        List<ChannelCellDTO> cells = new ArrayList<>(SalesChannel.COUNT);
+        for (int i = 0; i < SalesChannel.COUNT; i++) {
+            long prev = p.previous[i];
+            long curr = p.current[i];
+            long salesCurr = curr;
+            if (!aggregated) {
+                curr += p.gift[i];
+            }
+            // 第 1 版沒有上一版：原小計基準 = 第一版建立時快照（未修改前），與當前此版數量相同
+            if (firstVersion) {
+                prev = curr;
+            }
+            cells.add(cell(prev, curr, salesCurr, remark));
+        }
+        return cells;
+    }
+
+    /** 各通路最新版摘要的通路格：銷售加禮品，備註為各通路最新版的修改原因 */
+    private static List<ChannelCellDTO> legacyCells(ProductCells p, String[] channelRemark) {
+        List<ChannelCellDTO> cells = new ArrayList<>(SalesChannel.COUNT);
+        for (int i = 0; i < SalesChannel.COUNT; i++) {
+            cells.add(cell(p.previous[i], p.current[i] + p.gift[i], p.current[i], channelRemark[i]));
+        }
+        return cells;
+    }
+
+    private static ChannelCellDTO cell(long prev, long curr, long salesCurr, String remark) {
+        ChannelCellDTO cell = new ChannelCellDTO();
+        cell.setPreviousQty(Hundredths.toDecimal(prev));
+        cell.setCurrentQty(Hundredths.toDecimal(curr));
+        cell.setCurrentSalesQty(Hundredths.toDecimal(salesCurr));
+        cell.setDiff(Hundredths.toDecimal(prev - curr));
+        cell.setRemark(remark);
+        return cell;
+    }
+
+    /** 品項依 ROW_ORDER 排序，走訪時才組成各列的通路格；已交出的品項即釋放，只能走訪一次 */
+    private static RowStream<FormSummaryRowDTO> rowStream(List<ProductCells> products,
+                                                          Function<ProductCells, List<ChannelCellDTO>> cells) {
+        products.sort((a, b) -> ROW_ORDER.compare(a.row, b.row));
+        return action -> {
+            for (int i = 0; i < products.size(); i++) {
+                ProductCells p = products.set(i, null);
+                p.row.setChannelCells(cells.apply(p));
+                action.accept(p.row);
+            }
+        };
+    }
+
+    private static FormSummaryResponse collect(ReportStream<FormSummaryResponse, FormSummaryRowDTO> report) {
+        FormSummaryResponse resp = report.header();
+        if (resp.getRows() == null) {
+            resp.setRows(report.rows().toList());
+        }
         return resp;
     }
 
+    private static FormSummaryResponse withoutRows(FormSummaryResponse source) {
+        FormSummaryResponse header = new FormSummaryResponse();
+        header.setChannelVersions(source.getChannelVersions());
+        header.setChannelOrder(source.getChannelOrder());
+        header.setVersionNo(source.getVersionNo());
+        header.setVersionRemark(source.getVersionRemark());
+        return header;
+    }
+
+    /** 儲存表單版本時比對上一版用；送入的編輯列沒有 product_id */
     private static String productKey(SalesForecast r) {
-        return (r.getWarehouseLocation() != null ? r.getWarehouseLocation() : "") + "|"
-                + (r.getCategory() != null ? r.getCategory() : "") + "|"
-                + (r.getSpec() != null ? r.getSpec() : "") + "|"
-                + (r.getProductName() != null ? r.getProductName() : "") + "|"
-                + (r.getProductCode() != null ? r.getProductCode() : "");
+        return productKey(r.getWarehouseLocation(), r.getCategory(), r.getSpec(), r.getProductName(),
+                r.getProductCode());
     }
 
-    private static String productKeyGift(GiftSalesForecast g) {
-        return (g.getWarehouseLocation() != null ? g.getWarehouseLocation() : "") + "|"
-                + (g.getCategory() != null ? g.getCategory() : "") + "|"
-                + (g.getSpec() != null ? g.getSpec() : "") + "|"
-                + (g.getProductName() != null ? g.getProductName() : "") + "|"
-                + (g.getProductCode() != null ? g.getProductCode() : "");
+    private static String productKey(String warehouseLocation, String category, String spec, String productName,
+                                     String productCode) {
+        return (warehouseLocation != null ? warehouseLocation : "") + "|"
+                + (category != null ? category : "") + "|"
+                + (spec != null ? spec : "") + "|"
+                + (productName != null ? productName : "") + "|"
+                + (productCode != null ? productCode : "");
     }
 
     private static FormSummaryRowDTO rowFrom(SalesForecast r) {
@@ -494,6 +580,56 @@ public class FormSummaryService {
         return dto;
     }
 
+    /**
+     * 品項分組：以 product_id 為鍵；尚未解析 product_id 的列（品項維度寫入前的舊資料）改以五欄品項鍵
+     * 配發負數代理鍵，同一品項仍合併，不同品項不會因 product_id 同為 NULL 而併在一起。
+     */
+    private static final class ProductSlots {
+        private final IntIndex index;
+        private final Map<String, Integer> unresolved = new HashMap<>();
+
+        ProductSlots(int expectedSize) {
+            this.index = new IntIndex(expectedSize);
+        }
+
+        int indexOf(SalesForecast r) {
+            return index.indexOf(key(r.getProductId(), productKey(r), true));
+        }
+
+        int indexOf(GiftSalesForecast g) {
+            return index.indexOf(key(g.getProductId(), productKey(g.getWarehouseLocation(), g.getCategory(),
+                    g.getSpec(), g.getProductName(), g.getProductCode()), true));
+        }
+
+        /** 未出現過時為 -1 */
+        int find(SalesForecast r) {
+            Integer key = key(r.getProductId(), productKey(r), false);
+            return key != null ? index.find(key) : -1;
+        }
+
+        private Integer key(Integer productId, String productKey, boolean assign) {
+            if (productId != null) return productId;
+            Integer key = unresolved.get(productKey);
+            if (key == null && assign) {
+                key = -(unresolved.size() + 1);
+                unresolved.put(productKey, key);
+            }
+            return key;
+        }
+    }
+
+    /** 單一品項各通路（以 channel_no 為位置）的數量，單位為百分之一（{@link Hundredths}）；沒有這個品項的通路為 0 */
+    private static final class ProductCells {
+        final FormSummaryRowDTO row;
+        final long[] current = new long[SalesChannel.COUNT];
+        final long[] previous = new long[SalesChannel.COUNT];
+        final long[] gift = new long[SalesChannel.COUNT];
+
+        ProductCells(FormSummaryRowDTO row) {
+            this.row = row;
+        }
+    }
+
     private static int nullSafeCompare(String a, String b) {
         if (a == null && b == null) return 0;
         if (a == null) return 1;
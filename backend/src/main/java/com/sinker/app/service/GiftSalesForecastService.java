@@ -10,6 +10,9 @@ import com.sinker.app.entity.GiftSalesForecast;
 import com.sinker.app.entity.SalesForecastConfig;
 import com.sinker.app.entity.GiftSalesForecastVersionReason;
 import com.sinker.app.exception.ResourceNotFoundException;
+import com.sinker.app.repository.ForecastVersionCatalog;
+import com.sinker.app.repository.ForecastVersionOverlay;
+import com.sinker.app.repository.ProductDimension;
 import com.sinker.app.repository.SalesForecastConfigRepository;
 import com.sinker.app.repository.GiftSalesForecastRepository;
 import com.sinker.app.repository.GiftSalesForecastVersionReasonRepository;
@@ -27,6 +30,7 @@ import java.util.ArrayList;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
 import java.util.stream.Collectors;
 
@@ -42,17 +46,29 @@ public class GiftSalesForecastService {
     private final GiftSalesForecastVersionReasonRepository versionReasonRepository;
     private final ErpProductService erpProductService;
     private final JdbcTemplate jdbcTemplate;
+    private final ForecastVersionCatalog versionCatalog;
+    private final ForecastVersionOverlay versionOverlay;
+    private final ProductDimension productDimension;
+    private final ReportDataVersion reportDataVersion;
 
     public GiftSalesForecastService(GiftSalesForecastRepository forecastRepository,
                                     SalesForecastConfigRepository configRepository,
                                     GiftSalesForecastVersionReasonRepository versionReasonRepository,
                                     ErpProductService erpProductService,
-                                    JdbcTemplate jdbcTemplate) {
+                                    JdbcTemplate jdbcTemplate,
+                                    ForecastVersionCatalog versionCatalog,
+                                    ForecastVersionOverlay versionOverlay,
+                                    ProductDimension productDimension,
+                                    ReportDataVersion reportDataVersion) {
         this.forecastRepository = forecastRepository;
         this.configRepository = configRepository;
         this.versionReasonRepository = versionReasonRepository;
         this.erpProductService = erpProductService;
         this.jdbcTemplate = jdbcTemplate;
+        this.versionCatalog = versionCatalog;
+        this.versionOverlay = versionOverlay;
+        this.productDimension = productDimension;
+        this.reportDataVersion = reportDataVersion;
     }
 
     @Transactional
@@ -78,11 +94,9 @@ public class GiftSalesForecastService {
         }
 
         LocalDateTime now = LocalDateTime.now();
-        List<String> versions = forecastRepository.findDistinctVersionsByMonthAndChannel(
-                request.getMonth(), request.getChannel());
-        String version = (versions != null && !versions.isEmpty())
-                ? versions.get(0)
-                : now.format(VERSION_FORMATTER) + "(" + request.getChannel() + ")";
+        String version = versionCatalog.findLatestVersion(ForecastVersionCatalog.Source.GIFT,
+                        request.getMonth(), request.getChannel())
+                .orElseGet(() -> now.format(VERSION_FORMATTER) + "(" + request.getChannel() + ")");
 
         GiftSalesForecast forecast = new GiftSalesForecast();
         forecast.setMonth(request.getMonth());
@@ -99,12 +113,25 @@ public class GiftSalesForecastService {
         forecast.setUpdatedAt(now);
 
         GiftSalesForecast saved = forecastRepository.save(forecast);
+        productDimension.assignMonth(ProductDimension.Table.GIFT, forecast.getMonth());
+        versionOverlay.hideFromChildren(ForecastVersionCatalog.Source.GIFT, forecast.getMonth(), forecast.getChannel(),
+                forecast.getVersion(), saved.getId());
+        versionCatalog.rowAdded(ForecastVersionCatalog.Source.GIFT, forecast.getMonth(), forecast.getChannel(),
+                forecast.getVersion(), now);
+        reportDataVersion.bump(forecast.getMonth());
         return ForecastResponse.fromEntity(saved);
     }
 
     @Transactional
     public ForecastResponse updateForecast(Integer id, UpdateForecastRequest request,
                                            Long userId, String roleCode, Set<String> authorities) {
+        return updateForecast(id, request, null, userId, roleCode, authorities);
+    }
+
+    /** version 語意同 {@link SalesForecastService#updateForecast(Integer, UpdateForecastRequest, String, Long, String, Set)} */
+    @Transactional
+    public ForecastResponse updateForecast(Integer id, UpdateForecastRequest request, String version,
+                                           Long userId, String roleCode, Set<String> authorities) {
         GiftSalesForecast forecast = forecastRepository.findById(id)
                 .orElseThrow(() -> new ResourceNotFoundException("Forecast not found with id: " + id));
 
@@ -113,21 +140,83 @@ public class GiftSalesForecastService {
         }
         checkChannelOwnership(userId, forecast.getChannel(), roleCode);
 
-        forecast.setQuantity(request.getQuantity());
-        forecast.setIsModified(true);
-        forecast.setUpdatedAt(LocalDateTime.now());
+        LocalDateTime now = LocalDateTime.now();
+        String targetVersion = resolveTargetVersion(forecast, version);
+        versionOverlay.pinToChildren(ForecastVersionCatalog.Source.GIFT, forecast.getId(), targetVersion);
 
-        GiftSalesForecast saved = forecastRepository.save(forecast);
+        GiftSalesForecast target = forecast;
+        if (!Objects.equals(targetVersion, forecast.getVersion())) {
+            target = overrideIn(forecast, targetVersion, now);
+        }
+        target.setQuantity(request.getQuantity());
+        target.setIsModified(true);
+        target.setUpdatedAt(now);
+
+        GiftSalesForecast saved = forecastRepository.save(target);
+        if (target != forecast) {
+            // 覆寫列為新列
+            productDimension.assignMonth(ProductDimension.Table.GIFT, target.getMonth());
+        }
+        versionCatalog.rowUpdated(ForecastVersionCatalog.Source.GIFT, target.getMonth(), target.getChannel(),
+                targetVersion, now);
+        reportDataVersion.bump(target.getMonth());
         return ForecastResponse.fromEntity(saved);
     }
 
     @Transactional
     public void deleteForecast(Integer id, Long userId, String roleCode) {
+        deleteForecast(id, null, userId, roleCode);
+    }
+
+    @Transactional
+    public void deleteForecast(Integer id, String version, Long userId, String roleCode) {
         GiftSalesForecast forecast = forecastRepository.findById(id)
                 .orElseThrow(() -> new ResourceNotFoundException("Forecast not found with id: " + id));
         validateMonthOpen(forecast.getMonth());
         checkChannelOwnership(userId, forecast.getChannel(), roleCode);
-        forecastRepository.delete(forecast);
+        String targetVersion = resolveTargetVersion(forecast, version);
+        versionOverlay.pinToChildren(ForecastVersionCatalog.Source.GIFT, forecast.getId(), targetVersion);
+        if (Objects.equals(targetVersion, forecast.getVersion())) {
+            forecastRepository.delete(forecast);
+        }
+        if (!Objects.equals(targetVersion, forecast.getVersion()) || forecast.getBaseId() != null) {
+            versionOverlay.addRemoval(ForecastVersionCatalog.Source.GIFT, forecast.getMonth(), forecast.getChannel(),
+                    targetVersion, originOf(forecast));
+        }
+        versionCatalog.rowRemoved(ForecastVersionCatalog.Source.GIFT, forecast.getMonth(), forecast.getChannel(),
+                targetVersion, LocalDateTime.now());
+        reportDataVersion.bump(forecast.getMonth());
+    }
+
+    private String resolveTargetVersion(GiftSalesForecast forecast, String version) {
+        if (version == null || version.isEmpty() || version.equals(forecast.getVersion())) {
+            return forecast.getVersion();
+        }
+        if (!versionOverlay.isVisible(ForecastVersionCatalog.Source.GIFT, forecast.getMonth(), forecast.getChannel(),
+                version, forecast.getId(), originOf(forecast))) {
+            throw new ResourceNotFoundException("Forecast not found with id: " + forecast.getId() + " in version " + version);
+        }
+        return version;
+    }
+
+    private static int originOf(GiftSalesForecast forecast) {
+        return forecast.getBaseId() != null ? forecast.getBaseId() : forecast.getId();
+    }
+
+    private static GiftSalesForecast overrideIn(GiftSalesForecast src, String version, LocalDateTime now) {
+        GiftSalesForecast copy = new GiftSalesForecast();
+        copy.setMonth(src.getMonth());
+        copy.setChannel(src.getChannel());
+        copy.setCategory(src.getCategory());
+        copy.setSpec(src.getSpec());
+        copy.setProductCode(src.getProductCode());
+        copy.setProductName(src.getProductName());
+        copy.setWarehouseLocation(src.getWarehouseLocation());
+        copy.setQuantity(src.getQuantity());
+        copy.setVersion(version);
+        copy.setBaseId(originOf(src));
+        copy.setCreatedAt(now);
+        return copy;
     }
 
     private void validateMonthFormat(String month) {
@@ -162,10 +251,9 @@ public class GiftSalesForecastService {
 
         List<GiftSalesForecast> forecasts;
         if (version != null && !version.isEmpty()) {
-            forecasts = forecastRepository.findByMonthAndChannelAndVersionOrderByCategoryAscSpecAscProductCodeAsc(
-                    month, channel, version);
+            forecasts = versionOverlay.findGiftSalesForecasts(month, channel, version);
         } else {
-            forecasts = forecastRepository.findLatestByMonthAndChannel(month, channel);
+            forecasts = versionOverlay.findGiftSalesForecasts(month, channel, null);
         }
         return forecasts.stream().map(ForecastResponse::fromEntity).collect(Collectors.toList());
     }
@@ -175,14 +263,7 @@ public class GiftSalesForecastService {
         validateMonthFormat(month);
         checkQueryPermission(userId, channel, authorities);
 
-        List<String> versions = forecastRepository.findDistinctVersionsByMonthAndChannel(month, channel);
-        List<VersionInfo> versionInfos = new ArrayList<>();
-        for (String v : versions) {
-            Integer count = forecastRepository.countByMonthAndChannelAndVersion(month, channel, v);
-            LocalDateTime timestamp = forecastRepository.findMaxUpdatedAtByMonthAndChannelAndVersion(month, channel, v);
-            versionInfos.add(new VersionInfo(v, count, timestamp));
-        }
-        return versionInfos;
+        return versionCatalog.findVersions(ForecastVersionCatalog.Source.GIFT, month, channel);
     }
 
     private void checkQueryPermission(Long userId, String channel, Set<String> authorities) {
@@ -204,30 +285,15 @@ public class GiftSalesForecastService {
         validateMonthFormat(month);
         checkChannelOwnership(userId, channel, roleCode);
 
-        List<GiftSalesForecast> latest = forecastRepository.findLatestByMonthAndChannel(month, channel);
-        if (latest.isEmpty()) {
-            throw new IllegalArgumentException("No data to copy for month=" + month + ", channel=" + channel);
-        }
+        String latest = versionCatalog.findLatestVersion(ForecastVersionCatalog.Source.GIFT, month, channel)
+                .orElseThrow(() -> new IllegalArgumentException(
+                        "No data to copy for month=" + month + ", channel=" + channel));
 
         LocalDateTime now = LocalDateTime.now();
         String newVersion = now.format(VERSION_FORMATTER) + "(" + channel + ")";
 
-        for (GiftSalesForecast src : latest) {
-            GiftSalesForecast copy = new GiftSalesForecast();
-            copy.setMonth(src.getMonth());
-            copy.setChannel(src.getChannel());
-            copy.setCategory(src.getCategory());
-            copy.setSpec(src.getSpec());
-            copy.setProductCode(src.getProductCode());
-            copy.setProductName(src.getProductName());
-            copy.setWarehouseLocation(src.getWarehouseLocation());
-            copy.setQuantity(src.getQuantity());
-            copy.setVersion(newVersion);
-            copy.setIsModified(false);
-            copy.setCreatedAt(now);
-            copy.setUpdatedAt(now);
-            forecastRepository.save(copy);
-        }
+        versionCatalog.createOverlay(ForecastVersionCatalog.Source.GIFT, month, channel, newVersion, latest, now);
+        reportDataVersion.bump(month);
         return new CopyVersionResponse(newVersion);
     }
 
@@ -246,15 +312,19 @@ public class GiftSalesForecastService {
         entity.setChangeReason(changeReason);
         entity.setUpdatedAt(LocalDateTime.now());
         versionReasonRepository.save(entity);
+        reportDataVersion.bump(month);
     }
 
     @Transactional
     public void deleteVersion(String month, String channel, String version, Long userId, String roleCode) {
         validateMonthFormat(month);
         checkChannelOwnership(userId, channel, roleCode);
+        versionOverlay.detachChildren(ForecastVersionCatalog.Source.GIFT, month, channel, version);
         forecastRepository.deleteByMonthAndChannelAndVersion(month, channel, version);
+        versionCatalog.removeVersion(ForecastVersionCatalog.Source.GIFT, month, channel, version);
         versionReasonRepository.findByMonthAndChannelAndVersion(month, channel, version)
                 .ifPresent(versionReasonRepository::delete);
+        reportDataVersion.bump(month);
     }
 
     @Transactional(readOnly = true)
@@ -268,10 +338,8 @@ public class GiftSalesForecastService {
         if (idx < 0 || idx + 1 >= versions.size()) return List.of();
         String previousVersion = versions.get(idx + 1);
 
-        List<GiftSalesForecast> currentRows = forecastRepository
-                .findByMonthAndChannelAndVersionOrderByCategoryAscSpecAscProductCodeAsc(month, channel, version);
-        List<GiftSalesForecast> previousRows = forecastRepository
-                .findByMonthAndChannelAndVersionOrderByCategoryAscSpecAscProductCodeAsc(month, channel, previousVersion);
+        List<GiftSalesForecast> currentRows = versionOverlay.findGiftSalesForecasts(month, channel, version);
+        List<GiftSalesForecast> previousRows = versionOverlay.findGiftSalesForecasts(month, channel, previousVersion);
 
         Map<String, BigDecimal> prevQtyByProduct = previousRows.stream()
                 .collect(Collectors.toMap(GiftSalesForecast::getProductCode, GiftSalesForecast::getQuantity, (a, b) -> a, LinkedHashMap::new));
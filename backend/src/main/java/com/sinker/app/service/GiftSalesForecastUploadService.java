@@ -1,11 +1,15 @@
 package com.sinker.app.service;
 
 import com.sinker.app.entity.GiftSalesForecast;
+import com.sinker.app.entity.SalesChannel;
 import com.sinker.app.entity.SalesForecastConfig;
 import com.sinker.app.dto.forecast.UploadResponse;
 import com.sinker.app.dto.reference.ProductDTO;
 import com.sinker.app.exception.ExcelParseException;
 import com.sinker.app.exception.ResourceNotFoundException;
+import com.sinker.app.repository.ForecastBulkWriter;
+import com.sinker.app.repository.ForecastVersionCatalog;
+import com.sinker.app.repository.ProductDimension;
 import com.sinker.app.repository.SalesForecastConfigRepository;
 import com.sinker.app.repository.GiftSalesForecastRepository;
 import com.sinker.app.service.ExcelParserService.SalesForecastRow;
@@ -21,10 +25,10 @@ import org.springframework.util.StringUtils;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
 
 @Service
@@ -32,11 +36,6 @@ public class GiftSalesForecastUploadService {
 
     private static final Logger log = LoggerFactory.getLogger(GiftSalesForecastUploadService.class);
 
-    private static final Set<String> VALID_CHANNELS = Set.of(
-            "PX + 大全聯", "家樂福", "愛買", "7-11", "全家", "Ok+萊爾富",
-            "好市多", "楓康", "美聯社", "康是美", "電商", "市面經銷"
-    );
-
     private static final DateTimeFormatter VERSION_FORMATTER =
             DateTimeFormatter.ofPattern("yyyy/MM/dd HH:mm:ss");
 
@@ -45,17 +44,32 @@ public class GiftSalesForecastUploadService {
     private final ExcelParserService excelParserService;
     private final ErpProductService erpProductService;
     private final JdbcTemplate jdbcTemplate;
+    private final ForecastBulkWriter bulkWriter;
+    private final UploadFingerprintService fingerprintService;
+    private final ForecastVersionCatalog versionCatalog;
+    private final ProductDimension productDimension;
+    private final ReportDataVersion reportDataVersion;
 
     public GiftSalesForecastUploadService(GiftSalesForecastRepository forecastRepository,
                                           SalesForecastConfigRepository configRepository,
                                           ExcelParserService excelParserService,
                                           ErpProductService erpProductService,
-                                          JdbcTemplate jdbcTemplate) {
+                                          JdbcTemplate jdbcTemplate,
+                                          ForecastBulkWriter bulkWriter,
+                                          UploadFingerprintService fingerprintService,
+                                          ForecastVersionCatalog versionCatalog,
+                                          ProductDimension productDimension,
+                                          ReportDataVersion reportDataVersion) {
         this.forecastRepository = forecastRepository;
         this.configRepository = configRepository;
         this.excelParserService = excelParserService;
         this.erpProductService = erpProductService;
         this.jdbcTemplate = jdbcTemplate;
+        this.bulkWriter = bulkWriter;
+        this.fingerprintService = fingerprintService;
+        this.versionCatalog = versionCatalog;
+        this.productDimension = productDimension;
+        this.reportDataVersion = reportDataVersion;
     }
 
     @Transactional
@@ -64,7 +78,7 @@ public class GiftSalesForecastUploadService {
         long startTime = System.currentTimeMillis();
         log.info("Starting gift forecast upload: user={}, month={}, channel={}", userId, month, channel);
 
-        if (!VALID_CHANNELS.contains(channel)) {
+        if (!SalesChannel.isValid(channel)) {
             throw new IllegalArgumentException("Invalid channel: " + channel);
         }
         validateMonthFormat(month);
@@ -83,6 +97,16 @@ public class GiftSalesForecastUploadService {
             throw new IllegalArgumentException("Only .csv or .xlsx files are accepted");
         }
         boolean isCsv = filename.toLowerCase().endsWith(".csv");
+
+        String contentHash = fingerprintService.hash(file);
+        Optional<UploadResponse> previous = fingerprintService.findPrevious(
+                UploadFingerprintService.Target.GIFT_SALES_FORECAST, contentHash, UploadResponse.class, month, channel);
+        if (previous.isPresent()) {
+            log.info("Identical gift upload skipped: user={}, month={}, channel={}, version={}",
+                    userId, month, channel, previous.get().getVersion());
+            return previous.get();
+        }
+
         List<SalesForecastRow> rows = isCsv
                 ? excelParserService.parseCsv(file)
                 : excelParserService.parse(file);
@@ -92,14 +116,7 @@ public class GiftSalesForecastUploadService {
         }
 
         Set<String> invalidProductCodes = new LinkedHashSet<>();
-        for (SalesForecastRow row : rows) {
-            String rawCode = row.getProductCode();
-            String trimmed = rawCode != null ? rawCode.trim() : null;
-            if (trimmed == null || !StringUtils.hasText(trimmed) || !erpProductService.validateProduct(trimmed)) {
-                if (StringUtils.hasText(trimmed)) invalidProductCodes.add(trimmed);
-                else invalidProductCodes.add(rawCode != null ? rawCode : "（空白品號）");
-            }
-        }
+        Map<String, ProductDTO> products = resolveProducts(rows, invalidProductCodes);
         if (!invalidProductCodes.isEmpty()) {
             String codeList = String.join("、", invalidProductCodes);
             throw new ExcelParseException(List.of("以下品號不存在於系統中，無法上傳：" + codeList));
@@ -108,19 +125,13 @@ public class GiftSalesForecastUploadService {
         LocalDateTime now = LocalDateTime.now();
         String version = now.format(VERSION_FORMATTER) + "(" + channel + ")";
 
-        // Cache product master to avoid querying same code repeatedly
-        Map<String, ProductDTO> productCache = new HashMap<>();
-
         forecastRepository.deleteByMonthAndChannel(month, channel);
+        versionCatalog.dropOverlays(ForecastVersionCatalog.Source.GIFT, month, channel);
 
         List<GiftSalesForecast> entities = new ArrayList<>();
         for (SalesForecastRow row : rows) {
             String productCode = row.getProductCode() != null ? row.getProductCode().trim() : null;
-            ProductDTO product = null;
-            if (productCode != null) {
-                product = productCache.computeIfAbsent(productCode, (k) ->
-                        erpProductService.findProduct(k).orElse(null));
-            }
+            ProductDTO product = productCode != null ? products.get(productCode) : null;
 
             GiftSalesForecast g = new GiftSalesForecast();
             g.setMonth(month);
@@ -152,13 +163,42 @@ public class GiftSalesForecastUploadService {
             String codeList = String.join("、", invalidProductCodes);
             throw new ExcelParseException(List.of("以下品號不存在於系統中，無法上傳：" + codeList));
         }
-        forecastRepository.saveAll(entities);
+        bulkWriter.insertGiftSalesForecasts(entities);
+        productDimension.assignMonth(ProductDimension.Table.GIFT, month);
+        versionCatalog.refresh(ForecastVersionCatalog.Source.GIFT, month, channel);
+        reportDataVersion.bump(month);
 
         long duration = System.currentTimeMillis() - startTime;
         log.info("Gift upload complete: user={}, month={}, channel={}, rows={}, version={}, duration={}ms",
                 userId, month, channel, rows.size(), version, duration);
 
-        return new UploadResponse(rows.size(), version, now, month, channel);
+        UploadResponse response = new UploadResponse(rows.size(), version, now, month, channel);
+        fingerprintService.record(UploadFingerprintService.Target.GIFT_SALES_FORECAST, contentHash, response,
+                month, channel);
+        return response;
+    }
+
+    /**
+     * 一次以批次查詢取得整份檔案的品號主檔；不存在或空白的品號加入 invalidProductCodes。
+     */
+    private Map<String, ProductDTO> resolveProducts(List<SalesForecastRow> rows, Set<String> invalidProductCodes) {
+        Set<String> codes = new LinkedHashSet<>();
+        for (SalesForecastRow row : rows) {
+            String rawCode = row.getProductCode();
+            if (StringUtils.hasText(rawCode)) codes.add(rawCode.trim());
+        }
+        Map<String, ProductDTO> products = erpProductService.findProducts(codes);
+        for (SalesForecastRow row : rows) {
+            String rawCode = row.getProductCode();
+            String trimmed = rawCode != null ? rawCode.trim() : null;
+            if (!StringUtils.hasText(trimmed)) {
+                invalidProductCodes.add(rawCode != null ? rawCode : "（空白品號）");
+            } else if (!products.containsKey(trimmed)) {
+                log.debug("Product code not found in system: '{}'", trimmed);
+                invalidProductCodes.add(trimmed);
+            }
+        }
+        return products;
     }
 
     private void validateMonthFormat(String month) {
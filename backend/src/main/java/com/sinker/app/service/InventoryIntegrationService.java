@@ -1,23 +1,31 @@
 package com.sinker.app.service;
 
+import com.sinker.app.dto.RowStream;
 import com.sinker.app.dto.forecast.InventoryIntegrationDTO;
 import com.sinker.app.entity.InventorySalesForecast;
 import com.sinker.app.entity.SalesForecast;
 import com.sinker.app.exception.ResourceNotFoundException;
+import com.sinker.app.repository.ForecastVersionOverlay;
+import com.sinker.app.repository.InventoryIntegrationFingerprints;
 import com.sinker.app.repository.InventorySalesForecastRepository;
+import com.sinker.app.repository.ProductDimension;
 import com.sinker.app.repository.SalesForecastRepository;
+import com.sinker.app.util.Hundredths;
+import com.sinker.app.util.IntIndex;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
-import java.util.stream.Collectors;
 
 @Service
 public class InventoryIntegrationService {
@@ -27,15 +35,30 @@ public class InventoryIntegrationService {
 
     private final SalesForecastRepository salesForecastRepository;
     private final InventorySalesForecastRepository inventoryForecastRepository;
-    private final ErpInventoryService erpInventoryService;
+    private final ErpInventoryFetcher erpInventoryFetcher;
+    private final ForecastVersionOverlay versionOverlay;
+    private final ProductDimension productDimension;
+    private final ReportDataVersion reportDataVersion;
+    private final InventoryIntegrationFingerprints integrationFingerprints;
+    private final ErpInventoryCache erpInventoryCache;
 
     public InventoryIntegrationService(
             SalesForecastRepository salesForecastRepository,
             InventorySalesForecastRepository inventoryForecastRepository,
-            ErpInventoryService erpInventoryService) {
+            ErpInventoryFetcher erpInventoryFetcher,
+            ForecastVersionOverlay versionOverlay,
+            ProductDimension productDimension,
+            ReportDataVersion reportDataVersion,
+            InventoryIntegrationFingerprints integrationFingerprints,
+            ErpInventoryCache erpInventoryCache) {
         this.salesForecastRepository = salesForecastRepository;
         this.inventoryForecastRepository = inventoryForecastRepository;
-        this.erpInventoryService = erpInventoryService;
+        this.erpInventoryFetcher = erpInventoryFetcher;
+        this.versionOverlay = versionOverlay;
+        this.productDimension = productDimension;
+        this.reportDataVersion = reportDataVersion;
+        this.integrationFingerprints = integrationFingerprints;
+        this.erpInventoryCache = erpInventoryCache;
     }
 
     /**
@@ -59,6 +82,26 @@ public class InventoryIntegrationService {
     @Transactional
     public List<InventoryIntegrationDTO> queryInventoryIntegration(
             String month, String startDate, String endDate, String version) {
+        return streamInventoryIntegration(month, startDate, endDate, version).toList();
+    }
+
+    /**
+     * Same as {@link #queryInventoryIntegration}; entities are loaded (and saved) up front,
+     * DTOs are converted one at a time as the rows are emitted (used for streamed responses).
+     */
+    @Transactional
+    public RowStream<InventoryIntegrationDTO> streamInventoryIntegration(
+            String month, String startDate, String endDate, String version) {
+        List<InventorySalesForecast> entities = loadInventoryIntegration(month, startDate, endDate, version);
+        return action -> {
+            for (InventorySalesForecast entity : entities) {
+                action.accept(toDTO(entity));
+            }
+        };
+    }
+
+    private List<InventorySalesForecast> loadInventoryIntegration(
+            String month, String startDate, String endDate, String version) {
 
         log.info("queryInventoryIntegration: month={}, startDate={}, endDate={}, version={}",
                 month, startDate, endDate, version);
@@ -89,6 +132,7 @@ public class InventoryIntegrationService {
 
         entity.setModifiedSubtotal(modifiedSubtotal);
         InventorySalesForecast saved = inventoryForecastRepository.save(entity);
+        reportDataVersion.bump(saved.getMonth());
         return toDTO(saved);
     }
 
@@ -102,52 +146,45 @@ public class InventoryIntegrationService {
         return inventoryForecastRepository.findDistinctVersionsOrderByVersionDesc();
     }
 
+    /** Result of {@link #copyVersion}: the new version and the number of rows copied */
+    public record VersionCopy(String version, int rows) {
+    }
+
     /**
-     * Copy all records of the given version to a new version. Month is taken from the source records.
+     * Copy all records of the given version to a new version in one INSERT ... SELECT (no entity hydration).
+     * Month and product_id are taken from the source records. The new version never reuses an existing
+     * version string, even when the source was created within the same second.
      */
     @Transactional
-    public String copyVersion(String version) {
+    public VersionCopy copyVersion(String version) {
         log.info("copyVersion: version={}", version);
 
-        List<InventorySalesForecast> source = inventoryForecastRepository
-                .findByVersionOrderByProductCodeAsc(version);
-
-        if (source.isEmpty()) {
-            throw new ResourceNotFoundException("No data found for version=" + version);
-        }
+        String month = inventoryForecastRepository.findMonthByVersion(version)
+                .orElseThrow(() -> new ResourceNotFoundException("No data found for version=" + version));
+        String newVersion = generateUnusedVersion();
+        int rows = inventoryForecastRepository.copyVersion(version, newVersion);
 
-        String month = source.get(0).getMonth();
-        String newVersion = generateVersion();
-        List<InventorySalesForecast> copies = new ArrayList<>();
-
-        for (InventorySalesForecast orig : source) {
-            InventorySalesForecast copy = new InventorySalesForecast();
-            copy.setMonth(orig.getMonth());
-            copy.setProductCode(orig.getProductCode());
-            copy.setProductName(orig.getProductName());
-            copy.setCategory(orig.getCategory());
-            copy.setSpec(orig.getSpec());
-            copy.setWarehouseLocation(orig.getWarehouseLocation());
-            copy.setSalesQuantity(orig.getSalesQuantity());
-            copy.setInventoryBalance(orig.getInventoryBalance());
-            copy.setForecastQuantity(orig.getForecastQuantity());
-            copy.setProductionSubtotal(orig.getProductionSubtotal());
-            copy.setModifiedSubtotal(orig.getModifiedSubtotal());
-            copy.setQueryStartDate(orig.getQueryStartDate());
-            copy.setQueryEndDate(orig.getQueryEndDate());
-            copy.setVersion(newVersion);
-            copies.add(copy);
-        }
+        reportDataVersion.bump(month);
+        log.info("Copied {} records to new version {} (month={})", rows, newVersion, month);
+        return new VersionCopy(newVersion, rows);
+    }
 
-        inventoryForecastRepository.saveAll(copies);
-        log.info("Copied {} records to new version {} (month={})", copies.size(), newVersion, month);
-        return newVersion;
+    /**
+     * Evict the month's ERP figures from the cache and bump the month's report data version, so versions
+     * saved before the eviction are no longer reused and report ETags change.
+     * @return number of cache entries evicted
+     */
+    @Transactional
+    public int evictErpCache(String month) {
+        int evicted = erpInventoryCache.evictMonth(month);
+        reportDataVersion.bump(normalizeMonth(month));
+        return evicted;
     }
 
     /**
      * Load saved data from database by version. If month is null or empty, load by version only.
      */
-    private List<InventoryIntegrationDTO> loadSavedData(String month, String version) {
+    private List<InventorySalesForecast> loadSavedData(String month, String version) {
         log.info("Loading saved data for month={}, version={}", month, version);
 
         List<InventorySalesForecast> entities;
@@ -163,16 +200,14 @@ public class InventoryIntegrationService {
             return Collections.emptyList();
         }
 
-        return entities.stream()
-                .map(this::toDTO)
-                .collect(Collectors.toList());
+        return entities;
     }
 
     /**
      * Perform real-time query: aggregate from sales forecast (base data), call ERP for 銷貨/結存, calculate, and save.
      * Month must be YYYYMM (normalized before call).
      */
-    private List<InventoryIntegrationDTO> performRealTimeQuery(String month, String startDate, String endDate) {
+    private List<InventorySalesForecast> performRealTimeQuery(String month, String startDate, String endDate) {
         log.info("Performing real-time query for month={} (sales forecast as base)", month);
 
         // Determine date range for ERP/sales query
@@ -191,44 +226,69 @@ public class InventoryIntegrationService {
 
         log.info("Using sales forecast version: {}", forecastVersion);
 
+        // Inputs unchanged since a saved version (forecast version, date range, report data, cached ERP figures): reuse it
+        String reusableVersion = integrationFingerprints.findVersion(
+                month, inputFingerprint(month, forecastVersion, queryStartDate, queryEndDate));
+        if (reusableVersion != null) {
+            List<InventorySalesForecast> saved = inventoryForecastRepository
+                    .findByMonthAndVersionOrderByProductCodeAsc(month, reusableVersion);
+            if (!saved.isEmpty()) {
+                log.info("Inputs unchanged, reusing saved version {} ({} records)", reusableVersion, saved.size());
+                return saved;
+            }
+        }
+
         // Step 2: Aggregate forecast data (sum all channels per product) - this is the base set of products
-        List<SalesForecast> forecasts = salesForecastRepository.findByMonthAndVersion(month, forecastVersion);
-        Map<ProductKey, AggregatedProduct> aggregatedProducts = aggregateForecasts(forecasts);
+        // 補上非經由本系統寫入（如直接匯入 DB）而尚未指派的 product_id
+        productDimension.assignMonth(ProductDimension.Table.SALES, month);
+        List<SalesForecast> forecasts = versionOverlay.findSalesForecastsByMonthAndVersion(month, forecastVersion);
+        List<AggregatedProduct> aggregatedProducts = aggregateForecasts(forecasts);
 
         log.info("Aggregated {} products from {} forecast records", aggregatedProducts.size(), forecasts.size());
 
-        // Step 3: For each product, call ERP and calculate production_subtotal
+        // Step 3: Fetch ERP figures for the whole product set (batched, concurrent), then calculate production_subtotal
+        List<String> productCodes = aggregatedProducts.stream()
+                .map(p -> p.representative.getProductCode())
+                .distinct()
+                .toList();
+        ErpInventoryFetcher.ErpFigures erpFigures =
+                erpInventoryFetcher.fetch(productCodes, month, queryStartDate, queryEndDate);
+        Map<String, BigDecimal> inventoryBalances = erpFigures.inventoryBalances();
+        Map<String, BigDecimal> salesQuantities = erpFigures.salesQuantities();
+        log.info("Fetched ERP figures for {} products ({} with errors)", productCodes.size(), erpFigures.errors().size());
+
         List<InventorySalesForecast> results = new ArrayList<>();
         String newVersion = generateVersion();
 
-        for (Map.Entry<ProductKey, AggregatedProduct> entry : aggregatedProducts.entrySet()) {
-            ProductKey key = entry.getKey();
-            AggregatedProduct product = entry.getValue();
+        for (AggregatedProduct product : aggregatedProducts) {
+            SalesForecast key = product.representative;
+            BigDecimal forecastQuantity = Hundredths.toDecimal(product.forecastHundredths);
 
-            // Call ERP services
-            BigDecimal inventoryBalance = erpInventoryService.getInventoryBalance(key.productCode, month);
-            BigDecimal salesQuantity = erpInventoryService.getSalesQuantity(key.productCode, queryStartDate, queryEndDate);
+            // Products the ERP does not report (or whose lookup failed, see erp_error) count as zero
+            BigDecimal inventoryBalance = inventoryBalances.getOrDefault(key.getProductCode(), BigDecimal.ZERO);
+            BigDecimal salesQuantity = salesQuantities.getOrDefault(key.getProductCode(), BigDecimal.ZERO);
 
             // Calculate production_subtotal = forecast_quantity - inventory_balance - sales_quantity
-            BigDecimal productionSubtotal = product.forecastQuantity
+            BigDecimal productionSubtotal = forecastQuantity
                     .subtract(inventoryBalance)
                     .subtract(salesQuantity);
 
             // Create entity
             InventorySalesForecast entity = new InventorySalesForecast();
             entity.setMonth(month);
-            entity.setProductCode(key.productCode);
-            entity.setProductName(key.productName);
-            entity.setCategory(key.category);
-            entity.setSpec(key.spec);
-            entity.setWarehouseLocation(key.warehouseLocation);
-            entity.setForecastQuantity(product.forecastQuantity);
+            entity.setProductCode(key.getProductCode());
+            entity.setProductName(key.getProductName());
+            entity.setCategory(key.getCategory());
+            entity.setSpec(key.getSpec());
+            entity.setWarehouseLocation(key.getWarehouseLocation());
+            entity.setForecastQuantity(forecastQuantity);
             entity.setInventoryBalance(inventoryBalance);
             entity.setSalesQuantity(salesQuantity);
             entity.setProductionSubtotal(productionSubtotal);
             entity.setVersion(newVersion);
             entity.setQueryStartDate(queryStartDate);
             entity.setQueryEndDate(queryEndDate);
+            entity.setErpError(truncate(erpFigures.errors().get(key.getProductCode()), 200));
 
             results.add(entity);
         }
@@ -236,34 +296,37 @@ public class InventoryIntegrationService {
         // Step 4: Save all results in single transaction
         log.info("Saving {} records with version={}", results.size(), newVersion);
         List<InventorySalesForecast> savedEntities = inventoryForecastRepository.saveAll(results);
+        productDimension.assignMonth(ProductDimension.Table.INVENTORY, month);
+        reportDataVersion.bump(month);
+        // Fingerprint taken after the bump and the ERP fetch, so the next query sees the same inputs; ERP failures are retried
+        if (erpFigures.errors().isEmpty()) {
+            integrationFingerprints.record(month,
+                    inputFingerprint(month, forecastVersion, queryStartDate, queryEndDate), newVersion);
+        }
 
-        // Step 5: Convert to DTOs and return
-        return savedEntities.stream()
-                .sorted(Comparator.comparing(InventorySalesForecast::getProductCode))
-                .map(this::toDTO)
-                .collect(Collectors.toList());
+        // Step 5: Return sorted by product code (converted to DTOs by the caller)
+        List<InventorySalesForecast> sorted = new ArrayList<>(savedEntities);
+        sorted.sort(Comparator.comparing(InventorySalesForecast::getProductCode));
+        return sorted;
     }
 
     /**
-     * Aggregate forecast data: sum all 12 channels per product
+     * Aggregate forecast data: sum all 12 channels per product (grouped by product_id)
      */
-    private Map<ProductKey, AggregatedProduct> aggregateForecasts(List<SalesForecast> forecasts) {
-        Map<ProductKey, AggregatedProduct> productMap = new HashMap<>();
+    private List<AggregatedProduct> aggregateForecasts(List<SalesForecast> forecasts) {
+        IntIndex productIndex = new IntIndex(forecasts.size());
+        List<AggregatedProduct> products = new ArrayList<>();
 
         for (SalesForecast forecast : forecasts) {
-            ProductKey key = new ProductKey(
-                    forecast.getProductCode(),
-                    forecast.getProductName(),
-                    forecast.getCategory(),
-                    forecast.getSpec(),
-                    forecast.getWarehouseLocation()
-            );
-
-            AggregatedProduct product = productMap.computeIfAbsent(key, k -> new AggregatedProduct());
-            product.forecastQuantity = product.forecastQuantity.add(forecast.getQuantity());
+            int slot = productIndex.indexOf(forecast.getProductId());
+            if (slot == products.size()) {
+                products.add(new AggregatedProduct(forecast));
+            }
+            AggregatedProduct product = products.get(slot);
+            product.forecastHundredths += Hundredths.of(forecast.getQuantity());
         }
 
-        return productMap;
+        return products;
     }
 
     /**
@@ -299,7 +362,47 @@ public class InventoryIntegrationService {
      * Generate version string in local time (Asia/Taipei): yyyy-MM-dd HH:mm:ss
      */
     private String generateVersion() {
-        return LocalDateTime.now(ZoneId.of("Asia/Taipei")).format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"));
+        return formatVersion(LocalDateTime.now(ZoneId.of("Asia/Taipei")));
+    }
+
+    /**
+     * Like {@link #generateVersion()}, but versions only have second resolution: when the string is
+     * already in use (e.g. the source of a copy was saved in the same second), step forward a second.
+     */
+    private String generateUnusedVersion() {
+        LocalDateTime time = LocalDateTime.now(ZoneId.of("Asia/Taipei"));
+        String candidate = formatVersion(time);
+        while (inventoryForecastRepository.existsByVersion(candidate)) {
+            time = time.plusSeconds(1);
+            candidate = formatVersion(time);
+        }
+        return candidate;
+    }
+
+    private static String formatVersion(LocalDateTime time) {
+        return time.format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"));
+    }
+
+    /**
+     * SHA-256 (hex) of everything a real-time query result depends on. The ERP part is the expiry of the
+     * cached figures the query reads, so it changes only when they expire, are evicted or are reloaded.
+     * ERP cache evictions are also counted in the report data version (see {@link #evictErpCache}),
+     * so they survive restarts.
+     */
+    private String inputFingerprint(String month, String forecastVersion, String startDate, String endDate) {
+        String inputs = String.join("|", month, forecastVersion, startDate, endDate,
+                String.valueOf(reportDataVersion.current(month)),
+                erpInventoryCache.figuresExpiry(month, startDate, endDate));
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(inputs.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String truncate(String value, int maxLength) {
+        return value == null || value.length() <= maxLength ? value : value.substring(0, maxLength);
     }
 
     /**
@@ -322,51 +425,23 @@ public class InventoryIntegrationService {
         dto.setVersion(entity.getVersion());
         dto.setQueryStartDate(entity.getQueryStartDate());
         dto.setQueryEndDate(entity.getQueryEndDate());
+        dto.setErpError(entity.getErpError());
         dto.setCreatedAt(entity.getCreatedAt());
         dto.setUpdatedAt(entity.getUpdatedAt());
         return dto;
     }
 
-    /**
-     * Product key for grouping forecasts
-     */
-    private static class ProductKey {
-        final String productCode;
-        final String productName;
-        final String category;
-        final String spec;
-        final String warehouseLocation;
-
-        ProductKey(String productCode, String productName, String category, String spec, String warehouseLocation) {
-            this.productCode = productCode;
-            this.productName = productName;
-            this.category = category;
-            this.spec = spec;
-            this.warehouseLocation = warehouseLocation;
-        }
-
-        @Override
-        public boolean equals(Object o) {
-            if (this == o) return true;
-            if (o == null || getClass() != o.getClass()) return false;
-            ProductKey that = (ProductKey) o;
-            return Objects.equals(productCode, that.productCode) &&
-                    Objects.equals(productName, that.productName) &&
-                    Objects.equals(category, that.category) &&
-                    Objects.equals(spec, that.spec) &&
-                    Objects.equals(warehouseLocation, that.warehouseLocation);
-        }
-
-        @Override
-        public int hashCode() {
-            return Objects.hash(productCode, productName, category, spec, warehouseLocation);
-        }
-    }
-
     /**
      * Aggregated product data
      */
     private static class AggregatedProduct {
-        BigDecimal forecastQuantity = BigDecimal.ZERO;
+        /** 第一筆明細，提供品項欄位 */
+        final SalesForecast representative;
+        /** 各通路數量合計（百分之一單位，見 {@link Hundredths}） */
+        long forecastHundredths;
+
+        AggregatedProduct(SalesForecast representative) {
+            this.representative = representative;
+        }
     }
 }
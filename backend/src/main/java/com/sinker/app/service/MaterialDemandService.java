@@ -33,19 +33,22 @@ public class MaterialDemandService {
     private final PdcaRecomputeService pdcaRecomputeService;
     private final ErpPurchaseOrderService erpPurchaseOrderService;
     private final PdcaIntegrationService pdcaIntegrationService;
+    private final UploadFingerprintService fingerprintService;
 
     public MaterialDemandService(MaterialDemandRepository materialDemandRepository,
                                  MaterialDemandExcelParser excelParser,
                                  JdbcTemplate jdbcTemplate,
                                  PdcaRecomputeService pdcaRecomputeService,
                                  ErpPurchaseOrderService erpPurchaseOrderService,
-                                 PdcaIntegrationService pdcaIntegrationService) {
+                                 PdcaIntegrationService pdcaIntegrationService,
+                                 UploadFingerprintService fingerprintService) {
         this.materialDemandRepository = materialDemandRepository;
         this.excelParser = excelParser;
         this.jdbcTemplate = jdbcTemplate;
         this.pdcaRecomputeService = pdcaRecomputeService;
         this.erpPurchaseOrderService = erpPurchaseOrderService;
         this.pdcaIntegrationService = pdcaIntegrationService;
+        this.fingerprintService = fingerprintService;
     }
 
     /**
@@ -81,6 +84,13 @@ public class MaterialDemandService {
         if (factory == null || factory.trim().isEmpty()) {
             throw new IllegalArgumentException("factory is required");
         }
+        String contentHash = fingerprintService.hash(file);
+        Optional<Integer> previous = fingerprintService.findPrevious(
+                UploadFingerprintService.Target.MATERIAL_DEMAND, contentHash, Integer.class, weekStart, factory);
+        if (previous.isPresent()) {
+            log.info("Identical material demand upload skipped: weekStart={}, factory={}", weekStart, factory);
+            return previous.get();
+        }
         List<MaterialDemandExcelParser.MaterialDemandRow> rows = excelParser.parse(file);
         materialDemandRepository.deleteByWeekStartAndFactory(weekStart, factory);
         LocalDateTime now = LocalDateTime.now();
@@ -105,6 +115,10 @@ public class MaterialDemandService {
         }).collect(Collectors.toList());
         materialDemandRepository.saveAll(entities);
         log.info("Saved {} material demand records", entities.size());
+        // 衍生 delete 於 flush 時才送出；先 flush 讓 record 讀到的資料狀態為最終結果
+        materialDemandRepository.flush();
+        fingerprintService.record(UploadFingerprintService.Target.MATERIAL_DEMAND, contentHash, entities.size(),
+                weekStart, factory);
         pdcaRecomputeService.recomputeAsync(weekStart, factory);
         return entities.size();
     }
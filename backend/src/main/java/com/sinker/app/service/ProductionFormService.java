@@ -1,5 +1,8 @@
 package com.sinker.app.service;
 
+import com.sinker.app.dto.ReportStream;
+import com.sinker.app.dto.RowStream;
+import com.sinker.app.dto.forecast.ChannelCellDTO;
 import com.sinker.app.dto.forecast.FormSummaryResponse;
 import com.sinker.app.dto.forecast.FormSummaryRowDTO;
 import com.sinker.app.dto.productionplan.ProductionFormChannelDTO;
@@ -7,18 +10,20 @@ import com.sinker.app.dto.productionplan.ProductionFormRangeResponse;
 import com.sinker.app.dto.productionplan.ProductionFormRowDTO;
 import com.sinker.app.entity.InventorySalesForecast;
 import com.sinker.app.entity.ProductionForm;
+import com.sinker.app.entity.SalesChannel;
 import com.sinker.app.entity.SalesForecast;
+import com.sinker.app.repository.ForecastVersionOverlay;
 import com.sinker.app.repository.InventorySalesForecastRepository;
 import com.sinker.app.repository.ProductionFormRepository;
 import com.sinker.app.repository.SalesForecastFormVersionRepository;
 import com.sinker.app.repository.SalesForecastRepository;
+import com.sinker.app.util.Hundredths;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
-import java.math.RoundingMode;
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -26,9 +31,6 @@ import java.util.stream.Collectors;
 public class ProductionFormService {
 
     private static final Logger log = LoggerFactory.getLogger(ProductionFormService.class);
-    private static final List<String> CHANNEL_ORDER = List.of(
-            "PX + 大全聯", "家樂福", "愛買", "7-11", "全家", "Ok+萊爾富",
-            "好市多", "楓康", "美聯社", "康是美", "電商", "市面經銷");
     private static final List<String> MONTH_KEYS = List.of("2", "3", "4", "5", "6", "7", "8", "9", "10", "11", "12");
 
     private final SalesForecastRepository salesForecastRepository;
@@ -36,17 +38,23 @@ public class ProductionFormService {
     private final ProductionFormRepository productionFormRepository;
     private final FormSummaryService formSummaryService;
     private final SalesForecastFormVersionRepository formVersionRepository;
+    private final ForecastVersionOverlay versionOverlay;
+    private final ReportDataVersion reportDataVersion;
 
     public ProductionFormService(SalesForecastRepository salesForecastRepository,
                                  InventorySalesForecastRepository inventoryForecastRepository,
                                  ProductionFormRepository productionFormRepository,
                                  FormSummaryService formSummaryService,
-                                 SalesForecastFormVersionRepository formVersionRepository) {
+                                 SalesForecastFormVersionRepository formVersionRepository,
+                                 ForecastVersionOverlay versionOverlay,
+                                 ReportDataVersion reportDataVersion) {
         this.salesForecastRepository = salesForecastRepository;
         this.inventoryForecastRepository = inventoryForecastRepository;
         this.productionFormRepository = productionFormRepository;
         this.formSummaryService = formSummaryService;
         this.formVersionRepository = formVersionRepository;
+        this.versionOverlay = versionOverlay;
+        this.reportDataVersion = reportDataVersion;
     }
 
     /**
@@ -55,27 +63,38 @@ public class ProductionFormService {
      */
     @Transactional(readOnly = true)
     public List<ProductionFormRowDTO> getProductionForm(int year) {
+        List<ProductionFormRowDTO> rows = streamProductionForm(year).toList();
+        log.info("Production form rows: {}", rows.size());
+        return rows;
+    }
+
+    /** 與 {@link #getProductionForm} 相同的列，於走訪時才逐列組成（串流輸出用） */
+    @Transactional(readOnly = true)
+    public RowStream<ProductionFormRowDTO> streamProductionForm(int year) {
         log.info("Building production form for year {}", year);
 
-        Map<ProductKey, ProductInfo> productMap = new LinkedHashMap<>();
-        Map<ProductKey, Map<String, Map<String, BigDecimal>>> channelMonths = new LinkedHashMap<>(); // product -> channel -> monthKey -> qty
-        Map<ProductKey, Map<String, BigDecimal>> aggregateMonths = new LinkedHashMap<>(); // product -> monthKey -> modified_subtotal
+        // 生產表單的品項以品號識別，庫位／品名等欄位取第一次出現的列
+        Map<String, ProductInfo> productMap = new LinkedHashMap<>();
+        Map<String, long[][]> channelMonths = new LinkedHashMap<>(); // product -> [channel_no][MONTH_KEYS 位置] -> qty（百分之一）
+        Map<String, long[]> aggregateMonths = new LinkedHashMap<>(); // product -> [MONTH_KEYS 位置] -> modified_subtotal（百分之一）
         Map<String, ProductionForm> formByProduct = productionFormRepository.findByYearOrderByProductCodeAsc(year)
                 .stream().collect(Collectors.toMap(ProductionForm::getProductCode, f -> f, (a, b) -> a));
 
-        for (String monthKey : MONTH_KEYS) {
-            String month = year + String.format("%02d", Integer.parseInt(monthKey));
+        for (int monthIdx = 0; monthIdx < MONTH_KEYS.size(); monthIdx++) {
+            String monthKey = MONTH_KEYS.get(monthIdx);
+            String month = monthOf(year, monthKey);
 
             List<String> versions = salesForecastRepository.findDistinctVersionsByMonth(month);
             if (!versions.isEmpty()) {
-                List<SalesForecast> forecasts = salesForecastRepository.findByMonthAndVersion(month, versions.get(0));
+                List<SalesForecast> forecasts = versionOverlay.findSalesForecastsByMonthAndVersion(month, versions.get(0));
                 for (SalesForecast f : forecasts) {
-                    ProductKey key = new ProductKey(f.getProductCode(), f.getWarehouseLocation(), f.getCategory(), f.getSpec(), f.getProductName());
+                    String key = f.getProductCode();
                     productMap.putIfAbsent(key, new ProductInfo(f.getWarehouseLocation(), f.getCategory(), f.getSpec(), f.getProductName(), f.getProductCode()));
-                    channelMonths
-                            .computeIfAbsent(key, k -> new LinkedHashMap<>())
-                            .computeIfAbsent(f.getChannel(), c -> new LinkedHashMap<>())
-                            .put(monthKey, f.getQuantity());
+                    Integer chNo = f.getChannelNo();
+                    if (chNo != null) {
+                        channelMonths.computeIfAbsent(key, k -> new long[SalesChannel.COUNT][MONTH_KEYS.size()])
+                                [chNo][monthIdx] = Hundredths.of(f.getQuantity());
+                    }
                 }
             }
 
@@ -83,66 +102,56 @@ public class ProductionFormService {
             if (!invVersions.isEmpty()) {
                 List<InventorySalesForecast> inv = inventoryForecastRepository.findByMonthAndVersionOrderByProductCodeAsc(month, invVersions.get(0));
                 for (InventorySalesForecast i : inv) {
-                    ProductKey key = new ProductKey(i.getProductCode(), i.getWarehouseLocation(), i.getCategory(), i.getSpec(), i.getProductName());
+                    String key = i.getProductCode();
                     productMap.putIfAbsent(key, new ProductInfo(i.getWarehouseLocation(), i.getCategory(), i.getSpec(), i.getProductName(), i.getProductCode()));
-                    aggregateMonths
-                            .computeIfAbsent(key, k -> new LinkedHashMap<>())
-                            .put(monthKey, i.getModifiedSubtotal() != null ? i.getModifiedSubtotal() : BigDecimal.ZERO);
+                    aggregateMonths.computeIfAbsent(key, k -> new long[MONTH_KEYS.size()])[monthIdx] =
+                            Hundredths.of(i.getModifiedSubtotal());
                 }
             }
         }
 
-        List<ProductionFormRowDTO> rows = new ArrayList<>();
-        for (Map.Entry<ProductKey, ProductInfo> e : productMap.entrySet()) {
-            ProductKey key = e.getKey();
-            ProductInfo info = e.getValue();
-            ProductionFormRowDTO row = new ProductionFormRowDTO();
-            row.setWarehouseLocation(info.warehouseLocation);
-            row.setCategory(info.category);
-            row.setSpec(info.spec);
-            row.setProductName(info.productName);
-            row.setProductCode(info.productCode);
-
-            Map<String, Map<String, BigDecimal>> chan = channelMonths.getOrDefault(key, new LinkedHashMap<>());
-            BigDecimal originalForecast = BigDecimal.ZERO;
-            for (String ch : CHANNEL_ORDER) {
-                ProductionFormChannelDTO cd = new ProductionFormChannelDTO();
-                cd.setChannel(ch);
-                Map<String, BigDecimal> months = chan.getOrDefault(ch, new LinkedHashMap<>());
-                BigDecimal channelTotal = BigDecimal.ZERO;
-                for (String mk : MONTH_KEYS) {
-                    BigDecimal v = months.getOrDefault(mk, BigDecimal.ZERO);
-                    cd.getMonths().put(mk, v);
-                    channelTotal = channelTotal.add(v);
-                }
-                cd.setTotal(channelTotal);
-                originalForecast = originalForecast.add(channelTotal);
-                row.getChannelData().add(cd);
+        List<ProductInfo> products = sortedProducts(productMap);
+        return action -> {
+            for (ProductInfo info : products) {
+                String key = info.productCode;
+                action.accept(yearRow(info, channelMonths.get(key), aggregateMonths.get(key), formByProduct.get(key)));
             }
-            row.setOriginalForecast(originalForecast);
-
-            Map<String, BigDecimal> agg = aggregateMonths.getOrDefault(key, new LinkedHashMap<>());
-            BigDecimal aggregateSum = BigDecimal.ZERO;
-            for (String mk : MONTH_KEYS) {
-                BigDecimal v = agg.getOrDefault(mk, BigDecimal.ZERO);
-                row.getAggregateMonths().put(mk, v);
-                aggregateSum = aggregateSum.add(v);
+        };
+    }
+
+    private static ProductionFormRowDTO yearRow(ProductInfo info, long[][] chan, long[] agg, ProductionForm form) {
+        ProductionFormRowDTO row = newRow(info);
+        long originalForecastHundredths = 0;
+        for (SalesChannel ch : SalesChannel.values()) {
+            ProductionFormChannelDTO cd = new ProductionFormChannelDTO();
+            cd.setChannel(ch.label());
+            long[] months = chan != null ? chan[ch.ordinal()] : null;
+            long channelTotal = 0;
+            for (int m = 0; m < MONTH_KEYS.size(); m++) {
+                long v = months != null ? months[m] : 0;
+                cd.getMonths().put(MONTH_KEYS.get(m), Hundredths.toDecimal(v));
+                channelTotal += v;
             }
-            ProductionForm form = formByProduct.get(key.productCode);
-            BigDecimal buffer = form != null ? form.getBufferQuantity() : BigDecimal.ZERO;
-            row.setBufferQuantity(buffer);
-            row.setAggregateTotal(aggregateSum.add(buffer));
-            row.setDifference(originalForecast.subtract(row.getAggregateTotal()));
-            row.setRemarks(form != null ? form.getRemarks() : null);
-            row.setProductionFormId(form != null ? form.getId() : null);
-            rows.add(row);
+            cd.setTotal(Hundredths.toDecimal(channelTotal));
+            originalForecastHundredths += channelTotal;
+            row.getChannelData().add(cd);
         }
+        row.setOriginalForecast(Hundredths.toDecimal(originalForecastHundredths));
 
-        rows.sort(Comparator.comparing(ProductionFormRowDTO::getCategory)
-                .thenComparing(ProductionFormRowDTO::getSpec)
-                .thenComparing(ProductionFormRowDTO::getProductCode));
-        log.info("Production form rows: {}", rows.size());
-        return rows;
+        long aggregateSum = 0;
+        for (int m = 0; m < MONTH_KEYS.size(); m++) {
+            long v = agg != null ? agg[m] : 0;
+            row.getAggregateMonths().put(MONTH_KEYS.get(m), Hundredths.toDecimal(v));
+            aggregateSum += v;
+        }
+        BigDecimal buffer = form != null ? form.getBufferQuantity() : BigDecimal.ZERO;
+        row.setBufferQuantity(buffer);
+        long aggregateTotal = aggregateSum + Hundredths.of(buffer);
+        row.setAggregateTotal(Hundredths.toDecimal(aggregateTotal));
+        row.setDifference(Hundredths.toDecimal(originalForecastHundredths - aggregateTotal));
+        row.setRemarks(form != null ? form.getRemarks() : null);
+        row.setProductionFormId(form != null ? form.getId() : null);
+        return row;
     }
 
     private static final int MAX_MONTH_RANGE = 4;
@@ -162,6 +171,17 @@ public class ProductionFormService {
      */
     @Transactional(readOnly = true)
     public ProductionFormRangeResponse getProductionFormByMonthRange(String startMonth, String endMonth, String inventoryVersion) {
+        ReportStream<ProductionFormRangeResponse, ProductionFormRowDTO> report =
+                streamProductionFormByMonthRange(startMonth, endMonth, inventoryVersion);
+        ProductionFormRangeResponse resp = report.header();
+        resp.setRows(report.rows().toList());
+        return resp;
+    }
+
+    /** 與 {@link #getProductionFormByMonthRange} 相同，明細列於走訪時才逐列組成（串流輸出用），header 不含 rows */
+    @Transactional(readOnly = true)
+    public ReportStream<ProductionFormRangeResponse, ProductionFormRowDTO> streamProductionFormByMonthRange(
+            String startMonth, String endMonth, String inventoryVersion) {
         validateMonthRange(startMonth, endMonth);
         if (inventoryVersion == null || inventoryVersion.isEmpty()) {
             throw new IllegalArgumentException("version is required");
@@ -172,20 +192,20 @@ public class ProductionFormService {
             throw new IllegalArgumentException("Selected version not found in range");
         }
 
-        Map<ProductKey, ProductInfo> productMap = new LinkedHashMap<>();
+        Map<String, ProductInfo> productMap = new LinkedHashMap<>();
         for (String month : monthKeys) {
             List<InventorySalesForecast> inv = inventoryForecastRepository.findByMonthAndVersionOrderByProductCodeAsc(month, inventoryVersion);
             for (InventorySalesForecast i : inv) {
-                ProductKey key = new ProductKey(i.getProductCode(), i.getWarehouseLocation(), i.getCategory(), i.getSpec(), i.getProductName());
+                String key = i.getProductCode();
                 productMap.putIfAbsent(key, new ProductInfo(i.getWarehouseLocation(), i.getCategory(), i.getSpec(), i.getProductName(), i.getProductCode()));
             }
         }
 
-        // productKey -> month -> list of 12 channel quantities (currentQty from form summary)
-        Map<ProductKey, Map<String, List<BigDecimal>>> channelDataByProductMonth = new LinkedHashMap<>();
-        Map<ProductKey, BigDecimal> originalForecastSum = new LinkedHashMap<>();
-        Map<ProductKey, BigDecimal> differenceSum = new LinkedHashMap<>();
-        Map<ProductKey, String> remarksFirst = new LinkedHashMap<>();
+        // productKey -> month -> channel_no -> currentQty from form summary (hundredths)
+        Map<String, Map<String, long[]>> channelDataByProductMonth = new LinkedHashMap<>();
+        Map<String, Long> originalForecastSum = new LinkedHashMap<>();
+        Map<String, Long> differenceSum = new LinkedHashMap<>();
+        Map<String, String> remarksFirst = new LinkedHashMap<>();
         for (String month : monthKeys) {
             Integer lastFormVersion = formVersionRepository.findByMonthOrderByVersionNoDesc(month).stream()
                     .findFirst()
@@ -194,88 +214,93 @@ public class ProductionFormService {
             FormSummaryResponse fs = formSummaryService.getFormSummary(month, lastFormVersion);
             if (fs == null || fs.getRows() == null) continue;
             for (FormSummaryRowDTO r : fs.getRows()) {
-                String pk = r.getProductCode();
-                if (pk == null) continue;
-                ProductKey key = new ProductKey(pk, r.getWarehouseLocation(), r.getCategory(), r.getSpec(), r.getProductName());
-                List<BigDecimal> channelQtys = new ArrayList<>();
-                BigDecimal prevSum = BigDecimal.ZERO;
-                BigDecimal currSum = BigDecimal.ZERO;
+                String key = r.getProductCode();
+                if (key == null) continue;
+                long[] channelQtys = new long[SalesChannel.COUNT];
+                long prevSum = 0;
+                long currSum = 0;
                 if (r.getChannelCells() != null) {
-                    for (var c : r.getChannelCells()) {
-                        BigDecimal prev = c.getPreviousQty() != null ? c.getPreviousQty() : BigDecimal.ZERO;
-                        BigDecimal curr = c.getCurrentQty() != null ? c.getCurrentQty() : BigDecimal.ZERO;
-                        channelQtys.add(curr);
-                        prevSum = prevSum.add(prev);
-                        currSum = currSum.add(curr);
+                    List<ChannelCellDTO> cells = r.getChannelCells();
+                    for (int chIdx = 0; chIdx < cells.size(); chIdx++) {
+                        long prev = Hundredths.of(cells.get(chIdx).getPreviousQty());
+                        long curr = Hundredths.of(cells.get(chIdx).getCurrentQty());
+                        if (chIdx < channelQtys.length) channelQtys[chIdx] = curr;
+                        prevSum += prev;
+                        currSum += curr;
                     }
                 }
-                while (channelQtys.size() < CHANNEL_ORDER.size()) {
-                    channelQtys.add(BigDecimal.ZERO);
-                }
                 channelDataByProductMonth.computeIfAbsent(key, k -> new LinkedHashMap<>()).put(month, channelQtys);
-                BigDecimal diff = prevSum.subtract(currSum).setScale(2, RoundingMode.HALF_UP);
-                originalForecastSum.merge(key, prevSum, BigDecimal::add);
-                differenceSum.merge(key, diff, BigDecimal::add);
+                originalForecastSum.merge(key, prevSum, Long::sum);
+                differenceSum.merge(key, prevSum - currSum, Long::sum);
                 if (!remarksFirst.containsKey(key))
                     remarksFirst.put(key, fs.getVersionRemark() != null ? fs.getVersionRemark() : "");
             }
         }
 
-        List<ProductionFormRowDTO> rows = new ArrayList<>();
-        for (Map.Entry<ProductKey, ProductInfo> e : productMap.entrySet()) {
-            ProductKey key = e.getKey();
-            ProductInfo info = e.getValue();
-            ProductionFormRowDTO row = new ProductionFormRowDTO();
-            row.setWarehouseLocation(info.warehouseLocation);
-            row.setCategory(info.category);
-            row.setSpec(info.spec);
-            row.setProductName(info.productName);
-            row.setProductCode(info.productCode);
-            row.setChannelData(new ArrayList<>());
-            Map<String, List<BigDecimal>> productChannelMonths = channelDataByProductMonth.getOrDefault(key, new LinkedHashMap<>());
-
-            for (int chIdx = 0; chIdx < CHANNEL_ORDER.size(); chIdx++) {
-                ProductionFormChannelDTO cd = new ProductionFormChannelDTO();
-                cd.setChannel(CHANNEL_ORDER.get(chIdx));
-                BigDecimal channelTotal = BigDecimal.ZERO;
-                for (String m : monthKeys) {
-                    List<BigDecimal> list = productChannelMonths.get(m);
-                    BigDecimal v = (list != null && chIdx < list.size()) ? list.get(chIdx) : BigDecimal.ZERO;
-                    cd.getMonths().put(m, v);
-                    channelTotal = channelTotal.add(v);
-                }
-                cd.setTotal(channelTotal);
-                row.getChannelData().add(cd);
+        ProductionFormRangeResponse resp = new ProductionFormRangeResponse();
+        resp.setMonthKeys(monthKeys);
+        resp.setChannelOrder(new ArrayList<>(SalesChannel.labels()));
+        resp.setVersions(versions);
+        List<ProductInfo> products = sortedProducts(productMap);
+        return new ReportStream<>(resp, action -> {
+            for (ProductInfo info : products) {
+                String key = info.productCode;
+                ProductionFormRowDTO row = rangeRow(info, monthKeys, channelDataByProductMonth.getOrDefault(key, Map.of()));
+                row.setOriginalForecast(Hundredths.toDecimal(originalForecastSum.getOrDefault(key, 0L)));
+                row.setDifference(Hundredths.toDecimal(differenceSum.getOrDefault(key, 0L)));
+                row.setRemarks(remarksFirst.get(key));
+                action.accept(row);
             }
+        });
+    }
 
-            Map<String, BigDecimal> agg = new LinkedHashMap<>();
-            BigDecimal aggregateTotal = BigDecimal.ZERO;
-            for (String m : monthKeys) {
-                BigDecimal sum = BigDecimal.ZERO;
-                for (ProductionFormChannelDTO cd : row.getChannelData()) {
-                    sum = sum.add(cd.getMonths().getOrDefault(m, BigDecimal.ZERO));
-                }
-                agg.put(m, sum);
-                aggregateTotal = aggregateTotal.add(sum);
+    private static ProductionFormRowDTO rangeRow(ProductInfo info, List<String> monthKeys,
+                                                 Map<String, long[]> productChannelMonths) {
+        ProductionFormRowDTO row = newRow(info);
+        row.setChannelData(new ArrayList<>());
+        long[] monthSums = new long[monthKeys.size()];
+        for (int chIdx = 0; chIdx < SalesChannel.COUNT; chIdx++) {
+            ProductionFormChannelDTO cd = new ProductionFormChannelDTO();
+            cd.setChannel(SalesChannel.labels().get(chIdx));
+            long channelTotal = 0;
+            for (int mIdx = 0; mIdx < monthKeys.size(); mIdx++) {
+                long[] qtys = productChannelMonths.get(monthKeys.get(mIdx));
+                long v = qtys != null ? qtys[chIdx] : 0;
+                cd.getMonths().put(monthKeys.get(mIdx), Hundredths.toDecimal(v));
+                channelTotal += v;
+                monthSums[mIdx] += v;
             }
-            row.setAggregateMonths(agg);
-            row.setBufferQuantity(BigDecimal.ZERO);
-            row.setAggregateTotal(aggregateTotal);
-            row.setOriginalForecast(originalForecastSum.getOrDefault(key, BigDecimal.ZERO));
-            row.setDifference(differenceSum.getOrDefault(key, BigDecimal.ZERO));
-            row.setRemarks(remarksFirst.get(key));
-            rows.add(row);
+            cd.setTotal(Hundredths.toDecimal(channelTotal));
+            row.getChannelData().add(cd);
         }
-        rows.sort(Comparator.comparing(ProductionFormRowDTO::getCategory)
-                .thenComparing(ProductionFormRowDTO::getSpec)
-                .thenComparing(ProductionFormRowDTO::getProductCode));
 
-        ProductionFormRangeResponse resp = new ProductionFormRangeResponse();
-        resp.setMonthKeys(monthKeys);
-        resp.setChannelOrder(new ArrayList<>(CHANNEL_ORDER));
-        resp.setVersions(versions);
-        resp.setRows(rows);
-        return resp;
+        Map<String, BigDecimal> agg = new LinkedHashMap<>();
+        for (int mIdx = 0; mIdx < monthKeys.size(); mIdx++) {
+            agg.put(monthKeys.get(mIdx), Hundredths.toDecimal(monthSums[mIdx]));
+        }
+        row.setAggregateMonths(agg);
+        row.setBufferQuantity(BigDecimal.ZERO);
+        row.setAggregateTotal(Hundredths.toDecimal(Hundredths.sum(monthSums)));
+        return row;
+    }
+
+    private static ProductionFormRowDTO newRow(ProductInfo info) {
+        ProductionFormRowDTO row = new ProductionFormRowDTO();
+        row.setWarehouseLocation(info.warehouseLocation);
+        row.setCategory(info.category);
+        row.setSpec(info.spec);
+        row.setProductName(info.productName);
+        row.setProductCode(info.productCode);
+        return row;
+    }
+
+    /** 輸出順序：類別、規格、品號（先排序品項，逐列組成時即為輸出順序） */
+    private static List<ProductInfo> sortedProducts(Map<String, ProductInfo> productMap) {
+        List<ProductInfo> products = new ArrayList<>(productMap.values());
+        products.sort(Comparator.comparing((ProductInfo p) -> p.category)
+                .thenComparing(p -> p.spec)
+                .thenComparing(p -> p.productCode));
+        return products;
     }
 
     private static void validateMonthRange(String startMonth, String endMonth) {
@@ -329,36 +354,13 @@ public class ProductionFormService {
                 });
         form.setBufferQuantity(bufferQuantity != null ? bufferQuantity : BigDecimal.ZERO);
         productionFormRepository.save(form);
+        // 緩衝量屬於整年的生產表單，年度各月份的報表一併失效
+        reportDataVersion.bump(MONTH_KEYS.stream().map(m -> monthOf(year, m)).toList());
         return null;
     }
 
-    private static class ProductKey {
-        final String productCode;
-        final String warehouseLocation;
-        final String category;
-        final String spec;
-        final String productName;
-
-        ProductKey(String productCode, String warehouseLocation, String category, String spec, String productName) {
-            this.productCode = productCode;
-            this.warehouseLocation = warehouseLocation != null ? warehouseLocation : "";
-            this.category = category != null ? category : "";
-            this.spec = spec != null ? spec : "";
-            this.productName = productName != null ? productName : "";
-        }
-
-        @Override
-        public boolean equals(Object o) {
-            if (this == o) return true;
-            if (o == null || getClass() != o.getClass()) return false;
-            ProductKey that = (ProductKey) o;
-            return Objects.equals(productCode, that.productCode);
-        }
-
-        @Override
-        public int hashCode() {
-            return Objects.hash(productCode);
-        }
+    private static String monthOf(int year, String monthKey) {
+        return year + String.format("%02d", Integer.parseInt(monthKey));
     }
 
     private static class ProductInfo {
@@ -0,0 +1,72 @@
+package com.sinker.app.service;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * 各月份報表資料的版本水位（report_data_version），報表端點據以產生 ETag。
+ * 銷售預估、禮品、庫存整合等寫入路徑以 {@link #bump} 將月份 +1，須與明細寫入在同一交易內呼叫，
+ * 水位與資料同時 commit；列鎖只持有到該交易結束。
+ * 月份一律以 YYYYMM 記錄（YYYY-MM 先去掉 '-'）。
+ * 不經由本系統寫入（如直接匯入 DB）時須另行 +1，否則該月份報表仍會回 304。
+ */
+@Component
+public class ReportDataVersion {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public ReportDataVersion(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public void bump(String month) {
+        if (month == null || month.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.update(
+                "INSERT INTO report_data_version (month, version) VALUES (?, 1) "
+                        + "ON DUPLICATE KEY UPDATE version = version + 1",
+                key(month));
+    }
+
+    /** 依月份排序後逐一 +1，多個交易同時寫入多個月份時以相同順序取得列鎖 */
+    public void bump(Collection<String> months) {
+        Set<String> keys = new TreeSet<>();
+        for (String month : months) {
+            if (month != null && !month.isEmpty()) {
+                keys.add(key(month));
+            }
+        }
+        for (String month : keys) {
+            bump(month);
+        }
+    }
+
+    /** @return 月份的水位；尚未有寫入時為 0 */
+    public long current(String month) {
+        return between(month, month);
+    }
+
+    /** @return [startMonth, endMonth] 內各月份水位的總和，任一月份變動即不同 */
+    public long between(String startMonth, String endMonth) {
+        Long sum = jdbcTemplate.queryForObject(
+                "SELECT COALESCE(SUM(version), 0) FROM report_data_version WHERE month BETWEEN ? AND ?",
+                Long.class, key(startMonth), key(endMonth));
+        return sum != null ? sum : 0L;
+    }
+
+    /** @return 所有月份水位的總和（查詢不限月份時使用） */
+    public long all() {
+        Long sum = jdbcTemplate.queryForObject(
+                "SELECT COALESCE(SUM(version), 0) FROM report_data_version", Long.class);
+        return sum != null ? sum : 0L;
+    }
+
+    private static String key(String month) {
+        return month.replace("-", "");
+    }
+}
@@ -27,11 +27,14 @@ public class SalesForecastConfigService {
 
     private final SalesForecastConfigRepository repository;
     private final FormSummaryService formSummaryService;
+    private final ReportDataVersion reportDataVersion;
 
     public SalesForecastConfigService(SalesForecastConfigRepository repository,
-                                      FormSummaryService formSummaryService) {
+                                      FormSummaryService formSummaryService,
+                                      ReportDataVersion reportDataVersion) {
         this.repository = repository;
         this.formSummaryService = formSummaryService;
+        this.reportDataVersion = reportDataVersion;
     }
 
     @Transactional
@@ -78,6 +81,7 @@ public class SalesForecastConfigService {
             throw new DuplicateMonthException("All months already exist: " + skippedMonths);
         }
 
+        reportDataVersion.bump(createdMonths);
         return new CreateMonthsResponse(createdMonths.size(), createdMonths);
     }
 
@@ -116,6 +120,7 @@ public class SalesForecastConfigService {
 
         config.setUpdatedAt(LocalDateTime.now());
         SalesForecastConfig saved = repository.save(config);
+        reportDataVersion.bump(saved.getMonth());
 
         if (Boolean.TRUE.equals(saved.getIsClosed())) {
             try {
@@ -139,6 +144,7 @@ public class SalesForecastConfigService {
             config.setUpdatedAt(now);
             SalesForecastConfig saved = repository.save(config);
             log.info("Auto-closed month {} (auto_close_day={})", saved.getMonth(), currentDay);
+            reportDataVersion.bump(saved.getMonth());
             try {
                 formSummaryService.createFormVersion1Snapshot(saved.getMonth(), saved);
             } catch (Exception ex) {
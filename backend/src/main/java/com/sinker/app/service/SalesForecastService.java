@@ -14,6 +14,9 @@ import com.sinker.app.entity.SalesForecast;
 import com.sinker.app.entity.SalesForecastConfig;
 import com.sinker.app.entity.SalesForecastVersionReason;
 import com.sinker.app.exception.ResourceNotFoundException;
+import com.sinker.app.repository.ForecastVersionCatalog;
+import com.sinker.app.repository.ForecastVersionOverlay;
+import com.sinker.app.repository.ProductDimension;
 import com.sinker.app.repository.SalesForecastConfigRepository;
 import com.sinker.app.repository.SalesForecastRepository;
 import com.sinker.app.repository.SalesForecastVersionReasonRepository;
@@ -31,6 +34,7 @@ import java.util.ArrayList;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
 import java.util.TreeMap;
 import java.util.stream.Collectors;
@@ -42,26 +46,37 @@ public class SalesForecastService {
     private static final DateTimeFormatter VERSION_FORMATTER =
             DateTimeFormatter.ofPattern("yyyy/MM/dd HH:mm:ss");
 
-    private static final List<String> FORM_SUMMARY_CHANNEL_ORDER = List.of(
-            "PX + 大全聯", "家樂福", "愛買", "7-11", "全家", "Ok+萊爾富",
-            "好市多", "楓康", "美聯社", "康是美", "電商", "市面經銷");
-
     private final SalesForecastRepository forecastRepository;
     private final SalesForecastConfigRepository configRepository;
     private final SalesForecastVersionReasonRepository versionReasonRepository;
     private final ErpProductService erpProductService;
     private final JdbcTemplate jdbcTemplate;
+    private final ForecastVersionCatalog versionCatalog;
+    private final ForecastVersionOverlay versionOverlay;
+    private final FormSummaryCache formSummaryCache;
+    private final ProductDimension productDimension;
+    private final ReportDataVersion reportDataVersion;
 
     public SalesForecastService(SalesForecastRepository forecastRepository,
                                SalesForecastConfigRepository configRepository,
                                SalesForecastVersionReasonRepository versionReasonRepository,
                                ErpProductService erpProductService,
-                               JdbcTemplate jdbcTemplate) {
+                               JdbcTemplate jdbcTemplate,
+                               ForecastVersionCatalog versionCatalog,
+                               ForecastVersionOverlay versionOverlay,
+                               FormSummaryCache formSummaryCache,
+                               ProductDimension productDimension,
+                               ReportDataVersion reportDataVersion) {
         this.forecastRepository = forecastRepository;
         this.configRepository = configRepository;
         this.versionReasonRepository = versionReasonRepository;
         this.erpProductService = erpProductService;
         this.jdbcTemplate = jdbcTemplate;
+        this.versionCatalog = versionCatalog;
+        this.versionOverlay = versionOverlay;
+        this.formSummaryCache = formSummaryCache;
+        this.productDimension = productDimension;
+        this.reportDataVersion = reportDataVersion;
     }
 
     @Transactional
@@ -90,11 +105,9 @@ public class SalesForecastService {
 
         LocalDateTime now = LocalDateTime.now();
         // Use existing version for this month+channel so new row appears in same version list (不加版次)
-        List<String> versions = forecastRepository.findDistinctVersionsByMonthAndChannel(
-                request.getMonth(), request.getChannel());
-        String version = (versions != null && !versions.isEmpty())
-                ? versions.get(0)
-                : now.format(VERSION_FORMATTER) + "(" + request.getChannel() + ")";
+        String version = versionCatalog.findLatestVersion(ForecastVersionCatalog.Source.SALES,
+                        request.getMonth(), request.getChannel())
+                .orElseGet(() -> now.format(VERSION_FORMATTER) + "(" + request.getChannel() + ")");
 
         // Create entity
         SalesForecast forecast = new SalesForecast();
@@ -112,6 +125,12 @@ public class SalesForecastService {
         forecast.setUpdatedAt(now);
 
         SalesForecast saved = forecastRepository.save(forecast);
+        productDimension.assignMonth(ProductDimension.Table.SALES, forecast.getMonth());
+        versionOverlay.hideFromChildren(ForecastVersionCatalog.Source.SALES, forecast.getMonth(), forecast.getChannel(),
+                forecast.getVersion(), saved.getId());
+        versionCatalog.rowAdded(ForecastVersionCatalog.Source.SALES, forecast.getMonth(), forecast.getChannel(),
+                forecast.getVersion(), now);
+        reportDataVersion.bump(forecast.getMonth());
         log.info("Created forecast: id={}, user={}, month={}, channel={}, productCode={}",
                 saved.getId(), userId, request.getMonth(), request.getChannel(), request.getProductCode());
 
@@ -121,7 +140,17 @@ public class SalesForecastService {
     @Transactional
     public ForecastResponse updateForecast(Integer id, UpdateForecastRequest request,
                                           Long userId, String roleCode, Set<String> authorities) {
-        log.info("Updating forecast: id={}, user={}, quantity={}", id, userId, request.getQuantity());
+        return updateForecast(id, request, null, userId, roleCode, authorities);
+    }
+
+    /**
+     * version 為畫面上正在編輯的版本；該列若是此版本由上層繼承而來，修改寫入此版本（copy-on-write），
+     * 上層版本不變。未指定或與列本身版本相同時直接修改該列。
+     */
+    @Transactional
+    public ForecastResponse updateForecast(Integer id, UpdateForecastRequest request, String version,
+                                          Long userId, String roleCode, Set<String> authorities) {
+        log.info("Updating forecast: id={}, version={}, user={}, quantity={}", id, version, userId, request.getQuantity());
 
         SalesForecast forecast = forecastRepository.findById(id)
                 .orElseThrow(() -> new ResourceNotFoundException("Forecast not found with id: " + id));
@@ -132,13 +161,31 @@ public class SalesForecastService {
         checkChannelOwnership(userId, forecast.getChannel(), roleCode);
 
         LocalDateTime now = LocalDateTime.now();
+        String targetVersion = resolveTargetVersion(forecast, version);
+        // 子版本繼承的是修改前的值
+        versionOverlay.pinToChildren(ForecastVersionCatalog.Source.SALES, forecast.getId(), targetVersion);
 
+        SalesForecast target = forecast;
+        if (!Objects.equals(targetVersion, forecast.getVersion())) {
+            target = overrideIn(forecast, targetVersion, now);
+        }
+        if (forecast.getFormVersionNo() != null || (targetVersion != null && targetVersion.startsWith("form_v"))) {
+            // 關帳後改寫表單版本明細（含表單版本繼承的列）
+            formSummaryCache.evictMonth(forecast.getMonth());
+        }
         // Update fields only; keep existing version so row stays in same version list
-        forecast.setQuantity(request.getQuantity());
-        forecast.setIsModified(true);
-        forecast.setUpdatedAt(now);
-
-        SalesForecast saved = forecastRepository.save(forecast);
+        target.setQuantity(request.getQuantity());
+        target.setIsModified(true);
+        target.setUpdatedAt(now);
+
+        SalesForecast saved = forecastRepository.save(target);
+        if (target != forecast) {
+            // 覆寫列為新列
+            productDimension.assignMonth(ProductDimension.Table.SALES, target.getMonth());
+        }
+        versionCatalog.rowUpdated(ForecastVersionCatalog.Source.SALES, target.getMonth(), target.getChannel(),
+                targetVersion, now);
+        reportDataVersion.bump(target.getMonth());
         log.info("Updated forecast: id={}, user={}, newQuantity={}",
                 id, userId, request.getQuantity());
 
@@ -147,7 +194,13 @@ public class SalesForecastService {
 
     @Transactional
     public void deleteForecast(Integer id, Long userId, String roleCode) {
-        log.info("Deleting forecast: id={}, user={}", id, userId);
+        deleteForecast(id, null, userId, roleCode);
+    }
+
+    /** version 語意同 {@link #updateForecast(Integer, UpdateForecastRequest, String, Long, String, Set)}；繼承列只在該版本標記刪除 */
+    @Transactional
+    public void deleteForecast(Integer id, String version, Long userId, String roleCode) {
+        log.info("Deleting forecast: id={}, version={}, user={}", id, version, userId);
 
         // Find existing forecast
         SalesForecast forecast = forecastRepository.findById(id)
@@ -159,12 +212,58 @@ public class SalesForecastService {
         // Check channel ownership
         checkChannelOwnership(userId, forecast.getChannel(), roleCode);
 
-        // Hard delete
-        forecastRepository.delete(forecast);
+        String targetVersion = resolveTargetVersion(forecast, version);
+        versionOverlay.pinToChildren(ForecastVersionCatalog.Source.SALES, forecast.getId(), targetVersion);
+        if (Objects.equals(targetVersion, forecast.getVersion())) {
+            // Hard delete
+            forecastRepository.delete(forecast);
+        }
+        if (!Objects.equals(targetVersion, forecast.getVersion()) || forecast.getBaseId() != null) {
+            // 繼承列或覆寫列被刪除後，上層的同一列不能再透出
+            versionOverlay.addRemoval(ForecastVersionCatalog.Source.SALES, forecast.getMonth(), forecast.getChannel(),
+                    targetVersion, originOf(forecast));
+        }
+        versionCatalog.rowRemoved(ForecastVersionCatalog.Source.SALES, forecast.getMonth(), forecast.getChannel(),
+                targetVersion, LocalDateTime.now());
+        reportDataVersion.bump(forecast.getMonth());
         log.info("Deleted forecast: id={}, user={}, month={}, channel={}, productCode={}",
                 id, userId, forecast.getMonth(), forecast.getChannel(), forecast.getProductCode());
     }
 
+    /** 未指定版本時即列本身的版本；指定其他版本時，該列必須是那個版本繼承來的 */
+    private String resolveTargetVersion(SalesForecast forecast, String version) {
+        if (version == null || version.isEmpty() || version.equals(forecast.getVersion())) {
+            return forecast.getVersion();
+        }
+        if (!versionOverlay.isVisible(ForecastVersionCatalog.Source.SALES, forecast.getMonth(), forecast.getChannel(),
+                version, forecast.getId(), originOf(forecast))) {
+            throw new ResourceNotFoundException("Forecast not found with id: " + forecast.getId() + " in version " + version);
+        }
+        return version;
+    }
+
+    private static int originOf(SalesForecast forecast) {
+        return forecast.getBaseId() != null ? forecast.getBaseId() : forecast.getId();
+    }
+
+    /** 在 version 中建立覆寫 src 的新列（src 所在的上層版本不變） */
+    private static SalesForecast overrideIn(SalesForecast src, String version, LocalDateTime now) {
+        SalesForecast copy = new SalesForecast();
+        copy.setMonth(src.getMonth());
+        copy.setChannel(src.getChannel());
+        copy.setCategory(src.getCategory());
+        copy.setSpec(src.getSpec());
+        copy.setProductCode(src.getProductCode());
+        copy.setProductName(src.getProductName());
+        copy.setWarehouseLocation(src.getWarehouseLocation());
+        copy.setQuantity(src.getQuantity());
+        copy.setRemark(src.getRemark());
+        copy.setVersion(version);
+        copy.setBaseId(originOf(src));
+        copy.setCreatedAt(now);
+        return copy;
+    }
+
     private void validateMonthFormat(String month) {
         if (month == null || !month.matches("\\d{6}")) {
             throw new IllegalArgumentException("Invalid month format. Expected YYYYMM, got: " + month);
@@ -209,10 +308,9 @@ public class SalesForecastService {
         // Query with or without version
         List<SalesForecast> forecasts;
         if (version != null && !version.isEmpty()) {
-            forecasts = forecastRepository.findByMonthAndChannelAndVersionOrderByCategoryAscSpecAscProductCodeAsc(
-                    month, channel, version);
+            forecasts = versionOverlay.findSalesForecasts(month, channel, version);
         } else {
-            forecasts = forecastRepository.findLatestByMonthAndChannel(month, channel);
+            forecasts = versionOverlay.findSalesForecasts(month, channel, null);
         }
 
         return forecasts.stream()
@@ -230,20 +328,8 @@ public class SalesForecastService {
         // Check permissions and channel access
         checkQueryPermission(userId, channel, authorities);
 
-        // Get distinct versions
-        List<String> versions = forecastRepository.findDistinctVersionsByMonthAndChannel(month, channel);
-
-        // Build version info list
-        List<VersionInfo> versionInfos = new ArrayList<>();
-        for (String version : versions) {
-            Integer count = forecastRepository.countByMonthAndChannelAndVersion(month, channel, version);
-            LocalDateTime timestamp = forecastRepository.findMaxUpdatedAtByMonthAndChannelAndVersion(
-                    month, channel, version);
-
-            versionInfos.add(new VersionInfo(version, count, timestamp));
-        }
-
-        return versionInfos;
+        // 版本目錄一次讀出版本、筆數與最後更新時間
+        return versionCatalog.findVersions(ForecastVersionCatalog.Source.SALES, month, channel);
     }
 
     private void checkQueryPermission(Long userId, String channel, Set<String> authorities) {
@@ -277,31 +363,17 @@ public class SalesForecastService {
         validateMonthFormat(month);
         checkChannelOwnership(userId, channel, roleCode);
 
-        List<SalesForecast> latest = forecastRepository.findLatestByMonthAndChannel(month, channel);
-        if (latest.isEmpty()) {
-            throw new IllegalArgumentException("No data to copy for month=" + month + ", channel=" + channel);
-        }
+        String latest = versionCatalog.findLatestVersion(ForecastVersionCatalog.Source.SALES, month, channel)
+                .orElseThrow(() -> new IllegalArgumentException(
+                        "No data to copy for month=" + month + ", channel=" + channel));
 
         LocalDateTime now = LocalDateTime.now();
         String newVersion = now.format(VERSION_FORMATTER) + "(" + channel + ")";
 
-        for (SalesForecast src : latest) {
-            SalesForecast copy = new SalesForecast();
-            copy.setMonth(src.getMonth());
-            copy.setChannel(src.getChannel());
-            copy.setCategory(src.getCategory());
-            copy.setSpec(src.getSpec());
-            copy.setProductCode(src.getProductCode());
-            copy.setProductName(src.getProductName());
-            copy.setWarehouseLocation(src.getWarehouseLocation());
-            copy.setQuantity(src.getQuantity());
-            copy.setVersion(newVersion);
-            copy.setIsModified(false);
-            copy.setCreatedAt(now);
-            copy.setUpdatedAt(now);
-            forecastRepository.save(copy);
-        }
-        log.info("Created new version: {} with {} rows", newVersion, latest.size());
+        // 新版本只是疊加在最新版本上的目錄列，明細在編輯時才寫入
+        versionCatalog.createOverlay(ForecastVersionCatalog.Source.SALES, month, channel, newVersion, latest, now);
+        reportDataVersion.bump(month);
+        log.info("Created new version: {} over {}", newVersion, latest);
         return new CopyVersionResponse(newVersion);
     }
 
@@ -321,6 +393,7 @@ public class SalesForecastService {
         entity.setChangeReason(changeReason);
         entity.setUpdatedAt(LocalDateTime.now());
         versionReasonRepository.save(entity);
+        reportDataVersion.bump(month);
     }
 
     /** Delete all forecast rows for a version (cancel new version). */
@@ -329,9 +402,15 @@ public class SalesForecastService {
         log.info("Deleting version: user={}, month={}, channel={}, version={}", userId, month, channel, version);
         validateMonthFormat(month);
         checkChannelOwnership(userId, channel, roleCode);
+        versionOverlay.detachChildren(ForecastVersionCatalog.Source.SALES, month, channel, version);
         forecastRepository.deleteByMonthAndChannelAndVersion(month, channel, version);
+        if (version.startsWith("form_v")) {
+            formSummaryCache.evictMonth(month);
+        }
+        versionCatalog.removeVersion(ForecastVersionCatalog.Source.SALES, month, channel, version);
         versionReasonRepository.findByMonthAndChannelAndVersion(month, channel, version)
                 .ifPresent(versionReasonRepository::delete);
+        reportDataVersion.bump(month);
     }
 
     /** Diff current version vs previous version: rows where quantity differs. */
@@ -348,10 +427,8 @@ public class SalesForecastService {
         }
         String previousVersion = versions.get(idx + 1);
 
-        List<SalesForecast> currentRows = forecastRepository
-                .findByMonthAndChannelAndVersionOrderByCategoryAscSpecAscProductCodeAsc(month, channel, version);
-        List<SalesForecast> previousRows = forecastRepository
-                .findByMonthAndChannelAndVersionOrderByCategoryAscSpecAscProductCodeAsc(month, channel, previousVersion);
+        List<SalesForecast> currentRows = versionOverlay.findSalesForecasts(month, channel, version);
+        List<SalesForecast> previousRows = versionOverlay.findSalesForecasts(month, channel, previousVersion);
 
         Map<String, BigDecimal> prevQtyByProduct = previousRows.stream()
                 .collect(Collectors.toMap(SalesForecast::getProductCode, SalesForecast::getQuantity, (a, b) -> a, LinkedHashMap::new));
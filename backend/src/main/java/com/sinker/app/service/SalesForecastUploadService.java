@@ -1,11 +1,16 @@
 package com.sinker.app.service;
 
+import com.sinker.app.entity.SalesChannel;
 import com.sinker.app.entity.SalesForecast;
 import com.sinker.app.entity.SalesForecastConfig;
 import com.sinker.app.dto.forecast.UploadResponse;
 import com.sinker.app.dto.reference.ProductDTO;
 import com.sinker.app.exception.ExcelParseException;
 import com.sinker.app.exception.ResourceNotFoundException;
+import com.sinker.app.repository.ForecastBulkWriter;
+import com.sinker.app.repository.ForecastVersionCatalog;
+import com.sinker.app.repository.ForecastVersionOverlay;
+import com.sinker.app.repository.ProductDimension;
 import com.sinker.app.repository.SalesForecastConfigRepository;
 import com.sinker.app.repository.SalesForecastRepository;
 import com.sinker.app.service.ExcelParserService.SalesForecastRow;
@@ -20,11 +25,17 @@ import org.springframework.util.StringUtils;
 
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
 import java.util.Set;
 
 @Service
@@ -32,40 +43,63 @@ public class SalesForecastUploadService {
 
     private static final Logger log = LoggerFactory.getLogger(SalesForecastUploadService.class);
 
-    private static final Set<String> VALID_CHANNELS = Set.of(
-            "PX + 大全聯", "家樂福", "愛買", "7-11", "全家", "Ok+萊爾富",
-            "好市多", "楓康", "美聯社", "康是美", "電商", "市面經銷"
-    );
-
     private static final DateTimeFormatter VERSION_FORMATTER =
             DateTimeFormatter.ofPattern("yyyy/MM/dd HH:mm:ss");
 
+    /** 分段寫入以回報進度的筆數 */
+    private static final int PROGRESS_CHUNK_SIZE = 2000;
+
     private final SalesForecastRepository forecastRepository;
     private final SalesForecastConfigRepository configRepository;
     private final ExcelParserService excelParserService;
     private final ErpProductService erpProductService;
     private final JdbcTemplate jdbcTemplate;
+    private final ForecastBulkWriter bulkWriter;
+    private final UploadFingerprintService fingerprintService;
+    private final ForecastVersionCatalog versionCatalog;
+    private final ForecastVersionOverlay versionOverlay;
+    private final ProductDimension productDimension;
+    private final ReportDataVersion reportDataVersion;
 
     public SalesForecastUploadService(SalesForecastRepository forecastRepository,
                                       SalesForecastConfigRepository configRepository,
                                       ExcelParserService excelParserService,
                                       ErpProductService erpProductService,
-                                      JdbcTemplate jdbcTemplate) {
+                                      JdbcTemplate jdbcTemplate,
+                                      ForecastBulkWriter bulkWriter,
+                                      UploadFingerprintService fingerprintService,
+                                      ForecastVersionCatalog versionCatalog,
+                                      ForecastVersionOverlay versionOverlay,
+                                      ProductDimension productDimension,
+                                      ReportDataVersion reportDataVersion) {
         this.forecastRepository = forecastRepository;
         this.configRepository = configRepository;
         this.excelParserService = excelParserService;
         this.erpProductService = erpProductService;
         this.jdbcTemplate = jdbcTemplate;
+        this.bulkWriter = bulkWriter;
+        this.fingerprintService = fingerprintService;
+        this.versionCatalog = versionCatalog;
+        this.versionOverlay = versionOverlay;
+        this.productDimension = productDimension;
+        this.reportDataVersion = reportDataVersion;
     }
 
     @Transactional
     public UploadResponse upload(MultipartFile file, String month, String channel,
                                  Long userId, String roleCode) {
+        return upload(file, month, channel, userId, roleCode, UploadMode.REPLACE, UploadProgressListener.NONE);
+    }
+
+    @Transactional
+    public UploadResponse upload(MultipartFile file, String month, String channel,
+                                 Long userId, String roleCode, UploadMode mode,
+                                 UploadProgressListener progress) {
         long startTime = System.currentTimeMillis();
         log.info("Starting upload: user={}, month={}, channel={}", userId, month, channel);
 
         // 1. Validate channel
-        if (!VALID_CHANNELS.contains(channel)) {
+        if (!SalesChannel.isValid(channel)) {
             throw new IllegalArgumentException("Invalid channel: " + channel);
         }
 
@@ -91,6 +125,21 @@ public class SalesForecastUploadService {
             throw new IllegalArgumentException("Only .csv or .xlsx files are accepted");
         }
         boolean isCsv = filename.toLowerCase().endsWith(".csv");
+
+        // 同一月份+通路以相同模式再次上傳相同檔案且資料未變動：直接回傳上次結果
+        // （replace 與 delta 的結果筆數不同，模式不同時照常處理）
+        String contentHash = fingerprintService.hash(file);
+        String modeName = mode.name().toLowerCase();
+        Optional<UploadResponse> previous = fingerprintService.findPrevious(
+                UploadFingerprintService.Target.SALES_FORECAST, contentHash, UploadResponse.class, month, channel)
+                .filter(p -> modeName.equals(p.getMode()));
+        if (previous.isPresent()) {
+            log.info("Identical upload skipped: user={}, month={}, channel={}, version={}",
+                    userId, month, channel, previous.get().getVersion());
+            return previous.get();
+        }
+
+        progress.onPhase(UploadProgressListener.Phase.PARSING);
         List<SalesForecastRow> rows = isCsv
                 ? excelParserService.parseCsv(file)
                 : excelParserService.parse(file);
@@ -101,39 +150,20 @@ public class SalesForecastUploadService {
 
         // 6. Validate each row: 品號必須存在於系統中
         // 若檔案品號不存在：只提示「不能上傳」，不覆蓋寫入。
+        progress.onPhase(UploadProgressListener.Phase.VALIDATING);
         Set<String> invalidProductCodes = new LinkedHashSet<>();
-        for (SalesForecastRow row : rows) {
-            String rawCode = row.getProductCode();
-            String trimmed = rawCode != null ? rawCode.trim() : null;
-            if (trimmed == null || !StringUtils.hasText(trimmed) || !erpProductService.validateProduct(trimmed)) {
-                if (StringUtils.hasText(trimmed)) invalidProductCodes.add(trimmed);
-                else invalidProductCodes.add(rawCode != null ? rawCode : "（空白品號）");
-            }
-        }
+        Map<String, ProductDTO> products = resolveProducts(rows, invalidProductCodes);
         if (!invalidProductCodes.isEmpty()) {
             String codeList = String.join("、", invalidProductCodes);
             throw new ExcelParseException(List.of("以下品號不存在於系統中，無法上傳：" + codeList));
         }
 
-        // 7. Generate version string
+        // 7. Build rows from file (version assigned below)
         LocalDateTime now = LocalDateTime.now();
-        String version = now.format(VERSION_FORMATTER) + "(" + channel + ")";
-
-        // Cache product master to avoid querying same code repeatedly
-        Map<String, ProductDTO> productCache = new HashMap<>();
-
-        // 8. Delete existing data for same month+channel
-        forecastRepository.deleteByMonthAndChannel(month, channel);
-
-        // 9. Insert all rows
         List<SalesForecast> entities = new ArrayList<>();
         for (SalesForecastRow row : rows) {
             String productCode = row.getProductCode() != null ? row.getProductCode().trim() : null;
-            ProductDTO product = null;
-            if (productCode != null) {
-                product = productCache.computeIfAbsent(productCode, (k) ->
-                        erpProductService.findProduct(k).orElse(null));
-            }
+            ProductDTO product = productCode != null ? products.get(productCode) : null;
 
             SalesForecast sf = new SalesForecast();
             sf.setMonth(month);
@@ -155,7 +185,6 @@ public class SalesForecastUploadService {
                 sf.setWarehouseLocation(row.getWarehouseLocation());
             }
             sf.setQuantity(row.getQuantity());
-            sf.setVersion(version);
             sf.setIsModified(false);
             sf.setCreatedAt(now);
             sf.setUpdatedAt(now);
@@ -165,13 +194,157 @@ public class SalesForecastUploadService {
             String codeList = String.join("、", invalidProductCodes);
             throw new ExcelParseException(List.of("以下品號不存在於系統中，無法上傳：" + codeList));
         }
-        forecastRepository.saveAll(entities);
+
+        // 8. Write: replace = delete month+channel and insert all; delta = apply differences only
+        progress.onPhase(UploadProgressListener.Phase.WRITING);
+        UploadResponse response = mode == UploadMode.DELTA
+                ? applyDelta(month, channel, entities, now, progress)
+                : replaceAll(month, channel, entities, now, progress);
+        response.setMode(modeName);
+        productDimension.assignMonth(ProductDimension.Table.SALES, month);
+        versionCatalog.refresh(ForecastVersionCatalog.Source.SALES, month, channel);
+        reportDataVersion.bump(month);
+        fingerprintService.record(UploadFingerprintService.Target.SALES_FORECAST, contentHash, response,
+                month, channel);
 
         long duration = System.currentTimeMillis() - startTime;
-        log.info("Upload complete: user={}, month={}, channel={}, rows={}, version={}, duration={}ms",
-                userId, month, channel, rows.size(), version, duration);
+        log.info("Upload complete: user={}, month={}, channel={}, mode={}, rows={}, inserted={}, updated={}, "
+                        + "deleted={}, version={}, duration={}ms",
+                userId, month, channel, response.getMode(), rows.size(), response.getRowsInserted(),
+                response.getRowsUpdated(), response.getRowsDeleted(), response.getVersion(), duration);
+
+        return response;
+    }
+
+    private UploadResponse replaceAll(String month, String channel, List<SalesForecast> entities,
+                                      LocalDateTime now, UploadProgressListener progress) {
+        String version = now.format(VERSION_FORMATTER) + "(" + channel + ")";
+        int deleted = forecastRepository.deleteByMonthAndChannel(month, channel);
+        versionCatalog.dropOverlays(ForecastVersionCatalog.Source.SALES, month, channel);
+
+        for (SalesForecast sf : entities) {
+            sf.setVersion(version);
+        }
+        for (int from = 0; from < entities.size(); from += PROGRESS_CHUNK_SIZE) {
+            int to = Math.min(from + PROGRESS_CHUNK_SIZE, entities.size());
+            bulkWriter.insertSalesForecasts(entities.subList(from, to));
+            progress.onRowsProcessed(to, entities.size());
+        }
+
+        UploadResponse response = new UploadResponse(entities.size(), version, now, month, channel);
+        response.setRowsInserted(entities.size());
+        response.setRowsDeleted(deleted);
+        return response;
+    }
+
+    /**
+     * 依品號比對目前最新版本，只送出需要的 INSERT / UPDATE / DELETE，沿用最新版本字串（同編輯，不加版次）。
+     * 同一品號出現多列時依原順序一一配對；較舊版本的列一併刪除，結果與 replace 相同。
+     * 數量或品項欄位有變動的列會清除 is_modified；未變動的列（含備註）原樣保留。
+     * 最新版本若為疊加版本，先展開成完整明細再比對；其餘版本（含疊加版本）一併移除。
+     */
+    private UploadResponse applyDelta(String month, String channel, List<SalesForecast> entities,
+                                      LocalDateTime now, UploadProgressListener progress) {
+        String latestVersion = versionCatalog.findLatestVersion(ForecastVersionCatalog.Source.SALES, month, channel)
+                .orElse(null);
+        if (latestVersion != null) {
+            versionOverlay.materialize(ForecastVersionCatalog.Source.SALES, month, channel, latestVersion);
+        }
+        List<SalesForecast> existing = new ArrayList<>(forecastRepository.findByMonthAndChannel(month, channel));
+        if (latestVersion == null) {
+            for (SalesForecast sf : existing) {
+                if (latestVersion == null || sf.getVersion().compareTo(latestVersion) > 0) {
+                    latestVersion = sf.getVersion();
+                }
+            }
+        }
+        String version = latestVersion != null ? latestVersion : now.format(VERSION_FORMATTER) + "(" + channel + ")";
+
+        List<Integer> toDelete = new ArrayList<>();
+        Map<String, Deque<SalesForecast>> current = new HashMap<>();
+        existing.sort(Comparator.comparing(SalesForecast::getId));
+        for (SalesForecast sf : existing) {
+            if (version.equals(sf.getVersion())) {
+                current.computeIfAbsent(sf.getProductCode().toUpperCase(Locale.ROOT), k -> new ArrayDeque<>()).add(sf);
+            } else {
+                toDelete.add(sf.getId());
+            }
+        }
+
+        List<SalesForecast> toInsert = new ArrayList<>();
+        List<SalesForecast> toUpdate = new ArrayList<>();
+        int unchanged = 0;
+        for (SalesForecast incoming : entities) {
+            Deque<SalesForecast> matches = current.get(incoming.getProductCode().toUpperCase(Locale.ROOT));
+            SalesForecast match = matches != null ? matches.poll() : null;
+            if (match == null) {
+                incoming.setVersion(version);
+                toInsert.add(incoming);
+            } else if (sameValues(match, incoming)) {
+                unchanged++;
+            } else {
+                match.setCategory(incoming.getCategory());
+                match.setSpec(incoming.getSpec());
+                match.setProductName(incoming.getProductName());
+                match.setWarehouseLocation(incoming.getWarehouseLocation());
+                match.setQuantity(incoming.getQuantity());
+                match.setIsModified(false);
+                match.setUpdatedAt(now);
+                toUpdate.add(match);
+            }
+        }
+        for (Deque<SalesForecast> leftovers : current.values()) {
+            for (SalesForecast sf : leftovers) {
+                toDelete.add(sf.getId());
+            }
+        }
+
+        int total = toDelete.size() + toUpdate.size() + toInsert.size();
+        int deleted = toDelete.isEmpty() ? 0 : bulkWriter.deleteSalesForecastsByIds(toDelete);
+        versionCatalog.dropOverlays(ForecastVersionCatalog.Source.SALES, month, channel);
+        progress.onRowsProcessed(toDelete.size(), total);
+        int updated = toUpdate.isEmpty() ? 0 : bulkWriter.updateSalesForecastValues(toUpdate);
+        progress.onRowsProcessed(toDelete.size() + toUpdate.size(), total);
+        int inserted = toInsert.isEmpty() ? 0 : bulkWriter.insertSalesForecasts(toInsert);
+        progress.onRowsProcessed(total, total);
+
+        UploadResponse response = new UploadResponse(entities.size(), version, now, month, channel);
+        response.setRowsInserted(inserted);
+        response.setRowsUpdated(updated);
+        response.setRowsDeleted(deleted);
+        response.setRowsUnchanged(unchanged);
+        return response;
+    }
 
-        return new UploadResponse(rows.size(), version, now, month, channel);
+    private static boolean sameValues(SalesForecast a, SalesForecast b) {
+        return a.getQuantity().compareTo(b.getQuantity()) == 0
+                && Objects.equals(a.getCategory(), b.getCategory())
+                && Objects.equals(a.getSpec(), b.getSpec())
+                && Objects.equals(a.getProductName(), b.getProductName())
+                && Objects.equals(a.getWarehouseLocation(), b.getWarehouseLocation());
+    }
+
+    /**
+     * 一次以批次查詢取得整份檔案的品號主檔；不存在或空白的品號加入 invalidProductCodes。
+     */
+    private Map<String, ProductDTO> resolveProducts(List<SalesForecastRow> rows, Set<String> invalidProductCodes) {
+        Set<String> codes = new LinkedHashSet<>();
+        for (SalesForecastRow row : rows) {
+            String rawCode = row.getProductCode();
+            if (StringUtils.hasText(rawCode)) codes.add(rawCode.trim());
+        }
+        Map<String, ProductDTO> products = erpProductService.findProducts(codes);
+        for (SalesForecastRow row : rows) {
+            String rawCode = row.getProductCode();
+            String trimmed = rawCode != null ? rawCode.trim() : null;
+            if (!StringUtils.hasText(trimmed)) {
+                invalidProductCodes.add(rawCode != null ? rawCode : "（空白品號）");
+            } else if (!products.containsKey(trimmed)) {
+                log.debug("Product code not found in system: '{}'", trimmed);
+                invalidProductCodes.add(trimmed);
+            }
+        }
+        return products;
     }
 
     private void validateMonthFormat(String month) {
@@ -189,6 +362,23 @@ public class SalesForecastUploadService {
         }
     }
 
+    /** 重新上傳同月份同通路時的寫入方式 */
+    public enum UploadMode {
+        REPLACE, DELTA;
+
+        public static UploadMode fromParam(String value) {
+            if (value == null || value.isBlank()) {
+                return REPLACE;
+            }
+            for (UploadMode m : values()) {
+                if (m.name().equalsIgnoreCase(value.trim())) {
+                    return m;
+                }
+            }
+            throw new IllegalArgumentException("Invalid upload mode: " + value + " (expected replace or delta)");
+        }
+    }
+
     public static class BadRequestException extends RuntimeException {
         private final List<String> details;
 
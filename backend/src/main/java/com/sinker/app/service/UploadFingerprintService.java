@@ -0,0 +1,161 @@
+package com.sinker.app.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sinker.app.exception.ExcelParseException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Timestamp;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * 上傳檔內容雜湊去重（upload_fingerprint）。
+ * 同一目標（例如 月份+通路）再次上傳位元組完全相同的檔案，且目標資料自上次上傳後未被改動時，
+ * 直接回傳上次的結果，不重新解析、刪除與寫入。
+ */
+@Service
+public class UploadFingerprintService {
+
+    private static final Logger log = LoggerFactory.getLogger(UploadFingerprintService.class);
+
+    /**
+     * 上傳目標：資料表與定位一次上傳範圍的條件（參數順序同 key）。
+     * 有疊加版本的目標另列版本目錄與刪除標記表：複製版本、刪除繼承列等只寫這兩張表。
+     */
+    public enum Target {
+        SALES_FORECAST("sales_forecast", "month = ? AND channel = ?",
+                "sales_forecast_version", "sales_forecast_removal"),
+        GIFT_SALES_FORECAST("gift_sales_forecast", "month = ? AND channel = ?",
+                "gift_sales_forecast_version", "gift_sales_forecast_removal"),
+        WEEKLY_SCHEDULE("production_weekly_schedule", "week_start = ? AND factory = ?", null, null),
+        MATERIAL_DEMAND("material_demand", "week_start = ? AND factory = ?", null, null);
+
+        private final String table;
+        private final String condition;
+        private final String catalogTable;
+        private final String removalTable;
+
+        Target(String table, String condition, String catalogTable, String removalTable) {
+            this.table = table;
+            this.condition = condition;
+            this.catalogTable = catalogTable;
+            this.removalTable = removalTable;
+        }
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+
+    public UploadFingerprintService(JdbcTemplate jdbcTemplate, ObjectMapper objectMapper) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.objectMapper = objectMapper;
+    }
+
+    /** 上傳檔 SHA-256（hex） */
+    public String hash(MultipartFile file) {
+        try (InputStream in = file.getInputStream()) {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] buffer = new byte[8192];
+            int n;
+            while ((n = in.read(buffer)) > 0) {
+                digest.update(buffer, 0, n);
+            }
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (IOException e) {
+            log.error("Failed to read uploaded file for hashing", e);
+            throw new ExcelParseException("Failed to read uploaded file");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * 若目標最近一次上傳的內容雜湊相同且資料未變動，回傳當時的結果。
+     */
+    public <T> Optional<T> findPrevious(Target target, String contentHash, Class<T> resultType, Object... key) {
+        List<String[]> stored = jdbcTemplate.query(
+                "SELECT content_hash, data_state, result_json FROM upload_fingerprint "
+                        + "WHERE upload_type = ? AND target_key = ?",
+                (rs, i) -> new String[]{rs.getString(1), rs.getString(2), rs.getString(3)},
+                target.name(), targetKey(key));
+        if (stored.isEmpty() || !contentHash.equals(stored.get(0)[0])) {
+            return Optional.empty();
+        }
+        if (!stored.get(0)[1].equals(dataState(target, key))) {
+            log.debug("Upload fingerprint matched but {} data changed since: key={}", target, targetKey(key));
+            return Optional.empty();
+        }
+        try {
+            return Optional.of(objectMapper.readValue(stored.get(0)[2], resultType));
+        } catch (JsonProcessingException e) {
+            log.warn("Unreadable stored upload result for {} {}: {}", target, targetKey(key), e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    /** 記錄成功上傳的內容雜湊與結果；須在同一交易內、目標資料寫入完成後呼叫 */
+    public void record(Target target, String contentHash, Object result, Object... key) {
+        String json;
+        try {
+            json = objectMapper.writeValueAsString(result);
+        } catch (JsonProcessingException e) {
+            log.warn("Skip upload fingerprint for {} {}: {}", target, targetKey(key), e.getMessage());
+            return;
+        }
+        jdbcTemplate.update(
+                "INSERT INTO upload_fingerprint (upload_type, target_key, content_hash, data_state, result_json) "
+                        + "VALUES (?, ?, ?, ?, ?) ON DUPLICATE KEY UPDATE content_hash = VALUES(content_hash), "
+                        + "data_state = VALUES(data_state), result_json = VALUES(result_json)",
+                target.name(), targetKey(key), contentHash, dataState(target, key), json);
+    }
+
+    /**
+     * 目標資料現況：明細的筆數、最大 id、最後更新時間，有疊加版本時再加上版本目錄（筆數、最大 id、最新版本）
+     * 與刪除標記（筆數、最大 id）；任一編輯、刪除、重寫、複製或刪除版本都會改變。以 SHA-256 存放。
+     */
+    private String dataState(Target target, Object... key) {
+        StringBuilder state = new StringBuilder(jdbcTemplate.queryForObject(
+                "SELECT COUNT(*), COALESCE(MAX(id), 0), MAX(updated_at) FROM " + target.table
+                        + " WHERE " + target.condition,
+                (rs, i) -> {
+                    Timestamp updatedAt = rs.getTimestamp(3);
+                    return rs.getLong(1) + ":" + rs.getLong(2) + ":"
+                            + (updatedAt != null ? updatedAt.toLocalDateTime() : "-");
+                },
+                key));
+        if (target.catalogTable != null) {
+            state.append('|').append(jdbcTemplate.queryForObject(
+                    "SELECT COUNT(*), COALESCE(MAX(id), 0), MAX(CASE WHEN is_latest THEN version END) FROM "
+                            + target.catalogTable + " WHERE " + target.condition,
+                    (rs, i) -> rs.getLong(1) + ":" + rs.getLong(2) + ":" + rs.getString(3),
+                    key));
+            state.append('|').append(jdbcTemplate.queryForObject(
+                    "SELECT COUNT(*), COALESCE(MAX(id), 0) FROM " + target.removalTable + " WHERE " + target.condition,
+                    (rs, i) -> rs.getLong(1) + ":" + rs.getLong(2),
+                    key));
+        }
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(state.toString().getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String targetKey(Object... key) {
+        return Stream.of(key).map(String::valueOf).collect(Collectors.joining("|"));
+    }
+}
@@ -0,0 +1,220 @@
+package com.sinker.app.service;
+
+import com.sinker.app.dto.forecast.UploadJobResponse;
+import com.sinker.app.dto.forecast.UploadResponse;
+import com.sinker.app.exception.ExcelParseException;
+import com.sinker.app.exception.ResourceNotFoundException;
+import com.sinker.app.service.SalesForecastUploadService.UploadMode;
+import com.sinker.app.service.UploadProgressListener.Phase;
+import com.sinker.app.util.SpooledMultipartFile;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 銷售預估上傳工作：解析與寫入在有界執行緒池中進行，進度存於記憶體供
+ * {@code GET /api/sales-forecast/upload-jobs/{id}} 輪詢。同步上傳 API 亦經此排隊，
+ * 確保同時進行的大量寫入不超過 pool size；佇列滿時拋出 {@link RejectedExecutionException}。
+ */
+@Service
+public class UploadJobService {
+
+    private static final Logger log = LoggerFactory.getLogger(UploadJobService.class);
+
+    private final SalesForecastUploadService uploadService;
+    private final ThreadPoolExecutor executor;
+    private final long retentionMinutes;
+    private final Map<String, UploadJob> jobs = new ConcurrentHashMap<>();
+
+    public UploadJobService(SalesForecastUploadService uploadService,
+                            @Value("${app.upload-jobs.pool-size:2}") int poolSize,
+                            @Value("${app.upload-jobs.queue-capacity:16}") int queueCapacity,
+                            @Value("${app.upload-jobs.retention-minutes:60}") long retentionMinutes) {
+        this.uploadService = uploadService;
+        this.retentionMinutes = retentionMinutes;
+        this.executor = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), new CustomizableThreadFactory("upload-job-"),
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /** 排入上傳工作並立即回傳工作狀態（phase = QUEUED） */
+    public UploadJobResponse submit(MultipartFile file, String month, String channel, UploadMode mode,
+                                    Long userId, String roleCode) {
+        UploadJob job = enqueue(file, month, channel, mode, userId, roleCode);
+        log.info("Upload job queued: id={}, user={}, month={}, channel={}", job.id, userId, month, channel);
+        return job.toResponse();
+    }
+
+    /** 同步上傳：同樣排入工作佇列，等待完成後回傳結果，失敗時拋出原本的例外 */
+    public UploadResponse uploadAndWait(MultipartFile file, String month, String channel, UploadMode mode,
+                                        Long userId, String roleCode) {
+        UploadJob job = enqueue(file, month, channel, mode, userId, roleCode);
+        try {
+            return job.future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Upload interrupted", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException re) throw re;
+            if (cause instanceof Error err) throw err;
+            throw new IllegalStateException(cause.getMessage(), cause);
+        }
+    }
+
+    public UploadJobResponse getJob(String jobId, Long userId, String roleCode) {
+        UploadJob job = jobs.get(jobId);
+        // 只有提交者與 admin 可查詢；其他人一律視為不存在
+        if (job == null || (!"admin".equals(roleCode) && !job.userId.equals(userId))) {
+            throw new ResourceNotFoundException("Upload job not found: " + jobId);
+        }
+        return job.toResponse();
+    }
+
+    /** 清除已結束且超過保留時間的工作紀錄 */
+    @Scheduled(fixedDelay = 60_000)
+    public void evictExpiredJobs() {
+        LocalDateTime cutoff = LocalDateTime.now().minusMinutes(retentionMinutes);
+        jobs.values().removeIf(job -> job.finishedAt != null && job.finishedAt.isBefore(cutoff));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    private UploadJob enqueue(MultipartFile file, String month, String channel, UploadMode mode,
+                              Long userId, String roleCode) {
+        SpooledMultipartFile spooled;
+        try {
+            spooled = SpooledMultipartFile.spool(file);
+        } catch (IOException e) {
+            log.error("Failed to spool uploaded file", e);
+            throw new ExcelParseException("Failed to read uploaded file");
+        }
+
+        UploadJob job = new UploadJob(UUID.randomUUID().toString(), userId, month, channel);
+        jobs.put(job.id, job);
+        try {
+            job.future = CompletableFuture.supplyAsync(
+                    () -> run(job, spooled, mode, roleCode), executor);
+        } catch (RejectedExecutionException e) {
+            jobs.remove(job.id);
+            deleteQuietly(spooled);
+            log.warn("Upload job rejected, queue full: user={}, month={}, channel={}", userId, month, channel);
+            throw e;
+        }
+        return job;
+    }
+
+    private UploadResponse run(UploadJob job, SpooledMultipartFile file, UploadMode mode, String roleCode) {
+        try {
+            UploadResponse result = uploadService.upload(file, job.month, job.channel, job.userId, roleCode,
+                    mode, job);
+            job.complete(result);
+            return result;
+        } catch (ExcelParseException e) {
+            job.fail(e.getErrors());
+            throw e;
+        } catch (RuntimeException e) {
+            if (!(e instanceof IllegalArgumentException) && !(e instanceof ResourceNotFoundException)
+                    && !(e instanceof AccessDeniedException)) {
+                log.error("Upload job failed: id={}", job.id, e);
+            }
+            job.fail(List.of(String.valueOf(e.getMessage())));
+            throw e;
+        } finally {
+            deleteQuietly(file);
+        }
+    }
+
+    private static void deleteQuietly(SpooledMultipartFile file) {
+        try {
+            file.delete();
+        } catch (IOException e) {
+            log.warn("Failed to delete spooled upload file: {}", e.getMessage());
+        }
+    }
+
+    /** 單一上傳工作狀態；由工作執行緒寫入、查詢請求讀取 */
+    private static final class UploadJob implements UploadProgressListener {
+        private final String id;
+        private final Long userId;
+        private final String month;
+        private final String channel;
+        private final LocalDateTime submittedAt = LocalDateTime.now();
+        private volatile Phase phase = Phase.QUEUED;
+        private volatile int rowsTotal;
+        private volatile int rowsProcessed;
+        private volatile List<String> errors = List.of();
+        private volatile UploadResponse result;
+        private volatile LocalDateTime finishedAt;
+        private volatile CompletableFuture<UploadResponse> future;
+
+        UploadJob(String id, Long userId, String month, String channel) {
+            this.id = id;
+            this.userId = userId;
+            this.month = month;
+            this.channel = channel;
+        }
+
+        @Override
+        public void onPhase(Phase phase) {
+            this.phase = phase;
+        }
+
+        @Override
+        public void onRowsProcessed(int processed, int total) {
+            this.rowsTotal = total;
+            this.rowsProcessed = processed;
+        }
+
+        void complete(UploadResponse result) {
+            this.result = result;
+            this.rowsTotal = result.getRowsProcessed();
+            this.rowsProcessed = result.getRowsProcessed();
+            this.finishedAt = LocalDateTime.now();
+            this.phase = Phase.COMPLETED;
+        }
+
+        void fail(List<String> errors) {
+            this.errors = List.copyOf(errors);
+            this.finishedAt = LocalDateTime.now();
+            this.phase = Phase.FAILED;
+        }
+
+        UploadJobResponse toResponse() {
+            UploadJobResponse response = new UploadJobResponse();
+            response.setJobId(id);
+            response.setPhase(phase.name());
+            response.setMonth(month);
+            response.setChannel(channel);
+            response.setRowsTotal(rowsTotal);
+            response.setRowsProcessed(rowsProcessed);
+            response.setErrors(errors);
+            response.setResult(result);
+            response.setSubmittedAt(submittedAt);
+            response.setFinishedAt(finishedAt);
+            return response;
+        }
+    }
+}
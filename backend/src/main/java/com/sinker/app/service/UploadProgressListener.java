@@ -0,0 +1,16 @@
+package com.sinker.app.service;
+
+/**
+ * 上傳處理進度回呼；同步上傳使用 {@link #NONE}，非同步上傳工作由 {@link UploadJobService} 記錄供輪詢。
+ */
+public interface UploadProgressListener {
+
+    UploadProgressListener NONE = new UploadProgressListener() {};
+
+    enum Phase { QUEUED, PARSING, VALIDATING, WRITING, COMPLETED, FAILED }
+
+    default void onPhase(Phase phase) {}
+
+    /** 寫入進度：已寫入 processed 筆，共 total 筆 */
+    default void onRowsProcessed(int processed, int total) {}
+}
@@ -2,6 +2,7 @@ package com.sinker.app.service;
 
 import com.sinker.app.dto.user.*;
 import com.sinker.app.entity.Role;
+import com.sinker.app.entity.SalesChannel;
 import com.sinker.app.entity.User;
 import com.sinker.app.exception.DuplicateFieldException;
 import com.sinker.app.exception.ResourceNotFoundException;
@@ -22,18 +23,12 @@ import org.springframework.util.StringUtils;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Set;
 
 @Service
 public class UserService {
 
     private static final String SALES_ROLE_CODE = "sales";
 
-    private static final Set<String> ALLOWED_CHANNELS = Set.of(
-            "PX + 大全聯", "家樂福", "愛買", "7-11", "全家", "Ok+萊爾富",
-            "好市多", "楓康", "美聯社", "康是美", "電商", "市面經銷"
-    );
-
     private final UserRepository userRepository;
     private final RoleRepository roleRepository;
     private final PasswordEncoder passwordEncoder;
@@ -198,7 +193,7 @@ public class UserService {
     private void persistChannels(Long userId, List<String> channels) {
         jdbcTemplate.update("DELETE FROM sales_channels_users WHERE user_id = ?", userId);
         for (String ch : channels) {
-            if (ALLOWED_CHANNELS.contains(ch)) {
+            if (SalesChannel.isValid(ch)) {
                 jdbcTemplate.update("INSERT INTO sales_channels_users (user_id, channel) VALUES (?, ?)", userId, ch);
             }
         }
@@ -219,7 +214,7 @@ public class UserService {
                 throw new IllegalArgumentException("Sales role requires at least one channel");
             }
             for (String ch : channels) {
-                if (!ALLOWED_CHANNELS.contains(ch)) {
+                if (!SalesChannel.isValid(ch)) {
                     throw new IllegalArgumentException("Invalid channel: " + ch);
                 }
             }
@@ -1,15 +1,20 @@
 package com.sinker.app.service;
 
 import com.sinker.app.exception.ExcelParseException;
-import org.apache.poi.ss.usermodel.*;
+import com.sinker.app.util.StreamingXlsxReader;
+import com.sinker.app.util.StreamingXlsxReader.SheetRow;
 import org.apache.poi.hssf.usermodel.HSSFWorkbook;
-import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.apache.poi.ss.usermodel.CellType;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.time.ZoneId;
@@ -64,16 +69,18 @@ public class WeeklyScheduleExcelParser {
     public List<WeeklyScheduleRow> parse(MultipartFile file) {
         validateFileFormat(file);
 
-        try (Workbook workbook = createWorkbook(file)) {
-            Sheet sheet = workbook.getSheetAt(0);
-            if (sheet == null) {
-                throw new ExcelParseException("Excel file contains no sheets");
+        SheetCollector collector = new SheetCollector();
+        try (InputStream in = file.getInputStream()) {
+            if (file.getOriginalFilename().toLowerCase().endsWith(".xlsx")) {
+                StreamingXlsxReader.read(in, collector);
+            } else {
+                readXls(in, collector);
             }
-            return parseSheet(sheet);
         } catch (IOException e) {
             log.error("Failed to read Excel file", e);
             throw new ExcelParseException("Invalid Excel file format or corrupted file");
         }
+        return collector.finish();
     }
 
     private void validateFileFormat(MultipartFile file) {
@@ -90,74 +97,84 @@ public class WeeklyScheduleExcelParser {
         }
     }
 
-    private Workbook createWorkbook(MultipartFile file) throws IOException {
-        String filename = file.getOriginalFilename();
-        if (filename != null && filename.toLowerCase().endsWith(".xlsx")) {
-            return new XSSFWorkbook(file.getInputStream());
-        } else {
-            return new HSSFWorkbook(file.getInputStream());
+    /** 舊版 .xls 沒有 SAX 版的 sheet XML，仍以 HSSF 載入後逐列轉成 {@link SheetRow}。 */
+    private void readXls(InputStream in, SheetCollector collector) throws IOException {
+        try (Workbook workbook = new HSSFWorkbook(in)) {
+            Sheet sheet = workbook.getSheetAt(0);
+            if (sheet == null) {
+                throw new ExcelParseException("Excel file contains no sheets");
+            }
+            for (Row row : sheet) {
+                collector.handleRow(SheetRow.fromRow(row));
+            }
         }
     }
 
-    private List<WeeklyScheduleRow> parseSheet(Sheet sheet) {
-        int lastRow = sheet.getLastRowNum();
-        if (lastRow < 1) {
-            throw new ExcelParseException("Excel file has no data rows (only header or empty)");
-        }
-
-        // Parse header row to get column indices
-        Row headerRow = sheet.getRow(0);
-        if (headerRow == null) {
-            throw new ExcelParseException("Excel file is missing header row");
-        }
-
-        Map<String, Integer> columnIndices = parseHeaderRow(headerRow);
-        validateRequiredColumns(columnIndices);
-
-        // Parse data rows
-        List<WeeklyScheduleRow> rows = new ArrayList<>();
-        List<String> errors = new ArrayList<>();
-
-        for (int i = 1; i <= lastRow; i++) {
-            Row row = sheet.getRow(i);
-            if (row == null || isEmptyRow(row)) {
-                continue;
+    /**
+     * 逐列接收資料：第 1 列為表頭（依欄名定位欄位），其後每列即時解析，不保留整張 sheet。
+     */
+    private class SheetCollector implements StreamingXlsxReader.RowHandler {
+        private final List<WeeklyScheduleRow> rows = new ArrayList<>();
+        private final List<String> errors = new ArrayList<>();
+        private Map<String, Integer> columnIndices;
+        private boolean headerSeen;
+        private int lastRow = -1;
+
+        @Override
+        public void handleRow(SheetRow row) {
+            lastRow = Math.max(lastRow, row.getRowNum());
+            if (row.getRowNum() == 0) {
+                headerSeen = true;
+                columnIndices = parseHeaderRow(row);
+                return;
+            }
+            if (columnIndices == null || !hasRequiredColumns(columnIndices) || isEmptyRow(row)) {
+                return;
             }
-
             try {
-                WeeklyScheduleRow scheduleRow = parseDataRow(row, columnIndices, i + 1);
-                rows.add(scheduleRow);
+                rows.add(parseDataRow(row, columnIndices, row.getRowNum() + 1));
             } catch (Exception e) {
-                errors.add("Row " + (i + 1) + ": " + e.getMessage());
+                errors.add("Row " + (row.getRowNum() + 1) + ": " + e.getMessage());
             }
         }
 
-        if (!errors.isEmpty()) {
-            throw new ExcelParseException(errors);
-        }
+        List<WeeklyScheduleRow> finish() {
+            if (lastRow < 1) {
+                throw new ExcelParseException("Excel file has no data rows (only header or empty)");
+            }
+            if (!headerSeen) {
+                throw new ExcelParseException("Excel file is missing header row");
+            }
+            validateRequiredColumns(columnIndices);
 
-        if (rows.isEmpty()) {
-            throw new ExcelParseException("Excel file has no valid data rows");
-        }
+            if (!errors.isEmpty()) {
+                throw new ExcelParseException(errors);
+            }
 
-        log.info("Parsed {} rows from Excel file", rows.size());
-        return rows;
+            if (rows.isEmpty()) {
+                throw new ExcelParseException("Excel file has no valid data rows");
+            }
+
+            log.info("Parsed {} rows from Excel file", rows.size());
+            return rows;
+        }
     }
 
-    private Map<String, Integer> parseHeaderRow(Row headerRow) {
+    private Map<String, Integer> parseHeaderRow(SheetRow headerRow) {
         Map<String, Integer> columnIndices = new HashMap<>();
         for (int i = 0; i < headerRow.getLastCellNum(); i++) {
-            Cell cell = headerRow.getCell(i);
-            if (cell != null) {
-                String headerValue = getCellStringValue(cell).trim();
-                if (!headerValue.isEmpty()) {
-                    columnIndices.put(headerValue, i);
-                }
+            String headerValue = getCellStringValue(headerRow, i).trim();
+            if (!headerValue.isEmpty()) {
+                columnIndices.put(headerValue, i);
             }
         }
         return columnIndices;
     }
 
+    private boolean hasRequiredColumns(Map<String, Integer> columnIndices) {
+        return columnIndices.keySet().containsAll(REQUIRED_HEADERS);
+    }
+
     private void validateRequiredColumns(Map<String, Integer> columnIndices) {
         List<String> missingColumns = new ArrayList<>();
         for (String requiredHeader : REQUIRED_HEADERS) {
@@ -171,7 +188,7 @@ public class WeeklyScheduleExcelParser {
         }
     }
 
-    private WeeklyScheduleRow parseDataRow(Row row, Map<String, Integer> columnIndices, int rowNumber) {
+    private WeeklyScheduleRow parseDataRow(SheetRow row, Map<String, Integer> columnIndices, int rowNumber) {
         LocalDate demandDate = parseDateCell(row, columnIndices.get(HEADER_DEMAND_DATE), "需求日期");
         String productCode = parseStringCell(row, columnIndices.get(HEADER_PRODUCT_CODE), "品號");
         String productName = parseStringCell(row, columnIndices.get(HEADER_PRODUCT_NAME), "品名");
@@ -185,11 +202,10 @@ public class WeeklyScheduleExcelParser {
         return new WeeklyScheduleRow(demandDate, productCode, productName, warehouseLocation, quantity, rowNumber);
     }
 
-    private boolean isEmptyRow(Row row) {
+    private boolean isEmptyRow(SheetRow row) {
         for (int i = 0; i < row.getLastCellNum(); i++) {
-            Cell cell = row.getCell(i);
-            if (cell != null && cell.getCellType() != CellType.BLANK) {
-                String value = getCellStringValue(cell).trim();
+            if (!row.isBlank(i)) {
+                String value = getCellStringValue(row, i).trim();
                 if (!value.isEmpty()) {
                     return false;
                 }
@@ -198,17 +214,16 @@ public class WeeklyScheduleExcelParser {
         return true;
     }
 
-    private LocalDate parseDateCell(Row row, int columnIndex, String columnName) {
-        Cell cell = row.getCell(columnIndex);
-        if (cell == null) {
+    private LocalDate parseDateCell(SheetRow row, int columnIndex, String columnName) {
+        if (row.isBlank(columnIndex)) {
             throw new IllegalArgumentException(columnName + " is required");
         }
 
         try {
-            if (cell.getCellType() == CellType.NUMERIC && DateUtil.isCellDateFormatted(cell)) {
-                return cell.getLocalDateTimeCellValue().toLocalDate();
-            } else if (cell.getCellType() == CellType.STRING) {
-                String dateStr = cell.getStringCellValue().trim();
+            if (row.isDateFormatted(columnIndex)) {
+                return row.getLocalDateTimeValue(columnIndex).toLocalDate();
+            } else if (row.getCellType(columnIndex) == CellType.STRING) {
+                String dateStr = row.getStringValue(columnIndex).trim();
                 return LocalDate.parse(dateStr);
             } else {
                 throw new IllegalArgumentException(columnName + " must be a valid date");
@@ -218,30 +233,28 @@ public class WeeklyScheduleExcelParser {
         }
     }
 
-    private String parseStringCell(Row row, int columnIndex, String columnName) {
-        Cell cell = row.getCell(columnIndex);
-        if (cell == null) {
+    private String parseStringCell(SheetRow row, int columnIndex, String columnName) {
+        if (row.isBlank(columnIndex)) {
             throw new IllegalArgumentException(columnName + " is required");
         }
 
-        String value = getCellStringValue(cell).trim();
+        String value = getCellStringValue(row, columnIndex).trim();
         if (value.isEmpty()) {
             throw new IllegalArgumentException(columnName + " is required");
         }
         return value;
     }
 
-    private BigDecimal parseNumericCell(Row row, int columnIndex, String columnName) {
-        Cell cell = row.getCell(columnIndex);
-        if (cell == null) {
+    private BigDecimal parseNumericCell(SheetRow row, int columnIndex, String columnName) {
+        if (row.isBlank(columnIndex)) {
             throw new IllegalArgumentException(columnName + " is required");
         }
 
         try {
-            if (cell.getCellType() == CellType.NUMERIC) {
-                return BigDecimal.valueOf(cell.getNumericCellValue());
-            } else if (cell.getCellType() == CellType.STRING) {
-                String value = cell.getStringCellValue().trim();
+            if (row.getCellType(columnIndex) == CellType.NUMERIC) {
+                return BigDecimal.valueOf(row.getNumericValue(columnIndex));
+            } else if (row.getCellType(columnIndex) == CellType.STRING) {
+                String value = row.getStringValue(columnIndex).trim();
                 return new BigDecimal(value);
             } else {
                 throw new IllegalArgumentException(columnName + " must be a number");
@@ -251,22 +264,17 @@ public class WeeklyScheduleExcelParser {
         }
     }
 
-    private String getCellStringValue(Cell cell) {
-        if (cell == null) {
-            return "";
-        }
-        switch (cell.getCellType()) {
+    private String getCellStringValue(SheetRow row, int col) {
+        switch (row.getCellType(col)) {
             case STRING:
-                return cell.getStringCellValue();
+                return row.getStringValue(col);
             case NUMERIC:
-                if (DateUtil.isCellDateFormatted(cell)) {
-                    return cell.getLocalDateTimeCellValue().toString();
+                if (row.isDateFormatted(col)) {
+                    return row.getLocalDateTimeValue(col).toString();
                 }
-                return String.valueOf(cell.getNumericCellValue());
+                return String.valueOf(row.getNumericValue(col));
             case BOOLEAN:
-                return String.valueOf(cell.getBooleanCellValue());
-            case FORMULA:
-                return cell.getCellFormula();
+                return String.valueOf(row.getBooleanValue(col));
             default:
                 return "";
         }
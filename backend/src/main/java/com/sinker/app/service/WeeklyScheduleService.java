@@ -18,6 +18,7 @@ import java.time.DayOfWeek;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
 import java.util.stream.Collectors;
 
 @Service
@@ -29,13 +30,16 @@ public class WeeklyScheduleService {
     private final WeeklyScheduleRepository repository;
     private final WeeklyScheduleExcelParser excelParser;
     private final PdcaIntegrationService pdcaIntegrationService;
+    private final UploadFingerprintService fingerprintService;
 
     public WeeklyScheduleService(WeeklyScheduleRepository repository,
                                  WeeklyScheduleExcelParser excelParser,
-                                 @Lazy PdcaIntegrationService pdcaIntegrationService) {
+                                 @Lazy PdcaIntegrationService pdcaIntegrationService,
+                                 UploadFingerprintService fingerprintService) {
         this.repository = repository;
         this.excelParser = excelParser;
         this.pdcaIntegrationService = pdcaIntegrationService;
+        this.fingerprintService = fingerprintService;
     }
 
     @Transactional
@@ -52,18 +56,28 @@ public class WeeklyScheduleService {
             throw new IllegalArgumentException("factory parameter is required");
         }
 
-        // 3. Parse Excel
+        // 3. Same file for same week+factory and data unchanged since: return previous result (no PDCA re-trigger)
+        String contentHash = fingerprintService.hash(file);
+        Optional<UploadScheduleResponse> previous = fingerprintService.findPrevious(
+                UploadFingerprintService.Target.WEEKLY_SCHEDULE, contentHash, UploadScheduleResponse.class,
+                weekStart, factory);
+        if (previous.isPresent()) {
+            log.info("Identical upload skipped: weekStart={}, factory={}", weekStart, factory);
+            return previous.get();
+        }
+
+        // 4. Parse Excel
         List<WeeklyScheduleRow> rows = excelParser.parse(file);
 
         if (rows.isEmpty()) {
             throw new IllegalArgumentException("Excel file has no valid data rows");
         }
 
-        // 4. Delete existing data for week_start + factory
+        // 5. Delete existing data for week_start + factory
         repository.deleteByWeekStartAndFactory(weekStart, factory);
         log.info("Deleted existing data for weekStart={}, factory={}", weekStart, factory);
 
-        // 5. Insert all rows
+        // 6. Insert all rows
         LocalDateTime now = LocalDateTime.now();
         List<WeeklySchedule> entities = rows.stream()
                 .map(row -> {
@@ -87,15 +101,19 @@ public class WeeklyScheduleService {
         log.info("Upload complete: weekStart={}, factory={}, rows={}, duration={}ms",
                 weekStart, factory, rows.size(), duration);
 
-        // Trigger PDCA：外部 recompute HTTP + 解析結果回填 material_demand（見 PdcaApiClientImpl）
-        pdcaIntegrationService.triggerPdcaIntegration(entities, weekStart, factory);
-
-        return new UploadScheduleResponse(
+        UploadScheduleResponse response = new UploadScheduleResponse(
                 "Upload successful",
                 rows.size(),
                 weekStart,
                 factory
         );
+        fingerprintService.record(UploadFingerprintService.Target.WEEKLY_SCHEDULE, contentHash, response,
+                weekStart, factory);
+
+        // Trigger PDCA：外部 recompute HTTP + 解析結果回填 material_demand（見 PdcaApiClientImpl）
+        pdcaIntegrationService.triggerPdcaIntegration(entities, weekStart, factory);
+
+        return response;
     }
 
     public java.util.List<String> getFactories() {
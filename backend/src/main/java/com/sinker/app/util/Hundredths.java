@@ -0,0 +1,37 @@
+package com.sinker.app.util;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * 數量的定點表示：以 long 存百分之一單位（DECIMAL(10,2) 欄位可精確表示）。
+ * 彙總迴圈中以 long 相加，只在讀入及輸出 DTO 時與 BigDecimal 互轉，避免每次 add 配置新的 BigDecimal。
+ */
+public final class Hundredths {
+
+    private static final int SCALE = 2;
+
+    private Hundredths() {
+    }
+
+    /** null 視為 0；超過兩位小數者四捨五入（與寫入 DECIMAL(10,2) 欄位時相同） */
+    public static long of(BigDecimal value) {
+        if (value == null) {
+            return 0L;
+        }
+        // scale 已是 2 時 setScale 直接回傳原物件
+        return value.setScale(SCALE, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+    }
+
+    public static BigDecimal toDecimal(long hundredths) {
+        return BigDecimal.valueOf(hundredths, SCALE);
+    }
+
+    public static long sum(long[] values) {
+        long total = 0L;
+        for (long v : values) {
+            total += v;
+        }
+        return total;
+    }
+}
@@ -0,0 +1,93 @@
+package com.sinker.app.util;
+
+import java.util.Arrays;
+
+/**
+ * int 鍵 → 連續序號（依第一次出現的順序由 0 起）的開放定址表。
+ * 以 int 代理鍵（如 product_id）分組時，序號直接當作陣列／List 的位置，
+ * 不需 Map&lt;Integer, …&gt; 的 boxing 與 Entry 配置。非執行緒安全。
+ */
+public final class IntIndex {
+
+    private static final int EMPTY = -1;
+
+    private int[] keys;
+    private int[] slots;
+    private int[] order;
+    private int size;
+
+    public IntIndex(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(4, expectedSize) * 2 - 1) << 1;
+        keys = new int[capacity];
+        slots = new int[capacity];
+        Arrays.fill(slots, EMPTY);
+        order = new int[Math.max(4, expectedSize)];
+    }
+
+    /** key 的序號；第一次出現時配發下一個序號 */
+    public int indexOf(int key) {
+        int pos = probe(key);
+        if (slots[pos] != EMPTY) {
+            return slots[pos];
+        }
+        if (size == order.length) {
+            order = Arrays.copyOf(order, size * 2);
+        }
+        order[size] = key;
+        keys[pos] = key;
+        slots[pos] = size;
+        size++;
+        if (size * 2 > keys.length) {
+            rehash();
+        }
+        return size - 1;
+    }
+
+    /** key 的序號；未出現過時為 -1 */
+    public int find(int key) {
+        return slots[probe(key)];
+    }
+
+    /** 序號 index 對應的鍵 */
+    public int keyAt(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException(index);
+        }
+        return order[index];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private int probe(int key) {
+        int mask = keys.length - 1;
+        int pos = mix(key) & mask;
+        while (slots[pos] != EMPTY && keys[pos] != key) {
+            pos = (pos + 1) & mask;
+        }
+        return pos;
+    }
+
+    private void rehash() {
+        int capacity = keys.length * 2;
+        keys = new int[capacity];
+        slots = new int[capacity];
+        Arrays.fill(slots, EMPTY);
+        int mask = capacity - 1;
+        for (int i = 0; i < size; i++) {
+            int pos = mix(order[i]) & mask;
+            while (slots[pos] != EMPTY) {
+                pos = (pos + 1) & mask;
+            }
+            keys[pos] = order[i];
+            slots[pos] = i;
+        }
+    }
+
+    /** 連續的自增 id 直接取低位會聚在一起，先打散 */
+    private static int mix(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
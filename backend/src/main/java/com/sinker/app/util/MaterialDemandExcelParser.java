@@ -1,12 +1,13 @@
 package com.sinker.app.util;
 
 import com.sinker.app.exception.ExcelParseException;
-import org.apache.poi.ss.usermodel.*;
-import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import com.sinker.app.util.StreamingXlsxReader.SheetRow;
+import org.apache.poi.ss.usermodel.CellType;
 import org.springframework.stereotype.Component;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.util.ArrayList;
@@ -80,48 +81,55 @@ public class MaterialDemandExcelParser {
         if (filename == null || !filename.toLowerCase().endsWith(".xlsx")) {
             throw new ExcelParseException("Invalid file format. Only .xlsx files are accepted");
         }
-        try (Workbook workbook = new XSSFWorkbook(file.getInputStream())) {
-            Sheet sheet = workbook.getSheetAt(0);
-            if (sheet == null) {
-                throw new ExcelParseException("Excel file contains no sheets");
-            }
-            return parseSheet(sheet);
+        SheetCollector collector = new SheetCollector();
+        try (InputStream in = file.getInputStream()) {
+            StreamingXlsxReader.read(in, collector);
         } catch (IOException e) {
             throw new ExcelParseException("Failed to read Excel file: " + e.getMessage());
         }
+        return collector.finish();
     }
 
-    private List<MaterialDemandRow> parseSheet(Sheet sheet) {
-        int lastRow = sheet.getLastRowNum();
-        if (lastRow < 1) {
-            throw new ExcelParseException("Excel file has no data rows");
-        }
-        Row headerRow = sheet.getRow(0);
-        if (headerRow == null || headerRow.getLastCellNum() < MIN_COLUMNS) {
-            throw new ExcelParseException("Excel must have 11 columns: 品號,品名,單位,上次進貨日,需求日,現有庫存,預計進廠日,預交量,需求量,預計庫存量,採購量");
-        }
-        List<MaterialDemandRow> rows = new ArrayList<>();
-        List<String> errors = new ArrayList<>();
-        for (int i = 1; i <= lastRow; i++) {
-            Row row = sheet.getRow(i);
-            if (row == null || isRowEmpty(row)) continue;
+    /** 逐列接收串流資料：第 1 列為表頭，其後每列即時轉成 {@link MaterialDemandRow}。 */
+    private class SheetCollector implements StreamingXlsxReader.RowHandler {
+        private final List<MaterialDemandRow> rows = new ArrayList<>();
+        private final List<String> errors = new ArrayList<>();
+        private boolean headerValid;
+        private int lastRow = -1;
+
+        @Override
+        public void handleRow(SheetRow row) {
+            lastRow = Math.max(lastRow, row.getRowNum());
+            if (row.getRowNum() == 0) {
+                headerValid = row.getLastCellNum() >= MIN_COLUMNS;
+                return;
+            }
+            if (!headerValid || isRowEmpty(row)) return;
             try {
-                MaterialDemandRow parsed = parseRow(row, i + 1);
-                rows.add(parsed);
+                rows.add(parseRow(row, row.getRowNum() + 1));
             } catch (ExcelParseException e) {
                 errors.addAll(e.getErrors());
             }
         }
-        if (!errors.isEmpty()) {
-            throw new ExcelParseException(errors);
-        }
-        if (rows.isEmpty()) {
-            throw new ExcelParseException("Excel file contains no valid data rows");
+
+        List<MaterialDemandRow> finish() {
+            if (lastRow < 1) {
+                throw new ExcelParseException("Excel file has no data rows");
+            }
+            if (!headerValid) {
+                throw new ExcelParseException("Excel must have 11 columns: 品號,品名,單位,上次進貨日,需求日,現有庫存,預計進廠日,預交量,需求量,預計庫存量,採購量");
+            }
+            if (!errors.isEmpty()) {
+                throw new ExcelParseException(errors);
+            }
+            if (rows.isEmpty()) {
+                throw new ExcelParseException("Excel file contains no valid data rows");
+            }
+            return rows;
         }
-        return rows;
     }
 
-    private MaterialDemandRow parseRow(Row row, int rowNumber) {
+    private MaterialDemandRow parseRow(SheetRow row, int rowNumber) {
         String materialCode = getStringCell(row, COL_MATERIAL_CODE);
         String materialName = getStringCell(row, COL_MATERIAL_NAME);
         String unit = getStringCell(row, COL_UNIT);
@@ -158,38 +166,34 @@ public class MaterialDemandExcelParser {
         );
     }
 
-    private String getStringCell(Row row, int col) {
-        Cell cell = row.getCell(col);
-        if (cell == null) return null;
-        switch (cell.getCellType()) {
+    private String getStringCell(SheetRow row, int col) {
+        switch (row.getCellType(col)) {
             case STRING:
-                String v = cell.getStringCellValue();
+                String v = row.getStringValue(col);
                 return v == null || v.isEmpty() ? null : v;
             case NUMERIC:
-                if (DateUtil.isCellDateFormatted(cell)) {
+                if (row.isDateFormatted(col)) {
                     try {
-                        return cell.getLocalDateTimeCellValue().toLocalDate().toString();
+                        return row.getLocalDateTimeValue(col).toLocalDate().toString();
                     } catch (Exception e) {
-                        return String.valueOf((long) cell.getNumericCellValue());
+                        return String.valueOf((long) row.getNumericValue(col));
                     }
                 }
-                return String.valueOf((long) cell.getNumericCellValue());
+                return String.valueOf((long) row.getNumericValue(col));
             case BLANK:
                 return null;
             default:
-                return cell.toString();
+                return row.getRawText(col);
         }
     }
 
-    private LocalDate getDateCell(Row row, int col) {
-        Cell cell = row.getCell(col);
-        if (cell == null) return null;
+    private LocalDate getDateCell(SheetRow row, int col) {
         try {
-            if (cell.getCellType() == CellType.NUMERIC && DateUtil.isCellDateFormatted(cell)) {
-                return cell.getLocalDateTimeCellValue().toLocalDate();
+            if (row.isDateFormatted(col)) {
+                return row.getLocalDateTimeValue(col).toLocalDate();
             }
-            if (cell.getCellType() == CellType.STRING) {
-                String s = cell.getStringCellValue();
+            if (row.getCellType(col) == CellType.STRING) {
+                String s = row.getStringValue(col);
                 if (s != null && !s.trim().isEmpty()) {
                     return LocalDate.parse(s.trim());
                 }
@@ -198,15 +202,13 @@ public class MaterialDemandExcelParser {
         return null;
     }
 
-    private BigDecimal getDecimalCell(Row row, int col, int rowNumber, String fieldName) {
-        Cell cell = row.getCell(col);
-        if (cell == null) return BigDecimal.ZERO;
+    private BigDecimal getDecimalCell(SheetRow row, int col, int rowNumber, String fieldName) {
         try {
-            if (cell.getCellType() == CellType.NUMERIC) {
-                return BigDecimal.valueOf(cell.getNumericCellValue());
+            if (row.getCellType(col) == CellType.NUMERIC) {
+                return BigDecimal.valueOf(row.getNumericValue(col));
             }
-            if (cell.getCellType() == CellType.STRING) {
-                String s = cell.getStringCellValue();
+            if (row.getCellType(col) == CellType.STRING) {
+                String s = row.getStringValue(col);
                 if (s != null && !s.trim().isEmpty()) {
                     return new BigDecimal(s.trim());
                 }
@@ -217,10 +219,9 @@ public class MaterialDemandExcelParser {
         return BigDecimal.ZERO;
     }
 
-    private boolean isRowEmpty(Row row) {
+    private boolean isRowEmpty(SheetRow row) {
         for (int i = 0; i < MIN_COLUMNS; i++) {
-            Cell cell = row.getCell(i);
-            if (cell != null && cell.getCellType() != CellType.BLANK) {
+            if (!row.isBlank(i)) {
                 String v = getStringCell(row, i);
                 if (v != null && !v.trim().isEmpty()) return false;
             }
@@ -1,12 +1,13 @@
 package com.sinker.app.util;
 
 import com.sinker.app.exception.ExcelParseException;
-import org.apache.poi.ss.usermodel.*;
-import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import com.sinker.app.util.StreamingXlsxReader.SheetRow;
+import org.apache.poi.ss.usermodel.CellType;
 import org.springframework.stereotype.Component;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.math.BigDecimal;
 import java.util.ArrayList;
 import java.util.List;
@@ -70,48 +71,55 @@ public class MaterialPurchaseExcelParser {
         if (filename == null || !filename.toLowerCase().endsWith(".xlsx")) {
             throw new ExcelParseException("Invalid file format. Only .xlsx files are accepted");
         }
-        try (Workbook workbook = new XSSFWorkbook(file.getInputStream())) {
-            Sheet sheet = workbook.getSheetAt(0);
-            if (sheet == null) {
-                throw new ExcelParseException("Excel file contains no sheets");
-            }
-            return parseSheet(sheet);
+        SheetCollector collector = new SheetCollector();
+        try (InputStream in = file.getInputStream()) {
+            StreamingXlsxReader.read(in, collector);
         } catch (IOException e) {
             throw new ExcelParseException("Failed to read Excel file: " + e.getMessage());
         }
+        return collector.finish();
     }
 
-    private List<MaterialPurchaseRow> parseSheet(Sheet sheet) {
-        int lastRow = sheet.getLastRowNum();
-        if (lastRow < 1) {
-            throw new ExcelParseException("Excel file has no data rows");
-        }
-        Row headerRow = sheet.getRow(0);
-        if (headerRow == null || headerRow.getLastCellNum() < MIN_COLUMNS) {
-            throw new ExcelParseException("Excel must have 9 columns: 品號,品名,箱數小計,半成品名稱,半成品編號,公斤/箱,籃數,箱/桶,所需桶數");
-        }
-        List<MaterialPurchaseRow> rows = new ArrayList<>();
-        List<String> errors = new ArrayList<>();
-        for (int i = 1; i <= lastRow; i++) {
-            Row row = sheet.getRow(i);
-            if (row == null || isRowEmpty(row)) continue;
+    /** 逐列接收串流資料：第 1 列為表頭，其後每列即時轉成 {@link MaterialPurchaseRow}。 */
+    private class SheetCollector implements StreamingXlsxReader.RowHandler {
+        private final List<MaterialPurchaseRow> rows = new ArrayList<>();
+        private final List<String> errors = new ArrayList<>();
+        private boolean headerValid;
+        private int lastRow = -1;
+
+        @Override
+        public void handleRow(SheetRow row) {
+            lastRow = Math.max(lastRow, row.getRowNum());
+            if (row.getRowNum() == 0) {
+                headerValid = row.getLastCellNum() >= MIN_COLUMNS;
+                return;
+            }
+            if (!headerValid || isRowEmpty(row)) return;
             try {
-                MaterialPurchaseRow parsed = parseRow(row, i + 1);
-                rows.add(parsed);
+                rows.add(parseRow(row, row.getRowNum() + 1));
             } catch (ExcelParseException e) {
                 errors.addAll(e.getErrors());
             }
         }
-        if (!errors.isEmpty()) {
-            throw new ExcelParseException(errors);
-        }
-        if (rows.isEmpty()) {
-            throw new ExcelParseException("Excel file contains no valid data rows");
+
+        List<MaterialPurchaseRow> finish() {
+            if (lastRow < 1) {
+                throw new ExcelParseException("Excel file has no data rows");
+            }
+            if (!headerValid) {
+                throw new ExcelParseException("Excel must have 9 columns: 品號,品名,箱數小計,半成品名稱,半成品編號,公斤/箱,籃數,箱/桶,所需桶數");
+            }
+            if (!errors.isEmpty()) {
+                throw new ExcelParseException(errors);
+            }
+            if (rows.isEmpty()) {
+                throw new ExcelParseException("Excel file contains no valid data rows");
+            }
+            return rows;
         }
-        return rows;
     }
 
-    private MaterialPurchaseRow parseRow(Row row, int rowNumber) {
+    private MaterialPurchaseRow parseRow(SheetRow row, int rowNumber) {
         String productCode = getStringCell(row, COL_PRODUCT_CODE);
         String productName = getStringCell(row, COL_PRODUCT_NAME);
         if (productCode == null || productCode.isBlank()) {
@@ -143,31 +151,27 @@ public class MaterialPurchaseExcelParser {
         );
     }
 
-    private String getStringCell(Row row, int col) {
-        Cell cell = row.getCell(col);
-        if (cell == null) return null;
-        switch (cell.getCellType()) {
+    private String getStringCell(SheetRow row, int col) {
+        switch (row.getCellType(col)) {
             case STRING:
-                String v = cell.getStringCellValue();
+                String v = row.getStringValue(col);
                 return v == null || v.isEmpty() ? null : v;
             case NUMERIC:
-                return String.valueOf((long) cell.getNumericCellValue());
+                return String.valueOf((long) row.getNumericValue(col));
             case BLANK:
                 return null;
             default:
-                return cell.toString();
+                return row.getRawText(col);
         }
     }
 
-    private BigDecimal getDecimalCell(Row row, int col, int rowNumber, String fieldName) {
-        Cell cell = row.getCell(col);
-        if (cell == null) return BigDecimal.ZERO;
+    private BigDecimal getDecimalCell(SheetRow row, int col, int rowNumber, String fieldName) {
         try {
-            if (cell.getCellType() == CellType.NUMERIC) {
-                return BigDecimal.valueOf(cell.getNumericCellValue());
+            if (row.getCellType(col) == CellType.NUMERIC) {
+                return BigDecimal.valueOf(row.getNumericValue(col));
             }
-            if (cell.getCellType() == CellType.STRING) {
-                String s = cell.getStringCellValue();
+            if (row.getCellType(col) == CellType.STRING) {
+                String s = row.getStringValue(col);
                 if (s != null && !s.trim().isEmpty()) {
                     return new BigDecimal(s.trim());
                 }
@@ -178,10 +182,9 @@ public class MaterialPurchaseExcelParser {
         return BigDecimal.ZERO;
     }
 
-    private boolean isRowEmpty(Row row) {
+    private boolean isRowEmpty(SheetRow row) {
         for (int i = 0; i < 3; i++) {
-            Cell cell = row.getCell(i);
-            if (cell != null && cell.getCellType() != CellType.BLANK) {
+            if (!row.isBlank(i)) {
                 String v = getStringCell(row, i);
                 if (v != null && !v.trim().isEmpty()) return false;
             }
@@ -1,8 +1,8 @@
 package com.sinker.app.util;
 
 import com.sinker.app.exception.ExcelParseException;
-import org.apache.poi.ss.usermodel.*;
-import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import com.sinker.app.util.StreamingXlsxReader.SheetRow;
+import org.apache.poi.ss.usermodel.CellType;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
@@ -10,6 +10,7 @@ import org.springframework.web.multipart.MultipartFile;
 
 import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
@@ -111,15 +112,13 @@ public class SemiProductExcelParser {
     public List<SemiProductRow> parse(MultipartFile file) {
         validateFileFormat(file);
 
-        try (Workbook workbook = new XSSFWorkbook(file.getInputStream())) {
-            Sheet sheet = workbook.getSheetAt(0);
-            if (sheet == null) {
-                throw new ExcelParseException("Excel file contains no sheets");
-            }
-            return parseSheet(sheet);
+        SheetCollector collector = new SheetCollector();
+        try (InputStream in = file.getInputStream()) {
+            StreamingXlsxReader.read(in, collector);
         } catch (IOException e) {
             throw new ExcelParseException("Failed to read Excel file: " + e.getMessage());
         }
+        return collector.finish();
     }
 
     private void validateFileFormat(MultipartFile file) {
@@ -136,46 +135,46 @@ public class SemiProductExcelParser {
         }
     }
 
-    private List<SemiProductRow> parseSheet(Sheet sheet) {
-        int lastRow = sheet.getLastRowNum();
-        if (lastRow < 1) {
-            throw new ExcelParseException("Excel file has no data rows (only header or empty)");
-        }
-
-        // Validate header row
-        Row headerRow = sheet.getRow(0);
-        if (headerRow == null || headerRow.getLastCellNum() < MIN_COLUMNS) {
-            throw new ExcelParseException("Excel file is missing required columns. Expected 3 columns: 品號, 品名, 提前日數");
-        }
-
-        List<SemiProductRow> rows = new ArrayList<>();
-        List<String> errors = new ArrayList<>();
-
-        for (int i = 1; i <= lastRow; i++) {
-            Row row = sheet.getRow(i);
-            if (row == null || isRowEmpty(row)) {
-                continue;
+    /** 逐列接收串流資料：第 1 列為表頭，其後每列即時轉成 {@link SemiProductRow}。 */
+    private class SheetCollector implements StreamingXlsxReader.RowHandler {
+        private final List<SemiProductRow> rows = new ArrayList<>();
+        private final List<String> errors = new ArrayList<>();
+        private boolean headerValid;
+        private int lastRow = -1;
+
+        @Override
+        public void handleRow(SheetRow row) {
+            lastRow = Math.max(lastRow, row.getRowNum());
+            if (row.getRowNum() == 0) {
+                headerValid = row.getLastCellNum() >= MIN_COLUMNS;
+                return;
             }
+            if (!headerValid || isRowEmpty(row)) return;
             try {
-                SemiProductRow parsed = parseRow(row, i + 1);
-                rows.add(parsed);
+                rows.add(parseRow(row, row.getRowNum() + 1));
             } catch (ExcelParseException e) {
                 errors.addAll(e.getErrors());
             }
         }
 
-        if (!errors.isEmpty()) {
-            throw new ExcelParseException(errors);
-        }
-
-        if (rows.isEmpty()) {
-            throw new ExcelParseException("Excel file contains no valid data rows");
+        List<SemiProductRow> finish() {
+            if (lastRow < 1) {
+                throw new ExcelParseException("Excel file has no data rows (only header or empty)");
+            }
+            if (!headerValid) {
+                throw new ExcelParseException("Excel file is missing required columns. Expected 3 columns: 品號, 品名, 提前日數");
+            }
+            if (!errors.isEmpty()) {
+                throw new ExcelParseException(errors);
+            }
+            if (rows.isEmpty()) {
+                throw new ExcelParseException("Excel file contains no valid data rows");
+            }
+            return rows;
         }
-
-        return rows;
     }
 
-    private SemiProductRow parseRow(Row row, int rowNumber) {
+    private SemiProductRow parseRow(SheetRow row, int rowNumber) {
         String productCode = getStringCell(row, COL_PRODUCT_CODE);
         String productName = getStringCell(row, COL_PRODUCT_NAME);
         Integer advanceDays = parseAdvanceDays(row, rowNumber);
@@ -196,18 +195,17 @@ public class SemiProductExcelParser {
         return new SemiProductRow(productCode.trim(), productName.trim(), advanceDays, rowNumber);
     }
 
-    private Integer parseAdvanceDays(Row row, int rowNumber) {
-        Cell cell = row.getCell(COL_ADVANCE_DAYS);
-        if (cell == null) {
+    private Integer parseAdvanceDays(SheetRow row, int rowNumber) {
+        if (row.isBlank(COL_ADVANCE_DAYS)) {
             throw new ExcelParseException("Row " + rowNumber + ": advance_days is required");
         }
 
         Integer advanceDays;
         try {
-            if (cell.getCellType() == CellType.NUMERIC) {
-                advanceDays = (int) cell.getNumericCellValue();
-            } else if (cell.getCellType() == CellType.STRING) {
-                String val = cell.getStringCellValue().trim();
+            if (row.getCellType(COL_ADVANCE_DAYS) == CellType.NUMERIC) {
+                advanceDays = (int) row.getNumericValue(COL_ADVANCE_DAYS);
+            } else if (row.getCellType(COL_ADVANCE_DAYS) == CellType.STRING) {
+                String val = row.getStringValue(COL_ADVANCE_DAYS).trim();
                 if (val.isEmpty()) {
                     throw new ExcelParseException("Row " + rowNumber + ": advance_days is required");
                 }
@@ -226,27 +224,23 @@ public class SemiProductExcelParser {
         return advanceDays;
     }
 
-    private String getStringCell(Row row, int colIndex) {
-        Cell cell = row.getCell(colIndex);
-        if (cell == null) return null;
-
-        switch (cell.getCellType()) {
+    private String getStringCell(SheetRow row, int colIndex) {
+        switch (row.getCellType(colIndex)) {
             case STRING:
-                String val = cell.getStringCellValue();
+                String val = row.getStringValue(colIndex);
                 return val.isEmpty() ? null : val;
             case NUMERIC:
-                return String.valueOf((long) cell.getNumericCellValue());
+                return String.valueOf((long) row.getNumericValue(colIndex));
             case BLANK:
                 return null;
             default:
-                return cell.toString();
+                return row.getRawText(colIndex);
         }
     }
 
-    private boolean isRowEmpty(Row row) {
+    private boolean isRowEmpty(SheetRow row) {
         for (int i = 0; i < MIN_COLUMNS; i++) {
-            Cell cell = row.getCell(i);
-            if (cell != null && cell.getCellType() != CellType.BLANK) {
+            if (!row.isBlank(i)) {
                 return false;
             }
         }
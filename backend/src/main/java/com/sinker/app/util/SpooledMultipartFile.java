@@ -0,0 +1,77 @@
+package com.sinker.app.util;
+
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * 將上傳檔複製為自有暫存檔的 {@link MultipartFile}。
+ * 請求結束後 servlet 容器會清掉原始 multipart 暫存，背景工作需先 spool 一份再處理；用畢呼叫 {@link #delete()}。
+ */
+public final class SpooledMultipartFile implements MultipartFile {
+
+    private final String name;
+    private final String originalFilename;
+    private final String contentType;
+    private final Path path;
+    private final long size;
+
+    private SpooledMultipartFile(String name, String originalFilename, String contentType, Path path, long size) {
+        this.name = name;
+        this.originalFilename = originalFilename;
+        this.contentType = contentType;
+        this.path = path;
+        this.size = size;
+    }
+
+    public static SpooledMultipartFile spool(MultipartFile source) throws IOException {
+        Path tmp = Files.createTempFile("upload-job-", ".tmp");
+        try (InputStream in = source.getInputStream()) {
+            long size = Files.copy(in, tmp, StandardCopyOption.REPLACE_EXISTING);
+            return new SpooledMultipartFile(source.getName(), source.getOriginalFilename(),
+                    source.getContentType(), tmp, size);
+        } catch (IOException e) {
+            Files.deleteIfExists(tmp);
+            throw e;
+        }
+    }
+
+    public void delete() throws IOException {
+        Files.deleteIfExists(path);
+    }
+
+    @Override
+    public String getName() { return name; }
+
+    @Override
+    public String getOriginalFilename() { return originalFilename; }
+
+    @Override
+    public String getContentType() { return contentType; }
+
+    @Override
+    public boolean isEmpty() { return size == 0; }
+
+    @Override
+    public long getSize() { return size; }
+
+    @Override
+    public byte[] getBytes() throws IOException {
+        return Files.readAllBytes(path);
+    }
+
+    @Override
+    public InputStream getInputStream() throws IOException {
+        return Files.newInputStream(path);
+    }
+
+    @Override
+    public void transferTo(File dest) throws IOException {
+        Files.copy(path, dest.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+}
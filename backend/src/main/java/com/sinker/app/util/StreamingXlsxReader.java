@@ -0,0 +1,327 @@
+package com.sinker.app.util;
+
+import com.sinker.app.exception.ExcelParseException;
+import org.apache.poi.UnsupportedFileFormatException;
+import org.apache.poi.openxml4j.exceptions.InvalidOperationException;
+import org.apache.poi.openxml4j.exceptions.OpenXML4JException;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.ss.usermodel.BuiltinFormats;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellType;
+import org.apache.poi.ss.usermodel.DateUtil;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.util.XMLHelper;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.apache.poi.xssf.model.StylesTable;
+import org.apache.poi.xssf.usermodel.XSSFCellStyle;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.DefaultHandler;
+
+import javax.xml.parsers.ParserConfigurationException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Iterator;
+
+/**
+ * 以 POI event model（XSSFReader + SAX）逐列讀取 .xlsx 第一個工作表，
+ * 每讀完一列即回呼 {@link RowHandler}，不建立整本 workbook DOM，記憶體用量與檔案大小無關。
+ */
+public final class StreamingXlsxReader {
+
+    private StreamingXlsxReader() {}
+
+    @FunctionalInterface
+    public interface RowHandler {
+        /** 每個出現在 sheet XML 中的 &lt;row&gt; 呼叫一次；row 物件僅在回呼期間有效。 */
+        void handleRow(SheetRow row);
+    }
+
+    /**
+     * 讀取 .xlsx 第一個工作表。上傳內容先落地為暫存檔，讓 OPCPackage 以 ZipFile 隨機存取，
+     * 避免整個 zip 解壓進記憶體。
+     */
+    public static void read(InputStream in, RowHandler handler) throws IOException {
+        Path tmp = Files.createTempFile("upload-", ".xlsx");
+        try {
+            Files.copy(in, tmp, StandardCopyOption.REPLACE_EXISTING);
+            try (OPCPackage pkg = OPCPackage.open(tmp.toFile(), PackageAccess.READ)) {
+                XSSFReader reader = new XSSFReader(pkg);
+                ReadOnlySharedStringsTable strings = new ReadOnlySharedStringsTable(pkg);
+                StylesTable styles = reader.getStylesTable();
+                Iterator<InputStream> sheets = reader.getSheetsData();
+                if (!sheets.hasNext()) {
+                    throw new ExcelParseException("Excel file contains no sheets");
+                }
+                try (InputStream sheet = sheets.next()) {
+                    XMLReader parser = XMLHelper.newXMLReader();
+                    parser.setContentHandler(new SheetHandler(strings, styles, handler));
+                    parser.parse(new InputSource(sheet));
+                }
+            } catch (OpenXML4JException | SAXException | ParserConfigurationException
+                     | InvalidOperationException | UnsupportedFileFormatException e) {
+                throw new IOException(e.getMessage(), e);
+            }
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    /**
+     * 單列資料，欄位以 0-based 欄索引存取；語意對齊 {@link Row}/{@link Cell}：
+     * 不存在的欄視為 BLANK，公式欄回傳快取結果的型別。
+     */
+    public static final class SheetRow {
+        private final int rowNum;
+        private CellType[] types = new CellType[8];
+        private String[] values = new String[8];
+        private boolean[] dates = new boolean[8];
+        private int lastCellNum;
+
+        SheetRow(int rowNum) {
+            this.rowNum = rowNum;
+        }
+
+        /** 將 DOM Row（例如 .xls 的 HSSF）轉為相同抽象，讓各 parser 共用一套欄位邏輯。 */
+        public static SheetRow fromRow(Row row) {
+            SheetRow result = new SheetRow(row.getRowNum());
+            for (Cell cell : row) {
+                CellType type = cell.getCellType() == CellType.FORMULA
+                        ? cell.getCachedFormulaResultType() : cell.getCellType();
+                int col = cell.getColumnIndex();
+                switch (type) {
+                    case STRING:
+                        result.set(col, CellType.STRING, cell.getStringCellValue(), false);
+                        break;
+                    case NUMERIC:
+                        result.set(col, CellType.NUMERIC, String.valueOf(cell.getNumericCellValue()),
+                                DateUtil.isCellDateFormatted(cell));
+                        break;
+                    case BOOLEAN:
+                        result.set(col, CellType.BOOLEAN, cell.getBooleanCellValue() ? "1" : "0", false);
+                        break;
+                    case ERROR:
+                        result.set(col, CellType.ERROR, cell.toString(), false);
+                        break;
+                    default:
+                        result.set(col, CellType.BLANK, null, false);
+                }
+            }
+            return result;
+        }
+
+        void set(int col, CellType type, String value, boolean date) {
+            if (col >= types.length) {
+                int size = Math.max(col + 1, types.length * 2);
+                types = Arrays.copyOf(types, size);
+                values = Arrays.copyOf(values, size);
+                dates = Arrays.copyOf(dates, size);
+            }
+            types[col] = type;
+            values[col] = value;
+            dates[col] = date;
+            lastCellNum = Math.max(lastCellNum, col + 1);
+        }
+
+        /** 0-based 列號，與 {@link Row#getRowNum()} 相同。 */
+        public int getRowNum() { return rowNum; }
+
+        /** 最後一個有內容欄位的索引 + 1，與 {@link Row#getLastCellNum()} 相同（空列為 0）。 */
+        public int getLastCellNum() { return lastCellNum; }
+
+        public CellType getCellType(int col) {
+            if (col < 0 || col >= lastCellNum || types[col] == null) return CellType.BLANK;
+            return types[col];
+        }
+
+        public boolean isBlank(int col) {
+            return getCellType(col) == CellType.BLANK;
+        }
+
+        public String getStringValue(int col) {
+            return getCellType(col) == CellType.STRING ? values[col] : null;
+        }
+
+        public double getNumericValue(int col) {
+            if (getCellType(col) != CellType.NUMERIC) {
+                throw new IllegalStateException("Cell " + col + " is not numeric");
+            }
+            return Double.parseDouble(values[col]);
+        }
+
+        public boolean getBooleanValue(int col) {
+            return getCellType(col) == CellType.BOOLEAN && "1".equals(values[col]);
+        }
+
+        public boolean isDateFormatted(int col) {
+            return getCellType(col) == CellType.NUMERIC && dates[col];
+        }
+
+        public LocalDateTime getLocalDateTimeValue(int col) {
+            return DateUtil.getLocalDateTime(getNumericValue(col));
+        }
+
+        /** 對應 DOM {@code cell.toString()}：布林為 TRUE/FALSE，錯誤為錯誤碼，其餘為原始文字。 */
+        public String getRawText(int col) {
+            CellType type = getCellType(col);
+            if (type == CellType.BLANK) return "";
+            if (type == CellType.BOOLEAN) return getBooleanValue(col) ? "TRUE" : "FALSE";
+            return values[col];
+        }
+    }
+
+    private static final class SheetHandler extends DefaultHandler {
+        private final ReadOnlySharedStringsTable strings;
+        private final StylesTable styles;
+        private final RowHandler handler;
+        private final StringBuilder text = new StringBuilder(64);
+
+        private SheetRow row;
+        private int nextRowNum;
+        private int nextCol;
+        private int col;
+        private String cellType;
+        private int styleIndex;
+        private boolean inValue;
+        private boolean inInlineText;
+        private boolean hasValue;
+
+        SheetHandler(ReadOnlySharedStringsTable strings, StylesTable styles, RowHandler handler) {
+            this.strings = strings;
+            this.styles = styles;
+            this.handler = handler;
+        }
+
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes attrs) {
+            switch (localName) {
+                case "row": {
+                    String r = attrs.getValue("r");
+                    int rowNum = r != null ? Integer.parseInt(r) - 1 : nextRowNum;
+                    nextRowNum = rowNum + 1;
+                    nextCol = 0;
+                    row = new SheetRow(rowNum);
+                    break;
+                }
+                case "c": {
+                    String ref = attrs.getValue("r");
+                    col = ref != null ? columnIndex(ref) : nextCol;
+                    nextCol = col + 1;
+                    cellType = attrs.getValue("t");
+                    String s = attrs.getValue("s");
+                    styleIndex = s != null ? Integer.parseInt(s) : 0;
+                    hasValue = false;
+                    text.setLength(0);
+                    break;
+                }
+                case "v":
+                    inValue = true;
+                    hasValue = true;
+                    break;
+                case "t":
+                    if ("inlineStr".equals(cellType)) {
+                        inInlineText = true;
+                        hasValue = true;
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        @Override
+        public void endElement(String uri, String localName, String qName) {
+            switch (localName) {
+                case "v":
+                    inValue = false;
+                    break;
+                case "t":
+                    inInlineText = false;
+                    break;
+                case "c":
+                    if (row != null) {
+                        storeCell();
+                    }
+                    break;
+                case "row":
+                    if (row != null) {
+                        handler.handleRow(row);
+                        row = null;
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        @Override
+        public void characters(char[] ch, int start, int length) {
+            if (inValue || inInlineText) {
+                text.append(ch, start, length);
+            }
+        }
+
+        private void storeCell() {
+            if (!hasValue) {
+                row.set(col, CellType.BLANK, null, false);
+                return;
+            }
+            String raw = text.toString();
+            if (cellType == null || "n".equals(cellType)) {
+                row.set(col, CellType.NUMERIC, raw, isDateStyle(styleIndex));
+                return;
+            }
+            switch (cellType) {
+                case "s":
+                    row.set(col, CellType.STRING,
+                            strings.getItemAt(Integer.parseInt(raw.trim())).getString(), false);
+                    break;
+                case "inlineStr":
+                case "str":
+                    row.set(col, CellType.STRING, raw, false);
+                    break;
+                case "b":
+                    row.set(col, CellType.BOOLEAN, raw, false);
+                    break;
+                case "e":
+                    row.set(col, CellType.ERROR, raw, false);
+                    break;
+                default:
+                    row.set(col, CellType.STRING, raw, false);
+            }
+        }
+
+        private boolean isDateStyle(int index) {
+            if (styles == null || index < 0 || index >= styles.getNumCellStyles()) {
+                return false;
+            }
+            XSSFCellStyle style = styles.getStyleAt(index);
+            short formatIndex = style.getDataFormat();
+            String formatString = style.getDataFormatString();
+            if (formatString == null) {
+                formatString = BuiltinFormats.getBuiltinFormat(formatIndex);
+            }
+            return formatString != null && DateUtil.isADateFormat(formatIndex, formatString);
+        }
+
+        /** "AB12" → 27 */
+        private static int columnIndex(String ref) {
+            int col = 0;
+            for (int i = 0; i < ref.length(); i++) {
+                char c = ref.charAt(i);
+                if (c < 'A' || c > 'Z') break;
+                col = col * 26 + (c - 'A' + 1);
+            }
+            return col - 1;
+        }
+    }
+}
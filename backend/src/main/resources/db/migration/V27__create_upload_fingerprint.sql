@@ -0,0 +1,16 @@
+-- V27: 上傳檔內容雜湊（同一目標重複上傳相同檔案時直接回傳上次結果）
+-- 每個 (upload_type, target_key) 只保留最近一次成功上傳；data_state 為上傳完成當下目標資料的
+-- 筆數／最大 id／最後更新時間，之後若經編輯或其他來源改動即不再視為重複。
+
+CREATE TABLE upload_fingerprint (
+    id            INT             NOT NULL AUTO_INCREMENT,
+    upload_type   VARCHAR(30)     NOT NULL,
+    target_key    VARCHAR(200)    NOT NULL,
+    content_hash  CHAR(64)        NOT NULL,
+    data_state    VARCHAR(100)    NOT NULL,
+    result_json   TEXT            NOT NULL,
+    created_at    TIMESTAMP       NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    updated_at    TIMESTAMP       NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
+    PRIMARY KEY (id),
+    UNIQUE KEY uk_upload_fingerprint_target (upload_type, target_key)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
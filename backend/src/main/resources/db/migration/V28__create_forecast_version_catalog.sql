@@ -0,0 +1,48 @@
+-- V28: 銷售預估／禮品銷售預估版本目錄
+-- 每個 (month, channel, version) 一列，記錄筆數、最後更新時間與是否為該月份通路的最新版本；
+-- 由上傳、複製版本、編輯、刪除同步維護，查詢版本清單只需讀取此表。
+
+CREATE TABLE sales_forecast_version (
+    id               INT             NOT NULL AUTO_INCREMENT,
+    month            VARCHAR(7)      NOT NULL,
+    channel          VARCHAR(50)     NOT NULL,
+    version          VARCHAR(100)    NOT NULL,
+    row_count        INT             NOT NULL DEFAULT 0,
+    last_updated_at  TIMESTAMP       NULL,
+    is_latest        BOOLEAN         NOT NULL DEFAULT FALSE,
+    PRIMARY KEY (id),
+    UNIQUE KEY uk_sales_forecast_version (month, channel, version)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
+
+CREATE TABLE gift_sales_forecast_version (
+    id               INT             NOT NULL AUTO_INCREMENT,
+    month            VARCHAR(7)      NOT NULL,
+    channel          VARCHAR(50)     NOT NULL,
+    version          VARCHAR(100)    NOT NULL,
+    row_count        INT             NOT NULL DEFAULT 0,
+    last_updated_at  TIMESTAMP       NULL,
+    is_latest        BOOLEAN         NOT NULL DEFAULT FALSE,
+    PRIMARY KEY (id),
+    UNIQUE KEY uk_gift_sales_forecast_version (month, channel, version)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
+
+-- 既有資料回填
+INSERT INTO sales_forecast_version (month, channel, version, row_count, last_updated_at)
+SELECT month, channel, version, COUNT(*), MAX(updated_at)
+FROM sales_forecast
+GROUP BY month, channel, version;
+
+UPDATE sales_forecast_version v
+JOIN (SELECT month, channel, MAX(version) AS latest FROM sales_forecast_version GROUP BY month, channel) m
+  ON v.month = m.month AND v.channel = m.channel AND v.version = m.latest
+SET v.is_latest = TRUE;
+
+INSERT INTO gift_sales_forecast_version (month, channel, version, row_count, last_updated_at)
+SELECT month, channel, version, COUNT(*), MAX(updated_at)
+FROM gift_sales_forecast
+GROUP BY month, channel, version;
+
+UPDATE gift_sales_forecast_version v
+JOIN (SELECT month, channel, MAX(version) AS latest FROM gift_sales_forecast_version GROUP BY month, channel) m
+  ON v.month = m.month AND v.channel = m.channel AND v.version = m.latest
+SET v.is_latest = TRUE;
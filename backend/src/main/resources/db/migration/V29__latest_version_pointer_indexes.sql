@@ -0,0 +1,15 @@
+-- V29: 最新版本指標查詢索引
+-- 「最新版本」查詢改由版本目錄的 is_latest 定位版本，再以 (month, channel, version) 取明細，
+-- 取代每次對明細做 SELECT MAX(version) 的相關子查詢。
+
+ALTER TABLE sales_forecast_version
+    ADD INDEX idx_sales_forecast_version_latest (month, channel, is_latest);
+
+ALTER TABLE gift_sales_forecast_version
+    ADD INDEX idx_gift_sales_forecast_version_latest (month, channel, is_latest);
+
+ALTER TABLE sales_forecast
+    ADD INDEX idx_month_channel_version (month, channel, version);
+
+ALTER TABLE gift_sales_forecast
+    ADD INDEX idx_month_channel_version (month, channel, version);
@@ -0,0 +1,38 @@
+-- V30: 銷售預估／禮品銷售預估版本改為 copy-on-write 疊加層
+-- 複製版本只在版本目錄新增一列並記錄 parent_version，不再複製明細；
+-- 疊加版本只儲存實際變動的列：覆寫上層列時 base_id 指向被覆寫列的原始 id，
+-- 刪除繼承列時於 *_removal 記錄被隱藏的原始 id。讀取時沿 parent_version 鏈由近而遠解析。
+
+ALTER TABLE sales_forecast_version
+    ADD COLUMN parent_version VARCHAR(100) NULL AFTER version;
+
+ALTER TABLE gift_sales_forecast_version
+    ADD COLUMN parent_version VARCHAR(100) NULL AFTER version;
+
+ALTER TABLE sales_forecast
+    ADD COLUMN base_id INT NULL AFTER form_version_no;
+
+ALTER TABLE gift_sales_forecast
+    ADD COLUMN base_id INT NULL AFTER version;
+
+CREATE TABLE sales_forecast_removal (
+    id          INT             NOT NULL AUTO_INCREMENT,
+    month       VARCHAR(7)      NOT NULL,
+    channel     VARCHAR(50)     NOT NULL,
+    version     VARCHAR(100)    NOT NULL,
+    base_id     INT             NOT NULL,
+    created_at  TIMESTAMP       NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    PRIMARY KEY (id),
+    UNIQUE KEY uk_sales_forecast_removal (month, channel, version, base_id)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
+
+CREATE TABLE gift_sales_forecast_removal (
+    id          INT             NOT NULL AUTO_INCREMENT,
+    month       VARCHAR(7)      NOT NULL,
+    channel     VARCHAR(50)     NOT NULL,
+    version     VARCHAR(100)    NOT NULL,
+    base_id     INT             NOT NULL,
+    created_at  TIMESTAMP       NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    PRIMARY KEY (id),
+    UNIQUE KEY uk_gift_sales_forecast_removal (month, channel, version, base_id)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
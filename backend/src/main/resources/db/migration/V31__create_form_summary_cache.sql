@@ -0,0 +1,12 @@
+-- V31: 已關帳月份表單版本摘要的序列化快取（app.form-summary-cache.persist 開啟時使用）
+-- 表單版本只會新增、不會改寫，同一 (month, version_no) 的摘要固定；重啟後不必再由明細重算。
+
+CREATE TABLE form_summary_cache (
+    id          INT             NOT NULL AUTO_INCREMENT,
+    month       VARCHAR(7)      NOT NULL,
+    version_no  INT             NOT NULL,
+    payload     LONGTEXT        NOT NULL,
+    created_at  TIMESTAMP       NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    PRIMARY KEY (id),
+    UNIQUE KEY uk_form_summary_cache (month, version_no)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
@@ -0,0 +1,54 @@
+-- V32: 品項維度（int 代理鍵）
+-- 品項以 (庫位, 中類, 規格, 品名, 品號) 識別，彙總時過去每列都要串接或雜湊這五個字串；
+-- 改為寫入時解析一次 product_id，彙總直接以 int 分組。
+-- 五欄合計超過索引長度上限，唯一鍵改用 key_hash：五欄（null 視為空字串）以 0x1F 分隔後的 SHA-256。
+
+CREATE TABLE product_dimension (
+    id                  INT             NOT NULL AUTO_INCREMENT,
+    key_hash            BINARY(32)      NOT NULL,
+    warehouse_location  VARCHAR(50)     NOT NULL DEFAULT '',
+    category            VARCHAR(100)    NOT NULL DEFAULT '',
+    spec                VARCHAR(200)    NOT NULL DEFAULT '',
+    product_name        VARCHAR(200)    NOT NULL DEFAULT '',
+    product_code        VARCHAR(50)     NOT NULL DEFAULT '',
+    created_at          TIMESTAMP       NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    PRIMARY KEY (id),
+    UNIQUE KEY uk_product_dimension_key (key_hash)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
+
+ALTER TABLE sales_forecast
+    ADD COLUMN product_id INT NULL AFTER product_code,
+    ADD INDEX idx_sales_forecast_month_product_id (month, product_id);
+
+ALTER TABLE gift_sales_forecast
+    ADD COLUMN product_id INT NULL AFTER product_code,
+    ADD INDEX idx_gift_sales_forecast_month_product_id (month, product_id);
+
+ALTER TABLE inventory_sales_forecast
+    ADD COLUMN product_id INT NULL AFTER product_code,
+    ADD INDEX idx_inventory_forecast_month_product_id (month, product_id);
+
+-- 既有資料回填
+INSERT IGNORE INTO product_dimension (key_hash, warehouse_location, category, spec, product_name, product_code)
+SELECT DISTINCT UNHEX(SHA2(CONCAT_WS(CHAR(31 USING utf8mb4), COALESCE(warehouse_location, ''), COALESCE(category, ''),
+                                     COALESCE(spec, ''), COALESCE(product_name, ''), COALESCE(product_code, '')), 256)),
+       COALESCE(warehouse_location, ''), COALESCE(category, ''), COALESCE(spec, ''),
+       COALESCE(product_name, ''), COALESCE(product_code, '')
+FROM (SELECT warehouse_location, category, spec, product_name, product_code FROM sales_forecast
+      UNION ALL SELECT warehouse_location, category, spec, product_name, product_code FROM gift_sales_forecast
+      UNION ALL SELECT warehouse_location, category, spec, product_name, product_code FROM inventory_sales_forecast) src;
+
+UPDATE sales_forecast d JOIN product_dimension p
+    ON p.key_hash = UNHEX(SHA2(CONCAT_WS(CHAR(31 USING utf8mb4), COALESCE(d.warehouse_location, ''), COALESCE(d.category, ''),
+                                         COALESCE(d.spec, ''), COALESCE(d.product_name, ''), COALESCE(d.product_code, '')), 256))
+SET d.product_id = p.id;
+
+UPDATE gift_sales_forecast d JOIN product_dimension p
+    ON p.key_hash = UNHEX(SHA2(CONCAT_WS(CHAR(31 USING utf8mb4), COALESCE(d.warehouse_location, ''), COALESCE(d.category, ''),
+                                         COALESCE(d.spec, ''), COALESCE(d.product_name, ''), COALESCE(d.product_code, '')), 256))
+SET d.product_id = p.id;
+
+UPDATE inventory_sales_forecast d JOIN product_dimension p
+    ON p.key_hash = UNHEX(SHA2(CONCAT_WS(CHAR(31 USING utf8mb4), COALESCE(d.warehouse_location, ''), COALESCE(d.category, ''),
+                                         COALESCE(d.spec, ''), COALESCE(d.product_name, ''), COALESCE(d.product_code, '')), 256))
+SET d.product_id = p.id;
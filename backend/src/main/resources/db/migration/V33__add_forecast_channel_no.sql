@@ -0,0 +1,35 @@
+-- V33: 通路序號 channel_no（對應 SalesChannel 的 ordinal）
+-- 彙總時以序號作為陣列位置，不必逐列比對通路字串；由 channel 產生，寫入端不需處理。
+-- 只對應現行通路名稱，舊資料的別名（PX/大全聯、711 等）及不在表單內的通路為 NULL。
+
+ALTER TABLE sales_forecast
+    ADD COLUMN channel_no TINYINT AS (CASE channel
+        WHEN 'PX + 大全聯' THEN 0
+        WHEN '家樂福' THEN 1
+        WHEN '愛買' THEN 2
+        WHEN '7-11' THEN 3
+        WHEN '全家' THEN 4
+        WHEN 'Ok+萊爾富' THEN 5
+        WHEN '好市多' THEN 6
+        WHEN '楓康' THEN 7
+        WHEN '美聯社' THEN 8
+        WHEN '康是美' THEN 9
+        WHEN '電商' THEN 10
+        WHEN '市面經銷' THEN 11
+    END) PERSISTENT AFTER channel;
+
+ALTER TABLE gift_sales_forecast
+    ADD COLUMN channel_no TINYINT AS (CASE channel
+        WHEN 'PX + 大全聯' THEN 0
+        WHEN '家樂福' THEN 1
+        WHEN '愛買' THEN 2
+        WHEN '7-11' THEN 3
+        WHEN '全家' THEN 4
+        WHEN 'Ok+萊爾富' THEN 5
+        WHEN '好市多' THEN 6
+        WHEN '楓康' THEN 7
+        WHEN '美聯社' THEN 8
+        WHEN '康是美' THEN 9
+        WHEN '電商' THEN 10
+        WHEN '市面經銷' THEN 11
+    END) PERSISTENT AFTER channel;
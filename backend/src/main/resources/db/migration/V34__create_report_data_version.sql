@@ -0,0 +1,10 @@
+-- V34: 各月份報表資料的版本水位（報表端點的 ETag 用）
+-- 銷售預估、禮品、庫存整合、表單版本、月份設定及生產表單緩衝量寫入時，於同一交易內將該月份 +1；
+-- 報表端點以查詢涵蓋月份的水位組成 ETag，資料未變動時直接回 304。沒有列的月份水位視為 0。
+
+CREATE TABLE report_data_version (
+    month       VARCHAR(7)      NOT NULL,
+    version     BIGINT          NOT NULL,
+    updated_at  TIMESTAMP       NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
+    PRIMARY KEY (month)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
@@ -0,0 +1,5 @@
+-- V35: 庫存整合列的 ERP 查詢錯誤
+-- 即時查詢並行向 ERP 取庫存／銷量，個別批次失敗或逾時時不中止整個查詢，改記於該列（此時庫存／銷量以 0 計）
+
+ALTER TABLE inventory_sales_forecast
+    ADD COLUMN erp_error VARCHAR(200) NULL AFTER query_end_date;
@@ -0,0 +1,11 @@
+-- V36: 庫存整合即時查詢的輸入指紋
+-- 指紋涵蓋月份、銷售預估版本、查詢區間、報表資料水位及 ERP 資料水位；
+-- 相同指紋再次查詢時沿用已存的版本，不重新計算、寫入新版本。ERP 有錯誤的查詢不記錄指紋。
+
+CREATE TABLE inventory_integration_fingerprint (
+    month           VARCHAR(7)      NOT NULL,
+    fingerprint     CHAR(64)        NOT NULL,
+    version         VARCHAR(100)    NOT NULL,
+    created_at      TIMESTAMP       NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    PRIMARY KEY (month, fingerprint)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
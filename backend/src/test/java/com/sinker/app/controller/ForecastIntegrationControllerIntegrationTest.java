@@ -1,7 +1,12 @@
 package com.sinker.app.controller;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sinker.app.repository.ForecastVersionCatalog;
+import com.sinker.app.repository.ForecastVersionOverlay;
 import com.sinker.app.security.JwtTokenProvider;
 import com.sinker.app.service.ErpProductService;
+import com.sinker.app.service.ReportDataVersion;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -11,10 +16,22 @@ import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMock
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
 
 import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
@@ -29,6 +46,10 @@ class ForecastIntegrationControllerIntegrationTest {
     @Autowired private MockMvc mockMvc;
     @Autowired private JwtTokenProvider tokenProvider;
     @Autowired private JdbcTemplate jdbc;
+    @Autowired private ReportDataVersion reportDataVersion;
+    @Autowired private ObjectMapper objectMapper;
+    @Autowired private ForecastVersionCatalog versionCatalog;
+    @Autowired private ForecastVersionOverlay versionOverlay;
 
     @MockBean private ErpProductService erpProductService;
 
@@ -53,12 +74,17 @@ class ForecastIntegrationControllerIntegrationTest {
 
         // Clean up test data
         jdbc.update("DELETE FROM sales_forecast WHERE month = ?", TEST_MONTH);
+        jdbc.update("DELETE FROM sales_forecast_version WHERE month = ?", TEST_MONTH);
+        jdbc.update("DELETE FROM sales_forecast_removal WHERE month = ?", TEST_MONTH);
     }
 
     @AfterEach
     void tearDown() {
         jdbc.update("DELETE FROM sales_forecast WHERE month = ?", TEST_MONTH);
+        jdbc.update("DELETE FROM sales_forecast_version WHERE month = ?", TEST_MONTH);
+        jdbc.update("DELETE FROM sales_forecast_removal WHERE month = ?", TEST_MONTH);
         jdbc.update("DELETE FROM sales_forecast_config WHERE month = ?", TEST_MONTH);
+        jdbc.update("DELETE FROM report_data_version WHERE month = ?", TEST_MONTH);
     }
 
     @Test
@@ -111,6 +137,36 @@ class ForecastIntegrationControllerIntegrationTest {
                 .andExpect(jsonPath("$[0].originalSubtotal", is(50.0)));
     }
 
+    @Test
+    void queryIntegration_ifNoneMatch_returns304UntilMonthIsWritten() throws Exception {
+        jdbc.update("INSERT INTO sales_forecast (month, channel, product_code, product_name, category, spec, warehouse_location, quantity, version) " +
+                "VALUES (?, '家樂福', 'P002', '樂事洋芋片', '02零食類', '150g*12包', 'B02', 50.00, ?)", TEST_MONTH, VERSION_2);
+
+        MvcResult first = mockMvc.perform(get("/api/sales-forecast/integration")
+                        .param("month", TEST_MONTH)
+                        .header("Authorization", "Bearer " + adminToken))
+                .andExpect(status().isOk())
+                .andExpect(header().exists("ETag"))
+                .andReturn();
+        String etag = first.getResponse().getHeader("ETag");
+
+        mockMvc.perform(get("/api/sales-forecast/integration")
+                        .param("month", TEST_MONTH)
+                        .header("Authorization", "Bearer " + adminToken)
+                        .header("If-None-Match", etag))
+                .andExpect(status().isNotModified());
+
+        reportDataVersion.bump(TEST_MONTH);
+
+        mockMvc.perform(get("/api/sales-forecast/integration")
+                        .param("month", TEST_MONTH)
+                        .header("Authorization", "Bearer " + adminToken)
+                        .header("If-None-Match", etag))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", not(etag)))
+                .andExpect(jsonPath("$", hasSize(1)));
+    }
+
     @Test
     void queryIntegration_emptyResult() throws Exception {
         mockMvc.perform(get("/api/sales-forecast/integration")
@@ -127,6 +183,33 @@ class ForecastIntegrationControllerIntegrationTest {
                 .andExpect(status().isBadRequest());
     }
 
+    @Test
+    void queryIntegrationRange_keyedByMonth_latestVersionEach() throws Exception {
+        jdbc.update("INSERT INTO sales_forecast (month, channel, product_code, product_name, category, spec, warehouse_location, quantity, version) " +
+                "VALUES (?, '家樂福', 'P001', '可口可樂', '01飲料類', '600ml*24入', 'A01', 100.00, ?)", TEST_MONTH, VERSION_1);
+        jdbc.update("INSERT INTO sales_forecast (month, channel, product_code, product_name, category, spec, warehouse_location, quantity, version) " +
+                "VALUES (?, '家樂福', 'P001', '可口可樂', '01飲料類', '600ml*24入', 'A01', 130.00, ?)", TEST_MONTH, VERSION_2);
+
+        mockMvc.perform(get("/api/sales-forecast/integration/range")
+                        .param("start_month", "209901")
+                        .param("end_month", TEST_MONTH)
+                        .header("Authorization", "Bearer " + adminToken))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$['209901']", hasSize(0)))
+                .andExpect(jsonPath("$['" + TEST_MONTH + "']", hasSize(1)))
+                .andExpect(jsonPath("$['" + TEST_MONTH + "'][0].originalSubtotal", is(130.0)))
+                .andExpect(jsonPath("$['" + TEST_MONTH + "'][0].difference", is(30.0)));
+    }
+
+    @Test
+    void queryIntegrationRange_startAfterEnd_badRequest() throws Exception {
+        mockMvc.perform(get("/api/sales-forecast/integration/range")
+                        .param("start_month", TEST_MONTH)
+                        .param("end_month", "209901")
+                        .header("Authorization", "Bearer " + adminToken))
+                .andExpect(status().isBadRequest());
+    }
+
     @Test
     void queryIntegration_multipleProducts_sortedByCategory() throws Exception {
         // Insert products with different categories
@@ -148,6 +231,91 @@ class ForecastIntegrationControllerIntegrationTest {
                 .andExpect(jsonPath("$[2].productCode", is("P003"))); // 03日用品
     }
 
+    @Test
+    void queryIntegration_legacyChannelNames_countTowardTheirChannel() throws Exception {
+        insertRow("PX/大全聯", "P001", "產品1", "01飲料類", "10.00", VERSION_1);
+        insertRow("PX + 大全聯", "P001", "產品1", "01飲料類", "1.00", VERSION_1);
+        insertRow("OK/萊爾富", "P001", "產品1", "01飲料類", "20.00", VERSION_1);
+        insertRow("萊爾富", "P001", "產品1", "01飲料類", "2.00", VERSION_1);
+        insertRow("不在表單的通路", "P001", "產品1", "01飲料類", "99.00", VERSION_1);
+
+        mockMvc.perform(get("/api/sales-forecast/integration")
+                        .param("month", TEST_MONTH)
+                        .param("version", VERSION_1)
+                        .header("Authorization", "Bearer " + adminToken))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andExpect(jsonPath("$[0].qtyPx", is(11.0)))
+                .andExpect(jsonPath("$[0].qtyOk", is(22.0)))
+                .andExpect(jsonPath("$[0].originalSubtotal", is(33.0)));
+    }
+
+    @Test
+    void queryIntegration_duplicateRowsInOneChannel_areSummed() throws Exception {
+        insertRow("家樂福", "P001", "產品1", "01飲料類", "10.00", VERSION_1);
+        insertRow("家樂福", "P001", "產品1", "01飲料類", "5.50", VERSION_1);
+        insertRow("愛買", "P001", "產品1", "01飲料類", "3.00", VERSION_1);
+
+        mockMvc.perform(get("/api/sales-forecast/integration")
+                        .param("month", TEST_MONTH)
+                        .param("version", VERSION_1)
+                        .header("Authorization", "Bearer " + adminToken))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andExpect(jsonPath("$[0].qtyCarrefour", is(15.5)))
+                .andExpect(jsonPath("$[0].qtyAimall", is(3.0)))
+                .andExpect(jsonPath("$[0].originalSubtotal", is(18.5)));
+    }
+
+    @Test
+    void queryIntegration_overlayVersion_resolvesInheritedOverriddenAndRemovedRows() throws Exception {
+        int p001 = insertRow("家樂福", "P001", "產品1", "01飲料類", "10.00", VERSION_1);
+        int p002 = insertRow("家樂福", "P002", "產品2", "02零食類", "20.00", VERSION_1);
+        insertRow("家樂福", "P003", "產品3", "03日用品", "30.00", VERSION_1);
+        versionCatalog.refreshMonth(ForecastVersionCatalog.Source.SALES, TEST_MONTH);
+        // VERSION_2 疊加在 VERSION_1 上：覆寫 P001、刪除 P002、沿用 P003
+        versionCatalog.createOverlay(ForecastVersionCatalog.Source.SALES, TEST_MONTH, "家樂福",
+                VERSION_2, VERSION_1, LocalDateTime.now());
+        int override = insertRow("家樂福", "P001", "產品1", "01飲料類", "12.00", VERSION_2);
+        jdbc.update("UPDATE sales_forecast SET base_id = ? WHERE id = ?", p001, override);
+        versionOverlay.addRemovals(ForecastVersionCatalog.Source.SALES, TEST_MONTH, VERSION_2,
+                Map.of("家樂福", List.of(p002)));
+
+        mockMvc.perform(get("/api/sales-forecast/integration")
+                        .param("month", TEST_MONTH)
+                        .param("version", VERSION_2)
+                        .header("Authorization", "Bearer " + adminToken))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(2)))
+                .andExpect(jsonPath("$[0].productCode", is("P001")))
+                .andExpect(jsonPath("$[0].qtyCarrefour", is(12.0)))
+                .andExpect(jsonPath("$[1].productCode", is("P003")))
+                .andExpect(jsonPath("$[1].qtyCarrefour", is(30.0)));
+
+        // 上層版本不受影響
+        mockMvc.perform(get("/api/sales-forecast/integration")
+                        .param("month", TEST_MONTH)
+                        .param("version", VERSION_1)
+                        .header("Authorization", "Bearer " + adminToken))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(3)))
+                .andExpect(jsonPath("$[0].qtyCarrefour", is(10.0)))
+                .andExpect(jsonPath("$[1].qtyCarrefour", is(20.0)));
+    }
+
+    @Test
+    void queryIntegration_stream_matchesBufferedResponse() throws Exception {
+        insertRow("家樂福", "P001", "產品1", "01飲料類", "100.00", VERSION_1);
+        insertRow("711", "P001", "產品1", "01飲料類", "30.00", VERSION_1);
+        insertRow("家樂福", "P001", "產品1", "01飲料類", "120.00", VERSION_2);
+        insertRow("愛買", "P002", "產品2", "02零食類", "15.50", VERSION_2);
+        insertRow("全家", "P003", "產品3", "03日用品", "8.00", VERSION_2);
+
+        assertStreamMatchesBuffered(get("/api/sales-forecast/integration")
+                .param("month", TEST_MONTH).param("version", VERSION_2));
+        assertStreamMatchesBuffered(get("/api/sales-forecast/integration").param("month", TEST_MONTH));
+    }
+
     @Test
     void queryIntegration_newProduct_differenceEqualsSubtotal() throws Exception {
         // Version 1: has P000 but not P001
@@ -239,4 +407,41 @@ class ForecastIntegrationControllerIntegrationTest {
         Long viewPermId = jdbc.queryForObject("SELECT id FROM permissions WHERE code = 'sales_forecast.view'", Long.class);
         jdbc.update("INSERT IGNORE INTO role_permissions (role_id, permission_id) VALUES (?, ?)", salesRoleId, viewPermId);
     }
+
+    /** @return 新列的 id */
+    private int insertRow(String channel, String productCode, String productName, String category,
+                          String quantity, String version) {
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        jdbc.update(connection -> {
+            var ps = connection.prepareStatement(
+                    "INSERT INTO sales_forecast (month, channel, product_code, product_name, category, spec, warehouse_location, quantity, version) " +
+                    "VALUES (?, ?, ?, ?, ?, 'spec', 'A01', ?, ?)", new String[]{"id"});
+            ps.setString(1, TEST_MONTH);
+            ps.setString(2, channel);
+            ps.setString(3, productCode);
+            ps.setString(4, productName);
+            ps.setString(5, category);
+            ps.setBigDecimal(6, new BigDecimal(quantity));
+            ps.setString(7, version);
+            return ps;
+        }, keyHolder);
+        return keyHolder.getKey().intValue();
+    }
+
+    /** ?stream=true 的串流回應與一般回應解析後相同 */
+    private void assertStreamMatchesBuffered(MockHttpServletRequestBuilder builder) throws Exception {
+        String buffered = mockMvc.perform(builder.header("Authorization", "Bearer " + adminToken))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString(StandardCharsets.UTF_8);
+        MvcResult started = mockMvc.perform(builder.param("stream", "true"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        String streamed = mockMvc.perform(asyncDispatch(started))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString(StandardCharsets.UTF_8);
+
+        JsonNode expected = objectMapper.readTree(buffered);
+        assertTrue(expected.isArray() && expected.size() > 0, buffered);
+        assertEquals(expected, objectMapper.readTree(streamed));
+    }
 }
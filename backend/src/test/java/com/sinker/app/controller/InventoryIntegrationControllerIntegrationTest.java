@@ -1,5 +1,6 @@
 package com.sinker.app.controller;
 
+import com.jayway.jsonpath.JsonPath;
 import com.sinker.app.security.JwtTokenProvider;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
@@ -11,8 +12,10 @@ import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
 import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.print;
@@ -79,6 +82,7 @@ class InventoryIntegrationControllerIntegrationTest {
     @AfterEach
     void tearDown() {
         jdbc.update("DELETE FROM inventory_sales_forecast WHERE month = ?", NORMALIZED_MONTH);
+        jdbc.update("DELETE FROM inventory_integration_fingerprint WHERE month = ?", NORMALIZED_MONTH);
         jdbc.update("DELETE FROM sales_forecast WHERE month = ?", NORMALIZED_MONTH);
         jdbc.update("DELETE FROM users WHERE id = ?", userWithoutPermId);
     }
@@ -120,6 +124,100 @@ class InventoryIntegrationControllerIntegrationTest {
         //        .andExpect(jsonPath("$[0].queryEndDate", is("2026-01-20")));
     }
 
+    @Test
+    void queryInventoryIntegration_realTimeTwice_reusesSavedVersion() throws Exception {
+        MvcResult first = mockMvc.perform(get("/api/inventory-integration")
+                        .header("Authorization", "Bearer " + tokenWithPermission)
+                        .param("month", MONTH))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(2)))
+                .andReturn();
+        String version = JsonPath.read(first.getResponse().getContentAsString(), "$[0].version");
+
+        mockMvc.perform(get("/api/inventory-integration")
+                        .header("Authorization", "Bearer " + tokenWithPermission)
+                        .param("month", MONTH))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(2)))
+                .andExpect(jsonPath("$[0].version", is(version)));
+
+        Integer saved = jdbc.queryForObject(
+                "SELECT COUNT(*) FROM inventory_sales_forecast WHERE month = ?", Integer.class, NORMALIZED_MONTH);
+        assertEquals(2, saved);
+    }
+
+    @Test
+    void evictErpCache_bumpsReportDataVersion_savedVersionNotReused() throws Exception {
+        MvcResult first = mockMvc.perform(get("/api/inventory-integration")
+                        .header("Authorization", "Bearer " + tokenWithPermission)
+                        .param("month", MONTH))
+                .andExpect(status().isOk())
+                .andReturn();
+        String version = JsonPath.read(first.getResponse().getContentAsString(), "$[0].version");
+        Long before = jdbc.queryForObject(
+                "SELECT COALESCE(MAX(version), 0) FROM report_data_version WHERE month = ?", Long.class, NORMALIZED_MONTH);
+
+        mockMvc.perform(delete("/api/inventory-integration/erp-cache")
+                        .header("Authorization", "Bearer " + tokenWithPermission)
+                        .param("month", MONTH))
+                .andExpect(status().isOk());
+
+        // 清除次數記在資料庫（重啟後仍有效），已存版本的指紋不再相符，重新計算並記錄新指紋
+        Long after = jdbc.queryForObject(
+                "SELECT version FROM report_data_version WHERE month = ?", Long.class, NORMALIZED_MONTH);
+        assertEquals(before + 1, after);
+        mockMvc.perform(get("/api/inventory-integration")
+                        .header("Authorization", "Bearer " + tokenWithPermission)
+                        .param("month", MONTH))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(2)));
+        Integer fingerprints = jdbc.queryForObject(
+                "SELECT COUNT(*) FROM inventory_integration_fingerprint WHERE month = ?", Integer.class, NORMALIZED_MONTH);
+        assertEquals(2, fingerprints, "the query after the eviction is recomputed, not reused from " + version);
+    }
+
+    @Test
+    void copyVersion_copiesAllRowsServerSide() throws Exception {
+        MvcResult created = mockMvc.perform(get("/api/inventory-integration")
+                        .header("Authorization", "Bearer " + tokenWithPermission)
+                        .param("month", MONTH))
+                .andExpect(status().isOk())
+                .andReturn();
+        String version = JsonPath.read(created.getResponse().getContentAsString(), "$[0].version");
+
+        // 不等待下一秒即複製：版本字串精確到秒，與來源相同時往後取未使用的版本
+        MvcResult copied = mockMvc.perform(post("/api/inventory-integration/copy-version")
+                        .header("Authorization", "Bearer " + tokenWithPermission)
+                        .param("version", version))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.count", is(2)))
+                .andExpect(jsonPath("$.version", not(version)))
+                .andReturn();
+        String newVersion = JsonPath.read(copied.getResponse().getContentAsString(), "$.version");
+
+        mockMvc.perform(get("/api/inventory-integration")
+                        .header("Authorization", "Bearer " + tokenWithPermission)
+                        .param("month", MONTH)
+                        .param("version", newVersion))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(2)))
+                .andExpect(jsonPath("$[0].product_code", is("PROD001")));
+        mockMvc.perform(get("/api/inventory-integration")
+                        .header("Authorization", "Bearer " + tokenWithPermission)
+                        .param("month", MONTH)
+                        .param("version", version))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(2)));
+    }
+
+    @Test
+    void copyVersion_unknownVersion_returns404() throws Exception {
+        mockMvc.perform(post("/api/inventory-integration/copy-version")
+                        .header("Authorization", "Bearer " + tokenWithPermission)
+                        .param("version", "no-such-version"))
+                .andExpect(status().isNotFound());
+    }
+
     @Test
     void queryInventoryIntegration_versionQuery_success() throws Exception {
         // First create a version
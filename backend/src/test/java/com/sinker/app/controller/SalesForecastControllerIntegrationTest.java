@@ -1,8 +1,11 @@
 package com.sinker.app.controller;
 
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.sinker.app.dto.forecast.CreateForecastRequest;
 import com.sinker.app.dto.forecast.UpdateForecastRequest;
+import com.sinker.app.repository.ForecastVersionCatalog;
+import com.sinker.app.repository.ForecastVersionOverlay;
 import com.sinker.app.security.JwtTokenProvider;
 import com.sinker.app.service.ErpProductService;
 import org.junit.jupiter.api.AfterEach;
@@ -21,8 +24,12 @@ import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.web.servlet.MockMvc;
 
 import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.TreeMap;
 
 import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
@@ -38,6 +45,8 @@ class SalesForecastControllerIntegrationTest {
     @Autowired private JwtTokenProvider tokenProvider;
     @Autowired private JdbcTemplate jdbc;
     @Autowired private ObjectMapper objectMapper;
+    @Autowired private ForecastVersionCatalog versionCatalog;
+    @Autowired private ForecastVersionOverlay versionOverlay;
 
     @MockBean private ErpProductService erpProductService;
 
@@ -88,11 +97,15 @@ class SalesForecastControllerIntegrationTest {
 
         // Clean up test data
         jdbc.update("DELETE FROM sales_forecast WHERE month = ?", MONTH);
+        jdbc.update("DELETE FROM sales_forecast_version WHERE month = ?", MONTH);
+        jdbc.update("DELETE FROM sales_forecast_removal WHERE month = ?", MONTH);
     }
 
     @AfterEach
     void tearDown() {
         jdbc.update("DELETE FROM sales_forecast WHERE month = ?", MONTH);
+        jdbc.update("DELETE FROM sales_forecast_version WHERE month = ?", MONTH);
+        jdbc.update("DELETE FROM sales_forecast_removal WHERE month = ?", MONTH);
         jdbc.update("DELETE FROM sales_forecast_config WHERE month = ?", MONTH);
         jdbc.update("DELETE FROM sales_channels_users WHERE user_id = ?", userId);
         jdbc.update("DELETE FROM users WHERE id = ?", userId);
@@ -362,6 +375,7 @@ class SalesForecastControllerIntegrationTest {
                 "VALUES (?, ?, '飲料類', 'A', 'P201', 100.00, '2026/01/01 10:00:00(" + CHANNEL + ")', FALSE, NOW(), NOW())", MONTH, CHANNEL);
         jdbc.update("INSERT INTO sales_forecast (month, channel, category, spec, product_code, quantity, version, is_modified, created_at, updated_at) " +
                 "VALUES (?, ?, '日用品', 'C', 'P203', 75.00, '2026/01/01 10:00:00(" + CHANNEL + ")', FALSE, NOW(), NOW())", MONTH, CHANNEL);
+        versionCatalog.refreshMonth(ForecastVersionCatalog.Source.SALES, MONTH);
 
         // Add view permission
         Long adminRoleId = jdbc.queryForObject("SELECT id FROM roles WHERE code = 'admin'", Long.class);
@@ -383,6 +397,7 @@ class SalesForecastControllerIntegrationTest {
         // Insert test data
         jdbc.update("INSERT INTO sales_forecast (month, channel, product_code, quantity, version, is_modified, created_at, updated_at) " +
                 "VALUES (?, ?, 'P301', 100.00, '2026/01/01 10:00:00(" + CHANNEL + ")', FALSE, NOW(), NOW())", MONTH, CHANNEL);
+        versionCatalog.refreshMonth(ForecastVersionCatalog.Source.SALES, MONTH);
 
         // Add view_own permission to sales role
         Long salesRoleId = jdbc.queryForObject("SELECT id FROM roles WHERE code = 'sales'", Long.class);
@@ -473,6 +488,8 @@ class SalesForecastControllerIntegrationTest {
                 "VALUES (?, ?, 'P401', 150.00, ?, TRUE, NOW(), NOW())", MONTH, CHANNEL, version2);
         jdbc.update("INSERT INTO sales_forecast (month, channel, product_code, quantity, version, is_modified, created_at, updated_at) " +
                 "VALUES (?, ?, 'P401', 175.00, ?, TRUE, NOW(), NOW())", MONTH, CHANNEL, version3);
+        // 直接寫入明細的測試資料需同步重算版本目錄
+        versionCatalog.refreshMonth(ForecastVersionCatalog.Source.SALES, MONTH);
 
         // Add view permission
         Long adminRoleId = jdbc.queryForObject("SELECT id FROM roles WHERE code = 'admin'", Long.class);
@@ -499,6 +516,7 @@ class SalesForecastControllerIntegrationTest {
         // Insert test data
         jdbc.update("INSERT INTO sales_forecast (month, channel, product_code, quantity, version, is_modified, created_at, updated_at) " +
                 "VALUES (?, ?, 'P501', 100.00, '2026/01/01 10:00:00(" + CHANNEL + ")', FALSE, NOW(), NOW())", MONTH, CHANNEL);
+        versionCatalog.refreshMonth(ForecastVersionCatalog.Source.SALES, MONTH);
 
         // Add view_own permission
         Long salesRoleId = jdbc.queryForObject("SELECT id FROM roles WHERE code = 'sales'", Long.class);
@@ -545,4 +563,210 @@ class SalesForecastControllerIntegrationTest {
                 .andExpect(jsonPath("$").isArray())
                 .andExpect(jsonPath("$.length()").value(0));
     }
+
+    // ---- copy-on-write 疊加版本 ----
+
+    @Test
+    void overlayVersion_copyEditDeleteMaterializeDeleteParent_keepsVisibleRows() throws Exception {
+        String v1 = "2026/01/01 10:00:00(" + CHANNEL + ")";
+        int p1 = insertForecast("P801", "100.00", v1);
+        int p2 = insertForecast("P802", "200.00", v1);
+        insertForecast("P803", "300.00", v1);
+        versionCatalog.refreshMonth(ForecastVersionCatalog.Source.SALES, MONTH);
+        grantAdminView();
+
+        String body = mockMvc.perform(post("/api/sales-forecast/copy-version")
+                        .param("month", MONTH)
+                        .param("channel", CHANNEL)
+                        .header("Authorization", "Bearer " + adminToken))
+                .andExpect(status().isCreated())
+                .andReturn().getResponse().getContentAsString();
+        String v2 = objectMapper.readTree(body).get("version").asText();
+        assertEquals(0, ownRows(v2), "copy should not duplicate detail rows");
+        assertEquals(Map.of("P801", qty("100.00"), "P802", qty("200.00"), "P803", qty("300.00")), visible(v2));
+
+        UpdateForecastRequest request = new UpdateForecastRequest();
+        request.setQuantity(new BigDecimal("150.00"));
+        mockMvc.perform(put("/api/sales-forecast/" + p1)
+                        .param("version", v2)
+                        .header("Authorization", "Bearer " + adminToken)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isOk());
+        mockMvc.perform(delete("/api/sales-forecast/" + p2)
+                        .param("version", v2)
+                        .header("Authorization", "Bearer " + adminToken))
+                .andExpect(status().isNoContent());
+
+        assertEquals(Map.of("P801", qty("100.00"), "P802", qty("200.00"), "P803", qty("300.00")), visible(v1));
+        assertEquals(Map.of("P801", qty("150.00"), "P803", qty("300.00")), visible(v2));
+        assertEquals(1, ownRows(v2), "only the edited row is stored in the overlay");
+
+        versionOverlay.materialize(ForecastVersionCatalog.Source.SALES, MONTH, CHANNEL, v2);
+
+        assertEquals(2, ownRows(v2));
+        assertEquals(0, jdbc.queryForObject(
+                "SELECT COUNT(*) FROM sales_forecast WHERE month = ? AND version = ? AND base_id IS NOT NULL",
+                Integer.class, MONTH, v2), "materialized rows are plain rows");
+        assertEquals(0, jdbc.queryForObject(
+                "SELECT COUNT(*) FROM sales_forecast_removal WHERE month = ? AND version = ?",
+                Integer.class, MONTH, v2));
+        assertEquals(0, jdbc.queryForObject(
+                "SELECT COUNT(*) FROM sales_forecast_version WHERE month = ? AND version = ? AND parent_version IS NOT NULL",
+                Integer.class, MONTH, v2));
+        assertEquals(Map.of("P801", qty("150.00"), "P803", qty("300.00")), visible(v2));
+
+        mockMvc.perform(delete("/api/sales-forecast/versions")
+                        .param("month", MONTH)
+                        .param("channel", CHANNEL)
+                        .param("version", v1)
+                        .header("Authorization", "Bearer " + adminToken))
+                .andExpect(status().isNoContent());
+
+        assertEquals(Map.of(), visible(v1));
+        assertEquals(Map.of("P801", qty("150.00"), "P803", qty("300.00")), visible(v2));
+    }
+
+    @Test
+    void overlayVersion_deleteParentWithoutMaterialize_pushesRowsDown() throws Exception {
+        String v1 = "2026/01/01 10:00:00(" + CHANNEL + ")";
+        String v2 = "2026/01/02 10:00:00(" + CHANNEL + ")";
+        int p1 = insertForecast("P811", "100.00", v1);
+        insertForecast("P812", "200.00", v1);
+        versionCatalog.refreshMonth(ForecastVersionCatalog.Source.SALES, MONTH);
+        versionCatalog.createOverlay(ForecastVersionCatalog.Source.SALES, MONTH, CHANNEL, v2, v1, LocalDateTime.now());
+        grantAdminView();
+
+        mockMvc.perform(delete("/api/sales-forecast/" + p1)
+                        .param("version", v2)
+                        .header("Authorization", "Bearer " + adminToken))
+                .andExpect(status().isNoContent());
+        mockMvc.perform(delete("/api/sales-forecast/versions")
+                        .param("month", MONTH)
+                        .param("channel", CHANNEL)
+                        .param("version", v1)
+                        .header("Authorization", "Bearer " + adminToken))
+                .andExpect(status().isNoContent());
+
+        assertEquals(Map.of("P812", qty("200.00")), visible(v2));
+        assertEquals(1, ownRows(v2));
+    }
+
+    @Test
+    void overlayVersion_materializeMiddleVersion_rebasesDescendantOverrides() throws Exception {
+        String v1 = "2026/01/01 10:00:00(" + CHANNEL + ")";
+        String v2 = "2026/01/02 10:00:00(" + CHANNEL + ")";
+        String v3 = "2026/01/03 10:00:00(" + CHANNEL + ")";
+        int p1 = insertForecast("P821", "100.00", v1);
+        int p2 = insertForecast("P822", "200.00", v1);
+        insertForecast("P823", "300.00", v1);
+        versionCatalog.refreshMonth(ForecastVersionCatalog.Source.SALES, MONTH);
+        versionCatalog.createOverlay(ForecastVersionCatalog.Source.SALES, MONTH, CHANNEL, v2, v1, LocalDateTime.now());
+        versionCatalog.createOverlay(ForecastVersionCatalog.Source.SALES, MONTH, CHANNEL, v3, v2, LocalDateTime.now());
+        grantAdminView();
+
+        UpdateForecastRequest request = new UpdateForecastRequest();
+        request.setQuantity(new BigDecimal("111.00"));
+        mockMvc.perform(put("/api/sales-forecast/" + p1)
+                        .param("version", v3)
+                        .header("Authorization", "Bearer " + adminToken)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isOk());
+        mockMvc.perform(delete("/api/sales-forecast/" + p2)
+                        .param("version", v3)
+                        .header("Authorization", "Bearer " + adminToken))
+                .andExpect(status().isNoContent());
+
+        versionOverlay.materialize(ForecastVersionCatalog.Source.SALES, MONTH, CHANNEL, v2);
+        mockMvc.perform(delete("/api/sales-forecast/versions")
+                        .param("month", MONTH)
+                        .param("channel", CHANNEL)
+                        .param("version", v1)
+                        .header("Authorization", "Bearer " + adminToken))
+                .andExpect(status().isNoContent());
+
+        assertEquals(Map.of("P821", qty("100.00"), "P822", qty("200.00"), "P823", qty("300.00")), visible(v2));
+        assertEquals(Map.of("P821", qty("111.00"), "P823", qty("300.00")), visible(v3));
+    }
+
+    @Test
+    void overlayVersion_overFormVersion_copiesDoNotJoinTheFormVersion() throws Exception {
+        String child = "2026/02/01 10:00:00(" + CHANNEL + ")";
+        int p1 = insertForecast("P831", "100.00", "form_v2");
+        int p2 = insertForecast("P832", "200.00", "form_v2");
+        jdbc.update("UPDATE sales_forecast SET form_version_no = 2 WHERE id IN (?, ?)", p1, p2);
+        versionCatalog.refreshMonth(ForecastVersionCatalog.Source.SALES, MONTH);
+        versionCatalog.createOverlay(ForecastVersionCatalog.Source.SALES, MONTH, CHANNEL, child, "form_v2",
+                LocalDateTime.now());
+        grantAdminView();
+
+        UpdateForecastRequest request = new UpdateForecastRequest();
+        request.setQuantity(new BigDecimal("150.00"));
+        mockMvc.perform(put("/api/sales-forecast/" + p1)
+                        .param("version", child)
+                        .header("Authorization", "Bearer " + adminToken)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isOk());
+        versionOverlay.materialize(ForecastVersionCatalog.Source.SALES, MONTH, CHANNEL, child);
+
+        assertEquals(2, ownRows(child));
+        assertEquals(0, jdbc.queryForObject(
+                "SELECT COUNT(*) FROM sales_forecast WHERE month = ? AND version = ? AND form_version_no IS NOT NULL",
+                Integer.class, MONTH, child), "override and materialized rows must not carry form_version_no");
+        assertEquals(2, jdbc.queryForObject(
+                "SELECT COUNT(*) FROM sales_forecast WHERE month = ? AND form_version_no = 2",
+                Integer.class, MONTH));
+        assertEquals(Map.of("P831", qty("100.00"), "P832", qty("200.00")), visible("form_v2"));
+    }
+
+    private int insertForecast(String productCode, String quantity, String version) {
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        jdbc.update(connection -> {
+            var ps = connection.prepareStatement(
+                    "INSERT INTO sales_forecast (month, channel, category, spec, product_code, quantity, version, "
+                            + "is_modified, created_at, updated_at) "
+                            + "VALUES (?, ?, '飲料類', '600ml', ?, ?, ?, FALSE, NOW(), NOW())",
+                    new String[]{"id"});
+            ps.setString(1, MONTH);
+            ps.setString(2, CHANNEL);
+            ps.setString(3, productCode);
+            ps.setBigDecimal(4, new BigDecimal(quantity));
+            ps.setString(5, version);
+            return ps;
+        }, keyHolder);
+        return keyHolder.getKey().intValue();
+    }
+
+    private void grantAdminView() {
+        Long adminRoleId = jdbc.queryForObject("SELECT id FROM roles WHERE code = 'admin'", Long.class);
+        Long viewPermId = jdbc.queryForObject("SELECT id FROM permissions WHERE code = 'sales_forecast.view'", Long.class);
+        jdbc.update("INSERT IGNORE INTO role_permissions (role_id, permission_id) VALUES (?, ?)", adminRoleId, viewPermId);
+    }
+
+    /** 版本解析後可見的品號 → 數量 */
+    private Map<String, BigDecimal> visible(String version) throws Exception {
+        String body = mockMvc.perform(get("/api/sales-forecast")
+                        .param("month", MONTH)
+                        .param("channel", CHANNEL)
+                        .param("version", version)
+                        .header("Authorization", "Bearer " + adminToken))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        Map<String, BigDecimal> result = new TreeMap<>();
+        for (JsonNode row : objectMapper.readTree(body)) {
+            result.put(row.get("product_code").asText(), qty(row.get("quantity").asText()));
+        }
+        return result;
+    }
+
+    private int ownRows(String version) {
+        return jdbc.queryForObject("SELECT COUNT(*) FROM sales_forecast WHERE month = ? AND version = ?",
+                Integer.class, MONTH, version);
+    }
+
+    private static BigDecimal qty(String value) {
+        return new BigDecimal(value).setScale(2);
+    }
 }
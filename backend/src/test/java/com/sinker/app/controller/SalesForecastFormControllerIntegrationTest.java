@@ -0,0 +1,324 @@
+package com.sinker.app.controller;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sinker.app.dto.forecast.SaveFormSummaryVersionRequest;
+import com.sinker.app.dto.forecast.UpdateConfigRequest;
+import com.sinker.app.entity.SalesChannel;
+import com.sinker.app.repository.ForecastBulkWriter;
+import com.sinker.app.repository.ForecastVersionCatalog;
+import com.sinker.app.security.JwtTokenProvider;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+/**
+ * 表單版本（關帳快照 form_v1、儲存版本 form_vN）與表單摘要，直接對資料庫驗證。
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+@Timeout(60)
+class SalesForecastFormControllerIntegrationTest {
+
+    @Autowired private MockMvc mockMvc;
+    @Autowired private JwtTokenProvider tokenProvider;
+    @Autowired private JdbcTemplate jdbc;
+    @Autowired private ObjectMapper objectMapper;
+    @Autowired private ForecastVersionCatalog versionCatalog;
+    @Autowired private ForecastBulkWriter bulkWriter;
+
+    private static final String MONTH = "209805";
+    private static final String CARREFOUR = SalesChannel.CARREFOUR.label();
+    private static final String FAMILYMART = SalesChannel.FAMILYMART.label();
+    private static final String AIMALL = SalesChannel.AIMALL.label();
+    private static final String COSTCO = SalesChannel.COSTCO.label();
+
+    private String adminToken;
+    private Integer configId;
+
+    @BeforeEach
+    void setUp() {
+        cleanup();
+        jdbc.update("INSERT INTO sales_forecast_config (month, auto_close_day, is_closed) VALUES (?, 28, FALSE)", MONTH);
+        configId = jdbc.queryForObject("SELECT id FROM sales_forecast_config WHERE month = ?", Integer.class, MONTH);
+
+        Long adminId = jdbc.queryForObject("SELECT id FROM users WHERE username = 'admin'", Long.class);
+        adminToken = tokenProvider.generateToken(adminId, "admin", "admin");
+    }
+
+    @AfterEach
+    void tearDown() {
+        cleanup();
+    }
+
+    private void cleanup() {
+        for (String table : List.of("sales_forecast", "gift_sales_forecast", "sales_forecast_version",
+                "gift_sales_forecast_version", "sales_forecast_removal", "gift_sales_forecast_removal",
+                "sales_forecast_form_version", "form_summary_cache", "sales_forecast_config")) {
+            jdbc.update("DELETE FROM " + table + " WHERE month = ?", MONTH);
+        }
+    }
+
+    // ---- 關帳快照 form_v1 ----
+
+    @Test
+    void closeMonth_snapshotSumsSalesGiftAndOverlayRowsPerChannelAndProduct() throws Exception {
+        String v1 = "2098/05/01 10:00:00";
+        String v2 = "2098/05/02 10:00:00";
+        // 家樂福：v2 疊加在 v1 上，覆寫 P1
+        int p1 = insertSales(CARREFOUR, "P1", "10", v1 + "(" + CARREFOUR + ")");
+        insertSales(CARREFOUR, "P2", "20", v1 + "(" + CARREFOUR + ")");
+        // 全家：同一品項兩列
+        insertSales(FAMILYMART, "P1", "5", v1 + "(" + FAMILYMART + ")");
+        insertSales(FAMILYMART, "P1", "1", v1 + "(" + FAMILYMART + ")");
+        // 禮品：家樂福 P1 加總進銷售，愛買 P3 只有禮品
+        insertGift(CARREFOUR, "P1", "3", "g1(" + CARREFOUR + ")");
+        insertGift(AIMALL, "P3", "7", "g1(" + AIMALL + ")");
+        versionCatalog.refreshMonth(ForecastVersionCatalog.Source.SALES, MONTH);
+        versionCatalog.refreshMonth(ForecastVersionCatalog.Source.GIFT, MONTH);
+        versionCatalog.createOverlay(ForecastVersionCatalog.Source.SALES, MONTH, CARREFOUR,
+                v2 + "(" + CARREFOUR + ")", v1 + "(" + CARREFOUR + ")", LocalDateTime.now());
+        int override = insertSales(CARREFOUR, "P1", "15", v2 + "(" + CARREFOUR + ")");
+        jdbc.update("UPDATE sales_forecast SET base_id = ? WHERE id = ?", p1, override);
+
+        closeMonth();
+
+        assertEquals(3 * SalesChannel.COUNT, jdbc.queryForObject(
+                "SELECT COUNT(*) FROM sales_forecast WHERE month = ? AND version = 'form_v1' AND form_version_no = 1",
+                Integer.class, MONTH), "one row per channel × product");
+        assertEquals(0, jdbc.queryForObject(
+                "SELECT COUNT(*) FROM sales_forecast WHERE month = ? AND version = 'form_v1' AND product_id IS NULL",
+                Integer.class, MONTH));
+        assertEquals(new BigDecimal("18.00"), formQty("form_v1", CARREFOUR, "P1"), "overlay 15 + gift 3");
+        assertEquals(new BigDecimal("20.00"), formQty("form_v1", CARREFOUR, "P2"));
+        assertEquals(new BigDecimal("6.00"), formQty("form_v1", FAMILYMART, "P1"), "duplicate rows are summed");
+        assertEquals(new BigDecimal("7.00"), formQty("form_v1", AIMALL, "P3"), "gift-only product");
+        assertEquals(new BigDecimal("0.00"), formQty("form_v1", COSTCO, "P1"), "missing cell is 0");
+        assertEquals(new BigDecimal("0.00"), formQty("form_v1", CARREFOUR, "P3"));
+        assertEquals("", jdbc.queryForObject(
+                "SELECT remark FROM sales_forecast WHERE month = ? AND version = 'form_v1' AND channel = ? "
+                        + "AND product_code = 'P3'", String.class, MONTH, AIMALL), "gift-only rows have an empty remark");
+    }
+
+    @Test
+    void formSnapshot_unresolvedProductIds_keepsProductsApart() {
+        String v1 = "2098/05/01 10:00:00(" + CARREFOUR + ")";
+        insertSales(CARREFOUR, "P1", "10", v1);
+        insertSales(CARREFOUR, "P2", "20", v1);
+        insertSales(CARREFOUR, "P2", "2", v1);
+        versionCatalog.refreshMonth(ForecastVersionCatalog.Source.SALES, MONTH);
+        assertEquals(3, jdbc.queryForObject(
+                "SELECT COUNT(*) FROM sales_forecast WHERE month = ? AND product_id IS NULL", Integer.class, MONTH),
+                "rows are inserted before the product dimension is resolved");
+
+        // 不經品項維度解析，直接以 product_id 為 NULL 的列建立快照
+        bulkWriter.insertFormSnapshot(MONTH, "form_v1", 1, LocalDateTime.now());
+
+        assertEquals(2 * SalesChannel.COUNT, jdbc.queryForObject(
+                "SELECT COUNT(*) FROM sales_forecast WHERE month = ? AND version = 'form_v1'", Integer.class, MONTH),
+                "NULL product_id does not merge different products");
+        assertEquals(new BigDecimal("10.00"), formQty("form_v1", CARREFOUR, "P1"));
+        assertEquals(new BigDecimal("22.00"), formQty("form_v1", CARREFOUR, "P2"), "same product columns are summed");
+        assertEquals(new BigDecimal("0.00"), formQty("form_v1", FAMILYMART, "P2"));
+    }
+
+    // ---- 儲存版本 form_vN（疊加在上一版） ----
+
+    @Test
+    void saveVersion_storesOnlyChangedCells_readsResolveTheFullVersion() throws Exception {
+        insertSales(CARREFOUR, "P1", "10", "2098/05/01 10:00:00(" + CARREFOUR + ")");
+        insertSales(CARREFOUR, "P2", "20", "2098/05/01 10:00:00(" + CARREFOUR + ")");
+        insertSales(FAMILYMART, "P1", "5", "2098/05/01 10:00:00(" + FAMILYMART + ")");
+        versionCatalog.refreshMonth(ForecastVersionCatalog.Source.SALES, MONTH);
+        closeMonth();
+
+        // v2：家樂福 P1 改為 12，P2 不再出現
+        assertEquals(2, saveVersion(editRow("P1", CARREFOUR, "12", FAMILYMART, "5")));
+
+        assertEquals(1, jdbc.queryForObject(
+                "SELECT COUNT(*) FROM sales_forecast WHERE month = ? AND form_version_no = 2", Integer.class, MONTH),
+                "form_version_no = 2 holds only the changed cell");
+        assertEquals(SalesChannel.COUNT, jdbc.queryForObject(
+                "SELECT COUNT(*) FROM sales_forecast_removal WHERE month = ? AND version = 'form_v2'",
+                Integer.class, MONTH), "the dropped product is hidden in every channel");
+
+        JsonNode v2 = formSummary(2);
+        assertEquals(1, v2.get("rows").size());
+        assertEquals(new BigDecimal("12"), cell(v2, "P1", CARREFOUR, "current_qty"));
+        assertEquals(new BigDecimal("10"), cell(v2, "P1", CARREFOUR, "previous_qty"));
+        assertEquals(new BigDecimal("5"), cell(v2, "P1", FAMILYMART, "current_qty"));
+
+        // v3：內容與 v2 相同，不寫入任何列，仍讀得到完整內容
+        assertEquals(3, saveVersion(editRow("P1", CARREFOUR, "12", FAMILYMART, "5")));
+
+        assertEquals(0, jdbc.queryForObject(
+                "SELECT COUNT(*) FROM sales_forecast WHERE month = ? AND form_version_no = 3", Integer.class, MONTH));
+        JsonNode v3 = formSummary(3);
+        assertEquals(1, v3.get("rows").size());
+        assertEquals(new BigDecimal("12"), cell(v3, "P1", CARREFOUR, "current_qty"));
+        assertEquals(new BigDecimal("12"), cell(v3, "P1", CARREFOUR, "previous_qty"));
+        assertEquals(new BigDecimal("5"), cell(v3, "P1", FAMILYMART, "current_qty"));
+        assertEquals(new BigDecimal("0"), cell(v3, "P1", COSTCO, "current_qty"));
+    }
+
+    // ---- 串流輸出（?stream=true） ----
+
+    @Test
+    void formSummary_stream_matchesBufferedResponse() throws Exception {
+        insertSales(CARREFOUR, "P1", "10", "2098/05/01 10:00:00(" + CARREFOUR + ")");
+        insertSales(CARREFOUR, "P2", "20", "2098/05/01 10:00:00(" + CARREFOUR + ")");
+        insertSales(FAMILYMART, "P1", "5", "2098/05/01 10:00:00(" + FAMILYMART + ")");
+        insertGift(AIMALL, "P3", "7", "g1(" + AIMALL + ")");
+        versionCatalog.refreshMonth(ForecastVersionCatalog.Source.SALES, MONTH);
+        versionCatalog.refreshMonth(ForecastVersionCatalog.Source.GIFT, MONTH);
+
+        // 各通路最新版（未關帳）
+        assertStreamMatchesBuffered(get("/api/sales-forecast/form-summary").param("month", MONTH));
+
+        closeMonth();
+        saveVersion(editRow("P1", CARREFOUR, "12", FAMILYMART, "5"));
+
+        // 表單版本：第一次算出並快取，第二次由快取輸出
+        for (int i = 0; i < 2; i++) {
+            assertStreamMatchesBuffered(get("/api/sales-forecast/form-summary")
+                    .param("month", MONTH).param("version_no", "2"));
+        }
+    }
+
+    /** 串流回應與一般回應解析後相同（物件欄位順序不計） */
+    private void assertStreamMatchesBuffered(MockHttpServletRequestBuilder builder) throws Exception {
+        String buffered = mockMvc.perform(builder.header("Authorization", "Bearer " + adminToken))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString(StandardCharsets.UTF_8);
+        MvcResult started = mockMvc.perform(builder.param("stream", "true"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        String streamed = mockMvc.perform(asyncDispatch(started))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString(StandardCharsets.UTF_8);
+
+        JsonNode expected = objectMapper.readTree(buffered);
+        assertTrue(expected.get("rows").size() > 0);
+        assertEquals(expected, objectMapper.readTree(streamed));
+    }
+
+    /** 表單編輯列；未列出的通路為 0 */
+    private static SaveFormSummaryVersionRequest.FormSummaryRowEditDTO editRow(String productCode, String... channelQty) {
+        SaveFormSummaryVersionRequest.FormSummaryRowEditDTO row = new SaveFormSummaryVersionRequest.FormSummaryRowEditDTO();
+        row.setWarehouseLocation("A01");
+        row.setCategory("飲料類");
+        row.setSpec("600ml");
+        row.setProductName("品名" + productCode);
+        row.setProductCode(productCode);
+        List<BigDecimal> quantities = new ArrayList<>(Collections.nCopies(SalesChannel.COUNT, BigDecimal.ZERO));
+        for (int i = 0; i < channelQty.length; i += 2) {
+            quantities.set(SalesChannel.indexOf(channelQty[i]), new BigDecimal(channelQty[i + 1]));
+        }
+        row.setChannelQuantities(quantities);
+        return row;
+    }
+
+    private int saveVersion(SaveFormSummaryVersionRequest.FormSummaryRowEditDTO... rows) throws Exception {
+        SaveFormSummaryVersionRequest request = new SaveFormSummaryVersionRequest();
+        request.setChangeReason("調整");
+        request.setRows(List.of(rows));
+        String body = mockMvc.perform(post("/api/sales-forecast/form-summary/save-version")
+                        .param("month", MONTH)
+                        .header("Authorization", "Bearer " + adminToken)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isCreated())
+                .andReturn().getResponse().getContentAsString();
+        return objectMapper.readTree(body).get("version_no").asInt();
+    }
+
+    private JsonNode formSummary(int versionNo) throws Exception {
+        String body = mockMvc.perform(get("/api/sales-forecast/form-summary")
+                        .param("month", MONTH)
+                        .param("version_no", String.valueOf(versionNo))
+                        .header("Authorization", "Bearer " + adminToken))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        return objectMapper.readTree(body);
+    }
+
+    /** 摘要中品號 productCode 在該通路的欄位值（去除尾端 0） */
+    private static BigDecimal cell(JsonNode summary, String productCode, String channel, String field) {
+        for (JsonNode row : summary.get("rows")) {
+            if (productCode.equals(row.get("product_code").asText())) {
+                JsonNode value = row.get("channel_cells").get(SalesChannel.indexOf(channel)).get(field);
+                return value.isNull() ? null : new BigDecimal(value.asText()).stripTrailingZeros();
+            }
+        }
+        fail("product " + productCode + " not in summary");
+        return null;
+    }
+
+    private void closeMonth() throws Exception {
+        UpdateConfigRequest request = new UpdateConfigRequest();
+        request.setIsClosed(true);
+        mockMvc.perform(put("/api/sales-forecast/config/" + configId)
+                        .header("Authorization", "Bearer " + adminToken)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isOk());
+    }
+
+    private BigDecimal formQty(String version, String channel, String productCode) {
+        return jdbc.queryForObject(
+                "SELECT quantity FROM sales_forecast WHERE month = ? AND version = ? AND channel = ? AND product_code = ?",
+                BigDecimal.class, MONTH, version, channel, productCode);
+    }
+
+    private int insertSales(String channel, String productCode, String quantity, String version) {
+        return insert("sales_forecast", channel, productCode, quantity, version);
+    }
+
+    private int insertGift(String channel, String productCode, String quantity, String version) {
+        return insert("gift_sales_forecast", channel, productCode, quantity, version);
+    }
+
+    /** 品項欄位固定，同品號的銷售與禮品列為同一品項 */
+    private int insert(String table, String channel, String productCode, String quantity, String version) {
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        jdbc.update(connection -> {
+            var ps = connection.prepareStatement(
+                    "INSERT INTO " + table + " (month, channel, category, spec, product_code, product_name, "
+                            + "warehouse_location, quantity, version, is_modified, created_at, updated_at) "
+                            + "VALUES (?, ?, '飲料類', '600ml', ?, ?, 'A01', ?, ?, FALSE, NOW(), NOW())",
+                    new String[]{"id"});
+            ps.setString(1, MONTH);
+            ps.setString(2, channel);
+            ps.setString(3, productCode);
+            ps.setString(4, "品名" + productCode);
+            ps.setBigDecimal(5, new BigDecimal(quantity));
+            ps.setString(6, version);
+            return ps;
+        }, keyHolder);
+        return keyHolder.getKey().intValue();
+    }
+}
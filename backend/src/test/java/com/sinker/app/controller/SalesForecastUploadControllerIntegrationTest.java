@@ -1,6 +1,7 @@
 package com.sinker.app.controller;
 
 import com.sinker.app.dto.reference.ProductDTO;
+import com.sinker.app.repository.ForecastVersionCatalog;
 import com.sinker.app.security.JwtTokenProvider;
 import com.sinker.app.service.ErpProductService;
 import org.apache.poi.ss.usermodel.Row;
@@ -21,6 +22,7 @@ import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.web.servlet.MockMvc;
 
 import java.io.ByteArrayOutputStream;
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -41,6 +43,7 @@ class SalesForecastUploadControllerIntegrationTest {
     @Autowired private MockMvc mockMvc;
     @Autowired private JwtTokenProvider tokenProvider;
     @Autowired private JdbcTemplate jdbc;
+    @Autowired private ForecastVersionCatalog versionCatalog;
 
     @MockBean private ErpProductService erpProductService;
 
@@ -107,11 +110,19 @@ class SalesForecastUploadControllerIntegrationTest {
 
         // Clean up any leftover forecast data
         jdbc.update("DELETE FROM sales_forecast WHERE month = ?", MONTH);
+        jdbc.update("DELETE FROM sales_forecast_version WHERE month = ?", MONTH);
+        jdbc.update("DELETE FROM sales_forecast_removal WHERE month = ?", MONTH);
+        jdbc.update("DELETE FROM upload_fingerprint WHERE upload_type = 'SALES_FORECAST' AND target_key LIKE ?",
+                MONTH + "|%");
     }
 
     @AfterEach
     void tearDown() {
         jdbc.update("DELETE FROM sales_forecast WHERE month = ?", MONTH);
+        jdbc.update("DELETE FROM sales_forecast_version WHERE month = ?", MONTH);
+        jdbc.update("DELETE FROM sales_forecast_removal WHERE month = ?", MONTH);
+        jdbc.update("DELETE FROM upload_fingerprint WHERE upload_type = 'SALES_FORECAST' AND target_key LIKE ?",
+                MONTH + "|%");
         jdbc.update("DELETE FROM sales_forecast_config WHERE month = ?", MONTH);
         jdbc.update("DELETE FROM sales_channels_users WHERE user_id = ?", salesUserId);
         jdbc.update("DELETE FROM users WHERE username = 'test_upload_user'");
@@ -224,6 +235,50 @@ class SalesForecastUploadControllerIntegrationTest {
         assertEquals(3, count2);
     }
 
+    @Test
+    void testUpload_IdenticalFileAfterOverlayDelete_ProcessedAgain() throws Exception {
+        MockMultipartFile file = createExcelFile(3);
+        mockMvc.perform(multipart("/api/sales-forecast/upload")
+                        .file(file)
+                        .param("month", MONTH)
+                        .param("channel", CHANNEL)
+                        .header("Authorization", "Bearer " + adminToken))
+                .andExpect(status().isOk());
+        String uploaded = jdbc.queryForObject(
+                "SELECT MAX(version) FROM sales_forecast WHERE month = ? AND channel = ?",
+                String.class, MONTH, CHANNEL);
+
+        // 複製版本後刪除繼承列：只寫版本目錄與刪除標記，明細不變
+        String overlay = "2098/01/31 23:59:59(" + CHANNEL + ")";
+        versionCatalog.createOverlay(ForecastVersionCatalog.Source.SALES, MONTH, CHANNEL, overlay, uploaded,
+                LocalDateTime.now());
+        Integer inherited = jdbc.queryForObject(
+                "SELECT id FROM sales_forecast WHERE month = ? AND channel = ? AND product_code = 'P001'",
+                Integer.class, MONTH, CHANNEL);
+        mockMvc.perform(delete("/api/sales-forecast/" + inherited)
+                        .param("version", overlay)
+                        .header("Authorization", "Bearer " + adminToken))
+                .andExpect(status().isNoContent());
+
+        mockMvc.perform(multipart("/api/sales-forecast/upload")
+                        .file(file)
+                        .param("month", MONTH)
+                        .param("channel", CHANNEL)
+                        .header("Authorization", "Bearer " + adminToken))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.rows_processed").value(3));
+
+        assertEquals(0, jdbc.queryForObject(
+                "SELECT COUNT(*) FROM sales_forecast_version WHERE month = ? AND channel = ? AND version = ?",
+                Integer.class, MONTH, CHANNEL, overlay), "re-upload should replace the overlay version");
+        assertEquals(0, jdbc.queryForObject(
+                "SELECT COUNT(*) FROM sales_forecast_removal WHERE month = ? AND channel = ?",
+                Integer.class, MONTH, CHANNEL));
+        assertEquals(3, jdbc.queryForObject(
+                "SELECT COUNT(*) FROM sales_forecast WHERE month = ? AND channel = ?",
+                Integer.class, MONTH, CHANNEL));
+    }
+
     @Test
     void testUpload_Unauthorized() throws Exception {
         MockMultipartFile file = createExcelFile(3);
@@ -1,5 +1,8 @@
 package com.sinker.app.migration;
 
+import com.sinker.app.dto.forecast.IntegrationRowDTO;
+import com.sinker.app.entity.SalesChannel;
+import com.sinker.app.repository.ForecastIntegrationPivot;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -10,6 +13,7 @@ import org.springframework.test.context.ActiveProfiles;
 import java.math.BigDecimal;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Function;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -20,6 +24,9 @@ class SalesForecastMigrationTest {
     @Autowired
     private JdbcTemplate jdbc;
 
+    @Autowired
+    private ForecastIntegrationPivot integrationPivot;
+
     @AfterEach
     void cleanup() {
         jdbc.update("DELETE FROM sales_forecast WHERE product_code LIKE 'T014%'");
@@ -54,7 +61,7 @@ class SalesForecastMigrationTest {
                 "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'sales_forecast' " +
                 "ORDER BY ORDINAL_POSITION");
 
-        assertEquals(15, columns.size(), "sales_forecast should have 15 columns (V5 + V24 form_version_no + V25 remark)");
+        assertEquals(18, columns.size(), "sales_forecast should have 18 columns (V5 + V24 form_version_no + V25 remark + V30 base_id + V32 product_id + V33 channel_no)");
 
         Map<String, Map<String, Object>> colMap = new java.util.LinkedHashMap<>();
         for (Map<String, Object> col : columns) {
@@ -76,6 +83,13 @@ class SalesForecastMigrationTest {
         assertEquals("varchar(50)", colMap.get("channel").get("COLUMN_TYPE").toString().toLowerCase());
         assertEquals("NO", colMap.get("channel").get("IS_NULLABLE").toString());
 
+        // channel_no: tinyint, nullable, generated from channel (V33)
+        assertTrue(colMap.containsKey("channel_no"), "Column channel_no should exist");
+        assertEquals("tinyint", colMap.get("channel_no").get("COLUMN_TYPE").toString().toLowerCase().split("\\(")[0].trim());
+        assertEquals("YES", colMap.get("channel_no").get("IS_NULLABLE").toString());
+        assertTrue(colMap.get("channel_no").get("EXTRA").toString().toLowerCase().contains("generated"),
+                "channel_no should be a generated column");
+
         // category: varchar(100), nullable
         assertTrue(colMap.containsKey("category"), "Column category should exist");
         assertEquals("varchar(100)", colMap.get("category").get("COLUMN_TYPE").toString().toLowerCase());
@@ -91,6 +105,11 @@ class SalesForecastMigrationTest {
         assertEquals("varchar(50)", colMap.get("product_code").get("COLUMN_TYPE").toString().toLowerCase());
         assertEquals("NO", colMap.get("product_code").get("IS_NULLABLE").toString());
 
+        // product_id: int, nullable (V32)，品項維度代理鍵；寫入後才解析
+        assertTrue(colMap.containsKey("product_id"), "Column product_id should exist");
+        assertEquals("int", colMap.get("product_id").get("COLUMN_TYPE").toString().toLowerCase().split("\\(")[0].trim());
+        assertEquals("YES", colMap.get("product_id").get("IS_NULLABLE").toString());
+
         // product_name: varchar(200), nullable
         assertTrue(colMap.containsKey("product_name"), "Column product_name should exist");
         assertEquals("varchar(200)", colMap.get("product_name").get("COLUMN_TYPE").toString().toLowerCase());
@@ -122,6 +141,11 @@ class SalesForecastMigrationTest {
         assertEquals("int", colMap.get("form_version_no").get("COLUMN_TYPE").toString().toLowerCase().split("\\(")[0].trim());
         assertEquals("YES", colMap.get("form_version_no").get("IS_NULLABLE").toString());
 
+        // base_id: int, nullable (V30)，疊加版本覆寫列的原始 id
+        assertTrue(colMap.containsKey("base_id"), "Column base_id should exist");
+        assertEquals("int", colMap.get("base_id").get("COLUMN_TYPE").toString().toLowerCase().split("\\(")[0].trim());
+        assertEquals("YES", colMap.get("base_id").get("IS_NULLABLE").toString());
+
         // is_modified: tinyint(1), not null, default 0
         assertTrue(colMap.containsKey("is_modified"), "Column is_modified should exist");
         assertEquals("NO", colMap.get("is_modified").get("IS_NULLABLE").toString());
@@ -176,6 +200,96 @@ class SalesForecastMigrationTest {
         // idx_month_channel_product on (month, channel, product_code)
         assertTrue(indexColumns.containsKey("idx_month_channel_product"), "Index idx_month_channel_product should exist");
         assertEquals(List.of("month", "channel", "product_code"), indexColumns.get("idx_month_channel_product"));
+
+        // idx_month_channel_version on (month, channel, version) (V29)，最新版本指標定位後取明細
+        assertTrue(indexColumns.containsKey("idx_month_channel_version"), "Index idx_month_channel_version should exist");
+        assertEquals(List.of("month", "channel", "version"), indexColumns.get("idx_month_channel_version"));
+
+        // idx_sales_forecast_month_product_id on (month, product_id) (V32)
+        assertTrue(indexColumns.containsKey("idx_sales_forecast_month_product_id"),
+                "Index idx_sales_forecast_month_product_id should exist");
+        assertEquals(List.of("month", "product_id"), indexColumns.get("idx_sales_forecast_month_product_id"));
+    }
+
+    // 4b. testOverlayRemovalTable (V30)
+    @Test
+    void testOverlayRemovalTable() {
+        List<Map<String, Object>> indexes = jdbc.queryForList(
+                "SELECT INDEX_NAME, COLUMN_NAME " +
+                "FROM INFORMATION_SCHEMA.STATISTICS " +
+                "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'sales_forecast_removal' " +
+                "ORDER BY INDEX_NAME, SEQ_IN_INDEX");
+
+        Map<String, List<String>> indexColumns = new java.util.LinkedHashMap<>();
+        for (Map<String, Object> row : indexes) {
+            indexColumns.computeIfAbsent(row.get("INDEX_NAME").toString(), k -> new java.util.ArrayList<>())
+                    .add(row.get("COLUMN_NAME").toString());
+        }
+        assertEquals(List.of("month", "channel", "version", "base_id"), indexColumns.get("uk_sales_forecast_removal"),
+                "sales_forecast_removal should be unique on (month, channel, version, base_id)");
+
+        Integer parentColumn = jdbc.queryForObject(
+                "SELECT COUNT(*) FROM INFORMATION_SCHEMA.COLUMNS WHERE TABLE_SCHEMA = DATABASE() " +
+                "AND TABLE_NAME = 'sales_forecast_version' AND COLUMN_NAME = 'parent_version' AND IS_NULLABLE = 'YES'",
+                Integer.class);
+        assertEquals(1, parentColumn, "sales_forecast_version.parent_version should exist and be nullable");
+    }
+
+    // 4c. testChannelNoMatchesSalesChannel (V33)
+    @Test
+    void testChannelNoMatchesSalesChannel() {
+        for (SalesChannel c : SalesChannel.values()) {
+            jdbc.update("INSERT INTO sales_forecast (month, channel, product_code, quantity, version) VALUES (?, ?, ?, 1.00, 'v1')",
+                    "209712", c.label(), "T014CH" + c.ordinal());
+            Integer channelNo = jdbc.queryForObject(
+                    "SELECT channel_no FROM sales_forecast WHERE product_code = ?", Integer.class, "T014CH" + c.ordinal());
+            assertEquals(c.ordinal(), channelNo, "channel_no of " + c.label() + " should be its SalesChannel ordinal");
+        }
+        jdbc.update("INSERT INTO sales_forecast (month, channel, product_code, quantity, version) VALUES (?, ?, ?, 1.00, 'v1')",
+                "209712", "不在表單的通路", "T014CHX");
+        assertNull(jdbc.queryForObject(
+                "SELECT channel_no FROM sales_forecast WHERE product_code = 'T014CHX'", Integer.class),
+                "channels outside the form have no channel_no");
+    }
+
+    // 4d. testLegacyChannelNamesMappedByPivot：channel_no 不含舊別名，整合表樞紐補上同一序號
+    @Test
+    void testLegacyChannelNamesMappedByPivot() {
+        List<Function<IntegrationRowDTO, BigDecimal>> byChannelNo = List.of(
+                IntegrationRowDTO::getQtyPx, IntegrationRowDTO::getQtyCarrefour, IntegrationRowDTO::getQtyAimall,
+                IntegrationRowDTO::getQty711, IntegrationRowDTO::getQtyFamilymart, IntegrationRowDTO::getQtyOk,
+                IntegrationRowDTO::getQtyCostco, IntegrationRowDTO::getQtyFkmart, IntegrationRowDTO::getQtyWellsociety,
+                IntegrationRowDTO::getQtyCosmed, IntegrationRowDTO::getQtyEcommerce, IntegrationRowDTO::getQtyDistributor);
+        assertEquals(SalesChannel.COUNT, byChannelNo.size());
+
+        Map<String, SalesChannel> productChannel = new java.util.LinkedHashMap<>();
+        for (SalesChannel c : SalesChannel.values()) {
+            for (String name : c.legacyNames()) {
+                String productCode = "T014LG" + productChannel.size();
+                productChannel.put(productCode, c);
+                jdbc.update("INSERT INTO sales_forecast (month, channel, product_code, quantity, version) VALUES (?, ?, ?, 3.00, 'v1')",
+                        "209712", name, productCode);
+                assertNull(jdbc.queryForObject(
+                        "SELECT channel_no FROM sales_forecast WHERE product_code = ?", Integer.class, productCode),
+                        "legacy name " + name + " has no channel_no");
+            }
+        }
+        assertFalse(productChannel.isEmpty());
+
+        Map<String, IntegrationRowDTO> rows = new java.util.HashMap<>();
+        for (IntegrationRowDTO row : integrationPivot.findByMonthAndVersion("209712", "v1")) {
+            rows.put(row.getProductCode(), row);
+        }
+        productChannel.forEach((productCode, channel) -> {
+            IntegrationRowDTO row = rows.get(productCode);
+            assertNotNull(row, productCode);
+            for (int i = 0; i < SalesChannel.COUNT; i++) {
+                BigDecimal expected = i == channel.ordinal() ? new BigDecimal("3.00") : BigDecimal.ZERO;
+                assertEquals(0, expected.compareTo(byChannelNo.get(i).apply(row)),
+                        productCode + " (" + channel.label() + ") at channel_no " + i);
+            }
+            assertEquals(0, new BigDecimal("3.00").compareTo(row.getOriginalSubtotal()));
+        });
     }
 
     // 5. testCharsetIsUtf8mb4
@@ -0,0 +1,191 @@
+package com.sinker.app.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+
+import java.math.BigDecimal;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class ErpInventoryCacheTest {
+
+    @Mock private ErpInventoryService erpInventoryService;
+
+    private MutableClock clock;
+    private ErpInventoryCache cache;
+
+    private static final String MONTH = "202601";
+
+    @BeforeEach
+    void setUp() {
+        clock = new MutableClock();
+        cache = new ErpInventoryCache(erpInventoryService, 100, 60_000, clock);
+        when(erpInventoryService.getInventoryBalances(anyCollection(), anyString()))
+                .thenAnswer(inv -> allOf(inv.getArgument(0), "100"));
+        when(erpInventoryService.getSalesQuantities(anyCollection(), anyString(), anyString()))
+                .thenAnswer(inv -> allOf(inv.getArgument(0), "50"));
+    }
+
+    private static Map<String, BigDecimal> allOf(Collection<String> codes, String value) {
+        Map<String, BigDecimal> result = new HashMap<>();
+        codes.forEach(code -> result.put(code, new BigDecimal(value)));
+        return result;
+    }
+
+    @Test
+    void getInventoryBalances_secondCall_servedFromCacheOnlyMissingLoaded() {
+        cache.getInventoryBalances(List.of("P1", "P2"), MONTH);
+        Map<String, BigDecimal> result = cache.getInventoryBalances(List.of("P1", "P2", "P3"), MONTH);
+
+        assertEquals(3, result.size());
+        verify(erpInventoryService).getInventoryBalances(List.of("P1", "P2"), MONTH);
+        verify(erpInventoryService).getInventoryBalances(List.of("P3"), MONTH);
+        assertEquals(new ErpInventoryCache.Stats(2, 3, 3), cache.stats());
+    }
+
+    @Test
+    void getInventoryBalances_afterTtl_reloads() {
+        cache.getInventoryBalances(List.of("P1"), MONTH);
+        clock.advance(60_001);
+        cache.getInventoryBalances(List.of("P1"), MONTH);
+
+        verify(erpInventoryService, times(2)).getInventoryBalances(List.of("P1"), MONTH);
+    }
+
+    @Test
+    void evictMonth_dropsBalancesAndOverlappingSalesOnly() {
+        cache.getInventoryBalances(List.of("P1"), MONTH);
+        cache.getInventoryBalances(List.of("P1"), "202602");
+        cache.getSalesQuantities(List.of("P1"), "2025-12-01", "2026-01-15");
+        cache.getSalesQuantities(List.of("P1"), "2026-02-01", "2026-02-28");
+
+        assertEquals(2, cache.evictMonth("2026-01"));
+        assertEquals(2, cache.stats().size());
+    }
+
+    @Test
+    void getInventoryBalances_concurrentMiss_loadsOnce() throws Exception {
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(erpInventoryService.getInventoryBalances(anyCollection(), eq(MONTH))).thenAnswer(inv -> {
+            loading.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return allOf(inv.getArgument(0), "100");
+        });
+
+        CompletableFuture<Map<String, BigDecimal>> first =
+                CompletableFuture.supplyAsync(() -> cache.getInventoryBalances(List.of("P1"), MONTH));
+        assertTrue(loading.await(5, TimeUnit.SECONDS));
+        CompletableFuture<Map<String, BigDecimal>> second =
+                CompletableFuture.supplyAsync(() -> cache.getInventoryBalances(List.of("P1"), MONTH));
+        Thread.sleep(100);
+        release.countDown();
+
+        assertEquals(new BigDecimal("100"), first.get(5, TimeUnit.SECONDS).get("P1"));
+        assertEquals(new BigDecimal("100"), second.get(5, TimeUnit.SECONDS).get("P1"));
+        verify(erpInventoryService, times(1)).getInventoryBalances(anyCollection(), eq(MONTH));
+    }
+
+    @Test
+    void evictMonth_duringLoad_loadedValuesAreNotCached() throws Exception {
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(erpInventoryService.getInventoryBalances(anyCollection(), eq(MONTH))).thenAnswer(inv -> {
+            loading.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return allOf(inv.getArgument(0), "100");
+        }).thenAnswer(inv -> allOf(inv.getArgument(0), "120"));
+
+        CompletableFuture<Map<String, BigDecimal>> first =
+                CompletableFuture.supplyAsync(() -> cache.getInventoryBalances(List.of("P1"), MONTH));
+        assertTrue(loading.await(5, TimeUnit.SECONDS));
+        cache.evictMonth(MONTH);
+        release.countDown();
+
+        // 清除前開始的載入仍回給呼叫端，但不留在快取
+        assertEquals(new BigDecimal("100"), first.get(5, TimeUnit.SECONDS).get("P1"));
+        assertEquals(0, cache.stats().size());
+        assertEquals(new BigDecimal("120"), cache.getInventoryBalances(List.of("P1"), MONTH).get("P1"));
+        verify(erpInventoryService, times(2)).getInventoryBalances(anyCollection(), eq(MONTH));
+    }
+
+    @Test
+    void figuresExpiry_changesOnlyWhenCachedFiguresExpire() {
+        cache.getInventoryBalances(List.of("P1"), MONTH);
+        cache.getSalesQuantities(List.of("P1"), "2026-01-01", "2026-01-31");
+        String loaded = cache.figuresExpiry(MONTH, "2026-01-01", "2026-01-31");
+
+        // 跨過整點對齊的 TTL 時段，快取數字仍有效時不變
+        clock.advance(30_000);
+        assertEquals(loaded, cache.figuresExpiry(MONTH, "2026-01-01", "2026-01-31"));
+
+        clock.advance(30_001);
+        String expired = cache.figuresExpiry(MONTH, "2026-01-01", "2026-01-31");
+        assertNotEquals(loaded, expired);
+        clock.advance(1);
+        assertNotEquals(expired, cache.figuresExpiry(MONTH, "2026-01-01", "2026-01-31"));
+
+        cache.getInventoryBalances(List.of("P1"), MONTH);
+        cache.getSalesQuantities(List.of("P1"), "2026-01-01", "2026-01-31");
+        assertNotEquals(loaded, cache.figuresExpiry(MONTH, "2026-01-01", "2026-01-31"));
+    }
+
+    @Test
+    void getSalesQuantities_loadFailure_notCached() {
+        when(erpInventoryService.getSalesQuantities(anyCollection(), anyString(), anyString()))
+                .thenThrow(new IllegalStateException("ERP down"))
+                .thenAnswer(inv -> allOf(inv.getArgument(0), "50"));
+
+        assertThrows(IllegalStateException.class,
+                () -> cache.getSalesQuantities(List.of("P1"), "2026-01-01", "2026-01-31"));
+        assertEquals(new BigDecimal("50"),
+                cache.getSalesQuantities(List.of("P1"), "2026-01-01", "2026-01-31").get("P1"));
+    }
+
+    private static class MutableClock extends Clock {
+        private long millis = 1_000_000L;
+
+        void advance(long delta) {
+            millis += delta;
+        }
+
+        @Override
+        public long millis() {
+            return millis;
+        }
+
+        @Override
+        public Instant instant() {
+            return Instant.ofEpochMilli(millis);
+        }
+
+        @Override
+        public ZoneOffset getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(java.time.ZoneId zone) {
+            return this;
+        }
+    }
+}
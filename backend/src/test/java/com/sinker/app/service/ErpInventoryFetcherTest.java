@@ -0,0 +1,151 @@
+package com.sinker.app.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+
+import java.math.BigDecimal;
+import java.time.Clock;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class ErpInventoryFetcherTest {
+
+    @Mock private ErpInventoryService erpInventoryService;
+
+    private ErpInventoryFetcher fetcher;
+
+    private static final String MONTH = "202601";
+    private static final String START = "2026-01-01";
+    private static final String END = "2026-01-31";
+
+    @AfterEach
+    void tearDown() {
+        fetcher.shutdown();
+    }
+
+    private ErpInventoryCache cache() {
+        return new ErpInventoryCache(erpInventoryService, 1_000, 60_000, Clock.systemUTC());
+    }
+
+    private static Map<String, BigDecimal> allOf(Collection<String> codes, String value) {
+        Map<String, BigDecimal> result = new HashMap<>();
+        codes.forEach(code -> result.put(code, new BigDecimal(value)));
+        return result;
+    }
+
+    @Test
+    void fetch_allBatchesSucceed_returnsFiguresForEveryProduct() {
+        fetcher = new ErpInventoryFetcher(cache(), 4, 16, 2, 5_000, 10_000);
+        when(erpInventoryService.getInventoryBalances(anyCollection(), eq(MONTH)))
+                .thenAnswer(inv -> allOf(inv.getArgument(0), "100"));
+        when(erpInventoryService.getSalesQuantities(anyCollection(), eq(START), eq(END)))
+                .thenAnswer(inv -> allOf(inv.getArgument(0), "50"));
+
+        ErpInventoryFetcher.ErpFigures figures = fetcher.fetch(List.of("P1", "P2", "P3"), MONTH, START, END);
+
+        assertEquals(3, figures.inventoryBalances().size());
+        assertEquals(new BigDecimal("50"), figures.salesQuantities().get("P3"));
+        assertTrue(figures.errors().isEmpty());
+        verify(erpInventoryService, times(2)).getInventoryBalances(anyCollection(), eq(MONTH));
+    }
+
+    @Test
+    void fetch_failedBatch_reportsErrorOnlyForItsProducts() {
+        fetcher = new ErpInventoryFetcher(cache(), 4, 16, 1, 5_000, 10_000);
+        when(erpInventoryService.getInventoryBalances(anyCollection(), eq(MONTH))).thenAnswer(inv -> {
+            Collection<String> codes = inv.getArgument(0);
+            if (codes.contains("P2")) {
+                throw new IllegalStateException("ERP down");
+            }
+            return allOf(codes, "100");
+        });
+        when(erpInventoryService.getSalesQuantities(anyCollection(), eq(START), eq(END)))
+                .thenAnswer(inv -> allOf(inv.getArgument(0), "50"));
+
+        ErpInventoryFetcher.ErpFigures figures = fetcher.fetch(List.of("P1", "P2"), MONTH, START, END);
+
+        assertEquals(new BigDecimal("100"), figures.inventoryBalances().get("P1"));
+        assertNull(figures.inventoryBalances().get("P2"));
+        assertEquals(new BigDecimal("50"), figures.salesQuantities().get("P2"));
+        assertEquals(Map.of("P2", "庫存查詢失敗: ERP down"), figures.errors());
+    }
+
+    @Test
+    void fetch_slowCall_timesOutWithoutFailingTheQuery() {
+        fetcher = new ErpInventoryFetcher(cache(), 4, 16, 1, 100, 10_000);
+        when(erpInventoryService.getInventoryBalances(anyCollection(), eq(MONTH)))
+                .thenAnswer(inv -> allOf(inv.getArgument(0), "100"));
+        when(erpInventoryService.getSalesQuantities(anyCollection(), eq(START), eq(END))).thenAnswer(inv -> {
+            Collection<String> codes = inv.getArgument(0);
+            if (codes.contains("P1")) {
+                Thread.sleep(2_000);
+            }
+            return allOf(codes, "50");
+        });
+
+        long started = System.currentTimeMillis();
+        ErpInventoryFetcher.ErpFigures figures = fetcher.fetch(List.of("P1", "P2"), MONTH, START, END);
+
+        assertTrue(System.currentTimeMillis() - started < 1_500);
+        assertEquals("銷量查詢逾時", figures.errors().get("P1"));
+        assertEquals(new BigDecimal("50"), figures.salesQuantities().get("P2"));
+        assertEquals(new BigDecimal("100"), figures.inventoryBalances().get("P1"));
+    }
+
+    @Test
+    void fetch_moreBatchesThanThreads_callTimeoutStartsWhenTheCallRuns() {
+        // 每次呼叫 150ms，短於單次逾時 300ms；2 條執行緒處理 12 個批次合計約 900ms，超過單次逾時
+        fetcher = new ErpInventoryFetcher(cache(), 2, 16, 1, 300, 10_000);
+        when(erpInventoryService.getInventoryBalances(anyCollection(), eq(MONTH))).thenAnswer(inv -> {
+            Thread.sleep(150);
+            return allOf(inv.getArgument(0), "100");
+        });
+        when(erpInventoryService.getSalesQuantities(anyCollection(), eq(START), eq(END))).thenAnswer(inv -> {
+            Thread.sleep(150);
+            return allOf(inv.getArgument(0), "50");
+        });
+
+        long started = System.currentTimeMillis();
+        ErpInventoryFetcher.ErpFigures figures =
+                fetcher.fetch(List.of("P1", "P2", "P3", "P4", "P5", "P6"), MONTH, START, END);
+
+        assertTrue(System.currentTimeMillis() - started >= 600, "batches waited for a free thread");
+        assertTrue(figures.errors().isEmpty(), figures.errors().toString());
+        assertEquals(6, figures.inventoryBalances().size());
+        assertEquals(6, figures.salesQuantities().size());
+    }
+
+    @Test
+    void fetch_queueFull_rejectedBatchesReportAnError() {
+        fetcher = new ErpInventoryFetcher(cache(), 1, 1, 1, 5_000, 10_000);
+        when(erpInventoryService.getInventoryBalances(anyCollection(), eq(MONTH))).thenAnswer(inv -> {
+            Thread.sleep(200);
+            return allOf(inv.getArgument(0), "100");
+        });
+        when(erpInventoryService.getSalesQuantities(anyCollection(), eq(START), eq(END)))
+                .thenAnswer(inv -> allOf(inv.getArgument(0), "50"));
+
+        // P1 庫存執行中、P1 銷量在佇列中，其餘批次被拒絕
+        ErpInventoryFetcher.ErpFigures figures = fetcher.fetch(List.of("P1", "P2", "P3"), MONTH, START, END);
+
+        assertEquals(new BigDecimal("100"), figures.inventoryBalances().get("P1"));
+        assertEquals(new BigDecimal("50"), figures.salesQuantities().get("P1"));
+        assertNull(figures.errors().get("P1"));
+        assertEquals("庫存查詢失敗: 查詢佇列已滿；銷量查詢失敗: 查詢佇列已滿", figures.errors().get("P2"));
+        assertEquals("庫存查詢失敗: 查詢佇列已滿；銷量查詢失敗: 查詢佇列已滿", figures.errors().get("P3"));
+        verify(erpInventoryService, times(1)).getInventoryBalances(anyCollection(), eq(MONTH));
+    }
+}
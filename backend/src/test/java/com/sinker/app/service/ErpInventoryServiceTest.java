@@ -4,6 +4,9 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -174,4 +177,41 @@ class ErpInventoryServiceTest {
         assertTrue(sales.compareTo(new BigDecimal("50")) >= 0);
         assertTrue(sales.compareTo(new BigDecimal("150")) < 0);
     }
+
+    @Test
+    void getInventoryBalances_matchesSingleLookups() {
+        Map<String, BigDecimal> balances = erpInventoryService.getInventoryBalances(List.of("PROD001", ""), "2026-01");
+        assertEquals(2, balances.size());
+        assertEquals(erpInventoryService.getInventoryBalance("PROD001", "2026-01"), balances.get("PROD001"));
+        assertEquals(BigDecimal.ZERO, balances.get(""));
+    }
+
+    @Test
+    void getSalesQuantities_matchesSingleLookups() {
+        Map<String, BigDecimal> sales = erpInventoryService.getSalesQuantities(
+                List.of("PROD001", "PROD002"), "2026-01-01", "2026-01-31");
+        assertEquals(new BigDecimal("50"), sales.get("PROD001"));
+        assertEquals(new BigDecimal("50"), sales.get("PROD002"));
+    }
+
+    @Test
+    void getInventoryBalances_overBatchSize_throws() {
+        List<String> codes = new ArrayList<>();
+        for (int i = 0; i <= ErpInventoryService.MAX_BATCH_SIZE; i++) {
+            codes.add("PROD" + i);
+        }
+        assertThrows(IllegalArgumentException.class, () -> erpInventoryService.getInventoryBalances(codes, "2026-01"));
+    }
+
+    @Test
+    void batches_splitsAtMaxBatchSize() {
+        List<String> codes = new ArrayList<>();
+        for (int i = 0; i < ErpInventoryService.MAX_BATCH_SIZE * 2 + 1; i++) {
+            codes.add("PROD" + i);
+        }
+        List<List<String>> batches = ErpInventoryService.batches(codes);
+        assertEquals(3, batches.size());
+        assertEquals(ErpInventoryService.MAX_BATCH_SIZE, batches.get(0).size());
+        assertEquals(1, batches.get(2).size());
+    }
 }
@@ -8,11 +8,19 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyCollection;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
@@ -47,4 +55,39 @@ class ErpProductServiceTest {
         assertFalse(service.validateProduct(""));
         assertFalse(service.validateProduct("   "));
     }
+
+    @Test
+    void testFindProducts_ChunksLookupAndKeysByCode() {
+        List<String> codes = new ArrayList<>();
+        for (int i = 0; i < ErpProductService.LOOKUP_CHUNK_SIZE + 5; i++) {
+            codes.add("P" + i);
+        }
+        codes.add(" P1 ");
+        codes.add("");
+        when(productRepository.findByCodeIn(anyCollection())).thenAnswer(inv -> {
+            List<Product> found = new ArrayList<>();
+            for (Object c : (java.util.Collection<?>) inv.getArgument(0)) {
+                if (!"P3".equals(c)) {
+                    Product p = new Product();
+                    p.setCode((String) c);
+                    found.add(p);
+                }
+            }
+            return found;
+        });
+
+        Map<String, com.sinker.app.dto.reference.ProductDTO> result = service.findProducts(codes);
+
+        verify(productRepository, times(2)).findByCodeIn(anyCollection());
+        assertEquals(ErpProductService.LOOKUP_CHUNK_SIZE + 4, result.size());
+        assertTrue(result.containsKey("P1"));
+        assertTrue(result.containsKey("p1"));
+        assertFalse(result.containsKey("P3"));
+    }
+
+    @Test
+    void testFindProducts_EmptyInput_NoQuery() {
+        assertTrue(service.findProducts(List.of()).isEmpty());
+        verify(productRepository, never()).findByCodeIn(anyCollection());
+    }
 }
@@ -0,0 +1,147 @@
+package com.sinker.app.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sinker.app.dto.forecast.FormSummaryResponse;
+import com.sinker.app.dto.forecast.FormSummaryRowDTO;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class FormSummaryCacheTest {
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void memoryOnly_evictsLeastRecentlyUsedBeyondMaxEntries() {
+        FormSummaryCache cache = new FormSummaryCache(jdbcTemplate, objectMapper, transactionManager, 2, false);
+        FormSummaryResponse v1 = response(1);
+        FormSummaryResponse v2 = response(2);
+        cache.put("202601", 1, v1, 0L);
+        cache.put("202601", 2, v2, 0L);
+        cache.get("202601", 1);
+        cache.put("202601", 3, response(3), 0L);
+
+        assertEquals(1, cache.get("202601", 1).getVersionNo());
+        assertNull(cache.get("202601", 2));
+        assertNotNull(cache.get("202601", 3));
+        verifyNoInteractions(jdbcTemplate);
+    }
+
+    @Test
+    void evictMonth_removesOnlyThatMonth() {
+        FormSummaryCache cache = new FormSummaryCache(jdbcTemplate, objectMapper, transactionManager, 10, false);
+        cache.put("202601", 1, response(1), 0L);
+        cache.put("202602", 1, response(1), 0L);
+
+        cache.evictMonth("202601");
+
+        assertNull(cache.get("202601", 1));
+        assertNotNull(cache.get("202602", 1));
+    }
+
+    @Test
+    void put_afterEvictionSinceGenerationTaken_isDropped() {
+        FormSummaryCache cache = new FormSummaryCache(jdbcTemplate, objectMapper, transactionManager, 10, true);
+        long generation = cache.generation("202601");
+        cache.evictMonth("202601");
+
+        // 清除前讀取的明細算出的摘要：記憶體與落地都不寫入
+        cache.put("202601", 2, response(2), generation);
+
+        assertNull(cache.get("202601", 2));
+        verify(jdbcTemplate, never()).update(startsWith("INSERT IGNORE INTO form_summary_cache"),
+                any(), any(), any());
+        verifyNoInteractions(transactionManager);
+
+        cache.put("202601", 2, response(2), cache.generation("202601"));
+        assertEquals(2, cache.get("202601", 2).getVersionNo());
+    }
+
+    @Test
+    void persisted_loadsSerializedCopyOnMemoryMiss() throws Exception {
+        FormSummaryCache cache = new FormSummaryCache(jdbcTemplate, objectMapper, transactionManager, 10, true);
+        FormSummaryResponse stored = response(2);
+        stored.setVersionRemark("追加");
+        when(jdbcTemplate.queryForList(anyString(), eq(String.class), eq("202601"), eq(2)))
+                .thenReturn(List.of(objectMapper.writeValueAsString(stored)));
+
+        FormSummaryResponse loaded = cache.get("202601", 2);
+
+        assertEquals(2, loaded.getVersionNo());
+        assertEquals("追加", loaded.getVersionRemark());
+        // 第二次直接由記憶體取得
+        assertEquals("追加", cache.get("202601", 2).getVersionRemark());
+        verify(jdbcTemplate, times(1)).queryForList(anyString(), eq(String.class), eq("202601"), eq(2));
+    }
+
+    @Test
+    void returnedSummary_isACopy_mutationsDoNotReachTheCache() {
+        FormSummaryCache cache = new FormSummaryCache(jdbcTemplate, objectMapper, transactionManager, 10, false);
+        FormSummaryResponse original = response(1);
+        original.setRows(new java.util.ArrayList<>(List.of(new FormSummaryRowDTO())));
+        original.getRows().get(0).setProductCode("P001");
+        cache.put("202601", 1, original, 0L);
+        original.getRows().get(0).setProductCode("changed");
+
+        FormSummaryResponse first = cache.get("202601", 1);
+        first.getRows().get(0).setProductCode("mutated");
+        first.setVersionRemark("mutated");
+
+        FormSummaryResponse second = cache.get("202601", 1);
+        assertNotSame(first, second);
+        assertEquals("P001", second.getRows().get(0).getProductCode());
+        assertNull(second.getVersionRemark());
+    }
+
+    @Test
+    void putInsideTransaction_persistsAfterCommitInItsOwnTransaction() {
+        FormSummaryCache cache = new FormSummaryCache(jdbcTemplate, objectMapper, transactionManager, 10, true);
+        when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            cache.put("202601", 2, response(2), 0L);
+
+            verifyNoInteractions(jdbcTemplate, transactionManager);
+
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        verify(jdbcTemplate).update(startsWith("INSERT IGNORE INTO form_summary_cache"),
+                eq("202601"), eq(2), anyString());
+        verify(transactionManager).getTransaction(argThat(def ->
+                def.getPropagationBehavior() == TransactionDefinition.PROPAGATION_REQUIRES_NEW));
+        verify(transactionManager).commit(any());
+        assertEquals(2, cache.get("202601", 2).getVersionNo());
+    }
+
+    private static FormSummaryResponse response(int versionNo) {
+        FormSummaryResponse r = new FormSummaryResponse();
+        r.setVersionNo(versionNo);
+        r.setChannelOrder(List.of("家樂福"));
+        r.setRows(List.of());
+        r.setChannelVersions(List.of());
+        return r;
+    }
+}
@@ -0,0 +1,334 @@
+package com.sinker.app.service;
+
+import com.sinker.app.dto.ReportStream;
+import com.sinker.app.dto.forecast.ChannelCellDTO;
+import com.sinker.app.dto.forecast.FormSummaryResponse;
+import com.sinker.app.dto.forecast.FormSummaryRowDTO;
+import com.sinker.app.dto.forecast.SaveFormSummaryVersionRequest;
+import com.sinker.app.entity.GiftSalesForecast;
+import com.sinker.app.entity.SalesForecast;
+import com.sinker.app.entity.SalesForecastConfig;
+import com.sinker.app.entity.SalesForecastFormVersion;
+import com.sinker.app.entity.SalesForecastVersionReason;
+import com.sinker.app.repository.ForecastBulkWriter;
+import com.sinker.app.repository.ForecastVersionCatalog;
+import com.sinker.app.repository.ForecastVersionOverlay;
+import com.sinker.app.repository.ProductDimension;
+import com.sinker.app.repository.GiftSalesForecastRepository;
+import com.sinker.app.repository.SalesForecastConfigRepository;
+import com.sinker.app.repository.SalesForecastFormVersionRepository;
+import com.sinker.app.repository.SalesForecastRepository;
+import com.sinker.app.repository.SalesForecastVersionReasonRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class FormSummaryServiceTest {
+
+    private static final String MONTH = "202601";
+    private static final String LATEST = "2026/01/20 09:00:00(家樂福)";
+    private static final String PREVIOUS = "2026/01/10 09:00:00(家樂福)";
+
+    @Mock private SalesForecastRepository forecastRepository;
+    @Mock private SalesForecastVersionReasonRepository versionReasonRepository;
+    @Mock private SalesForecastConfigRepository configRepository;
+    @Mock private SalesForecastFormVersionRepository formVersionRepository;
+    @Mock private GiftSalesForecastRepository giftForecastRepository;
+    @Mock private ForecastBulkWriter bulkWriter;
+    @Mock private ForecastVersionCatalog versionCatalog;
+    @Mock private ForecastVersionOverlay versionOverlay;
+    @Mock private FormSummaryCache formSummaryCache;
+    @Mock private ProductDimension productDimension;
+    @Mock private ReportDataVersion reportDataVersion;
+
+    @InjectMocks
+    private FormSummaryService service;
+
+    @Test
+    void getFormSummaryLegacy_combinesLatestPreviousGiftAndReasonPerChannel() {
+        when(versionCatalog.findRecentVersions(ForecastVersionCatalog.Source.SALES, MONTH, 2))
+                .thenReturn(Map.of("家樂福", List.of(LATEST, PREVIOUS), "愛買", List.of("2026/01/05 09:00:00(愛買)")));
+        when(versionOverlay.findSalesForecastsOfRecentVersions(MONTH, 2)).thenReturn(List.of(
+                sales("家樂福", LATEST, "P001", "120"),
+                sales("家樂福", PREVIOUS, "P001", "100"),
+                sales("愛買", "2026/01/05 09:00:00(愛買)", "P002", "30")));
+        SalesForecastVersionReason reason = new SalesForecastVersionReason();
+        reason.setMonth(MONTH);
+        reason.setChannel("家樂福");
+        reason.setVersion(LATEST);
+        reason.setChangeReason("促銷追加");
+        when(versionReasonRepository.findByMonth(MONTH)).thenReturn(List.of(reason));
+        when(versionOverlay.findLatestGiftSalesForecasts(MONTH)).thenReturn(List.of(
+                gift("家樂福", "P001", "5"), gift("不在表單的通路", "P009", "1")));
+
+        FormSummaryResponse response = service.getFormSummaryLegacy(MONTH);
+
+        assertEquals(12, response.getChannelVersions().size());
+        assertEquals(LATEST, response.getChannelVersions().get(1).getLatestVersion());
+        assertEquals("", response.getChannelVersions().get(0).getLatestVersion());
+        assertEquals(2, response.getRows().size());
+
+        FormSummaryRowDTO p001 = response.getRows().get(0);
+        assertEquals("P001", p001.getProductCode());
+        ChannelCellDTO carrefour = p001.getChannelCells().get(response.getChannelOrder().indexOf("家樂福"));
+        assertEquals(0, new BigDecimal("100").compareTo(carrefour.getPreviousQty()));
+        assertEquals(0, new BigDecimal("125").compareTo(carrefour.getCurrentQty()));
+        assertEquals(0, new BigDecimal("120").compareTo(carrefour.getCurrentSalesQty()));
+        assertEquals(0, new BigDecimal("-25").compareTo(carrefour.getDiff()));
+        assertEquals("促銷追加", carrefour.getRemark());
+
+        // 只有一個版本時，上一版即最新版
+        FormSummaryRowDTO p002 = response.getRows().get(1);
+        ChannelCellDTO aimai = p002.getChannelCells().get(response.getChannelOrder().indexOf("愛買"));
+        assertEquals(0, new BigDecimal("30").compareTo(aimai.getPreviousQty()));
+        assertEquals(0, BigDecimal.ZERO.compareTo(aimai.getDiff()));
+        assertEquals("", aimai.getRemark());
+
+        verify(versionOverlay, never()).findSalesForecasts(anyString(), anyString(), any());
+        verify(versionOverlay, never()).findGiftSalesForecasts(anyString(), anyString(), any());
+    }
+
+    @Test
+    void getFormSummaryLegacy_unresolvedProductIds_groupsByProductColumns() {
+        when(versionCatalog.findRecentVersions(ForecastVersionCatalog.Source.SALES, MONTH, 2))
+                .thenReturn(Map.of("家樂福", List.of(LATEST, PREVIOUS)));
+        when(versionOverlay.findSalesForecastsOfRecentVersions(MONTH, 2)).thenReturn(List.of(
+                unresolved(sales("家樂福", LATEST, "P001", "120")),
+                unresolved(sales("家樂福", LATEST, "P002", "30")),
+                unresolved(sales("家樂福", PREVIOUS, "P001", "100"))));
+        when(versionReasonRepository.findByMonth(MONTH)).thenReturn(List.of());
+        GiftSalesForecast gift = gift("家樂福", "P002", "5");
+        gift.setProductId(null);
+        when(versionOverlay.findLatestGiftSalesForecasts(MONTH)).thenReturn(List.of(gift));
+
+        FormSummaryResponse response = service.getFormSummaryLegacy(MONTH);
+
+        int carrefour = response.getChannelOrder().indexOf("家樂福");
+        assertEquals(2, response.getRows().size(), "products without product_id stay apart");
+        ChannelCellDTO p001 = response.getRows().get(0).getChannelCells().get(carrefour);
+        assertEquals(0, new BigDecimal("120").compareTo(p001.getCurrentQty()));
+        assertEquals(0, new BigDecimal("100").compareTo(p001.getPreviousQty()));
+        ChannelCellDTO p002 = response.getRows().get(1).getChannelCells().get(carrefour);
+        assertEquals(0, new BigDecimal("35").compareTo(p002.getCurrentQty()));
+        assertEquals(0, BigDecimal.ZERO.compareTo(p002.getPreviousQty()));
+    }
+
+    @Test
+    void getFormSummaryByVersion_unresolvedProductIds_groupsByProductColumns() {
+        SalesForecastConfig config = new SalesForecastConfig();
+        config.setMonth(MONTH);
+        config.setIsClosed(true);
+        SalesForecastFormVersion v2 = new SalesForecastFormVersion();
+        v2.setMonth(MONTH);
+        v2.setVersionNo(2);
+        when(configRepository.findByMonth(MONTH)).thenReturn(Optional.of(config));
+        when(formVersionRepository.countByMonth(MONTH)).thenReturn(2L);
+        when(formVersionRepository.findByMonthOrderByVersionNoDesc(MONTH)).thenReturn(List.of(v2));
+        when(versionOverlay.findSalesForecastsByMonthAndVersion(MONTH, "form_v2")).thenReturn(List.of(
+                unresolved(sales("家樂福", "form_v2", "P001", "12")),
+                unresolved(sales("家樂福", "form_v2", "P002", "20"))));
+        when(forecastRepository.findFormVersion1ByMonthOrderByChannelCategorySpecProductCode(MONTH))
+                .thenReturn(List.of(unresolved(sales("家樂福", "form_v1", "P001", "10"))));
+
+        FormSummaryResponse response = service.getFormSummaryByVersion(MONTH, 2);
+
+        assertEquals(2, response.getRows().size(), "products without product_id stay apart");
+        ChannelCellDTO first = response.getRows().get(0).getChannelCells().get(1);
+        assertEquals(0, new BigDecimal("12").compareTo(first.getCurrentQty()));
+        assertEquals(0, new BigDecimal("10").compareTo(first.getPreviousQty()));
+        ChannelCellDTO second = response.getRows().get(1).getChannelCells().get(1);
+        assertEquals(0, new BigDecimal("20").compareTo(second.getCurrentQty()));
+        assertEquals(0, BigDecimal.ZERO.compareTo(second.getPreviousQty()));
+    }
+
+    @Test
+    void getFormSummaryByVersion_cached_skipsRecompute() {
+        FormSummaryResponse cached = new FormSummaryResponse();
+        cached.setVersionNo(2);
+        when(formSummaryCache.get(MONTH, 2)).thenReturn(cached);
+
+        assertSame(cached, service.getFormSummaryByVersion(MONTH, 2));
+
+        verifyNoInteractions(configRepository, formVersionRepository, forecastRepository);
+    }
+
+    @Test
+    void streamFormSummary_cachedVersion_streamsRowsWithoutTouchingCachedInstance() {
+        FormSummaryRowDTO row = new FormSummaryRowDTO();
+        row.setProductCode("P001");
+        FormSummaryResponse cached = new FormSummaryResponse();
+        cached.setVersionNo(2);
+        cached.setVersionRemark("追加");
+        cached.setRows(List.of(row));
+        when(formSummaryCache.get(MONTH, 2)).thenReturn(cached);
+
+        ReportStream<FormSummaryResponse, FormSummaryRowDTO> report = service.streamFormSummary(MONTH, 2);
+
+        assertNotSame(cached, report.header());
+        assertNull(report.header().getRows());
+        assertEquals("追加", report.header().getVersionRemark());
+        assertEquals(List.of(row), report.rows().toList());
+        assertEquals(List.of(row), cached.getRows());
+        verifyNoInteractions(configRepository, formVersionRepository, forecastRepository);
+    }
+
+    @Test
+    void getFormSummaryByVersion_aggregatedVersion_isCached() {
+        SalesForecastConfig config = new SalesForecastConfig();
+        config.setMonth(MONTH);
+        config.setIsClosed(true);
+        SalesForecastFormVersion v2 = new SalesForecastFormVersion();
+        v2.setMonth(MONTH);
+        v2.setVersionNo(2);
+        v2.setChangeReason("追加");
+        when(configRepository.findByMonth(MONTH)).thenReturn(Optional.of(config));
+        when(formVersionRepository.countByMonth(MONTH)).thenReturn(2L);
+        when(formVersionRepository.findByMonthOrderByVersionNoDesc(MONTH)).thenReturn(List.of(v2));
+        SalesForecast row = sales("家樂福", "form_v2", "P001", "10");
+        row.setFormVersionNo(2);
+        when(versionOverlay.findSalesForecastsByMonthAndVersion(MONTH, "form_v2")).thenReturn(List.of(row));
+        when(forecastRepository.findFormVersion1ByMonthOrderByChannelCategorySpecProductCode(MONTH))
+                .thenReturn(List.of());
+
+        FormSummaryResponse response = service.getFormSummaryByVersion(MONTH, 2);
+
+        assertEquals("追加", response.getVersionRemark());
+        verify(formSummaryCache).put(MONTH, 2, response, 0L);
+        verify(versionOverlay, never()).findGiftSalesForecasts(anyString(), anyString(), any());
+    }
+
+    @Test
+    void createFormVersion1Snapshot_insertsSnapshotServerSide() {
+        SalesForecastConfig config = new SalesForecastConfig();
+        config.setMonth(MONTH);
+        config.setIsClosed(true);
+        config.setClosedAt(LocalDateTime.of(2026, 2, 1, 0, 0));
+        when(formVersionRepository.countByMonth(MONTH)).thenReturn(0L);
+        when(bulkWriter.insertFormSnapshot(eq(MONTH), eq("form_v1"), eq(1), eq(config.getClosedAt())))
+                .thenReturn(24);
+
+        service.createFormVersion1Snapshot(MONTH, config);
+
+        verify(formVersionRepository).save(argThat(v -> v.getVersionNo() == 1 && MONTH.equals(v.getMonth())));
+        // 快照以 product_id 分組，寫入前先補齊尚未解析的列
+        InOrder order = inOrder(productDimension, bulkWriter);
+        order.verify(productDimension).assignMonth(ProductDimension.Table.SALES, MONTH);
+        order.verify(productDimension).assignMonth(ProductDimension.Table.GIFT, MONTH);
+        order.verify(bulkWriter).insertFormSnapshot(eq(MONTH), eq("form_v1"), eq(1), any());
+        verify(versionCatalog).refreshMonth(ForecastVersionCatalog.Source.SALES, MONTH);
+        verifyNoInteractions(versionOverlay);
+        verify(bulkWriter, never()).insertSalesForecasts(anyList());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void saveFormSummaryVersion_writesOnlyChangedCellsOverPreviousVersion() {
+        SalesForecastConfig config = new SalesForecastConfig();
+        config.setMonth(MONTH);
+        config.setIsClosed(true);
+        when(configRepository.findByMonth(MONTH)).thenReturn(Optional.of(config));
+        when(formVersionRepository.countByMonth(MONTH)).thenReturn(1L);
+        SalesForecastFormVersion v1 = new SalesForecastFormVersion();
+        v1.setMonth(MONTH);
+        v1.setVersionNo(1);
+        when(formVersionRepository.findByMonthOrderByVersionNoDesc(MONTH)).thenReturn(List.of(v1));
+        List<String> channels = List.of("PX + 大全聯", "家樂福", "愛買", "7-11", "全家", "Ok+萊爾富",
+                "好市多", "楓康", "美聯社", "康是美", "電商", "市面經銷");
+        List<SalesForecast> previous = new ArrayList<>();
+        for (int i = 0; i < channels.size(); i++) {
+            SalesForecast r = sales(channels.get(i), "form_v1", "P001", i == 1 ? "10" : "0");
+            r.setId(i + 1);
+            previous.add(r);
+        }
+        SalesForecast dropped = sales("家樂福", "form_v1", "P002", "5");
+        dropped.setId(99);
+        previous.add(dropped);
+        when(versionOverlay.findSalesForecastsByMonthAndVersion(MONTH, "form_v1")).thenReturn(previous);
+        when(versionCatalog.createOverlay(eq(ForecastVersionCatalog.Source.SALES), eq(MONTH), anyString(),
+                eq("form_v2"), eq("form_v1"), any())).thenReturn(true);
+
+        SaveFormSummaryVersionRequest.FormSummaryRowEditDTO edit = new SaveFormSummaryVersionRequest.FormSummaryRowEditDTO();
+        edit.setWarehouseLocation("A01");
+        edit.setCategory("飲料類");
+        edit.setSpec("600ml*24入");
+        edit.setProductName("商品");
+        edit.setProductCode("P001");
+        List<BigDecimal> quantities = new ArrayList<>(Collections.nCopies(12, BigDecimal.ZERO));
+        quantities.set(1, new BigDecimal("12"));
+        edit.setChannelQuantities(quantities);
+        SaveFormSummaryVersionRequest request = new SaveFormSummaryVersionRequest();
+        request.setChangeReason("追加");
+        request.setRows(List.of(edit));
+
+        assertEquals(2, service.saveFormSummaryVersion(MONTH, request));
+
+        ArgumentCaptor<List<SalesForecast>> inserted = ArgumentCaptor.forClass(List.class);
+        verify(bulkWriter).insertSalesForecasts(inserted.capture());
+        assertEquals(1, inserted.getValue().size());
+        SalesForecast changed = inserted.getValue().get(0);
+        assertEquals("家樂福", changed.getChannel());
+        assertEquals("form_v2", changed.getVersion());
+        assertEquals(2, changed.getBaseId());
+        assertEquals(0, new BigDecimal("12").compareTo(changed.getQuantity()));
+        verify(versionOverlay).addRemovals(ForecastVersionCatalog.Source.SALES, MONTH, "form_v2",
+                Map.of("家樂福", List.of(99)));
+        verify(versionCatalog).setOverlayRowCount(ForecastVersionCatalog.Source.SALES, MONTH, "form_v2", 1);
+    }
+
+    private static SalesForecast sales(String channel, String version, String productCode, String qty) {
+        SalesForecast sf = new SalesForecast();
+        sf.setMonth(MONTH);
+        sf.setChannel(channel);
+        sf.setVersion(version);
+        sf.setCategory("飲料類");
+        sf.setSpec("600ml*24入");
+        sf.setProductCode(productCode);
+        sf.setProductId(productId(productCode));
+        sf.setProductName("商品");
+        sf.setWarehouseLocation("A01");
+        sf.setQuantity(new BigDecimal(qty));
+        return sf;
+    }
+
+    /** 品項維度尚未解析的列 */
+    private static SalesForecast unresolved(SalesForecast sf) {
+        sf.setProductId(null);
+        return sf;
+    }
+
+    /** 測試資料中其餘品項欄位相同，以品號代表品項維度 */
+    private static int productId(String productCode) {
+        return Integer.parseInt(productCode.substring(1));
+    }
+
+    private static GiftSalesForecast gift(String channel, String productCode, String qty) {
+        GiftSalesForecast g = new GiftSalesForecast();
+        g.setMonth(MONTH);
+        g.setChannel(channel);
+        g.setCategory("飲料類");
+        g.setSpec("600ml*24入");
+        g.setProductCode(productCode);
+        g.setProductId(productId(productCode));
+        g.setProductName("商品");
+        g.setWarehouseLocation("A01");
+        g.setQuantity(new BigDecimal(qty));
+        return g;
+    }
+}
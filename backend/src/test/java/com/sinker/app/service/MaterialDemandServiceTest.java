@@ -41,6 +41,9 @@ class MaterialDemandServiceTest {
     @Mock
     private PdcaIntegrationService pdcaIntegrationService;
 
+    @Mock
+    private UploadFingerprintService fingerprintService;
+
     @InjectMocks
     private MaterialDemandService materialDemandService;
 
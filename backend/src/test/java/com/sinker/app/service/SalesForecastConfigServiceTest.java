@@ -30,11 +30,14 @@ class SalesForecastConfigServiceTest {
     @Mock
     private FormSummaryService formSummaryService;
 
+    @Mock
+    private ReportDataVersion reportDataVersion;
+
     private SalesForecastConfigService service;
 
     @BeforeEach
     void setUp() {
-        service = new SalesForecastConfigService(repository, formSummaryService);
+        service = new SalesForecastConfigService(repository, formSummaryService, reportDataVersion);
     }
 
     private SalesForecastConfig createConfig(Integer id, String month,
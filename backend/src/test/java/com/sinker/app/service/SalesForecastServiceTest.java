@@ -1,5 +1,6 @@
 package com.sinker.app.service;
 
+import com.sinker.app.dto.forecast.CopyVersionResponse;
 import com.sinker.app.dto.forecast.CreateForecastRequest;
 import com.sinker.app.dto.forecast.ForecastResponse;
 import com.sinker.app.dto.forecast.UpdateForecastRequest;
@@ -7,6 +8,9 @@ import com.sinker.app.dto.forecast.VersionInfo;
 import com.sinker.app.entity.SalesForecast;
 import com.sinker.app.entity.SalesForecastConfig;
 import com.sinker.app.exception.ResourceNotFoundException;
+import com.sinker.app.repository.ForecastVersionCatalog;
+import com.sinker.app.repository.ForecastVersionOverlay;
+import com.sinker.app.repository.ProductDimension;
 import com.sinker.app.repository.SalesForecastConfigRepository;
 import com.sinker.app.repository.SalesForecastRepository;
 import com.sinker.app.repository.SalesForecastVersionReasonRepository;
@@ -45,6 +49,21 @@ class SalesForecastServiceTest {
     @Mock
     private JdbcTemplate jdbcTemplate;
 
+    @Mock
+    private ForecastVersionCatalog versionCatalog;
+
+    @Mock
+    private ForecastVersionOverlay versionOverlay;
+
+    @Mock
+    private FormSummaryCache formSummaryCache;
+
+    @Mock
+    private ProductDimension productDimension;
+
+    @Mock
+    private ReportDataVersion reportDataVersion;
+
     @InjectMocks
     private SalesForecastService service;
 
@@ -80,8 +99,8 @@ class SalesForecastServiceTest {
         when(erpProductService.validateProduct("P001")).thenReturn(true);
         when(forecastRepository.findByMonthAndChannelAndProductCode("202601", "大全聯", "P001"))
                 .thenReturn(Optional.empty());
-        when(forecastRepository.findDistinctVersionsByMonthAndChannel("202601", "大全聯"))
-                .thenReturn(List.of("2026/01/15 14:30:00(大全聯)"));
+        when(versionCatalog.findLatestVersion(ForecastVersionCatalog.Source.SALES, "202601", "大全聯"))
+                .thenReturn(Optional.of("2026/01/15 14:30:00(大全聯)"));
 
         SalesForecast savedForecast = new SalesForecast();
         savedForecast.setId(1);
@@ -257,6 +276,125 @@ class SalesForecastServiceTest {
         verify(forecastRepository, never()).delete(any());
     }
 
+    @Test
+    void updateForecast_inheritedRow_writesOverrideInTargetVersion() {
+        UpdateForecastRequest request = new UpdateForecastRequest();
+        request.setQuantity(new BigDecimal("150.75"));
+
+        SalesForecast parentRow = createMockForecast(1, "202601", "大全聯", "飲料類", "P001",
+                "2026/01/15 14:30:00(大全聯)");
+        String childVersion = "2026/01/20 09:00:00(大全聯)";
+
+        when(forecastRepository.findById(1)).thenReturn(Optional.of(parentRow));
+        when(configRepository.findByMonth("202601")).thenReturn(Optional.of(openConfig));
+        when(jdbcTemplate.queryForObject(anyString(), eq(Integer.class), anyLong(), anyString()))
+                .thenReturn(1);
+        when(versionOverlay.isVisible(ForecastVersionCatalog.Source.SALES, "202601", "大全聯", childVersion, 1, 1))
+                .thenReturn(true);
+        when(forecastRepository.save(any(SalesForecast.class))).thenAnswer(inv -> inv.getArgument(0));
+
+        service.updateForecast(1, request, childVersion, 1L, "user", Set.of());
+
+        verify(forecastRepository).save(argThat(forecast ->
+                childVersion.equals(forecast.getVersion()) &&
+                Integer.valueOf(1).equals(forecast.getBaseId()) &&
+                forecast.getQuantity().equals(new BigDecimal("150.75"))
+        ));
+        assertEquals(new BigDecimal("100.00"), parentRow.getQuantity());
+        verify(versionOverlay).pinToChildren(ForecastVersionCatalog.Source.SALES, 1, childVersion);
+    }
+
+    @Test
+    void updateForecast_inheritedFormVersionRow_overrideDoesNotCarryFormVersionNo() {
+        UpdateForecastRequest request = new UpdateForecastRequest();
+        request.setQuantity(new BigDecimal("150.75"));
+
+        SalesForecast formRow = createMockForecast(1, "202601", "大全聯", "飲料類", "P001", "form_v2");
+        formRow.setFormVersionNo(2);
+        String childVersion = "2026/01/20 09:00:00(大全聯)";
+
+        when(forecastRepository.findById(1)).thenReturn(Optional.of(formRow));
+        when(configRepository.findByMonth("202601")).thenReturn(Optional.of(openConfig));
+        when(jdbcTemplate.queryForObject(anyString(), eq(Integer.class), anyLong(), anyString()))
+                .thenReturn(1);
+        when(versionOverlay.isVisible(ForecastVersionCatalog.Source.SALES, "202601", "大全聯", childVersion, 1, 1))
+                .thenReturn(true);
+        when(forecastRepository.save(any(SalesForecast.class))).thenAnswer(inv -> inv.getArgument(0));
+
+        service.updateForecast(1, request, childVersion, 1L, "user", Set.of());
+
+        verify(forecastRepository).save(argThat(forecast ->
+                childVersion.equals(forecast.getVersion()) && forecast.getFormVersionNo() == null));
+        assertEquals(2, formRow.getFormVersionNo());
+    }
+
+    @Test
+    void updateForecast_rowNotVisibleInVersion_throwsNotFound() {
+        UpdateForecastRequest request = new UpdateForecastRequest();
+        request.setQuantity(new BigDecimal("150.75"));
+
+        SalesForecast row = createMockForecast(1, "202601", "大全聯", "飲料類", "P001",
+                "2026/01/15 14:30:00(大全聯)");
+
+        when(forecastRepository.findById(1)).thenReturn(Optional.of(row));
+        when(configRepository.findByMonth("202601")).thenReturn(Optional.of(openConfig));
+        when(jdbcTemplate.queryForObject(anyString(), eq(Integer.class), anyLong(), anyString()))
+                .thenReturn(1);
+        when(versionOverlay.isVisible(any(), anyString(), anyString(), anyString(), anyInt(), anyInt()))
+                .thenReturn(false);
+
+        assertThrows(ResourceNotFoundException.class, () ->
+                service.updateForecast(1, request, "2026/01/20 09:00:00(大全聯)", 1L, "user", Set.of()));
+
+        verify(forecastRepository, never()).save(any());
+    }
+
+    @Test
+    void deleteForecast_inheritedRow_addsRemovalInsteadOfDeleting() {
+        SalesForecast parentRow = createMockForecast(1, "202601", "大全聯", "飲料類", "P001",
+                "2026/01/15 14:30:00(大全聯)");
+        String childVersion = "2026/01/20 09:00:00(大全聯)";
+
+        when(forecastRepository.findById(1)).thenReturn(Optional.of(parentRow));
+        when(configRepository.findByMonth("202601")).thenReturn(Optional.of(openConfig));
+        when(jdbcTemplate.queryForObject(anyString(), eq(Integer.class), anyLong(), anyString()))
+                .thenReturn(1);
+        when(versionOverlay.isVisible(ForecastVersionCatalog.Source.SALES, "202601", "大全聯", childVersion, 1, 1))
+                .thenReturn(true);
+
+        service.deleteForecast(1, childVersion, 1L, "user");
+
+        verify(forecastRepository, never()).delete(any());
+        verify(versionOverlay).addRemoval(ForecastVersionCatalog.Source.SALES, "202601", "大全聯", childVersion, 1);
+        verify(versionCatalog).rowRemoved(eq(ForecastVersionCatalog.Source.SALES), eq("202601"), eq("大全聯"),
+                eq(childVersion), any(LocalDateTime.class));
+    }
+
+    @Test
+    void copyLatestToNewVersion_createsOverlayWithoutCopyingRows() {
+        String latest = "2026/01/15 14:30:00(大全聯)";
+        when(versionCatalog.findLatestVersion(ForecastVersionCatalog.Source.SALES, "202601", "大全聯"))
+                .thenReturn(Optional.of(latest));
+
+        CopyVersionResponse response = service.copyLatestToNewVersion("202601", "大全聯", 1L, "admin");
+
+        assertTrue(response.getVersion().endsWith("(大全聯)"));
+        verify(versionCatalog).createOverlay(eq(ForecastVersionCatalog.Source.SALES), eq("202601"), eq("大全聯"),
+                eq(response.getVersion()), eq(latest), any(LocalDateTime.class));
+        verify(forecastRepository, never()).save(any());
+    }
+
+    @Test
+    void copyLatestToNewVersion_noData_throwsIllegalArgument() {
+        when(versionCatalog.findLatestVersion(ForecastVersionCatalog.Source.SALES, "202601", "大全聯"))
+                .thenReturn(Optional.empty());
+
+        assertThrows(IllegalArgumentException.class, () ->
+                service.copyLatestToNewVersion("202601", "大全聯", 1L, "admin"));
+
+        verify(versionCatalog, never()).createOverlay(any(), anyString(), anyString(), anyString(), anyString(), any());
+    }
+
     @Test
     void adminBypassesChannelOwnership() {
         CreateForecastRequest request = new CreateForecastRequest();
@@ -269,8 +407,8 @@ class SalesForecastServiceTest {
         when(erpProductService.validateProduct("P001")).thenReturn(true);
         when(forecastRepository.findByMonthAndChannelAndProductCode("202601", "大全聯", "P001"))
                 .thenReturn(Optional.empty());
-        when(forecastRepository.findDistinctVersionsByMonthAndChannel("202601", "大全聯"))
-                .thenReturn(List.of("2026/01/15 14:30:00(大全聯)"));
+        when(versionCatalog.findLatestVersion(ForecastVersionCatalog.Source.SALES, "202601", "大全聯"))
+                .thenReturn(Optional.of("2026/01/15 14:30:00(大全聯)"));
 
         SalesForecast savedForecast = new SalesForecast();
         savedForecast.setId(1);
@@ -302,8 +440,8 @@ class SalesForecastServiceTest {
         SalesForecast forecast1 = createMockForecast(1, month, channel, "飲料類", "P001", version);
         SalesForecast forecast2 = createMockForecast(2, month, channel, "零食類", "P002", version);
 
-        when(forecastRepository.findByMonthAndChannelAndVersionOrderByCategoryAscSpecAscProductCodeAsc(
-                month, channel, version)).thenReturn(Arrays.asList(forecast1, forecast2));
+        when(versionOverlay.findSalesForecasts(month, channel, version))
+                .thenReturn(Arrays.asList(forecast1, forecast2));
 
         List<ForecastResponse> results = service.queryForecasts(month, channel, version, 1L, authorities);
 
@@ -311,8 +449,7 @@ class SalesForecastServiceTest {
         assertEquals(2, results.size());
         assertEquals("P001", results.get(0).getProductCode());
         assertEquals("P002", results.get(1).getProductCode());
-        verify(forecastRepository).findByMonthAndChannelAndVersionOrderByCategoryAscSpecAscProductCodeAsc(
-                month, channel, version);
+        verify(versionOverlay).findSalesForecasts(month, channel, version);
     }
 
     @Test
@@ -323,14 +460,14 @@ class SalesForecastServiceTest {
 
         SalesForecast forecast1 = createMockForecast(1, month, channel, "飲料類", "P001", "2026/01/15 14:30:00(大全聯)");
 
-        when(forecastRepository.findLatestByMonthAndChannel(month, channel))
+        when(versionOverlay.findSalesForecasts(month, channel, null))
                 .thenReturn(Collections.singletonList(forecast1));
 
         List<ForecastResponse> results = service.queryForecasts(month, channel, null, 1L, authorities);
 
         assertNotNull(results);
         assertEquals(1, results.size());
-        verify(forecastRepository).findLatestByMonthAndChannel(month, channel);
+        verify(versionOverlay).findSalesForecasts(month, channel, null);
     }
 
     @Test
@@ -339,13 +476,13 @@ class SalesForecastServiceTest {
         String channel = "大全聯";
         Set<String> authorities = Set.of("sales_forecast.view");
 
-        when(forecastRepository.findLatestByMonthAndChannel(month, channel))
+        when(versionOverlay.findSalesForecasts(month, channel, null))
                 .thenReturn(Collections.emptyList());
 
         List<ForecastResponse> results = service.queryForecasts(month, channel, null, 1L, authorities);
 
         assertNotNull(results);
-        verify(forecastRepository).findLatestByMonthAndChannel(month, channel);
+        verify(versionOverlay).findSalesForecasts(month, channel, null);
         verify(jdbcTemplate, never()).queryForObject(anyString(), eq(Integer.class), anyLong(), anyString());
     }
 
@@ -357,7 +494,7 @@ class SalesForecastServiceTest {
 
         when(jdbcTemplate.queryForObject(anyString(), eq(Integer.class), anyLong(), eq(channel)))
                 .thenReturn(1);
-        when(forecastRepository.findLatestByMonthAndChannel(month, channel))
+        when(versionOverlay.findSalesForecasts(month, channel, null))
                 .thenReturn(Collections.emptyList());
 
         List<ForecastResponse> results = service.queryForecasts(month, channel, null, 1L, authorities);
@@ -378,7 +515,7 @@ class SalesForecastServiceTest {
         assertThrows(AccessDeniedException.class, () ->
                 service.queryForecasts(month, channel, null, 1L, authorities));
 
-        verify(forecastRepository, never()).findLatestByMonthAndChannel(anyString(), anyString());
+        verify(versionOverlay, never()).findSalesForecasts(anyString(), anyString(), any());
     }
 
     @Test
@@ -390,7 +527,7 @@ class SalesForecastServiceTest {
         assertThrows(AccessDeniedException.class, () ->
                 service.queryForecasts(month, channel, null, 1L, authorities));
 
-        verify(forecastRepository, never()).findLatestByMonthAndChannel(anyString(), anyString());
+        verify(versionOverlay, never()).findSalesForecasts(anyString(), anyString(), any());
     }
 
     @Test
@@ -413,13 +550,10 @@ class SalesForecastServiceTest {
         String version2 = "2026/01/15 14:30:00(大全聯)";
         String version3 = "2026/01/10 10:00:00(大全聯)";
 
-        when(forecastRepository.findDistinctVersionsByMonthAndChannel(month, channel))
-                .thenReturn(Arrays.asList(version1, version2, version3));
-        when(forecastRepository.countByMonthAndChannelAndVersion(month, channel, version1)).thenReturn(5);
-        when(forecastRepository.countByMonthAndChannelAndVersion(month, channel, version2)).thenReturn(3);
-        when(forecastRepository.countByMonthAndChannelAndVersion(month, channel, version3)).thenReturn(2);
-        when(forecastRepository.findMaxUpdatedAtByMonthAndChannelAndVersion(eq(month), eq(channel), anyString()))
-                .thenReturn(LocalDateTime.now());
+        LocalDateTime now = LocalDateTime.now();
+        when(versionCatalog.findVersions(ForecastVersionCatalog.Source.SALES, month, channel))
+                .thenReturn(Arrays.asList(new VersionInfo(version1, 5, now),
+                        new VersionInfo(version2, 3, now), new VersionInfo(version3, 2, now)));
 
         List<VersionInfo> results = service.queryVersions(month, channel, 1L, authorities);
 
@@ -439,7 +573,7 @@ class SalesForecastServiceTest {
 
         when(jdbcTemplate.queryForObject(anyString(), eq(Integer.class), anyLong(), eq(channel)))
                 .thenReturn(1);
-        when(forecastRepository.findDistinctVersionsByMonthAndChannel(month, channel))
+        when(versionCatalog.findVersions(ForecastVersionCatalog.Source.SALES, month, channel))
                 .thenReturn(Collections.emptyList());
 
         List<VersionInfo> results = service.queryVersions(month, channel, 1L, authorities);
@@ -5,6 +5,10 @@ import com.sinker.app.dto.reference.ProductDTO;
 import com.sinker.app.entity.SalesForecastConfig;
 import com.sinker.app.exception.ExcelParseException;
 import com.sinker.app.exception.ResourceNotFoundException;
+import com.sinker.app.repository.ForecastBulkWriter;
+import com.sinker.app.repository.ForecastVersionCatalog;
+import com.sinker.app.repository.ForecastVersionOverlay;
+import com.sinker.app.repository.ProductDimension;
 import com.sinker.app.repository.SalesForecastConfigRepository;
 import com.sinker.app.repository.SalesForecastRepository;
 import com.sinker.app.service.ExcelParserService.SalesForecastRow;
@@ -12,6 +16,7 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.mockito.junit.jupiter.MockitoSettings;
@@ -21,7 +26,10 @@ import org.springframework.mock.web.MockMultipartFile;
 import org.springframework.security.access.AccessDeniedException;
 
 import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -37,6 +45,12 @@ class SalesForecastUploadServiceTest {
     @Mock private ExcelParserService excelParserService;
     @Mock private ErpProductService erpProductService;
     @Mock private JdbcTemplate jdbcTemplate;
+    @Mock private ForecastBulkWriter bulkWriter;
+    @Mock private UploadFingerprintService fingerprintService;
+    @Mock private ForecastVersionCatalog versionCatalog;
+    @Mock private ForecastVersionOverlay versionOverlay;
+    @Mock private ProductDimension productDimension;
+    @Mock private ReportDataVersion reportDataVersion;
 
     private SalesForecastUploadService service;
 
@@ -49,16 +63,21 @@ class SalesForecastUploadServiceTest {
     @BeforeEach
     void setUp() {
         service = new SalesForecastUploadService(forecastRepository, configRepository,
-                excelParserService, erpProductService, jdbcTemplate);
-        when(erpProductService.findProduct(anyString())).thenAnswer(inv -> {
-            String code = inv.getArgument(0);
-            ProductDTO dto = new ProductDTO();
-            dto.setCode(code);
-            dto.setName("商品");
-            dto.setCategoryName("飲料類");
-            dto.setSpec("600ml*24入");
-            dto.setWarehouseLocation("A01");
-            return Optional.of(dto);
+                excelParserService, erpProductService, jdbcTemplate, bulkWriter, fingerprintService, versionCatalog,
+                versionOverlay, productDimension, reportDataVersion);
+        when(erpProductService.findProducts(anyCollection())).thenAnswer(inv -> {
+            Collection<String> codes = inv.getArgument(0);
+            Map<String, ProductDTO> products = new HashMap<>();
+            for (String code : codes) {
+                ProductDTO dto = new ProductDTO();
+                dto.setCode(code);
+                dto.setName("商品");
+                dto.setCategoryName("飲料類");
+                dto.setSpec("600ml*24入");
+                dto.setWarehouseLocation("A01");
+                products.put(code, dto);
+            }
+            return products;
         });
     }
 
@@ -98,8 +117,7 @@ class SalesForecastUploadServiceTest {
         when(jdbcTemplate.queryForObject(anyString(), eq(Integer.class), eq(USER_ID), eq(CHANNEL)))
                 .thenReturn(1);
         when(excelParserService.parse(any())).thenReturn(makeRows(5));
-        when(erpProductService.validateProduct(anyString())).thenReturn(true);
-        when(forecastRepository.saveAll(anyList())).thenAnswer(i -> i.getArguments()[0]);
+        when(bulkWriter.insertSalesForecasts(anyList())).thenAnswer(i -> ((List<?>) i.getArgument(0)).size());
 
         UploadResponse response = service.upload(dummyFile(), MONTH, CHANNEL, USER_ID, ROLE_SALES);
 
@@ -111,15 +129,14 @@ class SalesForecastUploadServiceTest {
         assertNotNull(response.getUploadTimestamp());
 
         verify(forecastRepository).deleteByMonthAndChannel(MONTH, CHANNEL);
-        verify(forecastRepository).saveAll(anyList());
+        verify(bulkWriter).insertSalesForecasts(anyList());
     }
 
     @Test
     void testUpload_AdminBypassesChannelCheck() {
         when(configRepository.findByMonth(MONTH)).thenReturn(Optional.of(openConfig()));
         when(excelParserService.parse(any())).thenReturn(makeRows(3));
-        when(erpProductService.validateProduct(anyString())).thenReturn(true);
-        when(forecastRepository.saveAll(anyList())).thenAnswer(i -> i.getArguments()[0]);
+        when(bulkWriter.insertSalesForecasts(anyList())).thenAnswer(i -> ((List<?>) i.getArgument(0)).size());
 
         // Admin role → no channel ownership check
         UploadResponse response = service.upload(dummyFile(), MONTH, CHANNEL, USER_ID, ROLE_ADMIN);
@@ -171,7 +188,7 @@ class SalesForecastUploadServiceTest {
                         new BigDecimal("100.00"), 2)
         );
         when(excelParserService.parse(any())).thenReturn(rows);
-        when(erpProductService.validateProduct("P999")).thenReturn(false);
+        when(erpProductService.findProducts(anyCollection())).thenReturn(Map.of());
 
         ExcelParseException ex = assertThrows(ExcelParseException.class,
                 () -> service.upload(dummyFile(), MONTH, CHANNEL, USER_ID, ROLE_SALES));
@@ -184,8 +201,7 @@ class SalesForecastUploadServiceTest {
         when(jdbcTemplate.queryForObject(anyString(), eq(Integer.class), eq(USER_ID), eq(CHANNEL)))
                 .thenReturn(1);
         when(excelParserService.parse(any())).thenReturn(makeRows(1));
-        when(erpProductService.validateProduct(anyString())).thenReturn(true);
-        when(forecastRepository.saveAll(anyList())).thenAnswer(i -> i.getArguments()[0]);
+        when(bulkWriter.insertSalesForecasts(anyList())).thenAnswer(i -> ((List<?>) i.getArgument(0)).size());
 
         UploadResponse response = service.upload(dummyFile(), MONTH, CHANNEL, USER_ID, ROLE_SALES);
 
@@ -203,15 +219,14 @@ class SalesForecastUploadServiceTest {
         when(jdbcTemplate.queryForObject(anyString(), eq(Integer.class), eq(USER_ID), eq(CHANNEL)))
                 .thenReturn(1);
         when(excelParserService.parse(any())).thenReturn(makeRows(3));
-        when(erpProductService.validateProduct(anyString())).thenReturn(true);
-        when(forecastRepository.saveAll(anyList())).thenAnswer(i -> i.getArguments()[0]);
+        when(bulkWriter.insertSalesForecasts(anyList())).thenAnswer(i -> ((List<?>) i.getArgument(0)).size());
 
         service.upload(dummyFile(), MONTH, CHANNEL, USER_ID, ROLE_SALES);
 
         @SuppressWarnings("unchecked")
         ArgumentCaptor<List<com.sinker.app.entity.SalesForecast>> captor =
                 ArgumentCaptor.forClass(List.class);
-        verify(forecastRepository).saveAll(captor.capture());
+        verify(bulkWriter).insertSalesForecasts(captor.capture());
 
         List<com.sinker.app.entity.SalesForecast> saved = captor.getValue();
         assertEquals(3, saved.size());
@@ -227,15 +242,174 @@ class SalesForecastUploadServiceTest {
         when(jdbcTemplate.queryForObject(anyString(), eq(Integer.class), eq(USER_ID), eq(CHANNEL)))
                 .thenReturn(1);
         when(excelParserService.parse(any())).thenReturn(makeRows(2));
-        when(erpProductService.validateProduct(anyString())).thenReturn(true);
-        when(forecastRepository.saveAll(anyList())).thenAnswer(i -> i.getArguments()[0]);
+        when(bulkWriter.insertSalesForecasts(anyList())).thenAnswer(i -> ((List<?>) i.getArgument(0)).size());
 
         service.upload(dummyFile(), MONTH, CHANNEL, USER_ID, ROLE_SALES);
 
-        // Delete should be called before saveAll
-        var inOrder = inOrder(forecastRepository);
+        // Delete should be called before the bulk insert
+        var inOrder = inOrder(forecastRepository, bulkWriter);
         inOrder.verify(forecastRepository).deleteByMonthAndChannel(MONTH, CHANNEL);
-        inOrder.verify(forecastRepository).saveAll(anyList());
+        inOrder.verify(bulkWriter).insertSalesForecasts(anyList());
+    }
+
+    private com.sinker.app.entity.SalesForecast existingRow(int id, String code, String qty, String version) {
+        com.sinker.app.entity.SalesForecast sf = new com.sinker.app.entity.SalesForecast();
+        sf.setId(id);
+        sf.setMonth(MONTH);
+        sf.setChannel(CHANNEL);
+        sf.setCategory("飲料類");
+        sf.setSpec("600ml*24入");
+        sf.setProductCode(code);
+        sf.setProductName("商品");
+        sf.setWarehouseLocation("A01");
+        sf.setQuantity(new BigDecimal(qty));
+        sf.setVersion(version);
+        sf.setIsModified(true);
+        return sf;
+    }
+
+    @Test
+    void testUpload_DeltaMode_AppliesOnlyDifferences() {
+        String latest = "2026/01/10 09:00:00(" + CHANNEL + ")";
+        when(configRepository.findByMonth(MONTH)).thenReturn(Optional.of(openConfig()));
+        when(excelParserService.parse(any())).thenReturn(makeRows(3));
+        when(forecastRepository.findByMonthAndChannel(MONTH, CHANNEL)).thenReturn(List.of(
+                existingRow(10, "P001", "1.00", "2026/01/01 09:00:00(" + CHANNEL + ")"),
+                existingRow(11, "P001", "100.5", latest),
+                existingRow(12, "P002", "50.00", latest),
+                existingRow(13, "P009", "7.00", latest)));
+        when(bulkWriter.insertSalesForecasts(anyList())).thenAnswer(i -> ((List<?>) i.getArgument(0)).size());
+        when(bulkWriter.updateSalesForecastValues(anyList())).thenAnswer(i -> ((List<?>) i.getArgument(0)).size());
+        when(bulkWriter.deleteSalesForecastsByIds(anyList())).thenAnswer(i -> ((List<?>) i.getArgument(0)).size());
+
+        UploadResponse response = service.upload(dummyFile(), MONTH, CHANNEL, USER_ID, ROLE_ADMIN,
+                SalesForecastUploadService.UploadMode.DELTA, UploadProgressListener.NONE);
+
+        assertEquals("delta", response.getMode());
+        assertEquals(latest, response.getVersion());
+        assertEquals(3, response.getRowsProcessed());
+        assertEquals(1, response.getRowsInserted());
+        assertEquals(1, response.getRowsUpdated());
+        assertEquals(2, response.getRowsDeleted());
+        assertEquals(1, response.getRowsUnchanged());
+
+        verify(forecastRepository, never()).deleteByMonthAndChannel(any(), any());
+        verify(bulkWriter).deleteSalesForecastsByIds(argThat(ids -> ids.containsAll(List.of(10, 13)) && ids.size() == 2));
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<com.sinker.app.entity.SalesForecast>> updated = ArgumentCaptor.forClass(List.class);
+        verify(bulkWriter).updateSalesForecastValues(updated.capture());
+        assertEquals(12, updated.getValue().get(0).getId());
+        assertEquals(0, new BigDecimal("100.50").compareTo(updated.getValue().get(0).getQuantity()));
+        assertFalse(updated.getValue().get(0).getIsModified());
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<com.sinker.app.entity.SalesForecast>> inserted = ArgumentCaptor.forClass(List.class);
+        verify(bulkWriter).insertSalesForecasts(inserted.capture());
+        assertEquals("P003", inserted.getValue().get(0).getProductCode());
+        assertEquals(latest, inserted.getValue().get(0).getVersion());
+    }
+
+    @Test
+    void testUpload_DeltaMode_OverlayLatest_MaterializesBeforeDiff() {
+        String overlay = "2026/01/20 09:00:00(" + CHANNEL + ")";
+        when(configRepository.findByMonth(MONTH)).thenReturn(Optional.of(openConfig()));
+        when(excelParserService.parse(any())).thenReturn(makeRows(1));
+        when(versionCatalog.findLatestVersion(ForecastVersionCatalog.Source.SALES, MONTH, CHANNEL))
+                .thenReturn(Optional.of(overlay));
+        when(forecastRepository.findByMonthAndChannel(MONTH, CHANNEL)).thenReturn(List.of(
+                existingRow(10, "P001", "1.00", "2026/01/10 09:00:00(" + CHANNEL + ")"),
+                existingRow(20, "P001", "100.5", overlay)));
+        when(bulkWriter.deleteSalesForecastsByIds(anyList())).thenAnswer(i -> ((List<?>) i.getArgument(0)).size());
+
+        UploadResponse response = service.upload(dummyFile(), MONTH, CHANNEL, USER_ID, ROLE_ADMIN,
+                SalesForecastUploadService.UploadMode.DELTA, UploadProgressListener.NONE);
+
+        assertEquals(overlay, response.getVersion());
+        assertEquals(1, response.getRowsUnchanged());
+        assertEquals(1, response.getRowsDeleted());
+        InOrder inOrder = inOrder(versionOverlay, forecastRepository, versionCatalog);
+        inOrder.verify(versionOverlay).materialize(ForecastVersionCatalog.Source.SALES, MONTH, CHANNEL, overlay);
+        inOrder.verify(forecastRepository).findByMonthAndChannel(MONTH, CHANNEL);
+        inOrder.verify(versionCatalog).dropOverlays(ForecastVersionCatalog.Source.SALES, MONTH, CHANNEL);
+    }
+
+    @Test
+    void testUpload_DeltaMode_NoExistingRows_InsertsNewVersion() {
+        when(configRepository.findByMonth(MONTH)).thenReturn(Optional.of(openConfig()));
+        when(excelParserService.parse(any())).thenReturn(makeRows(2));
+        when(forecastRepository.findByMonthAndChannel(MONTH, CHANNEL)).thenReturn(List.of());
+        when(bulkWriter.insertSalesForecasts(anyList())).thenAnswer(i -> ((List<?>) i.getArgument(0)).size());
+
+        UploadResponse response = service.upload(dummyFile(), MONTH, CHANNEL, USER_ID, ROLE_ADMIN,
+                SalesForecastUploadService.UploadMode.DELTA, UploadProgressListener.NONE);
+
+        assertEquals(2, response.getRowsInserted());
+        assertTrue(response.getVersion().endsWith("(" + CHANNEL + ")"));
+        verify(bulkWriter, never()).updateSalesForecastValues(anyList());
+        verify(bulkWriter, never()).deleteSalesForecastsByIds(anyList());
+    }
+
+    @Test
+    void testUploadMode_FromParam() {
+        assertEquals(SalesForecastUploadService.UploadMode.REPLACE, SalesForecastUploadService.UploadMode.fromParam(null));
+        assertEquals(SalesForecastUploadService.UploadMode.DELTA, SalesForecastUploadService.UploadMode.fromParam("Delta"));
+        assertThrows(IllegalArgumentException.class, () -> SalesForecastUploadService.UploadMode.fromParam("merge"));
+    }
+
+    @Test
+    void testUpload_IdenticalFile_ReturnsPreviousResultWithoutWrites() {
+        when(configRepository.findByMonth(MONTH)).thenReturn(Optional.of(openConfig()));
+        when(fingerprintService.hash(any())).thenReturn("abc123");
+        UploadResponse previous = new UploadResponse(5, "2026/01/10 09:00:00(" + CHANNEL + ")",
+                java.time.LocalDateTime.now(), MONTH, CHANNEL);
+        previous.setMode("replace");
+        when(fingerprintService.findPrevious(UploadFingerprintService.Target.SALES_FORECAST, "abc123",
+                UploadResponse.class, MONTH, CHANNEL)).thenReturn(Optional.of(previous));
+
+        UploadResponse response = service.upload(dummyFile(), MONTH, CHANNEL, USER_ID, ROLE_ADMIN);
+
+        assertSame(previous, response);
+        verifyNoInteractions(excelParserService, bulkWriter);
+        verify(forecastRepository, never()).deleteByMonthAndChannel(any(), any());
+        verify(fingerprintService, never()).record(any(), any(), any(), any(Object[].class));
+    }
+
+    @Test
+    void testUpload_IdenticalFile_DifferentMode_ProcessedAgain() {
+        when(configRepository.findByMonth(MONTH)).thenReturn(Optional.of(openConfig()));
+        when(fingerprintService.hash(any())).thenReturn("abc123");
+        UploadResponse previous = new UploadResponse(5, "2026/01/10 09:00:00(" + CHANNEL + ")",
+                java.time.LocalDateTime.now(), MONTH, CHANNEL);
+        previous.setMode("replace");
+        when(fingerprintService.findPrevious(UploadFingerprintService.Target.SALES_FORECAST, "abc123",
+                UploadResponse.class, MONTH, CHANNEL)).thenReturn(Optional.of(previous));
+        when(excelParserService.parse(any())).thenReturn(makeRows(2));
+        when(bulkWriter.insertSalesForecasts(anyList())).thenAnswer(i -> ((List<?>) i.getArgument(0)).size());
+
+        UploadResponse response = service.upload(dummyFile(), MONTH, CHANNEL, USER_ID, ROLE_ADMIN,
+                SalesForecastUploadService.UploadMode.DELTA, UploadProgressListener.NONE);
+
+        assertNotSame(previous, response);
+        assertEquals("delta", response.getMode());
+        verify(excelParserService).parse(any());
+        verify(fingerprintService).record(UploadFingerprintService.Target.SALES_FORECAST, "abc123",
+                response, MONTH, CHANNEL);
+    }
+
+    @Test
+    void testUpload_RecordsFingerprintAfterWrite() {
+        when(configRepository.findByMonth(MONTH)).thenReturn(Optional.of(openConfig()));
+        when(fingerprintService.hash(any())).thenReturn("abc123");
+        when(excelParserService.parse(any())).thenReturn(makeRows(2));
+        when(bulkWriter.insertSalesForecasts(anyList())).thenAnswer(i -> ((List<?>) i.getArgument(0)).size());
+
+        UploadResponse response = service.upload(dummyFile(), MONTH, CHANNEL, USER_ID, ROLE_ADMIN);
+
+        var inOrder = inOrder(bulkWriter, fingerprintService);
+        inOrder.verify(bulkWriter).insertSalesForecasts(anyList());
+        inOrder.verify(fingerprintService).record(UploadFingerprintService.Target.SALES_FORECAST, "abc123",
+                response, MONTH, CHANNEL);
     }
 
     @Test
@@ -0,0 +1,146 @@
+package com.sinker.app.service;
+
+import com.sinker.app.dto.forecast.UploadJobResponse;
+import com.sinker.app.dto.forecast.UploadResponse;
+import com.sinker.app.exception.ExcelParseException;
+import com.sinker.app.exception.ResourceNotFoundException;
+import com.sinker.app.service.SalesForecastUploadService.UploadMode;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class UploadJobServiceTest {
+
+    @Mock private SalesForecastUploadService uploadService;
+
+    private UploadJobService service;
+
+    private static final Long USER_ID = 1L;
+    private static final String MONTH = "202601";
+    private static final String CHANNEL = "家樂福";
+
+    @BeforeEach
+    void setUp() {
+        service = new UploadJobService(uploadService, 1, 1, 60);
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.shutdown();
+    }
+
+    private MockMultipartFile dummyFile() {
+        return new MockMultipartFile("file", "test.xlsx",
+                "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet",
+                "dummy".getBytes());
+    }
+
+    private UploadJobResponse awaitFinished(String jobId) throws InterruptedException {
+        for (int i = 0; i < 200; i++) {
+            UploadJobResponse job = service.getJob(jobId, USER_ID, "sales");
+            if ("COMPLETED".equals(job.getPhase()) || "FAILED".equals(job.getPhase())) {
+                return job;
+            }
+            Thread.sleep(25);
+        }
+        fail("Upload job did not finish in time");
+        return null;
+    }
+
+    @Test
+    void testSubmit_CompletesWithProgressAndResult() throws Exception {
+        when(uploadService.upload(any(MultipartFile.class), eq(MONTH), eq(CHANNEL), eq(USER_ID), eq("sales"),
+                eq(UploadMode.REPLACE), any(UploadProgressListener.class))).thenAnswer(inv -> {
+            MultipartFile file = inv.getArgument(0);
+            assertArrayEquals("dummy".getBytes(), file.getBytes());
+            UploadProgressListener progress = inv.getArgument(6);
+            progress.onPhase(UploadProgressListener.Phase.WRITING);
+            progress.onRowsProcessed(3, 3);
+            return new UploadResponse(3, "v1", LocalDateTime.now(), MONTH, CHANNEL);
+        });
+
+        UploadJobResponse submitted = service.submit(dummyFile(), MONTH, CHANNEL, UploadMode.REPLACE, USER_ID, "sales");
+        assertNotNull(submitted.getJobId());
+
+        UploadJobResponse finished = awaitFinished(submitted.getJobId());
+        assertEquals("COMPLETED", finished.getPhase());
+        assertEquals(3, finished.getRowsProcessed());
+        assertEquals("v1", finished.getResult().getVersion());
+        assertTrue(finished.getErrors().isEmpty());
+        assertNotNull(finished.getFinishedAt());
+    }
+
+    @Test
+    void testSubmit_ParseErrors_JobFailedWithErrors() throws Exception {
+        when(uploadService.upload(any(), any(), any(), any(), any(), any(), any(UploadProgressListener.class)))
+                .thenThrow(new ExcelParseException(List.of("Row 2: 品號 is required")));
+
+        UploadJobResponse submitted = service.submit(dummyFile(), MONTH, CHANNEL, UploadMode.REPLACE, USER_ID, "sales");
+
+        UploadJobResponse finished = awaitFinished(submitted.getJobId());
+        assertEquals("FAILED", finished.getPhase());
+        assertEquals(List.of("Row 2: 品號 is required"), finished.getErrors());
+        assertNull(finished.getResult());
+    }
+
+    @Test
+    void testUploadAndWait_RethrowsOriginalException() {
+        when(uploadService.upload(any(), any(), any(), any(), any(), any(), any(UploadProgressListener.class)))
+                .thenThrow(new IllegalArgumentException("Invalid channel: X"));
+
+        IllegalArgumentException ex = assertThrows(IllegalArgumentException.class,
+                () -> service.uploadAndWait(dummyFile(), MONTH, "X", UploadMode.REPLACE, USER_ID, "sales"));
+        assertEquals("Invalid channel: X", ex.getMessage());
+    }
+
+    @Test
+    void testGetJob_OtherUser_NotFound() {
+        when(uploadService.upload(any(), any(), any(), any(), any(), any(), any(UploadProgressListener.class)))
+                .thenReturn(new UploadResponse(1, "v1", LocalDateTime.now(), MONTH, CHANNEL));
+
+        UploadJobResponse submitted = service.submit(dummyFile(), MONTH, CHANNEL, UploadMode.REPLACE, USER_ID, "sales");
+
+        assertThrows(ResourceNotFoundException.class,
+                () -> service.getJob(submitted.getJobId(), 2L, "sales"));
+        assertEquals(submitted.getJobId(), service.getJob(submitted.getJobId(), 2L, "admin").getJobId());
+    }
+
+    @Test
+    void testSubmit_QueueFull_Rejected() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        when(uploadService.upload(any(), any(), any(), any(), any(), any(), any(UploadProgressListener.class)))
+                .thenAnswer(inv -> {
+                    release.await(5, TimeUnit.SECONDS);
+                    return new UploadResponse(1, "v1", LocalDateTime.now(), MONTH, CHANNEL);
+                });
+
+        try {
+            // pool size 1 + queue capacity 1：第三個工作被拒絕
+            service.submit(dummyFile(), MONTH, CHANNEL, UploadMode.REPLACE, USER_ID, "sales");
+            service.submit(dummyFile(), MONTH, CHANNEL, UploadMode.REPLACE, USER_ID, "sales");
+            assertThrows(RejectedExecutionException.class,
+                    () -> service.submit(dummyFile(), MONTH, CHANNEL, UploadMode.REPLACE, USER_ID, "sales"));
+        } finally {
+            release.countDown();
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.sinker.app.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HundredthsTest {
+
+    @Test
+    void of_convertsAnyScaleAndTreatsNullAsZero() {
+        assertEquals(12_345L, Hundredths.of(new BigDecimal("123.45")));
+        assertEquals(12_000L, Hundredths.of(new BigDecimal("120")));
+        assertEquals(-250L, Hundredths.of(new BigDecimal("-2.5")));
+        assertEquals(1L, Hundredths.of(new BigDecimal("0.005")));
+        assertEquals(0L, Hundredths.of(null));
+    }
+
+    @Test
+    void toDecimal_returnsScaleTwo() {
+        BigDecimal value = Hundredths.toDecimal(-2_505L);
+
+        assertEquals(new BigDecimal("-25.05"), value);
+        assertEquals(2, value.scale());
+    }
+
+    @Test
+    void sum_matchesBigDecimalAddition() {
+        String[] quantities = {"99999999.99", "0.01", "12.34", "-5.5"};
+        long[] hundredths = new long[quantities.length];
+        BigDecimal expected = BigDecimal.ZERO;
+        for (int i = 0; i < quantities.length; i++) {
+            hundredths[i] = Hundredths.of(new BigDecimal(quantities[i]));
+            expected = expected.add(new BigDecimal(quantities[i]));
+        }
+
+        assertEquals(0, expected.compareTo(Hundredths.toDecimal(Hundredths.sum(hundredths))));
+    }
+}
@@ -0,0 +1,43 @@
+package com.sinker.app.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IntIndexTest {
+
+    @Test
+    void indexOf_assignsSequentialIndexesInFirstSeenOrder() {
+        IntIndex index = new IntIndex(4);
+
+        assertEquals(0, index.indexOf(42));
+        assertEquals(1, index.indexOf(7));
+        assertEquals(0, index.indexOf(42));
+        assertEquals(2, index.indexOf(-3));
+
+        assertEquals(3, index.size());
+        assertEquals(7, index.keyAt(1));
+        assertEquals(-1, index.find(99));
+        assertEquals(2, index.find(-3));
+    }
+
+    @Test
+    void growsBeyondExpectedSize() {
+        IntIndex index = new IntIndex(2);
+        for (int i = 0; i < 10_000; i++) {
+            assertEquals(i, index.indexOf(i * 16));
+        }
+        for (int i = 0; i < 10_000; i++) {
+            assertEquals(i, index.find(i * 16));
+            assertEquals(i * 16, index.keyAt(i));
+        }
+        assertEquals(-1, index.find(1));
+    }
+
+    @Test
+    void keyAt_outOfRange_throws() {
+        IntIndex index = new IntIndex(4);
+        index.indexOf(1);
+        assertThrows(IndexOutOfBoundsException.class, () -> index.keyAt(1));
+    }
+}
@@ -0,0 +1,135 @@
+package com.sinker.app.util;
+
+import com.sinker.app.util.StreamingXlsxReader.SheetRow;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.CellType;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StreamingXlsxReaderTest {
+
+    private static final int LARGE_ROW_COUNT = 50_000;
+
+    @Test
+    void testRead_CellTypesAndRowNumbers() throws IOException {
+        byte[] bytes;
+        try (XSSFWorkbook wb = new XSSFWorkbook(); ByteArrayOutputStream out = new ByteArrayOutputStream()) {
+            Sheet sheet = wb.createSheet();
+            CellStyle dateStyle = wb.createCellStyle();
+            dateStyle.setDataFormat(wb.createDataFormat().getFormat("yyyy-mm-dd"));
+
+            Row header = sheet.createRow(0);
+            header.createCell(0).setCellValue("品號");
+            header.createCell(1).setCellValue("日期");
+            header.createCell(2).setCellValue("數量");
+
+            // row index 1 intentionally skipped
+            Row data = sheet.createRow(2);
+            data.createCell(0).setCellValue("P001");
+            data.createCell(1).setCellValue(LocalDate.of(2026, 1, 15));
+            data.getCell(1).setCellStyle(dateStyle);
+            data.createCell(2).setCellValue(100.99);
+            data.createCell(3);
+            data.createCell(5).setCellValue(true);
+
+            wb.write(out);
+            bytes = out.toByteArray();
+        }
+
+        List<SheetRow> rows = new ArrayList<>();
+        StreamingXlsxReader.read(new ByteArrayInputStream(bytes), rows::add);
+
+        assertEquals(2, rows.size());
+        assertEquals(0, rows.get(0).getRowNum());
+        assertEquals("品號", rows.get(0).getStringValue(0));
+
+        SheetRow row = rows.get(1);
+        assertEquals(2, row.getRowNum());
+        assertEquals(6, row.getLastCellNum());
+        assertEquals(CellType.STRING, row.getCellType(0));
+        assertEquals("P001", row.getStringValue(0));
+        assertTrue(row.isDateFormatted(1));
+        assertEquals(LocalDate.of(2026, 1, 15), row.getLocalDateTimeValue(1).toLocalDate());
+        assertEquals(CellType.NUMERIC, row.getCellType(2));
+        assertFalse(row.isDateFormatted(2));
+        assertEquals(100.99, row.getNumericValue(2), 0.0);
+        assertTrue(row.isBlank(3));
+        assertTrue(row.isBlank(4));
+        assertTrue(row.getBooleanValue(5));
+        assertTrue(row.isBlank(99));
+    }
+
+    @Test
+    void testRead_InvalidContent_ThrowsIOException() {
+        byte[] bytes = "not an xlsx".getBytes();
+        assertThrows(IOException.class,
+                () -> StreamingXlsxReader.read(new ByteArrayInputStream(bytes), r -> { }));
+    }
+
+    @Test
+    void testRead_50kRows_RetainedHeapStaysBounded() throws IOException {
+        byte[] bytes = createLargeWorkbook(LARGE_ROW_COUNT);
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+
+        System.gc();
+        long baseline = memory.getHeapMemoryUsage().getUsed();
+        AtomicInteger count = new AtomicInteger();
+        AtomicLong peak = new AtomicLong();
+
+        StreamingXlsxReader.read(new ByteArrayInputStream(bytes), row -> {
+            int n = count.incrementAndGet();
+            // 只在幾個取樣點 GC，量測「保留」的 heap，而非短命的 SAX 垃圾
+            if (n % 12_500 == 0) {
+                System.gc();
+                peak.accumulateAndGet(memory.getHeapMemoryUsage().getUsed(), Math::max);
+            }
+        });
+
+        assertEquals(LARGE_ROW_COUNT + 1, count.get());
+        long retainedMb = (peak.get() - baseline) / (1024 * 1024);
+        // XSSFWorkbook DOM 載入同一份檔案需數百 MB；串流讀取只保留 shared strings
+        assertTrue(retainedMb < 64, "Retained heap while streaming 50k rows: " + retainedMb + " MB");
+    }
+
+    private byte[] createLargeWorkbook(int dataRows) throws IOException {
+        SXSSFWorkbook wb = new SXSSFWorkbook(100);
+        try (ByteArrayOutputStream out = new ByteArrayOutputStream()) {
+            Sheet sheet = wb.createSheet();
+            Row header = sheet.createRow(0);
+            String[] headers = {"中類名稱", "貨品規格", "品號", "品名", "庫位", "箱數小計"};
+            for (int c = 0; c < headers.length; c++) {
+                header.createCell(c).setCellValue(headers[c]);
+            }
+            for (int r = 1; r <= dataRows; r++) {
+                Row row = sheet.createRow(r);
+                row.createCell(0).setCellValue("飲料類");
+                row.createCell(1).setCellValue("600ml*24入");
+                row.createCell(2).setCellValue(String.format("P%06d", r));
+                row.createCell(3).setCellValue("測試品名" + r);
+                row.createCell(4).setCellValue("A01");
+                row.createCell(5).setCellValue(r % 500 + 0.5);
+            }
+            wb.write(out);
+            return out.toByteArray();
+        } finally {
+            wb.dispose();
+            wb.close();
+        }
+    }
+}
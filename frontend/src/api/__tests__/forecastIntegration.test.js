@@ -2,6 +2,7 @@ import { describe, it, expect, vi, beforeEach, afterEach } from 'vitest'
 import {
   getIntegrationVersions,
   getIntegrationData,
+  getIntegrationDataRange,
   exportIntegrationExcel,
 } from '../forecastIntegration'
 import api from '../axios'
@@ -70,6 +71,20 @@ describe('forecastIntegration API', () => {
     })
   })
 
+  describe('getIntegrationDataRange', () => {
+    it('fetches month-keyed integration data with start_month and end_month params', async () => {
+      const mockData = { 202601: [{ productCode: 'P001' }], 202602: [] }
+      api.get.mockResolvedValue({ data: mockData })
+
+      const result = await getIntegrationDataRange('202601', '202602')
+
+      expect(api.get).toHaveBeenCalledWith('/api/sales-forecast/integration/range', {
+        params: { start_month: '202601', end_month: '202602' },
+      })
+      expect(result).toEqual(mockData)
+    })
+  })
+
   describe('exportIntegrationExcel', () => {
     it('downloads Excel file with correct filename', async () => {
       const mockBlob = new Blob(['test'], {
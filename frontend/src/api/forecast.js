@@ -159,10 +159,17 @@ export function createForecastItem(data) {
   return api.post('/api/sales-forecast', data).then((r) => r.data)
 }
 
-export function updateForecastItem(id, data) {
+// version：在畫面上選取的版本中修改／刪除（該列可能繼承自上層版本）；省略時直接修改該列所屬版本
+export function updateForecastItem(id, data, version) {
+  if (version) {
+    return api.put(`/api/sales-forecast/${id}`, data, { params: { version } }).then((r) => r.data)
+  }
   return api.put(`/api/sales-forecast/${id}`, data).then((r) => r.data)
 }
 
-export function deleteForecastItem(id) {
+export function deleteForecastItem(id, version) {
+  if (version) {
+    return api.delete(`/api/sales-forecast/${id}`, { params: { version } }).then((r) => r.data)
+  }
   return api.delete(`/api/sales-forecast/${id}`).then((r) => r.data)
 }
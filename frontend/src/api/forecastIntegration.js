@@ -16,6 +16,15 @@ export function getIntegrationData(month, version) {
     .then((r) => r.data)
 }
 
+// 多月份（各月份最新版本），回傳以月份為 key 的物件
+export function getIntegrationDataRange(startMonth, endMonth) {
+  return api
+    .get('/api/sales-forecast/integration/range', {
+      params: { start_month: startMonth, end_month: endMonth },
+    })
+    .then((r) => r.data)
+}
+
 export function exportIntegrationExcel(month, version) {
   return api
     .get('/api/sales-forecast/integration/export', {
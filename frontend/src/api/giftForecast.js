@@ -101,10 +101,17 @@ export function createGiftForecastItem(data) {
   return api.post('/api/gift-sales-forecast', data).then((r) => r.data)
 }
 
-export function updateGiftForecastItem(id, data) {
+// version：在畫面上選取的版本中修改／刪除（該列可能繼承自上層版本）；省略時直接修改該列所屬版本
+export function updateGiftForecastItem(id, data, version) {
+  if (version) {
+    return api.put(`/api/gift-sales-forecast/${id}`, data, { params: { version } }).then((r) => r.data)
+  }
   return api.put(`/api/gift-sales-forecast/${id}`, data).then((r) => r.data)
 }
 
-export function deleteGiftForecastItem(id) {
+export function deleteGiftForecastItem(id, version) {
+  if (version) {
+    return api.delete(`/api/gift-sales-forecast/${id}`, { params: { version } }).then((r) => r.data)
+  }
   return api.delete(`/api/gift-sales-forecast/${id}`).then((r) => r.data)
 }
@@ -456,7 +456,12 @@ export default function InventoryIntegrationPage() {
                     <td>{row.category ?? '-'}</td>
                     <td>{row.spec ?? '-'}</td>
                     <td>{row.productName ?? row.product_name ?? '-'}</td>
-                    <td>{row.productCode ?? row.product_code ?? '-'}</td>
+                    <td>
+                      {row.productCode ?? row.product_code ?? '-'}
+                      {(row.erpError ?? row.erp_error) && (
+                        <span title={`ERP：${row.erpError ?? row.erp_error}（庫存／銷量以 0 計）`}> ⚠</span>
+                      )}
+                    </td>
                     <td className="align-right">{formatNumber(row.salesQuantity ?? row.sales_quantity)}</td>
                     <td className="align-right">{formatNumber(row.inventoryBalance ?? row.inventory_balance)}</td>
                     <td className="align-right">{formatNumber(row.forecastQuantity ?? row.forecast_quantity)}</td>
@@ -341,7 +341,7 @@ export default function ForecastUploadPage() {
     }
     setSavingEdit(true)
     try {
-      await updateForecastItem(id, { quantity: numValue })
+      await updateForecastItem(id, { quantity: numValue }, selectedVersion)
       toast.success('已儲存')
       await fetchResultList()
       cancelEditing()
@@ -341,7 +341,7 @@ export default function GiftForecastUploadPage() {
     }
     setSavingEdit(true)
     try {
-      await updateGiftForecastItem(id, { quantity: numValue })
+      await updateGiftForecastItem(id, { quantity: numValue }, selectedVersion)
       toast.success('已儲存')
       await fetchResultList()
       cancelEditing()